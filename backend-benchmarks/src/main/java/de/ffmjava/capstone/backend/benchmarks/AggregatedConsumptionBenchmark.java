@@ -0,0 +1,105 @@
+package de.ffmjava.capstone.backend.benchmarks;
+
+import de.ffmjava.capstone.backend.CacheConfig;
+import de.ffmjava.capstone.backend.ChangeCounters;
+import de.ffmjava.capstone.backend.horses.ConsumptionTotalsService;
+import de.ffmjava.capstone.backend.horses.model.AggregatedConsumption;
+import de.ffmjava.capstone.backend.horses.model.ConsumptionTotal;
+import de.ffmjava.capstone.backend.stock.StockService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.interceptor.KeyGenerator;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link StockService#getAggregatedConsumptions} through the Caffeine cache of {@link CacheConfig},
+ * whose key generator reads the stable's {@link ChangeCounters} value on every call, and on the
+ * bare service, which maps the stable's totals on every call. The totals query is answered from
+ * memory by {@link StubConsumptionTotalsService}, so the uncached figure is a lower bound that
+ * leaves out the MongoDB round-trip. {@link #cacheKey} measures the key alone, which every cache
+ * hit pays on top of the Caffeine lookup: the cached figure has to stay flat across stock sizes and
+ * must not exceed the uncached one of the smallest stable.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class AggregatedConsumptionBenchmark {
+
+    @Param({"20", "60", "200"})
+    public int stockItems;
+
+    private AnnotationConfigApplicationContext context;
+    private StockService cachedService;
+    private StockService uncachedService;
+    private KeyGenerator keyGenerator;
+
+    @Configuration
+    @EnableCaching
+    @Import(CacheConfig.class)
+    static class CachingConfig {
+
+        @Bean
+        ChangeCounters changeCounters() {
+            return new ChangeCounters();
+        }
+
+        @Bean
+        StockService stockService(ConsumptionTotalsService consumptionTotalsService, ChangeCounters changeCounters) {
+            return newStockService(consumptionTotalsService, changeCounters);
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        List<ConsumptionTotal> totals = BenchmarkData.consumptionTotals(BenchmarkData.horses(BenchmarkData.HORSES,
+                BenchmarkData.stockItems(stockItems)));
+        context = new AnnotationConfigApplicationContext();
+        context.register(CachingConfig.class);
+        context.registerBean(ConsumptionTotalsService.class, () -> new StubConsumptionTotalsService(totals,
+                context.getBean(ChangeCounters.class)));
+        context.refresh();
+        cachedService = context.getBean(StockService.class);
+        keyGenerator = context.getBean(CacheConfig.AGGREGATED_CONSUMPTION_KEY_GENERATOR, KeyGenerator.class);
+        uncachedService = newStockService(context.getBean(ConsumptionTotalsService.class),
+                context.getBean(ChangeCounters.class));
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * Only the collaborators of {@link StockService#getAggregatedConsumptions} are provided.
+     */
+    private static StockService newStockService(ConsumptionTotalsService consumptionTotalsService,
+                                                ChangeCounters changeCounters) {
+        return new StockService(null, null, null, null, null, consumptionTotalsService, null, null, null,
+                changeCounters, null);
+    }
+
+    @Benchmark
+    public Map<String, AggregatedConsumption> cached() {
+        return cachedService.getAggregatedConsumptions(BenchmarkData.STABLE_ID);
+    }
+
+    @Benchmark
+    public Map<String, AggregatedConsumption> uncached() {
+        return uncachedService.getAggregatedConsumptions(BenchmarkData.STABLE_ID);
+    }
+
+    @Benchmark
+    public Object cacheKey() {
+        return keyGenerator.generate(cachedService, null, BenchmarkData.STABLE_ID);
+    }
+}
@@ -0,0 +1,84 @@
+package de.ffmjava.capstone.backend.benchmarks;
+
+import de.ffmjava.capstone.backend.clients.model.Client;
+import de.ffmjava.capstone.backend.horses.model.Consumption;
+import de.ffmjava.capstone.backend.horses.model.ConsumptionTotal;
+import de.ffmjava.capstone.backend.horses.model.Horse;
+import de.ffmjava.capstone.backend.stock.StockType;
+import de.ffmjava.capstone.backend.stock.model.StockItem;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Deterministic seed data of one stable, sized like a large boarding stable: every horse consumes
+ * a few of the stock items and most clients own one or two horses.
+ */
+final class BenchmarkData {
+
+    static final String STABLE_ID = "benchmark-stable";
+    static final int STOCK_ITEMS = 60;
+    static final int HORSES = 200;
+    static final int CONSUMPTIONS_PER_HORSE = 5;
+    static final int CLIENTS = 150;
+
+    private BenchmarkData() {
+    }
+
+    static List<StockItem> stockItems(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> new StockItem("stock-" + i, "Futter " + i,
+                        i % 4 == 0 ? StockType.EINSTREU : StockType.FUTTER,
+                        BigDecimal.valueOf(500 + i * 25L), new BigDecimal("0.85"), 1L, STABLE_ID, null))
+                .toList();
+    }
+
+    static List<Horse> horses(int count, List<StockItem> stockItems) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> horse(i, stockItems))
+                .toList();
+    }
+
+    static Horse horse(int index, List<StockItem> stockItems) {
+        List<Consumption> consumptionList = new ArrayList<>();
+        for (int j = 0; j < CONSUMPTIONS_PER_HORSE; j++) {
+            StockItem stockItem = stockItems.get((index + j * 7) % stockItems.size());
+            consumptionList.add(new Consumption(stockItem.id(), stockItem.name(),
+                    BigDecimal.valueOf(5 + (index + j) % 20, 1)));
+        }
+        return new Horse("horse-" + index, "Pferd " + index, "Besitzer " + index % CLIENTS, consumptionList, 3L,
+                STABLE_ID);
+    }
+
+    static List<Client> clients(int count, int horsesPerClient) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> client(i, horsesPerClient))
+                .toList();
+    }
+
+    static Client client(int index, int horsesPerClient) {
+        List<String> ownsHorse = IntStream.range(0, horsesPerClient)
+                .mapToObj(j -> "horse-" + (index * horsesPerClient + j))
+                .toList();
+        return new Client("client-" + index, "Kunde " + index, ownsHorse, 2L, STABLE_ID);
+    }
+
+    /**
+     * @return the totals that {@code consumption_totals} holds for the given horses
+     */
+    static List<ConsumptionTotal> consumptionTotals(List<Horse> horses) {
+        return horses.stream()
+                .flatMap(horse -> horse.consumptionList().stream())
+                .collect(Collectors.groupingBy(Consumption::id))
+                .values()
+                .stream()
+                .map(consumptions -> new ConsumptionTotal(consumptions.get(0).id(), consumptions.get(0).name(),
+                        consumptions.stream().map(Consumption::dailyConsumption).reduce(BigDecimal.ZERO,
+                                BigDecimal::add),
+                        consumptions.size(), STABLE_ID))
+                .toList();
+    }
+}
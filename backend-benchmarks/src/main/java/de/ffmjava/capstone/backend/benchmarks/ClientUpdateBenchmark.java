@@ -0,0 +1,67 @@
+package de.ffmjava.capstone.backend.benchmarks;
+
+import de.ffmjava.capstone.backend.ChangeCounters;
+import de.ffmjava.capstone.backend.clients.ClientRepository;
+import de.ffmjava.capstone.backend.clients.ClientService;
+import de.ffmjava.capstone.backend.clients.model.Client;
+import de.ffmjava.capstone.backend.horses.HorseRepository;
+import de.ffmjava.capstone.backend.model.VersionedUpdate;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ClientService#updateClient} with the ownership checks of the owned horse ids: the duplicate
+ * check in memory and the existence and ownership queries, which are answered from memory here.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ClientUpdateBenchmark {
+
+    @Param({"1", "5", "50"})
+    public int ownedHorses;
+
+    private ClientService service;
+    private Client client;
+    private Client clientWithDuplicateHorse;
+
+    @Setup
+    public void setUp() {
+        client = BenchmarkData.client(0, ownedHorses).withStableId(null);
+        List<String> ownsHorse = new ArrayList<>(client.ownsHorse());
+        ownsHorse.add(ownsHorse.get(0));
+        clientWithDuplicateHorse = client.withOwnsHorse(ownsHorse);
+
+        Client storedClient = client.withStableId(BenchmarkData.STABLE_ID);
+        ClientRepository repository = Stubs.of(ClientRepository.class, Map.of(
+                "existsByStableIdAndOwnsHorseInAndIdNot", false,
+                "replaceIfVersionMatches",
+                Optional.of(new VersionedUpdate<>(storedClient, storedClient.withVersion(3L)))));
+        HorseRepository horseRepository = Stubs.of(HorseRepository.class, Map.of(
+                "countByStableIdAndIdIn", (long) ownedHorses));
+        service = new ClientService(repository, horseRepository, null, null, new ChangeCounters());
+    }
+
+    @Benchmark
+    public VersionedUpdate<Client> validUpdate() {
+        return service.updateClient(BenchmarkData.STABLE_ID, client);
+    }
+
+    @Benchmark
+    public String duplicateHorse() {
+        try {
+            service.updateClient(BenchmarkData.STABLE_ID, clientWithDuplicateHorse);
+            throw new IllegalStateException("Update of a client owning a horse twice succeeded");
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package de.ffmjava.capstone.backend.benchmarks;
+
+import de.ffmjava.capstone.backend.user.CustomApiErrorHandler;
+import de.ffmjava.capstone.backend.user.model.AppUser;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.validation.Errors;
+import org.springframework.validation.beanvalidation.SpringValidatorAdapter;
+
+import javax.validation.Validation;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Construction of a {@link CustomApiErrorHandler} from the validation errors of a rejected
+ * registration, as {@code UserController} does for every invalid request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CustomApiErrorHandlerBenchmark {
+
+    private Errors errors;
+
+    @Setup
+    public void setUp() {
+        AppUser invalidUser = new AppUser(null, "", "kurz", null, null, null, null);
+        errors = new BeanPropertyBindingResult(invalidUser, "appUser");
+        new SpringValidatorAdapter(Validation.buildDefaultValidatorFactory().getValidator())
+                .validate(invalidUser, errors);
+        if (errors.getFieldErrorCount() != 2) {
+            throw new IllegalStateException("Expected two field errors but got " + errors.getFieldErrors());
+        }
+    }
+
+    @Benchmark
+    public CustomApiErrorHandler construct() {
+        return new CustomApiErrorHandler(errors);
+    }
+}
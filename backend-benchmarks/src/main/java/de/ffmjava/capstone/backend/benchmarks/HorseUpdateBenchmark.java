@@ -0,0 +1,79 @@
+package de.ffmjava.capstone.backend.benchmarks;
+
+import de.ffmjava.capstone.backend.ChangeCounters;
+import de.ffmjava.capstone.backend.horses.HorseRepository;
+import de.ffmjava.capstone.backend.horses.HorseService;
+import de.ffmjava.capstone.backend.horses.model.Consumption;
+import de.ffmjava.capstone.backend.horses.model.Horse;
+import de.ffmjava.capstone.backend.model.VersionedUpdate;
+import de.ffmjava.capstone.backend.mongo.MongoTransactions;
+import de.ffmjava.capstone.backend.stock.StockIdIndex;
+import de.ffmjava.capstone.backend.stock.StockRepository;
+import de.ffmjava.capstone.backend.stock.model.StockItem;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.data.mongodb.MongoTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link HorseService#updateHorse} of a horse whose consumption list is checked against the warm
+ * {@link StockIdIndex} of the stable. Repository writes and the consumption totals are stubbed out,
+ * so the figures cover the validation and the bookkeeping around it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class HorseUpdateBenchmark {
+
+    @Param({"20", "60", "200"})
+    public int stockItems;
+
+    private HorseService service;
+    private Horse horse;
+    private Horse horseWithUnknownStockItem;
+
+    @Setup
+    public void setUp() {
+        List<StockItem> stock = BenchmarkData.stockItems(stockItems);
+        StockRepository stockRepository = Stubs.of(StockRepository.class, Map.of("findAllIds", stock,
+                "findIdsIn", List.of()));
+        horse = BenchmarkData.horse(0, stock).withStableId(null);
+        List<Consumption> consumptionList = new ArrayList<>(horse.consumptionList());
+        consumptionList.add(new Consumption("unknown", "Unbekannt", BigDecimal.ONE));
+        horseWithUnknownStockItem = horse.withConsumptionList(consumptionList);
+
+        Horse storedHorse = horse.withStableId(BenchmarkData.STABLE_ID);
+        HorseRepository horseRepository = Stubs.of(HorseRepository.class, Map.of("replaceIfVersionMatches",
+                Optional.of(new VersionedUpdate<>(storedHorse, storedHorse.withVersion(4L)))));
+        ChangeCounters changeCounters = new ChangeCounters();
+        service = new HorseService(horseRepository, null, new StockIdIndex(stockRepository, Duration.ofMinutes(5)),
+                null, null, new StubConsumptionTotalsService(List.of(), changeCounters), null,
+                new MongoTransactions(new StaticListableBeanFactory().getBeanProvider(MongoTransactionManager.class)),
+                changeCounters);
+    }
+
+    @Benchmark
+    public VersionedUpdate<Horse> validUpdate() {
+        return service.updateHorse(BenchmarkData.STABLE_ID, horse);
+    }
+
+    @Benchmark
+    public String unknownStockItem() {
+        try {
+            service.updateHorse(BenchmarkData.STABLE_ID, horseWithUnknownStockItem);
+            throw new IllegalStateException("Update of a horse with an unknown stock item succeeded");
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package de.ffmjava.capstone.backend.benchmarks;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.ffmjava.capstone.backend.clients.model.Client;
+import de.ffmjava.capstone.backend.horses.model.Horse;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson (de)serialization of the horse and client lists of a stable, with an {@link ObjectMapper}
+ * configured like the one of the web layer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class JsonBenchmark {
+
+    private ObjectMapper objectMapper;
+    private JavaType horseListType;
+    private JavaType clientListType;
+    private List<Horse> horses;
+    private List<Client> clients;
+    private byte[] horsesJson;
+    private byte[] clientsJson;
+
+    @Setup
+    public void setUp() throws IOException {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        horseListType = objectMapper.getTypeFactory().constructCollectionType(List.class, Horse.class);
+        clientListType = objectMapper.getTypeFactory().constructCollectionType(List.class, Client.class);
+        horses = BenchmarkData.horses(BenchmarkData.HORSES, BenchmarkData.stockItems(BenchmarkData.STOCK_ITEMS));
+        clients = BenchmarkData.clients(BenchmarkData.CLIENTS, 1);
+        horsesJson = objectMapper.writeValueAsBytes(horses);
+        clientsJson = objectMapper.writeValueAsBytes(clients);
+    }
+
+    @Benchmark
+    public byte[] serializeHorses() throws IOException {
+        return objectMapper.writerFor(horseListType).writeValueAsBytes(horses);
+    }
+
+    @Benchmark
+    public List<Horse> deserializeHorses() throws IOException {
+        return objectMapper.readValue(horsesJson, horseListType);
+    }
+
+    @Benchmark
+    public byte[] serializeClients() throws IOException {
+        return objectMapper.writerFor(clientListType).writeValueAsBytes(clients);
+    }
+
+    @Benchmark
+    public List<Client> deserializeClients() throws IOException {
+        return objectMapper.readValue(clientsJson, clientListType);
+    }
+}
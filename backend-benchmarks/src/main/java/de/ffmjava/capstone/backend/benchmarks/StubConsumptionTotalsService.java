@@ -0,0 +1,34 @@
+package de.ffmjava.capstone.backend.benchmarks;
+
+import de.ffmjava.capstone.backend.ChangeCounters;
+import de.ffmjava.capstone.backend.horses.ConsumptionTotalsService;
+import de.ffmjava.capstone.backend.horses.model.Consumption;
+import de.ffmjava.capstone.backend.horses.model.ConsumptionTotal;
+
+import java.util.List;
+
+/**
+ * {@link ConsumptionTotalsService} that reads the given totals from memory instead of
+ * {@code consumption_totals} and ignores changes; the mapping around the query stays real.
+ */
+class StubConsumptionTotalsService extends ConsumptionTotalsService {
+
+    private final List<ConsumptionTotal> totals;
+
+    StubConsumptionTotalsService(List<ConsumptionTotal> totals, ChangeCounters changeCounters) {
+        super(null, event -> {
+        }, changeCounters);
+        this.totals = totals;
+    }
+
+    @Override
+    public List<ConsumptionTotal> getActiveTotals(String stableId) {
+        return totals;
+    }
+
+    @Override
+    public void applyChange(String stableId, List<Consumption> previousConsumptions,
+                            List<Consumption> currentConsumptions) {
+        // the totals are not under test
+    }
+}
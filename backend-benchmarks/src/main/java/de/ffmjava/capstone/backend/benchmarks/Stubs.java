@@ -0,0 +1,31 @@
+package de.ffmjava.capstone.backend.benchmarks;
+
+import java.lang.reflect.Proxy;
+import java.util.Map;
+
+/**
+ * Repository stubs that answer fixed results by method name. Unlike mocks they record nothing and
+ * capture no stack traces, so they add next to nothing to the measured call.
+ */
+final class Stubs {
+
+    private Stubs() {
+    }
+
+    static <T> T of(Class<T> type, Map<String, Object> results) {
+        Object stub = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                return switch (method.getName()) {
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    default -> type.getSimpleName() + " stub";
+                };
+            }
+            if (!results.containsKey(method.getName())) {
+                throw new UnsupportedOperationException(type.getSimpleName() + "." + method.getName());
+            }
+            return results.get(method.getName());
+        });
+        return type.cast(stub);
+    }
+}
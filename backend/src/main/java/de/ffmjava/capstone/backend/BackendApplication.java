@@ -1,14 +1,19 @@
 package de.ffmjava.capstone.backend;
 
 
+import de.ffmjava.capstone.backend.mongo.CursorPagingRepositoryImpl;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.data.mongodb.repository.config.EnableMongoRepositories;
+import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @EnableScheduling
+@EnableAsync
 @EnableCaching
+@EnableMongoRepositories(repositoryBaseClass = CursorPagingRepositoryImpl.class)
 public class BackendApplication {
 
     public static void main(String[] args) {
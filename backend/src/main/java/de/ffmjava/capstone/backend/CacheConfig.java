@@ -0,0 +1,118 @@
+package de.ffmjava.capstone.backend;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import de.ffmjava.capstone.backend.stock.model.StockItem;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.interceptor.KeyGenerator;
+import org.springframework.cache.support.NoOpCache;
+import org.springframework.cache.support.SimpleCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+/**
+ * Bounded Caffeine caches with statistics. Every cache is declared up front so that its
+ * size and TTL are configurable and its hit/miss counters are published as
+ * {@code cache.*} metrics.
+ */
+@Configuration
+public class CacheConfig {
+
+    public static final String AGGREGATED_CONSUMPTION_CACHE = "AGGREGATED_CONSUMPTION_CACHE";
+    public static final String STOCK_ITEM_CACHE = "STOCK_ITEM_CACHE";
+    public static final String HORSE_LIST_CACHE = "HORSE_LIST_CACHE";
+    public static final String USER_CACHE = "USER_CACHE";
+
+    /**
+     * Key generators for caches that hold one list per stable. The key is the stable id and the
+     * {@link ChangeCounters} value of the listed collection in that stable, so that a list is never
+     * served under a counter value that was bumped after it was read. Bumping the counter retires the
+     * stable's entry without evicting anything, so writes in one stable never drop the entries of
+     * another; retired entries age out by size and TTL. The cached methods take the stable id as
+     * their first parameter. The key is built in plain Java because a SpEL key is parsed and
+     * evaluated on every call, which costs more than the cache hit saves.
+     */
+    public static final String HORSE_LIST_KEY_GENERATOR = "horseListKeyGenerator";
+    public static final String AGGREGATED_CONSUMPTION_KEY_GENERATOR = "aggregatedConsumptionKeyGenerator";
+    /**
+     * Key generator of {@link #STOCK_ITEM_CACHE}, for methods that take the stable id and then the id
+     * of the stock item or the stock item itself.
+     */
+    public static final String STOCK_ITEM_KEY_GENERATOR = "stockItemKeyGenerator";
+
+    /**
+     * Key of a stock item in {@link #STOCK_ITEM_CACHE}.
+     */
+    public record StockItemKey(String stableId, String id) {
+    }
+
+    public static StockItemKey stockItemKey(String stableId, String id) {
+        return new StockItemKey(stableId, id);
+    }
+
+    /**
+     * Key of a list cached under the {@link ChangeCounters} value of its collection in the stable.
+     */
+    public record CounterKey(String stableId, long counter) {
+    }
+
+    @Bean(HORSE_LIST_KEY_GENERATOR)
+    public KeyGenerator horseListKeyGenerator(ChangeCounters changeCounters) {
+        return counterKeyGenerator(changeCounters, ChangeCounters.Collection.HORSES);
+    }
+
+    @Bean(AGGREGATED_CONSUMPTION_KEY_GENERATOR)
+    public KeyGenerator aggregatedConsumptionKeyGenerator(ChangeCounters changeCounters) {
+        return counterKeyGenerator(changeCounters, ChangeCounters.Collection.CONSUMPTION);
+    }
+
+    @Bean(STOCK_ITEM_KEY_GENERATOR)
+    public KeyGenerator stockItemKeyGenerator() {
+        return (target, method, params) -> stockItemKey((String) params[0],
+                params[1] instanceof StockItem stockItem ? stockItem.id() : (String) params[1]);
+    }
+
+    static KeyGenerator counterKeyGenerator(ChangeCounters changeCounters, ChangeCounters.Collection collection) {
+        return (target, method, params) -> {
+            String stableId = (String) params[0];
+            return new CounterKey(stableId, changeCounters.counter(stableId, collection));
+        };
+    }
+
+    @Bean
+    public CacheManager cacheManager(
+            @Value("${stablebuddy.cache.aggregated-consumption:maximumSize=1000,expireAfterWrite=10m}")
+            String aggregatedConsumptionSpec,
+            @Value("${stablebuddy.cache.stock-item:maximumSize=1000,expireAfterWrite=10m}")
+            String stockItemSpec,
+            @Value("${stablebuddy.cache.horse-list:maximumSize=1000,expireAfterWrite=5m}")
+            String horseListSpec,
+            @Value("${stablebuddy.cache.user:maximumSize=500,expireAfterWrite=5m}")
+            String userSpec,
+            @Value("${stablebuddy.change-counters.single-node:true}")
+            boolean singleNode) {
+        SimpleCacheManager cacheManager = new SimpleCacheManager();
+        cacheManager.setCaches(List.of(
+                buildCounterKeyedCache(AGGREGATED_CONSUMPTION_CACHE, aggregatedConsumptionSpec, singleNode),
+                buildCache(STOCK_ITEM_CACHE, stockItemSpec),
+                buildCounterKeyedCache(HORSE_LIST_CACHE, horseListSpec, singleNode),
+                buildCache(USER_CACHE, userSpec)));
+        return cacheManager;
+    }
+
+    /**
+     * Caches keyed by {@link ChangeCounters} values would serve lists that another node has changed,
+     * so they are only built for single-node deployments.
+     */
+    static Cache buildCounterKeyedCache(String name, String spec, boolean singleNode) {
+        return singleNode ? buildCache(name, spec) : new NoOpCache(name);
+    }
+
+    static CaffeineCache buildCache(String name, String spec) {
+        return new CaffeineCache(name, Caffeine.from(spec).recordStats().build());
+    }
+}
@@ -0,0 +1,126 @@
+package de.ffmjava.capstone.backend;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Per-stable, per-collection change counters that drive the strong ETags and {@code Last-Modified}
+ * headers of the list endpoints, so an unchanged list is answered with 304 before the service is
+ * called.
+ * <p>
+ * Service mutators bump the counters of the collections they wrote to after the write, so a list
+ * read after a counter value never holds older data than that value stands for. A write in one
+ * stable leaves the ETags and cache keys of all other stables untouched. Like the caches in
+ * {@link CacheConfig}, the counters live in memory; an epoch taken at startup keeps the ETags of
+ * different runs apart.
+ * <p>
+ * In-memory counters only see the writes of their own node, so they are only valid while one node
+ * serves the database. Deployments with more nodes set {@code stablebuddy.change-counters.single-node}
+ * to {@code false}: list responses then carry no ETag and are never answered with 304, and the
+ * counter-keyed caches of {@link CacheConfig} are switched off.
+ */
+@Component
+public class ChangeCounters {
+
+    public enum Collection {
+        STOCK,
+        HORSES,
+        CLIENTS,
+        CONSUMPTION
+    }
+
+    /**
+     * The strong ETag and {@code Last-Modified} time of a response rendered from one or more collections.
+     */
+    public record Tag(String eTag, Instant lastModified) {
+    }
+
+    private record Key(String stableId, Collection collection) {
+    }
+
+    private record State(long counter, Instant lastModified) {
+    }
+
+    private final Clock clock;
+    private final boolean singleNode;
+    private final Instant startedAt;
+    private final String epoch;
+    private final Map<Key, AtomicReference<State>> states = new ConcurrentHashMap<>();
+
+    public ChangeCounters() {
+        this(true);
+    }
+
+    @Autowired
+    public ChangeCounters(@Value("${stablebuddy.change-counters.single-node:true}") boolean singleNode) {
+        this(Clock.systemUTC(), singleNode);
+    }
+
+    ChangeCounters(Clock clock) {
+        this(clock, true);
+    }
+
+    ChangeCounters(Clock clock, boolean singleNode) {
+        this.clock = clock;
+        this.singleNode = singleNode;
+        this.startedAt = clock.instant();
+        this.epoch = Long.toString(startedAt.toEpochMilli(), Character.MAX_RADIX);
+    }
+
+    public void bump(String stableId, Collection... collections) {
+        Instant now = clock.instant();
+        for (Collection collection : collections) {
+            state(stableId, collection).updateAndGet(state -> new State(state.counter() + 1, now));
+        }
+    }
+
+    public long counter(String stableId, Collection collection) {
+        return state(stableId, collection).get().counter();
+    }
+
+    /**
+     * Checks the request's {@code If-None-Match} against the current state of {@code collections}
+     * in the stable, for responses that are rendered from all of them.
+     *
+     * @return whether the response was set to 304 and the handler has to return without a body
+     */
+    public boolean checkNotModified(ServletWebRequest request, String stableId, Collection... collections) {
+        if (!singleNode) {
+            return false;
+        }
+        Tag tag = tag(stableId, collections);
+        return ETags.checkNotModified(request, tag.eTag(), tag.lastModified().toEpochMilli());
+    }
+
+    /**
+     * @return the tag of the response, {@code null} if the counters are not valid for a conditional response
+     */
+    public Tag tag(String stableId, Collection... collections) {
+        if (!singleNode) {
+            return null;
+        }
+        StringBuilder eTag = new StringBuilder("\"").append(epoch).append('-').append(stableId);
+        Instant lastModified = Instant.EPOCH;
+        for (Collection collection : collections) {
+            State state = state(stableId, collection).get();
+            eTag.append('-').append(state.counter());
+            if (state.lastModified().isAfter(lastModified)) {
+                lastModified = state.lastModified();
+            }
+        }
+        return new Tag(eTag.append('"').toString(), lastModified);
+    }
+
+    private AtomicReference<State> state(String stableId, Collection collection) {
+        return states.computeIfAbsent(new Key(stableId, collection),
+                key -> new AtomicReference<>(new State(0, startedAt)));
+    }
+}
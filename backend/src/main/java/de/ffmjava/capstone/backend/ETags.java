@@ -0,0 +1,92 @@
+package de.ffmjava.capstone.backend;
+
+import de.ffmjava.capstone.backend.model.VersionedUpdate;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.servlet.http.HttpServletResponse;
+import java.util.function.Function;
+
+/**
+ * Maps document versions to strong ETags ({@code "3"}) and back, for conditional GET and PUT requests.
+ */
+public final class ETags {
+
+    private static final String WEAK_PREFIX = "W/";
+    private static final String ANY = "*";
+
+    public static final CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
+
+    private ETags() {
+    }
+
+    /**
+     * @return the version named by an {@code If-Match} header, {@code null} if the header is absent or {@code *}
+     */
+    public static Long parseIfMatch(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals(ANY)) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.startsWith(WEAK_PREFIX)) {
+            tag = tag.substring(WEAK_PREFIX.length());
+        }
+        try {
+            return Long.valueOf(tag.replace("\"", ""));
+        } catch (NumberFormatException e) {
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "Ungültiges ETag: " + ifMatch);
+        }
+    }
+
+    public static String of(Long version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * Sets {@code eTag} and {@code lastModified} on the response and checks the request's
+     * {@code If-None-Match} against the ETag. {@code Last-Modified} only has second precision and
+     * does not see two changes within the same second, so {@code If-Modified-Since} is not
+     * evaluated. Responses are marked {@code no-cache, private}: browsers keep them, but revalidate
+     * them on every use.
+     *
+     * @param lastModified epoch millis, or a negative value if unknown
+     * @return whether the response was set to 304 and the handler has to return without a body
+     */
+    public static boolean checkNotModified(ServletWebRequest request, String eTag, long lastModified) {
+        HttpServletResponse response = request.getResponse();
+        if (response != null) {
+            response.setHeader(HttpHeaders.CACHE_CONTROL, REVALIDATE.getHeaderValue());
+            if (lastModified >= 0) {
+                response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+            }
+        }
+        return request.checkNotModified(eTag);
+    }
+
+    public static <T> ResponseEntity<Object> toResponse(VersionedUpdate<T> update, Function<T, Long> version) {
+        return toResponse(update, version, current -> current);
+    }
+
+    /**
+     * @param body renders the stored state as the response body
+     */
+    public static <T> ResponseEntity<Object> toResponse(VersionedUpdate<T> update, Function<T, Long> version,
+                                                        Function<T, ?> body) {
+        return ResponseEntity.status(update.created() ? HttpStatus.CREATED : HttpStatus.OK)
+                .eTag(of(version.apply(update.current())))
+                .body(body.apply(update.current()));
+    }
+
+    /**
+     * A failed {@code If-Match} precondition is a 412, a stale version in the body a 409.
+     */
+    public static ResponseStatusException versionConflict(OptimisticLockingFailureException e, String ifMatch) {
+        HttpStatus status = parseIfMatch(ifMatch) == null ? HttpStatus.CONFLICT : HttpStatus.PRECONDITION_FAILED;
+        return new ResponseStatusException(status, e.getMessage());
+    }
+}
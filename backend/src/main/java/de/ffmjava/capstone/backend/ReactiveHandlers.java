@@ -0,0 +1,127 @@
+package de.ffmjava.capstone.backend;
+
+import de.ffmjava.capstone.backend.mongo.VersionRequiredException;
+import de.ffmjava.capstone.backend.user.CustomApiErrorHandler;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.validation.Errors;
+import org.springframework.validation.beanvalidation.SpringValidatorAdapter;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import javax.validation.Validator;
+import java.util.concurrent.Callable;
+import java.util.function.Function;
+
+/**
+ * Request and response handling shared by the WebFlux handlers of the {@code reactive} profile,
+ * mirroring what Spring MVC and {@link ETags} do for the controllers: bean validation of request
+ * bodies, conditional GETs and versioned writes.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveHandlers {
+
+    private final SpringValidatorAdapter validator;
+
+    public ReactiveHandlers(Validator validator) {
+        this.validator = new SpringValidatorAdapter(validator);
+    }
+
+    /**
+     * Calls the blocking services on the bounded elastic scheduler, so writes never block the event loop.
+     */
+    public static <T> Mono<T> blocking(Callable<T> call) {
+        return Mono.fromCallable(call).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Decodes and validates the request body. Invalid bodies are answered with the same
+     * {@link de.ffmjava.capstone.backend.model.FormError} as the controllers send.
+     */
+    public <T> Mono<ServerResponse> withValidBody(ServerRequest request, Class<T> type,
+                                                  Function<T, Mono<ServerResponse>> handler) {
+        return withValidBody(request, type,
+                errors -> toResponse(CustomApiErrorHandler.handlePossibleErrors(errors)), handler);
+    }
+
+    /**
+     * @param onInvalid renders the response to a body that failed validation
+     */
+    public <T> Mono<ServerResponse> withValidBody(ServerRequest request, Class<T> type,
+                                                  Function<Errors, Mono<ServerResponse>> onInvalid,
+                                                  Function<T, Mono<ServerResponse>> handler) {
+        return request.bodyToMono(type)
+                .switchIfEmpty(Mono.error(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST)))
+                .flatMap(body -> {
+                    Errors errors = validate(body);
+                    return errors.hasErrors() ? onInvalid.apply(errors) : handler.apply(body);
+                });
+    }
+
+    private Errors validate(Object body) {
+        Errors errors = new BeanPropertyBindingResult(body, body.getClass().getSimpleName());
+        validator.validate(body, errors);
+        return errors;
+    }
+
+    public static Mono<ServerResponse> toResponse(ResponseEntity<?> entity) {
+        ServerResponse.BodyBuilder response = ServerResponse.status(entity.getStatusCode())
+                .headers(headers -> headers.addAll(entity.getHeaders()));
+        return entity.getBody() == null ? response.build() : response.bodyValue(entity.getBody());
+    }
+
+    /**
+     * Answers with 304 if the request's {@code If-None-Match} matches, and otherwise hands a 200
+     * builder carrying the ETag to {@code ok}. Unlike {@link ETags#checkNotModified} it sends no
+     * {@code Last-Modified}: WebFlux answers a response carrying one with 304 whenever
+     * {@code If-Modified-Since} is not older, and its second precision misses changes within the
+     * same second.
+     */
+    public static Mono<ServerResponse> checkNotModified(ServerRequest request, String eTag,
+                                                        Function<ServerResponse.BodyBuilder, Mono<ServerResponse>> ok) {
+        return request.checkNotModified(eTag)
+                .flatMap(response -> ServerResponse.from(response).cacheControl(ETags.REVALIDATE).build())
+                .switchIfEmpty(Mono.defer(() -> ok.apply(ServerResponse.ok().eTag(eTag)
+                        .cacheControl(ETags.REVALIDATE))));
+    }
+
+    public static Mono<ServerResponse> checkNotModified(ServerRequest request, ChangeCounters.Tag tag,
+                                                        Function<ServerResponse.BodyBuilder, Mono<ServerResponse>> ok) {
+        if (tag == null) {
+            return ok.apply(ServerResponse.ok());
+        }
+        return checkNotModified(request, tag.eTag(), ok);
+    }
+
+    /**
+     * @see ETags#parseIfMatch(String)
+     */
+    public static Long expectedVersion(ServerRequest request) {
+        return ETags.parseIfMatch(request.headers().firstHeader(HttpHeaders.IF_MATCH));
+    }
+
+    /**
+     * Maps the exceptions of a versioned write to the statuses the controllers answer with.
+     */
+    public static Throwable versionedWriteError(Throwable e, ServerRequest request) {
+        if (e instanceof IllegalArgumentException) {
+            return new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        if (e instanceof OptimisticLockingFailureException lockingFailure) {
+            return ETags.versionConflict(lockingFailure, request.headers().firstHeader(HttpHeaders.IF_MATCH));
+        }
+        if (e instanceof VersionRequiredException) {
+            return new ResponseStatusException(HttpStatus.PRECONDITION_REQUIRED, e.getMessage());
+        }
+        return e;
+    }
+}
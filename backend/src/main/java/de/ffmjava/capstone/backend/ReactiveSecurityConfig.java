@@ -0,0 +1,109 @@
+package de.ffmjava.capstone.backend;
+
+import de.ffmjava.capstone.backend.user.ReactiveUserRepository;
+import de.ffmjava.capstone.backend.user.TokenService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpCookie;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.SecurityWebFiltersOrder;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.core.userdetails.ReactiveUserDetailsService;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.authentication.AuthenticationWebFilter;
+import org.springframework.security.web.server.authentication.HttpStatusServerEntryPoint;
+import org.springframework.security.web.server.context.NoOpServerSecurityContextRepository;
+import org.springframework.security.web.server.context.ServerSecurityContextRepository;
+import org.springframework.security.web.server.context.WebSessionServerSecurityContextRepository;
+import reactor.core.publisher.Mono;
+
+/**
+ * {@link SecurityConfig} of the {@code reactive} profile: the same rules, HTTP basic login without the
+ * browser popup, and the session or, if enabled, the {@link TokenService} token afterwards.
+ */
+@EnableWebFluxSecurity
+@RequiredArgsConstructor
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveSecurityConfig {
+    private static final String PROTECTED_STOCK_PATH = "/stock/**";
+    private static final String PROTECTED_HORSE_PATH = "/horses/**";
+    private static final String PROTECTED_CLIENT_PATH = "/clients/**";
+    private static final String PROTECTED_API_PATH = "/api/**";
+    private static final String PROTECTED_EVENTS_PATH = "/events/**";
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    private static final String ROLE_BASIC = "Basic";
+
+    private final TokenService tokenService;
+
+    @Bean
+    public PasswordEncoder encoder() {
+        return SecurityConfig.passwordEncoder;
+    }
+
+    @Bean
+    public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http) {
+        ServerSecurityContextRepository securityContextRepository = new WebSessionServerSecurityContextRepository();
+        if (tokenService.isEnabled()) {
+            securityContextRepository = NoOpServerSecurityContextRepository.getInstance();
+            http.addFilterBefore(tokenAuthenticationFilter(), SecurityWebFiltersOrder.HTTP_BASIC);
+        }
+        return http
+                .securityContextRepository(securityContextRepository)
+                .csrf().disable()
+                .httpBasic()
+                .authenticationEntryPoint(new HttpStatusServerEntryPoint(HttpStatus.UNAUTHORIZED))
+                .securityContextRepository(securityContextRepository).and()
+                .authorizeExchange()
+                .pathMatchers(HttpMethod.POST, "/api/app-users").permitAll()
+                .pathMatchers(HttpMethod.GET, "/api/app-users/me").permitAll()
+                .pathMatchers(HttpMethod.GET, "/actuator/health").permitAll()
+                .pathMatchers("/actuator/**").hasRole(ROLE_BASIC)
+                .pathMatchers(PROTECTED_STOCK_PATH, PROTECTED_HORSE_PATH, PROTECTED_CLIENT_PATH,
+                        "/api/app-users/logout", "/api/app-users/login").hasRole(ROLE_BASIC)
+                .pathMatchers(HttpMethod.GET, PROTECTED_EVENTS_PATH).hasRole(ROLE_BASIC)
+                .pathMatchers(PROTECTED_API_PATH, PROTECTED_EVENTS_PATH).authenticated()
+                .anyExchange().permitAll()
+                .and().build();
+    }
+
+    /**
+     * Reactive {@link de.ffmjava.capstone.backend.user.TokenAuthenticationFilter}: authenticates requests
+     * carrying a valid token, and lets all others pass unauthenticated.
+     */
+    private AuthenticationWebFilter tokenAuthenticationFilter() {
+        AuthenticationWebFilter filter = new AuthenticationWebFilter((ReactiveAuthenticationManager) Mono::just);
+        filter.setServerAuthenticationConverter(exchange -> Mono.justOrEmpty(resolveToken(exchange.getRequest()))
+                .flatMap(token -> Mono.justOrEmpty(tokenService.verify(token))));
+        return filter;
+    }
+
+    private static String resolveToken(ServerHttpRequest request) {
+        String authorization = request.getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+        if (authorization != null && authorization.startsWith(BEARER_PREFIX)) {
+            return authorization.substring(BEARER_PREFIX.length());
+        }
+        HttpCookie cookie = request.getCookies().getFirst(TokenService.TOKEN_COOKIE);
+        return cookie == null ? null : cookie.getValue();
+    }
+
+    @Bean
+    public ReactiveUserDetailsService userDetailsService(ReactiveUserRepository userRepository) {
+        return username -> userRepository.findByUsername(username)
+                .map(appUser -> User.builder()
+                        .username(username)
+                        .password(appUser.passwordBcrypt())
+                        .roles(appUser.role())
+                        .build());
+    }
+}
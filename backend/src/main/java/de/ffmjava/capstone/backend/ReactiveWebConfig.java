@@ -0,0 +1,79 @@
+package de.ffmjava.capstone.backend;
+
+import de.ffmjava.capstone.backend.clients.ClientHandler;
+import de.ffmjava.capstone.backend.horses.HorseHandler;
+import de.ffmjava.capstone.backend.stock.StockHandler;
+import de.ffmjava.capstone.backend.user.UserHandler;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.web.reactive.config.ResourceHandlerRegistry;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.reactive.resource.PathResourceResolver;
+import reactor.core.publisher.Mono;
+
+/**
+ * Routes of the {@code reactive} profile, selected with {@code spring.profiles.active=reactive}. It
+ * serves the lists and the create, update and delete endpoints of the frontend on Netty, so slow
+ * clients hold a connection but no thread. Paging, patches, import/export, stock movements, forecasts
+ * and the server-sent events are only served by the Spring MVC controllers of the default profile.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveWebConfig implements WebFluxConfigurer {
+
+    private static final String HORSES_PATH = "/horses/";
+    private static final String STOCK_PATH = "/stock/";
+    private static final String CLIENTS_PATH = "/clients/";
+    private static final String USERS_PATH = "/api/app-users";
+
+    @Bean
+    public RouterFunction<ServerResponse> apiRoutes(HorseHandler horseHandler, StockHandler stockHandler,
+                                                    ClientHandler clientHandler, UserHandler userHandler) {
+        return RouterFunctions.route()
+                .GET(HORSES_PATH, horseHandler::getAllHorses)
+                .POST(HORSES_PATH, horseHandler::addNewHorse)
+                .PUT(HORSES_PATH, horseHandler::updateHorse)
+                .DELETE(HORSES_PATH + "{id}", horseHandler::deleteHorse)
+                .GET(STOCK_PATH, stockHandler::getAllStockItems)
+                .GET(STOCK_PATH + "{id}", stockHandler::getStockItemById)
+                .POST(STOCK_PATH, stockHandler::addNewStockItem)
+                .PUT(STOCK_PATH, stockHandler::updateStockItem)
+                .DELETE(STOCK_PATH + "{id}", stockHandler::deleteStockItem)
+                .GET(CLIENTS_PATH, clientHandler::getAllClients)
+                .POST(CLIENTS_PATH, clientHandler::addNewClient)
+                .PUT(CLIENTS_PATH, clientHandler::updateClient)
+                .DELETE(CLIENTS_PATH + "{id}", clientHandler::deleteClient)
+                .POST(USERS_PATH, userHandler::registration)
+                .GET(USERS_PATH + "/login", userHandler::login)
+                .GET(USERS_PATH + "/logout", userHandler::logout)
+                .GET(USERS_PATH + "/me", userHandler::me)
+                .build();
+    }
+
+    @Override
+    public void addResourceHandlers(ResourceHandlerRegistry registry) {
+        registry.addResourceHandler("/**")
+                .addResourceLocations("classpath:/static/")
+                .resourceChain(true)
+                .addResolver(new ReactRoutingPathResourceResolver());
+    }
+
+    /**
+     * Reactive {@link ReactRoutingForwarding.ReactRoutingPathResourceResolver}: answers all paths
+     * without a static file with the start page, so the React router can handle them.
+     */
+    static class ReactRoutingPathResourceResolver extends PathResourceResolver {
+        @Override
+        protected Mono<Resource> getResource(String resourcePath, Resource location) {
+            return super.getResource(resourcePath, location)
+                    .switchIfEmpty(Mono.fromSupplier(() ->
+                            new ClassPathResource(ReactRoutingForwarding.DEFAULT_STARTING_PAGE)));
+        }
+    }
+}
@@ -1,13 +1,21 @@
 package de.ffmjava.capstone.backend;
 
+import de.ffmjava.capstone.backend.user.CachingAuthenticationProvider;
+import de.ffmjava.capstone.backend.user.CredentialCache;
+import de.ffmjava.capstone.backend.user.TokenAuthenticationFilter;
+import de.ffmjava.capstone.backend.user.TokenService;
 import de.ffmjava.capstone.backend.user.UserService;
 import de.ffmjava.capstone.backend.user.model.AppUser;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
+import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -17,6 +25,7 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.provisioning.UserDetailsManager;
 import org.springframework.security.web.AuthenticationEntryPoint;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -25,14 +34,18 @@ import java.io.IOException;
 @EnableWebSecurity
 @RequiredArgsConstructor
 @Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class SecurityConfig {
     private static final String PROTECTED_STOCK_PATH = "/stock/**";
     private static final String PROTECTED_HORSE_PATH = "/horses/**";
     private static final String PROTECTED_CLIENT_PATH = "/clients/**";
+    private static final String PROTECTED_API_PATH = "/api/**";
+    private static final String PROTECTED_EVENTS_PATH = "/events/**";
 
     private static final String ROLE_BASIC = "Basic";
 
     private final UserService userService;
+    private final TokenService tokenService;
 
     public static final PasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
 
@@ -51,12 +64,18 @@ public class SecurityConfig {
 
     @Bean
     public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
+        if (tokenService.isEnabled()) {
+            http.sessionManagement().sessionCreationPolicy(SessionCreationPolicy.STATELESS).and()
+                    .addFilterBefore(new TokenAuthenticationFilter(tokenService), BasicAuthenticationFilter.class);
+        }
         return http
                 .csrf().disable()
                 .httpBasic().authenticationEntryPoint(new NoPopupBasicAuthenticationEntryPoint()).and()
                 .authorizeRequests()
                 .antMatchers(HttpMethod.POST, "/api/app-users").permitAll()
                 .antMatchers(HttpMethod.GET, "/api/app-users/me").permitAll()
+                .antMatchers(HttpMethod.GET, "/actuator/health").permitAll()
+                .antMatchers("/actuator/**").hasAnyRole(ROLE_BASIC)
                 .antMatchers(HttpMethod.GET,
                         PROTECTED_STOCK_PATH, PROTECTED_HORSE_PATH, PROTECTED_CLIENT_PATH,
                         "/api/app-users/logout", "/api/app-users/login"
@@ -70,10 +89,25 @@ public class SecurityConfig {
                 .antMatchers(HttpMethod.DELETE,
                         PROTECTED_STOCK_PATH, PROTECTED_HORSE_PATH, PROTECTED_CLIENT_PATH)
                 .hasAnyRole(ROLE_BASIC)
+                .antMatchers(HttpMethod.GET, PROTECTED_EVENTS_PATH).hasAnyRole(ROLE_BASIC)
+                .antMatchers(HttpMethod.PATCH,
+                        PROTECTED_STOCK_PATH, PROTECTED_HORSE_PATH, PROTECTED_CLIENT_PATH)
+                .hasAnyRole(ROLE_BASIC)
+                .antMatchers(PROTECTED_STOCK_PATH, PROTECTED_HORSE_PATH, PROTECTED_CLIENT_PATH, PROTECTED_API_PATH,
+                        PROTECTED_EVENTS_PATH)
+                .authenticated()
                 .and().formLogin().loginPage("/")
                 .and().build();
     }
 
+    @Bean
+    public AuthenticationProvider authenticationProvider(CredentialCache credentialCache) {
+        DaoAuthenticationProvider daoAuthenticationProvider = new DaoAuthenticationProvider();
+        daoAuthenticationProvider.setUserDetailsService(userDetailsService());
+        daoAuthenticationProvider.setPasswordEncoder(passwordEncoder);
+        return new CachingAuthenticationProvider(daoAuthenticationProvider, credentialCache);
+    }
+
     @Bean
     public UserDetailsManager userDetailsService() {
         return new UserDetailsManager() {
@@ -0,0 +1,67 @@
+package de.ffmjava.capstone.backend;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs Tomcat requests, {@code @Async} methods and {@code @Scheduled} jobs on virtual threads when
+ * {@code stablebuddy.virtual-threads.enabled} is set. A request blocked on MongoDB then parks a
+ * virtual thread instead of holding one of the {@code server.tomcat.threads.max} platform threads, so
+ * the number of concurrent requests is bounded by the connection limits and the Mongo connection
+ * pool only. Compare both modes with {@code mvn test -Pload-test}.
+ */
+@Configuration
+@ConditionalOnProperty(name = VirtualThreadsConfig.ENABLED_PROPERTY, havingValue = "true")
+public class VirtualThreadsConfig {
+
+    public static final String ENABLED_PROPERTY = "stablebuddy.virtual-threads.enabled";
+
+    /**
+     * Tomcat only shuts down executors it created itself, so this one is shut down with the context,
+     * after the web server has stopped.
+     */
+    @Bean(destroyMethod = "shutdown")
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    @ConditionalOnClass(name = "org.apache.catalina.startup.Tomcat")
+    public ExecutorService tomcatVirtualThreadsExecutor() {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("http-virtual-", 0).factory());
+    }
+
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    @ConditionalOnClass(name = "org.apache.catalina.startup.Tomcat")
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadsProtocolHandlerCustomizer(
+            ExecutorService tomcatVirtualThreadsExecutor) {
+        return protocolHandler -> protocolHandler.setExecutor(tomcatVirtualThreadsExecutor);
+    }
+
+    /**
+     * Replaces the {@code applicationTaskExecutor} pool that runs {@code @Async} methods.
+     */
+    @Bean(name = {TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME, "taskExecutor"})
+    public AsyncTaskExecutor applicationTaskExecutor() {
+        return new SimpleAsyncTaskExecutor(Thread.ofVirtual().name("task-virtual-", 0).factory());
+    }
+
+    /**
+     * Replaces the single-threaded {@code taskScheduler}. Each due job still runs on the scheduler's
+     * one worker, as before, but that worker is a virtual thread.
+     */
+    @Bean
+    public ThreadPoolTaskScheduler taskScheduler() {
+        ThreadPoolTaskScheduler taskScheduler = new ThreadPoolTaskScheduler();
+        taskScheduler.setThreadFactory(Thread.ofVirtual().name("scheduling-virtual-", 0).factory());
+        return taskScheduler;
+    }
+}
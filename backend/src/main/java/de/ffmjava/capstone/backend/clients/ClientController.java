@@ -1,60 +1,139 @@
 package de.ffmjava.capstone.backend.clients;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import de.ffmjava.capstone.backend.ChangeCounters;
+import de.ffmjava.capstone.backend.ETags;
 import de.ffmjava.capstone.backend.clients.model.Client;
+import de.ffmjava.capstone.backend.clients.model.ClientWithHorses;
+import de.ffmjava.capstone.backend.model.CursorPage;
+import de.ffmjava.capstone.backend.mongo.InvalidPatchException;
+import de.ffmjava.capstone.backend.mongo.MergePatch;
+import de.ffmjava.capstone.backend.mongo.VersionRequiredException;
+import de.ffmjava.capstone.backend.stables.StableContext;
 import de.ffmjava.capstone.backend.user.CustomApiErrorHandler;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.Errors;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
 import java.util.List;
 
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequestMapping("/clients/")
 @RequiredArgsConstructor
 public class ClientController {
 
     private final ClientService service;
+    private final ChangeCounters changeCounters;
+    private final StableContext stableContext;
 
     @GetMapping
-    List<Client> getAllClients() {
-        return service.getAllClients();
+    List<ClientWithHorses> getAllClients(ServletWebRequest request) {
+        String stableId = stableContext.currentStableId();
+        if (changeCounters.checkNotModified(request, stableId, ChangeCounters.Collection.CLIENTS,
+                ChangeCounters.Collection.HORSES)) {
+            return null;
+        }
+        return service.getAllClients(stableId);
+    }
+
+    @GetMapping(params = "limit")
+    public CursorPage<ClientWithHorses> getClientPage(@RequestParam int limit,
+                                                      @RequestParam(required = false) String cursor,
+                                                      @RequestParam(required = false) List<String> fields,
+                                                      ServletWebRequest request) {
+        String stableId = stableContext.currentStableId();
+        if (changeCounters.checkNotModified(request, stableId, ChangeCounters.Collection.CLIENTS,
+                ChangeCounters.Collection.HORSES)) {
+            return null;
+        }
+        try {
+            return service.getClientPage(stableId, cursor, limit, fields);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
     }
 
     @PostMapping
     public ResponseEntity<Object> addNewClient(@Valid @RequestBody Client newClient, Errors errors) {
         ResponseEntity<Object> errorMessage = CustomApiErrorHandler.handlePossibleErrors(errors);
         if (errorMessage != null) return errorMessage;
-        Client createdClient = service.addNewClient(newClient);
-        return new ResponseEntity<>(createdClient, HttpStatus.CREATED);
+        try {
+            Client savedClient = service.addNewClient(stableContext.currentStableId(), newClient);
+            return new ResponseEntity<>(service.render(savedClient), HttpStatus.CREATED);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
     }
 
     @DeleteMapping("{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public void deleteClient(@PathVariable String id) {
         try {
-            service.deleteClient(id);
+            service.deleteClient(stableContext.currentStableId(), id);
         } catch (IllegalArgumentException e) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
         }
     }
 
     @PutMapping
-    public ResponseEntity<Object> updateClient(@Valid @RequestBody Client updatedClient, Errors errors) {
+    public ResponseEntity<Object> updateClient(@Valid @RequestBody Client updatedClient, Errors errors,
+                                               @RequestHeader(value = HttpHeaders.IF_MATCH, required = false)
+                                               String ifMatch) {
         ResponseEntity<Object> errorMessage = CustomApiErrorHandler.handlePossibleErrors(errors);
         if (errorMessage != null) return errorMessage;
+        Long expectedVersion = ETags.parseIfMatch(ifMatch);
+        if (expectedVersion != null) {
+            updatedClient = updatedClient.withVersion(expectedVersion);
+        }
         try {
-            if (service.updateClient(updatedClient)) {
-                return new ResponseEntity<>(updatedClient, HttpStatus.OK);
-            } else {
-                return new ResponseEntity<>(updatedClient, HttpStatus.CREATED);
-            }
+            return ETags.toResponse(service.updateClient(stableContext.currentStableId(), updatedClient),
+                    Client::version, service::render);
         } catch (IllegalArgumentException e) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (OptimisticLockingFailureException e) {
+            throw ETags.versionConflict(e, ifMatch);
+        } catch (VersionRequiredException e) {
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_REQUIRED, e.getMessage());
         }
     }
-}
 
+    @PatchMapping(path = "{id}", consumes = {MergePatch.MEDIA_TYPE, MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<Object> patchClient(@PathVariable String id, @RequestBody JsonNode patch,
+                                              @RequestHeader(value = HttpHeaders.IF_MATCH, required = false)
+                                              String ifMatch) {
+        try {
+            return service.patchClient(stableContext.currentStableId(), id, patch, ETags.parseIfMatch(ifMatch))
+                    .map(update -> ETags.toResponse(update, Client::version, service::render))
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+                            "Kein Eintrag für die gegebene ID gefunden"));
+        } catch (InvalidPatchException e) {
+            return new ResponseEntity<>(e.getFormError(), HttpStatus.BAD_REQUEST);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (OptimisticLockingFailureException e) {
+            throw ETags.versionConflict(e, ifMatch);
+        }
+    }
+
+    @GetMapping(value = "export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportClients() {
+        String stableId = stableContext.currentStableId();
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename("clients.ndjson").build().toString())
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(outputStream -> service.exportClients(stableId, outputStream));
+    }
+}
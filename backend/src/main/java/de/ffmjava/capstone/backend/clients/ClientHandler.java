@@ -0,0 +1,91 @@
+package de.ffmjava.capstone.backend.clients;
+
+import de.ffmjava.capstone.backend.ChangeCounters;
+import de.ffmjava.capstone.backend.ETags;
+import de.ffmjava.capstone.backend.ReactiveHandlers;
+import de.ffmjava.capstone.backend.clients.model.Client;
+import de.ffmjava.capstone.backend.clients.model.ClientWithHorses;
+import de.ffmjava.capstone.backend.horses.ReactiveHorseRepository;
+import de.ffmjava.capstone.backend.horses.model.Horse;
+import de.ffmjava.capstone.backend.stables.ReactiveStableContext;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static de.ffmjava.capstone.backend.ReactiveHandlers.blocking;
+
+/**
+ * WebFlux counterpart of {@link ClientController} for the {@code reactive} profile. The list is read
+ * from {@link ReactiveClientRepository} and rendered with one {@code $in} query for the horses, like
+ * {@link ClientService#render(String, List)}; writes go through {@link ClientService} off the event loop.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequiredArgsConstructor
+public class ClientHandler {
+
+    private final ClientService service;
+    private final ReactiveClientRepository repository;
+    private final ReactiveHorseRepository horseRepository;
+    private final ChangeCounters changeCounters;
+    private final ReactiveStableContext stableContext;
+    private final ReactiveHandlers handlers;
+
+    public Mono<ServerResponse> getAllClients(ServerRequest request) {
+        return stableContext.currentStableId()
+                .flatMap(stableId -> ReactiveHandlers.checkNotModified(request,
+                        changeCounters.tag(stableId, ChangeCounters.Collection.CLIENTS,
+                                ChangeCounters.Collection.HORSES),
+                        ok -> repository.findAllByStableId(stableId).collectList()
+                                .flatMap(clients -> render(stableId, clients))
+                                .flatMap(ok::bodyValue)));
+    }
+
+    private Mono<List<ClientWithHorses>> render(String stableId, List<Client> clients) {
+        Set<String> horseIds = ClientService.ownedHorseIds(clients);
+        if (horseIds.isEmpty()) {
+            return Mono.just(ClientService.render(clients, Map.of()));
+        }
+        return horseRepository.findAllByStableIdAndIdIn(stableId, horseIds)
+                .collectMap(Horse::id)
+                .map(horsesById -> ClientService.render(clients, horsesById));
+    }
+
+    public Mono<ServerResponse> addNewClient(ServerRequest request) {
+        return handlers.withValidBody(request, Client.class, newClient -> stableContext.currentStableId()
+                .flatMap(stableId -> blocking(() -> service.render(service.addNewClient(stableId, newClient))))
+                .onErrorMap(IllegalArgumentException.class,
+                        e -> new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage()))
+                .flatMap(savedClient -> ServerResponse.status(HttpStatus.CREATED).bodyValue(savedClient)));
+    }
+
+    public Mono<ServerResponse> updateClient(ServerRequest request) {
+        return handlers.withValidBody(request, Client.class, updatedClient -> {
+            Long expectedVersion = ReactiveHandlers.expectedVersion(request);
+            Client client = expectedVersion == null ? updatedClient : updatedClient.withVersion(expectedVersion);
+            return stableContext.currentStableId()
+                    .flatMap(stableId -> blocking(() -> ETags.toResponse(service.updateClient(stableId, client),
+                            Client::version, service::render)))
+                    .onErrorMap(e -> ReactiveHandlers.versionedWriteError(e, request))
+                    .flatMap(ReactiveHandlers::toResponse);
+        });
+    }
+
+    public Mono<ServerResponse> deleteClient(ServerRequest request) {
+        String id = request.pathVariable("id");
+        return stableContext.currentStableId()
+                .flatMap(stableId -> blocking(() -> service.deleteClient(stableId, id)))
+                .onErrorMap(IllegalArgumentException.class,
+                        e -> new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage()))
+                .flatMap(deleted -> ServerResponse.noContent().build());
+    }
+}
@@ -0,0 +1,77 @@
+package de.ffmjava.capstone.backend.clients;
+
+import de.ffmjava.capstone.backend.clients.model.Client;
+import de.ffmjava.capstone.backend.mongo.MongoIndexes;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Clients used to embed the whole documents of their horses in {@code ownsHorse}. Replaces any
+ * remaining embedded horse with its id once at startup, before {@link MongoIndexes} creates the
+ * unique index that allows one owner per horse.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ClientOwnershipMigration {
+
+    static final String OWNS_HORSE_FIELD = "ownsHorse";
+    private static final int BATCH_SIZE = 500;
+    private static final int BSON_OBJECT_TYPE = 3;
+
+    private final MongoTemplate mongoTemplate;
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrate() {
+        try {
+            long migrated = migrateEmbeddedHorses();
+            if (migrated > 0) {
+                log.info("Replaced embedded horses of {} clients with horse ids", migrated);
+            }
+        } catch (DataAccessException e) {
+            log.warn("Could not migrate client ownership to horse ids", e);
+        }
+    }
+
+    long migrateEmbeddedHorses() {
+        String collectionName = mongoTemplate.getCollectionName(Client.class);
+        Query embeddedHorses = Query.query(Criteria.where(OWNS_HORSE_FIELD).type(BSON_OBJECT_TYPE))
+                .limit(BATCH_SIZE);
+        embeddedHorses.fields().include(OWNS_HORSE_FIELD);
+        long migrated = 0;
+        List<Document> batch;
+        do {
+            batch = mongoTemplate.find(embeddedHorses, Document.class, collectionName);
+            if (batch.isEmpty()) {
+                break;
+            }
+            BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, collectionName);
+            for (Document client : batch) {
+                List<Object> horseIds = client.getList(OWNS_HORSE_FIELD, Object.class).stream()
+                        .map(horse -> horse instanceof Document embedded ? embedded.get("_id") : horse)
+                        .distinct()
+                        .toList();
+                bulkOperations.updateOne(Query.query(Criteria.where("_id").is(client.get("_id"))),
+                        new Update().set(OWNS_HORSE_FIELD, horseIds));
+            }
+            bulkOperations.execute();
+            migrated += batch.size();
+        } while (batch.size() == BATCH_SIZE);
+        return migrated;
+    }
+}
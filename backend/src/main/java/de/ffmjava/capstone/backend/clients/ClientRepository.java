@@ -1,11 +1,20 @@
 package de.ffmjava.capstone.backend.clients;
 
 import de.ffmjava.capstone.backend.clients.model.Client;
-import de.ffmjava.capstone.backend.horses.model.Horse;
-import org.springframework.data.mongodb.repository.MongoRepository;
+import de.ffmjava.capstone.backend.stables.StableScopedRepository;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.Update;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+
 @Repository
-public interface ClientRepository extends MongoRepository<Client, String> {
-    Client findByOwnsHorseContains(Horse horseOfUpdatedClient);
+public interface ClientRepository extends StableScopedRepository<Client, String> {
+    @Query(value = "{ 'stableId': ?0, 'ownsHorse': { '$in': ?1, '$type': 'string' }, '_id': { '$ne': ?2 } }",
+            exists = true)
+    boolean existsByStableIdAndOwnsHorseInAndIdNot(String stableId, Collection<String> horseIds, String id);
+
+    @Query("{ 'stableId': ?0, 'ownsHorse': ?1 }")
+    @Update("{ '$pull': { 'ownsHorse': ?1 }, '$inc': { 'version': 1 } }")
+    long pullOwnedHorse(String stableId, String horseId);
 }
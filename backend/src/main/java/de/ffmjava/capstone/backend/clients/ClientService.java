@@ -1,57 +1,179 @@
 package de.ffmjava.capstone.backend.clients;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import de.ffmjava.capstone.backend.ChangeCounters;
 import de.ffmjava.capstone.backend.clients.model.Client;
+import de.ffmjava.capstone.backend.clients.model.ClientWithHorses;
+import de.ffmjava.capstone.backend.horses.HorseRepository;
 import de.ffmjava.capstone.backend.horses.model.Horse;
+import de.ffmjava.capstone.backend.model.CursorPage;
+import de.ffmjava.capstone.backend.model.FormError;
+import de.ffmjava.capstone.backend.model.VersionedUpdate;
+import de.ffmjava.capstone.backend.mongo.InvalidPatchException;
+import de.ffmjava.capstone.backend.mongo.MergePatch;
+import de.ffmjava.capstone.backend.mongo.MergePatchReader;
+import de.ffmjava.capstone.backend.mongo.NdjsonExporter;
+import de.ffmjava.capstone.backend.mongo.VersionRequiredException;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class ClientService {
 
+    private static final String OWNS_HORSE_FIELD = "ownsHorse";
+    private static final String ALREADY_OWNED_MESSAGE = "One or more horses are already owned";
+
     private final ClientRepository repository;
+    private final HorseRepository horseRepository;
+    private final NdjsonExporter exporter;
+    private final MergePatchReader mergePatchReader;
+    private final ChangeCounters changeCounters;
+
+    public List<ClientWithHorses> getAllClients(String stableId) {
+        return render(stableId, repository.findAllByStableId(stableId));
+    }
 
-    public List<Client> getAllClients() {
-        return repository.findAll();
+    public CursorPage<ClientWithHorses> getClientPage(String stableId, String cursor, int limit, List<String> fields)
+            throws IllegalArgumentException {
+        CursorPage<Client> page = repository.findPage(stableId, cursor, limit, fields);
+        return new CursorPage<>(render(stableId, page.items()), page.nextCursor());
     }
 
-    public Client addNewClient(Client newClient) {
-        return repository.save(newClient.withId(UUID.randomUUID().toString()));
+    public Client addNewClient(String stableId, Client newClient) throws IllegalArgumentException {
+        validateOwnership(stableId, null, newClient.ownsHorse());
+        Client savedClient = failOnOwnedHorse(() -> repository.save(newClient.withId(UUID.randomUUID().toString())
+                .withVersion(null)
+                .withStableId(stableId)));
+        changeCounters.bump(stableId, ChangeCounters.Collection.CLIENTS);
+        return savedClient;
     }
 
-    public boolean deleteClient(String id) {
-        if (!repository.existsById(id)) {
+    public boolean deleteClient(String stableId, String id) {
+        if (!repository.existsByIdAndStableId(id, stableId)) {
             throw new IllegalArgumentException("Kein Eintrag für die gegebene ID gefunden");
         }
-        repository.deleteById(id);
+        repository.deleteByIdAndStableId(id, stableId);
+        changeCounters.bump(stableId, ChangeCounters.Collection.CLIENTS);
         return true;
     }
 
-    public boolean updateClient(Client updatedClient) throws IllegalArgumentException {
-        boolean clientExists = repository.existsById(updatedClient.id());
-        if (!updatedClient.ownsHorse().isEmpty()) {
-            List<String> assignedHorses = updatedClient.ownsHorse()
-                    .stream()
-                    .map(Horse::id)
-                    .distinct().toList();
-            if (updatedClient.ownsHorse().size() != assignedHorses.size()) {
-                throw new IllegalArgumentException("A horse can only be owned by one person");
-            }
-            for (Horse horseOfUpdatedClient : updatedClient.ownsHorse()) {
-                Client foundClient = repository.findByOwnsHorseContains(horseOfUpdatedClient);
-                if (foundClient != null && !foundClient.id().equals(updatedClient.id())) {
-                    throw new IllegalArgumentException("One or more horses are already owned");
-                }
+    public VersionedUpdate<Client> updateClient(String stableId, Client updatedClient)
+            throws IllegalArgumentException, OptimisticLockingFailureException, VersionRequiredException {
+        validateOwnership(stableId, updatedClient.id(), updatedClient.ownsHorse());
+        Client client = updatedClient.withStableId(stableId);
+        VersionedUpdate<Client> result = failOnOwnedHorse(() -> client.version() == null
+                ? createClient(client)
+                : repository.replaceIfVersionMatches(client)
+                .orElseGet(() -> createClient(client.withVersion(null))));
+        changeCounters.bump(stableId, ChangeCounters.Collection.CLIENTS);
+        return result;
+    }
+
+    private VersionedUpdate<Client> createClient(Client newClient) throws VersionRequiredException {
+        if (newClient.id() != null && repository.existsByIdAndStableId(newClient.id(), newClient.stableId())) {
+            throw new VersionRequiredException();
+        }
+        return new VersionedUpdate<>(null, repository.save(newClient.withId(UUID.randomUUID().toString())));
+    }
+
+    public Optional<VersionedUpdate<Client>> patchClient(String stableId, String id, JsonNode patch,
+                                                         Long expectedVersion)
+            throws InvalidPatchException, IllegalArgumentException, OptimisticLockingFailureException {
+        MergePatch<Client> clientPatch = mergePatchReader.read(patch, Client.class);
+        if (clientPatch.contains(OWNS_HORSE_FIELD)) {
+            List<String> ownsHorse = clientPatch.get(OWNS_HORSE_FIELD);
+            if (ownsHorse == null) {
+                throw new InvalidPatchException(new FormError("Feld darf nicht entfernt werden", OWNS_HORSE_FIELD));
             }
+            validateOwnership(stableId, id, ownsHorse);
+        }
+        Optional<VersionedUpdate<Client>> result = failOnOwnedHorse(() ->
+                repository.applyPatch(stableId, id, clientPatch, expectedVersion));
+        result.ifPresent(update -> changeCounters.bump(stableId, ChangeCounters.Collection.CLIENTS));
+        return result;
+    }
+
+    /**
+     * Checks that the horses exist in the stable and are not owned by another client there; the unique index
+     * on {@code stableId} and {@code ownsHorse} catches clients that claim the same horse concurrently.
+     */
+    private void validateOwnership(String stableId, String clientId, List<String> ownsHorse)
+            throws IllegalArgumentException {
+        if (ownsHorse == null || ownsHorse.isEmpty()) {
+            return;
+        }
+        if (ownsHorse.stream().distinct().count() != ownsHorse.size()) {
+            throw new IllegalArgumentException("A horse can only be owned by one person");
+        }
+        if (horseRepository.countByStableIdAndIdIn(stableId, ownsHorse) != ownsHorse.size()) {
+            throw new IllegalArgumentException("One or more horses do not exist");
         }
-        if (!clientExists) {
-            repository.save(updatedClient.withId(UUID.randomUUID().toString()));
-        } else {
-            repository.save(updatedClient);
+        if (repository.existsByStableIdAndOwnsHorseInAndIdNot(stableId, ownsHorse, clientId)) {
+            throw new IllegalArgumentException(ALREADY_OWNED_MESSAGE);
         }
-        return clientExists;
+    }
+
+    private static <T> T failOnOwnedHorse(Supplier<T> write) throws IllegalArgumentException {
+        try {
+            return write.get();
+        } catch (DuplicateKeyException e) {
+            throw new IllegalArgumentException(ALREADY_OWNED_MESSAGE);
+        }
+    }
+
+    public ClientWithHorses render(Client client) {
+        return render(client.stableId(), List.of(client)).get(0);
+    }
+
+    /**
+     * Resolves the horses of all given clients of one stable with one {@code $in} query. Ids of
+     * horses that no longer exist in the stable are left out.
+     */
+    public List<ClientWithHorses> render(String stableId, List<Client> clients) {
+        Set<String> horseIds = ownedHorseIds(clients);
+        Map<String, Horse> horsesById = new HashMap<>();
+        if (!horseIds.isEmpty()) {
+            horseRepository.findAllByStableIdAndIdIn(stableId, horseIds)
+                    .forEach(horse -> horsesById.put(horse.id(), horse));
+        }
+        return render(clients, horsesById);
+    }
+
+    static Set<String> ownedHorseIds(List<Client> clients) {
+        return clients.stream()
+                .map(Client::ownsHorse)
+                .filter(Objects::nonNull)
+                .flatMap(List::stream)
+                .collect(Collectors.toSet());
+    }
+
+    static List<ClientWithHorses> render(List<Client> clients, Map<String, Horse> horsesById) {
+        return clients.stream()
+                .map(client -> new ClientWithHorses(client.id(), client.name(),
+                        client.ownsHorse() == null ? null : client.ownsHorse().stream()
+                                .map(horsesById::get)
+                                .filter(Objects::nonNull)
+                                .toList(),
+                        client.version()))
+                .toList();
+    }
+
+    public long exportClients(String stableId, OutputStream outputStream) throws IOException {
+        return exporter.export(Client.class, stableId, outputStream);
     }
 }
@@ -0,0 +1,9 @@
+package de.ffmjava.capstone.backend.clients;
+
+import de.ffmjava.capstone.backend.clients.model.Client;
+import de.ffmjava.capstone.backend.stables.ReactiveStableScopedRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ReactiveClientRepository extends ReactiveStableScopedRepository<Client, String> {
+}
@@ -1,16 +1,36 @@
 package de.ffmjava.capstone.backend.clients.model;
 
-import de.ffmjava.capstone.backend.horses.model.Horse;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.With;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
 
 import javax.validation.constraints.NotBlank;
 import java.util.List;
 
+/**
+ * A client as stored. {@code ownsHorse} holds the ids of the owned horses; a unique index makes sure
+ * that every horse has at most one owner in its stable.
+ */
 @With
+@Document
+@CompoundIndex(name = "stableId_id", def = "{'stableId': 1, '_id': 1}")
+@CompoundIndex(name = "stableId_ownsHorse_unique", def = "{'stableId': 1, 'ownsHorse': 1}", unique = true,
+        partialFilter = Client.OWNS_HORSE_FILTER)
 public record Client(
         String id,
         @NotBlank(message = "Feld \"Name\" darf nicht leer sein")
         String name,
-        List<Horse> ownsHorse
+        List<String> ownsHorse,
+        @Version
+        Long version,
+        @JsonIgnore
+        String stableId
 ) {
+    /**
+     * Limits the ownership index to clients that own a horse, as all others would share the same
+     * key. Queries have to include this filter to use the index.
+     */
+    public static final String OWNS_HORSE_FILTER = "{ 'ownsHorse': { '$type': 'string' } }";
 }
@@ -0,0 +1,16 @@
+package de.ffmjava.capstone.backend.clients.model;
+
+import de.ffmjava.capstone.backend.horses.model.Horse;
+
+import java.util.List;
+
+/**
+ * A client as rendered by the API, with the ids in {@link Client#ownsHorse()} resolved to the horses.
+ */
+public record ClientWithHorses(
+        String id,
+        String name,
+        List<Horse> ownsHorse,
+        Long version
+) {
+}
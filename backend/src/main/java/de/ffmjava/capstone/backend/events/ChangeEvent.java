@@ -0,0 +1,22 @@
+package de.ffmjava.capstone.backend.events;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * Compact change of one document: the current document for inserts, updates and replacements,
+ * only the id for deletions. {@code collection} is the name used by the REST API. {@code stableId}
+ * decides which subscribers receive the event.
+ */
+public record ChangeEvent(
+        String collection,
+        Operation operation,
+        String id,
+        Object document,
+        @JsonIgnore
+        String stableId
+) {
+    public enum Operation {
+        UPSERT,
+        DELETE
+    }
+}
@@ -0,0 +1,352 @@
+package de.ffmjava.capstone.backend.events;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoException;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import de.ffmjava.capstone.backend.clients.model.Client;
+import de.ffmjava.capstone.backend.horses.model.Horse;
+import de.ffmjava.capstone.backend.stock.model.StockForecast;
+import de.ffmjava.capstone.backend.stock.model.StockItem;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static de.ffmjava.capstone.backend.stables.StableContext.STABLE_ID_FIELD;
+
+/**
+ * Watches stock items, their forecasts, horses and clients with one change stream for the whole application and
+ * fans the changes out to the Server-Sent Events subscribers of the stable the document belongs to. Deletions
+ * only carry the id; Mongo 4.0 has no pre-images, so the feed remembers the stable of every watched document,
+ * loaded once the stream is open and kept up to date from the stream, and drops deletions of documents whose
+ * stable it does not know.
+ * <p>
+ * The stream resumes after the last seen resume token when it is interrupted. The most recent
+ * events are kept in a replay buffer under their resume token, so a browser that reconnects with
+ * {@code Last-Event-ID} receives what it missed; if the id is no longer buffered it receives a
+ * {@code reset} event and reloads instead. Change streams need a replica set, so the feed is
+ * opt-in via {@code stablebuddy.change-feed.enabled}.
+ * <p>
+ * The lock on the subscribers only guards the buffer and the subscriber map; events are sent after
+ * it is released, so a slow subscriber does not hold up subscriptions. A subscriber is registered
+ * while holding its own emitter, which {@link SseEmitter} also locks for every send, so its replayed
+ * events go out before any newer one.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "stablebuddy.change-feed.enabled", havingValue = "true")
+public class ChangeFeed {
+
+    static final String CHANGE_EVENT = "change";
+    static final String RESET_EVENT = "reset";
+    private static final int CHANGE_STREAM_HISTORY_LOST = 286;
+    private static final List<String> WATCHED_OPERATIONS = List.of(OperationType.INSERT.getValue(),
+            OperationType.UPDATE.getValue(), OperationType.REPLACE.getValue(), OperationType.DELETE.getValue());
+
+    private record Watched(String apiName, Class<?> type) {
+    }
+
+    record BufferedEvent(String id, ChangeEvent event) {
+    }
+
+    private record DocumentKey(String collection, String id) {
+    }
+
+    private final MongoTemplate mongoTemplate;
+    private final Map<String, Watched> watchedCollections = new HashMap<>();
+    private final Deque<BufferedEvent> replayBuffer = new ArrayDeque<>();
+    private final Map<SseEmitter, String> emitters = new LinkedHashMap<>();
+    private final Map<DocumentKey, String> stableIds = new ConcurrentHashMap<>();
+    private final int replayBufferSize;
+    private final Duration timeout;
+    private final Duration retryDelay;
+
+    private volatile boolean running;
+    private volatile BsonDocument resumeToken;
+    private volatile boolean stableIdsLoaded;
+    private Thread watcher;
+
+    public ChangeFeed(MongoTemplate mongoTemplate,
+                      @Value("${stablebuddy.change-feed.replay-buffer-size:1000}") int replayBufferSize,
+                      @Value("${stablebuddy.change-feed.sse-timeout:PT30M}") Duration timeout,
+                      @Value("${stablebuddy.change-feed.retry-delay:PT5S}") Duration retryDelay) {
+        this.mongoTemplate = mongoTemplate;
+        this.replayBufferSize = replayBufferSize;
+        this.timeout = timeout;
+        this.retryDelay = retryDelay;
+        watch("stock", StockItem.class);
+        watch("forecasts", StockForecast.class);
+        watch("horses", Horse.class);
+        watch("clients", Client.class);
+    }
+
+    private void watch(String apiName, Class<?> type) {
+        watchedCollections.put(mongoTemplate.getCollectionName(type), new Watched(apiName, type));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        running = true;
+        watcher = new Thread(this::run, "change-feed");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (watcher != null) {
+            watcher.interrupt();
+        }
+        List<SseEmitter> subscribers;
+        synchronized (emitters) {
+            subscribers = List.copyOf(emitters.keySet());
+            emitters.clear();
+        }
+        subscribers.forEach(SseEmitter::complete);
+    }
+
+    /**
+     * Opens an event stream for the changes of one stable. With a {@code lastEventId} the buffered
+     * events after it are replayed first.
+     */
+    public SseEmitter subscribe(String stableId, String lastEventId) {
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        emitter.onCompletion(() -> remove(emitter));
+        emitter.onTimeout(() -> remove(emitter));
+        emitter.onError(error -> remove(emitter));
+        boolean replay = lastEventId != null && !lastEventId.isBlank();
+        synchronized (emitter) {
+            Optional<List<BufferedEvent>> missedEvents;
+            synchronized (emitters) {
+                missedEvents = replay ? eventsAfter(lastEventId) : Optional.of(List.of());
+                emitters.put(emitter, stableId);
+            }
+            replay(emitter, stableId, missedEvents);
+        }
+        return emitter;
+    }
+
+    void publish(String id, ChangeEvent event) {
+        Map<SseEmitter, String> subscribers;
+        synchronized (emitters) {
+            replayBuffer.addLast(new BufferedEvent(id, event));
+            if (replayBuffer.size() > replayBufferSize) {
+                replayBuffer.removeFirst();
+            }
+            subscribers = Map.copyOf(emitters);
+        }
+        subscribers.forEach((emitter, stableId) -> {
+            if (isVisible(event, stableId)) {
+                send(emitter, SseEmitter.event()
+                        .id(id)
+                        .name(CHANGE_EVENT)
+                        .data(event));
+            }
+        });
+    }
+
+    private void reset() {
+        List<SseEmitter> subscribers;
+        synchronized (emitters) {
+            replayBuffer.clear();
+            subscribers = List.copyOf(emitters.keySet());
+        }
+        subscribers.forEach(emitter -> send(emitter, SseEmitter.event()
+                .name(RESET_EVENT)
+                .data("")));
+    }
+
+    private void replay(SseEmitter emitter, String stableId, Optional<List<BufferedEvent>> missedEvents) {
+        if (missedEvents.isEmpty()) {
+            send(emitter, SseEmitter.event().name(RESET_EVENT).data(""));
+            return;
+        }
+        missedEvents.get().stream()
+                .filter(bufferedEvent -> isVisible(bufferedEvent.event(), stableId))
+                .forEach(bufferedEvent -> send(emitter, SseEmitter.event()
+                        .id(bufferedEvent.id())
+                        .name(CHANGE_EVENT)
+                        .data(bufferedEvent.event())));
+    }
+
+    private static boolean isVisible(ChangeEvent event, String stableId) {
+        return stableId.equals(event.stableId());
+    }
+
+    /**
+     * @return the buffered events after {@code lastEventId}, empty if that event is no longer buffered
+     */
+    Optional<List<BufferedEvent>> eventsAfter(String lastEventId) {
+        synchronized (emitters) {
+            List<BufferedEvent> missedEvents = new ArrayList<>();
+            boolean found = false;
+            for (BufferedEvent bufferedEvent : replayBuffer) {
+                if (found) {
+                    missedEvents.add(bufferedEvent);
+                } else {
+                    found = bufferedEvent.id().equals(lastEventId);
+                }
+            }
+            return found ? Optional.of(missedEvents) : Optional.empty();
+        }
+    }
+
+    private void send(SseEmitter emitter, SseEmitter.SseEventBuilder event) {
+        try {
+            emitter.send(event);
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Dropping disconnected change feed subscriber", e);
+            remove(emitter);
+        }
+    }
+
+    private void remove(SseEmitter emitter) {
+        synchronized (emitters) {
+            emitters.remove(emitter);
+        }
+    }
+
+    private void run() {
+        while (running) {
+            try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = open()) {
+                if (!stableIdsLoaded) {
+                    loadStableIds();
+                }
+                while (running) {
+                    ChangeStreamDocument<Document> change = cursor.tryNext();
+                    if (change == null) {
+                        if (cursor.getResumeToken() != null) {
+                            resumeToken = cursor.getResumeToken();
+                        }
+                        continue;
+                    }
+                    resumeToken = change.getResumeToken();
+                    publish(change);
+                }
+            } catch (MongoCommandException e) {
+                if (e.getErrorCode() == CHANGE_STREAM_HISTORY_LOST) {
+                    log.warn("Change stream history lost, subscribers have to reload");
+                    resumeToken = null;
+                    stableIdsLoaded = false;
+                    reset();
+                } else {
+                    pauseAfter(e);
+                }
+            } catch (MongoException e) {
+                pauseAfter(e);
+            }
+        }
+    }
+
+    private void publish(ChangeStreamDocument<Document> change) {
+        try {
+            toChangeEvent(change).ifPresent(event ->
+                    publish(change.getResumeToken().getString("_data").getValue(), event));
+        } catch (RuntimeException e) {
+            log.warn("Skipping change that could not be published: {}", change, e);
+        }
+    }
+
+    private MongoChangeStreamCursor<ChangeStreamDocument<Document>> open() {
+        ChangeStreamIterable<Document> changeStream = mongoTemplate.getDb()
+                .watch(List.of(Aggregates.match(Filters.and(
+                        Filters.in("ns.coll", watchedCollections.keySet()),
+                        Filters.in("operationType", WATCHED_OPERATIONS)))))
+                .fullDocument(FullDocument.UPDATE_LOOKUP)
+                .maxAwaitTime(1, TimeUnit.SECONDS);
+        if (resumeToken != null) {
+            changeStream = changeStream.resumeAfter(resumeToken);
+        }
+        return changeStream.cursor();
+    }
+
+    /**
+     * Reads the stable of every watched document. Runs after the stream is opened, so changes made
+     * while loading still arrive through the stream afterwards.
+     */
+    void loadStableIds() {
+        stableIds.clear();
+        watchedCollections.keySet().forEach(collection -> mongoTemplate.getCollection(collection)
+                .find(new Document(), BsonDocument.class)
+                .projection(Projections.include(STABLE_ID_FIELD))
+                .forEach(document -> {
+                    if (document.isString(STABLE_ID_FIELD)) {
+                        stableIds.put(new DocumentKey(collection, toId(document.get("_id"))),
+                                document.getString(STABLE_ID_FIELD).getValue());
+                    }
+                }));
+        stableIdsLoaded = true;
+    }
+
+    private void pauseAfter(MongoException e) {
+        if (!running) {
+            return;
+        }
+        log.warn("Change stream interrupted, resuming in {}", retryDelay, e);
+        try {
+            Thread.sleep(retryDelay.toMillis());
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    Optional<ChangeEvent> toChangeEvent(ChangeStreamDocument<Document> change) {
+        Watched watched = change.getNamespace() == null
+                ? null
+                : watchedCollections.get(change.getNamespace().getCollectionName());
+        if (watched == null || change.getDocumentKey() == null) {
+            return Optional.empty();
+        }
+        String id = toId(change.getDocumentKey().get("_id"));
+        DocumentKey documentKey = new DocumentKey(change.getNamespace().getCollectionName(), id);
+        if (change.getOperationType() == OperationType.DELETE) {
+            String stableId = stableIds.remove(documentKey);
+            if (stableId == null) {
+                log.debug("Dropping deletion of {} {} of unknown stable", watched.apiName(), id);
+                return Optional.empty();
+            }
+            return Optional.of(new ChangeEvent(watched.apiName(), ChangeEvent.Operation.DELETE, id, null, stableId));
+        }
+        if (change.getFullDocument() == null) {
+            // deleted before the update could be looked up, the delete event follows
+            return Optional.empty();
+        }
+        String stableId = change.getFullDocument().getString(STABLE_ID_FIELD);
+        if (stableId == null) {
+            return Optional.empty();
+        }
+        stableIds.put(documentKey, stableId);
+        return Optional.of(new ChangeEvent(watched.apiName(), ChangeEvent.Operation.UPSERT, id,
+                mongoTemplate.getConverter().read(watched.type(), change.getFullDocument()), stableId));
+    }
+
+    private static String toId(BsonValue id) {
+        if (id.isObjectId()) {
+            return id.asObjectId().getValue().toHexString();
+        }
+        return id.isString() ? id.asString().getValue() : id.toString();
+    }
+}
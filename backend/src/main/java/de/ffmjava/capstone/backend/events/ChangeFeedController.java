@@ -0,0 +1,28 @@
+package de.ffmjava.capstone.backend.events;
+
+import de.ffmjava.capstone.backend.stables.StableContext;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@RequestMapping("/events")
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "stablebuddy.change-feed.enabled", havingValue = "true")
+class ChangeFeedController {
+
+    private final ChangeFeed changeFeed;
+    private final StableContext stableContext;
+
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return changeFeed.subscribe(stableContext.currentStableId(), lastEventId);
+    }
+}
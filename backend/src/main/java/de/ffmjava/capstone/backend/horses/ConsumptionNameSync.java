@@ -0,0 +1,36 @@
+package de.ffmjava.capstone.backend.horses;
+
+import de.ffmjava.capstone.backend.ChangeCounters;
+import de.ffmjava.capstone.backend.stock.StockItemRenamedEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+
+/**
+ * Copies the new name of a renamed stock item into the consumption lists of the horses and into
+ * the consumption totals. Everything that computes amounts references stock items by id, so the
+ * name there is for display only and may lag behind the rename for a moment.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ConsumptionNameSync {
+
+    private final HorseRepository horseRepository;
+    private final ConsumptionTotalsService consumptionTotalsService;
+    private final ChangeCounters changeCounters;
+
+    @Async
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStockItemRenamed(StockItemRenamedEvent event) {
+        long renamed = horseRepository.renameConsumptionById(event.stableId(), event.stockItemId(), event.name());
+        consumptionTotalsService.renameStockItem(event.stableId(), event.stockItemId(), event.name());
+        if (renamed > 0) {
+            changeCounters.bump(event.stableId(), ChangeCounters.Collection.HORSES);
+        }
+        log.debug("Renamed stock item {} in {} consumption lists", event.stockItemId(), renamed);
+    }
+}
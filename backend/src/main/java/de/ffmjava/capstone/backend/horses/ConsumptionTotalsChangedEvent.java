@@ -0,0 +1,20 @@
+package de.ffmjava.capstone.backend.horses;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Published by {@link ConsumptionTotalsService} whenever the daily consumption of the given stock
+ * items of a stable changed. After a rebuild of the stable the ids are unknown and {@code rebuilt}
+ * is set instead.
+ */
+public record ConsumptionTotalsChangedEvent(String stableId, Collection<String> stockItemIds, boolean rebuilt) {
+
+    public static ConsumptionTotalsChangedEvent of(String stableId, Collection<String> stockItemIds) {
+        return new ConsumptionTotalsChangedEvent(stableId, stockItemIds, false);
+    }
+
+    public static ConsumptionTotalsChangedEvent ofRebuild(String stableId) {
+        return new ConsumptionTotalsChangedEvent(stableId, Set.of(), true);
+    }
+}
@@ -0,0 +1,196 @@
+package de.ffmjava.capstone.backend.horses;
+
+import de.ffmjava.capstone.backend.ChangeCounters;
+import de.ffmjava.capstone.backend.horses.model.AggregatedConsumption;
+import de.ffmjava.capstone.backend.horses.model.Consumption;
+import de.ffmjava.capstone.backend.horses.model.ConsumptionTotal;
+import de.ffmjava.capstone.backend.horses.model.Horse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import static de.ffmjava.capstone.backend.stables.StableContext.STABLE_ID_FIELD;
+
+/**
+ * Keeps the daily consumption per stock item in the {@code consumption_totals} collection. Horse
+ * mutations apply the difference between the old and the new consumption list with {@code $inc},
+ * so reading the totals never has to look at the horses. Totals carry the stable of their stock
+ * item and are read, rebuilt and counted per stable. Every change bumps the stable's
+ * {@link ChangeCounters.Collection#CONSUMPTION} counter and is published as a
+ * {@link ConsumptionTotalsChangedEvent}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ConsumptionTotalsService {
+
+    private static final String TOTAL_FIELD = "dailyAggregatedConsumption";
+    private static final String HORSE_COUNT_FIELD = "horseCount";
+    private static final String NAME_FIELD = "name";
+
+    private final MongoTemplate mongoTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ChangeCounters changeCounters;
+
+    private record Delta(String name, BigDecimal amount, int horseCount) {
+        Delta plus(Delta other) {
+            return new Delta(other.name(), amount.add(other.amount()), horseCount + other.horseCount());
+        }
+
+        boolean isEmpty() {
+            return amount.signum() == 0 && horseCount == 0;
+        }
+    }
+
+    /**
+     * @return the totals of all stables that at least one horse consumes, for the nightly subtraction
+     */
+    public List<ConsumptionTotal> getActiveTotals() {
+        return mongoTemplate.find(Query.query(Criteria.where(HORSE_COUNT_FIELD).gt(0)), ConsumptionTotal.class);
+    }
+
+    public List<ConsumptionTotal> getActiveTotals(String stableId) {
+        return mongoTemplate.find(Query.query(Criteria.where(STABLE_ID_FIELD).is(stableId)
+                .and(HORSE_COUNT_FIELD).gt(0)), ConsumptionTotal.class);
+    }
+
+    public Map<String, AggregatedConsumption> getAggregatedConsumptions(String stableId) {
+        return getActiveTotals(stableId)
+                .stream()
+                .collect(Collectors.toMap(ConsumptionTotal::id, total -> new AggregatedConsumption(total.id(),
+                        total.name(), total.dailyAggregatedConsumption())));
+    }
+
+    public void applyChange(String stableId, List<Consumption> previousConsumptions,
+                            List<Consumption> currentConsumptions) {
+        Map<String, Delta> deltas = new LinkedHashMap<>();
+        addDeltas(deltas, previousConsumptions, -1);
+        addDeltas(deltas, currentConsumptions, 1);
+        deltas.values().removeIf(Delta::isEmpty);
+        if (deltas.isEmpty()) {
+            return;
+        }
+        BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED,
+                ConsumptionTotal.class);
+        deltas.forEach((stockItemId, delta) -> bulkOperations.upsert(
+                Query.query(Criteria.where("id").is(stockItemId).and(STABLE_ID_FIELD).is(stableId)),
+                new Update()
+                        .set(NAME_FIELD, delta.name())
+                        .set(STABLE_ID_FIELD, stableId)
+                        .inc(TOTAL_FIELD, new Decimal128(delta.amount()))
+                        .inc(HORSE_COUNT_FIELD, delta.horseCount())));
+        bulkOperations.execute();
+        changeCounters.bump(stableId, ChangeCounters.Collection.CONSUMPTION);
+        eventPublisher.publishEvent(ConsumptionTotalsChangedEvent.of(stableId, List.copyOf(deltas.keySet())));
+    }
+
+    /**
+     * Refreshes the denormalized display name of a renamed stock item. Totals are keyed by stock
+     * item id, so this never moves an amount.
+     */
+    public void renameStockItem(String stableId, String stockItemId, String name) {
+        mongoTemplate.updateFirst(Query.query(Criteria.where("id").is(stockItemId).and(STABLE_ID_FIELD).is(stableId)),
+                Update.update(NAME_FIELD, name), ConsumptionTotal.class);
+        changeCounters.bump(stableId, ChangeCounters.Collection.CONSUMPTION);
+    }
+
+    public void removeStockItem(String stableId, String stockItemId) {
+        mongoTemplate.remove(Query.query(Criteria.where("id").is(stockItemId).and(STABLE_ID_FIELD).is(stableId)),
+                ConsumptionTotal.class);
+        changeCounters.bump(stableId, ChangeCounters.Collection.CONSUMPTION);
+        eventPublisher.publishEvent(ConsumptionTotalsChangedEvent.of(stableId, List.of(stockItemId)));
+    }
+
+    /**
+     * Rebuilds the totals of every stable that has horses or totals, one stable at a time.
+     */
+    @Scheduled(cron = "${stablebuddy.consumption-totals.reconcile-cron:0 30 23 * * *}")
+    public void reconcile() {
+        Set<String> stableIds = new TreeSet<>(mongoTemplate.findDistinct(new Query(), STABLE_ID_FIELD, Horse.class,
+                String.class));
+        stableIds.addAll(mongoTemplate.findDistinct(new Query(), STABLE_ID_FIELD, ConsumptionTotal.class,
+                String.class));
+        stableIds.forEach(this::rebuild);
+    }
+
+    /**
+     * Recomputes the totals of one stable from its horses. Mongo 4.0 has no {@code $merge}, so the
+     * recomputed totals are written with one bulk upsert and the stable's totals that no horse
+     * consumes any more are removed; other stables are not touched.
+     */
+    public void rebuild(String stableId) {
+        List<Document> totals = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Horse.class))
+                .aggregate(List.of(
+                        new Document("$match", new Document(STABLE_ID_FIELD, stableId)),
+                        new Document("$unwind", "$consumptionList"),
+                        new Document("$group", new Document("_id", "$consumptionList._id")
+                                .append(NAME_FIELD, new Document("$last", "$consumptionList.name"))
+                                .append(TOTAL_FIELD, new Document("$sum", "$consumptionList.dailyConsumption"))
+                                .append(HORSE_COUNT_FIELD, new Document("$sum", 1)))))
+                .into(new ArrayList<>());
+        if (!totals.isEmpty()) {
+            BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED,
+                    ConsumptionTotal.class);
+            for (Document total : totals) {
+                bulkOperations.upsert(Query.query(Criteria.where("id").is(total.get("_id"))
+                                .and(STABLE_ID_FIELD).is(stableId)),
+                        new Update()
+                                .set(NAME_FIELD, total.get(NAME_FIELD))
+                                .set(STABLE_ID_FIELD, stableId)
+                                .set(TOTAL_FIELD, total.get(TOTAL_FIELD))
+                                .set(HORSE_COUNT_FIELD, total.get(HORSE_COUNT_FIELD)));
+            }
+            bulkOperations.execute();
+        }
+        mongoTemplate.remove(Query.query(Criteria.where(STABLE_ID_FIELD).is(stableId)
+                        .and("id").nin(totals.stream().map(total -> total.get("_id")).toList())),
+                ConsumptionTotal.class);
+        changeCounters.bump(stableId, ChangeCounters.Collection.CONSUMPTION);
+        eventPublisher.publishEvent(ConsumptionTotalsChangedEvent.ofRebuild(stableId));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        try {
+            if (!mongoTemplate.collectionExists(ConsumptionTotal.class)) {
+                reconcile();
+            }
+        } catch (DataAccessException e) {
+            log.warn("Could not initialize consumption totals, waiting for the scheduled rebuild", e);
+        }
+    }
+
+    private static void addDeltas(Map<String, Delta> deltas, List<Consumption> consumptions, int sign) {
+        if (consumptions == null) {
+            return;
+        }
+        for (Consumption consumption : consumptions) {
+            BigDecimal amount = consumption.dailyConsumption() == null
+                    ? BigDecimal.ZERO
+                    : consumption.dailyConsumption();
+            BigDecimal signedAmount = sign < 0 ? amount.negate() : amount;
+            deltas.merge(consumption.id(), new Delta(consumption.name(), signedAmount, sign), Delta::plus);
+        }
+    }
+}
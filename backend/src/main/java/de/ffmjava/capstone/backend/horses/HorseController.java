@@ -1,33 +1,76 @@
 package de.ffmjava.capstone.backend.horses;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import de.ffmjava.capstone.backend.ChangeCounters;
+import de.ffmjava.capstone.backend.ETags;
 import de.ffmjava.capstone.backend.horses.model.Horse;
+import de.ffmjava.capstone.backend.model.CursorPage;
 import de.ffmjava.capstone.backend.model.FormError;
+import de.ffmjava.capstone.backend.model.ImportResult;
+import de.ffmjava.capstone.backend.mongo.InvalidPatchException;
+import de.ffmjava.capstone.backend.mongo.MergePatch;
+import de.ffmjava.capstone.backend.mongo.VersionRequiredException;
+import de.ffmjava.capstone.backend.stables.StableContext;
 import de.ffmjava.capstone.backend.user.CustomApiErrorHandler;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.Errors;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigDecimal;
 import java.util.List;
 
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequestMapping("/horses/")
 @RequiredArgsConstructor
 public class HorseController {
 
     private final HorseService service;
+    private final ChangeCounters changeCounters;
+    private final StableContext stableContext;
 
     @GetMapping
-    public List<Horse> getAllHorses() {
-        return service.getAllHorses();
+    public List<Horse> getAllHorses(ServletWebRequest request) {
+        String stableId = stableContext.currentStableId();
+        if (changeCounters.checkNotModified(request, stableId, ChangeCounters.Collection.HORSES)) {
+            return null;
+        }
+        return service.getAllHorses(stableId);
+    }
+
+    @GetMapping(params = "limit")
+    public CursorPage<Horse> getHorsePage(@RequestParam int limit,
+                                          @RequestParam(required = false) String cursor,
+                                          @RequestParam(required = false) List<String> fields,
+                                          ServletWebRequest request) {
+        String stableId = stableContext.currentStableId();
+        if (changeCounters.checkNotModified(request, stableId, ChangeCounters.Collection.HORSES)) {
+            return null;
+        }
+        try {
+            return service.getHorsePage(stableId, cursor, limit, fields);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
     }
 
     @PutMapping
-    public ResponseEntity<Object> updateHorse(@Valid @RequestBody Horse updatedHorse, Errors errors) {
+    public ResponseEntity<Object> updateHorse(@Valid @RequestBody Horse updatedHorse, Errors errors,
+                                              @RequestHeader(value = HttpHeaders.IF_MATCH, required = false)
+                                              String ifMatch) {
         ResponseEntity<Object> errorMessage = CustomApiErrorHandler.handlePossibleErrors(errors);
         if (errorMessage != null) return errorMessage;
         if (!updatedHorse.consumptionList()
@@ -37,14 +80,36 @@ public class HorseController {
             return new ResponseEntity<>(new FormError("Der Wert muss größer als 0 sein", "dailyConsumption"),
                     HttpStatus.BAD_REQUEST);
         }
+        Long expectedVersion = ETags.parseIfMatch(ifMatch);
+        if (expectedVersion != null) {
+            updatedHorse = updatedHorse.withVersion(expectedVersion);
+        }
+        try {
+            return ETags.toResponse(service.updateHorse(stableContext.currentStableId(), updatedHorse), Horse::version);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (OptimisticLockingFailureException e) {
+            throw ETags.versionConflict(e, ifMatch);
+        } catch (VersionRequiredException e) {
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_REQUIRED, e.getMessage());
+        }
+    }
+
+    @PatchMapping(path = "{id}", consumes = {MergePatch.MEDIA_TYPE, MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<Object> patchHorse(@PathVariable String id, @RequestBody JsonNode patch,
+                                             @RequestHeader(value = HttpHeaders.IF_MATCH, required = false)
+                                             String ifMatch) {
         try {
-            if (service.updateHorse(updatedHorse)) {
-                return new ResponseEntity<>(updatedHorse, HttpStatus.OK);
-            } else {
-                return new ResponseEntity<>(updatedHorse, HttpStatus.CREATED);
-            }
+            return service.patchHorse(stableContext.currentStableId(), id, patch, ETags.parseIfMatch(ifMatch))
+                    .map(update -> ETags.toResponse(update, Horse::version))
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+                            "Kein Eintrag für die gegebene ID gefunden"));
+        } catch (InvalidPatchException e) {
+            return new ResponseEntity<>(e.getFormError(), HttpStatus.BAD_REQUEST);
         } catch (IllegalArgumentException e) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (OptimisticLockingFailureException e) {
+            throw ETags.versionConflict(e, ifMatch);
         }
     }
 
@@ -52,17 +117,40 @@ public class HorseController {
     public ResponseEntity<Object> addNewHorse(@Valid @RequestBody Horse newHorse, Errors errors) {
         ResponseEntity<Object> errorMessage = CustomApiErrorHandler.handlePossibleErrors(errors);
         if (errorMessage != null) return errorMessage;
-        Horse createdHorse = service.addNewHorse(newHorse);
-        return new ResponseEntity<>(createdHorse, HttpStatus.CREATED);
+        try {
+            Horse createdHorse = service.addNewHorse(stableContext.currentStableId(), newHorse);
+            return new ResponseEntity<>(createdHorse, HttpStatus.CREATED);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
     }
 
     @DeleteMapping("{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public void deleteHorse(@PathVariable String id) {
         try {
-            service.deleteHorse(id);
+            service.deleteHorse(stableContext.currentStableId(), id);
         } catch (IllegalArgumentException e) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
         }
     }
+
+    @GetMapping(value = "export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportHorses() {
+        String stableId = stableContext.currentStableId();
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename("horses.ndjson").build().toString())
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(outputStream -> service.exportHorses(stableId, outputStream));
+    }
+
+    @PostMapping(value = "import", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<ImportResult> importHorses(InputStream inputStream) throws IOException {
+        ImportResult result = service.importHorses(stableContext.currentStableId(), inputStream);
+        if (result.errors().isEmpty()) {
+            return new ResponseEntity<>(result, HttpStatus.CREATED);
+        }
+        return new ResponseEntity<>(result, HttpStatus.MULTI_STATUS);
+    }
 }
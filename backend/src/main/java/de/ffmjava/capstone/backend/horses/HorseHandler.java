@@ -0,0 +1,76 @@
+package de.ffmjava.capstone.backend.horses;
+
+import de.ffmjava.capstone.backend.ChangeCounters;
+import de.ffmjava.capstone.backend.ETags;
+import de.ffmjava.capstone.backend.ReactiveHandlers;
+import de.ffmjava.capstone.backend.horses.model.Horse;
+import de.ffmjava.capstone.backend.model.FormError;
+import de.ffmjava.capstone.backend.stables.ReactiveStableContext;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+
+import static de.ffmjava.capstone.backend.ReactiveHandlers.blocking;
+
+/**
+ * WebFlux counterpart of {@link HorseController} for the {@code reactive} profile. The list is read
+ * from {@link ReactiveHorseRepository}; writes go through {@link HorseService} off the event loop.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequiredArgsConstructor
+public class HorseHandler {
+
+    private final HorseService service;
+    private final ReactiveHorseRepository repository;
+    private final ChangeCounters changeCounters;
+    private final ReactiveStableContext stableContext;
+    private final ReactiveHandlers handlers;
+
+    public Mono<ServerResponse> getAllHorses(ServerRequest request) {
+        return stableContext.currentStableId()
+                .flatMap(stableId -> ReactiveHandlers.checkNotModified(request,
+                        changeCounters.tag(stableId, ChangeCounters.Collection.HORSES),
+                        ok -> ok.body(repository.findAllByStableId(stableId), Horse.class)));
+    }
+
+    public Mono<ServerResponse> addNewHorse(ServerRequest request) {
+        return handlers.withValidBody(request, Horse.class, newHorse -> stableContext.currentStableId()
+                .flatMap(stableId -> blocking(() -> service.addNewHorse(stableId, newHorse)))
+                .onErrorMap(IllegalArgumentException.class,
+                        e -> new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage()))
+                .flatMap(createdHorse -> ServerResponse.status(HttpStatus.CREATED).bodyValue(createdHorse)));
+    }
+
+    public Mono<ServerResponse> updateHorse(ServerRequest request) {
+        return handlers.withValidBody(request, Horse.class, updatedHorse -> {
+            if (updatedHorse.consumptionList() != null && updatedHorse.consumptionList().stream()
+                    .anyMatch(consumption -> consumption.dailyConsumption().compareTo(BigDecimal.ZERO) < 1)) {
+                return ServerResponse.badRequest()
+                        .bodyValue(new FormError("Der Wert muss größer als 0 sein", "dailyConsumption"));
+            }
+            Long expectedVersion = ReactiveHandlers.expectedVersion(request);
+            Horse horse = expectedVersion == null ? updatedHorse : updatedHorse.withVersion(expectedVersion);
+            return stableContext.currentStableId()
+                    .flatMap(stableId -> blocking(() -> service.updateHorse(stableId, horse)))
+                    .onErrorMap(e -> ReactiveHandlers.versionedWriteError(e, request))
+                    .flatMap(update -> ReactiveHandlers.toResponse(ETags.toResponse(update, Horse::version)));
+        });
+    }
+
+    public Mono<ServerResponse> deleteHorse(ServerRequest request) {
+        String id = request.pathVariable("id");
+        return stableContext.currentStableId()
+                .flatMap(stableId -> blocking(() -> service.deleteHorse(stableId, id)))
+                .onErrorMap(IllegalArgumentException.class,
+                        e -> new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage()))
+                .flatMap(deleted -> ServerResponse.noContent().build());
+    }
+}
@@ -1,30 +1,36 @@
 package de.ffmjava.capstone.backend.horses;
 
-import de.ffmjava.capstone.backend.horses.model.AggregatedConsumption;
 import de.ffmjava.capstone.backend.horses.model.Horse;
-import org.springframework.data.mongodb.repository.Aggregation;
-import org.springframework.data.mongodb.repository.MongoRepository;
+import de.ffmjava.capstone.backend.stables.StableScopedRepository;
 import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.Update;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 
 
 @Repository
-public interface HorseRepository extends MongoRepository<Horse, String> {
-    @Aggregation(pipeline = {
-            "{'$unwind': {'path': '$consumptionList'}}",
-            """
-                    {'$group': {
-                        '_id': '$consumptionList.name',
-                        'dailyAggregatedConsumption': {
-                            '$sum': '$consumptionList.dailyConsumption'
-                            }
-                            }}"""
-    })
-    List<AggregatedConsumption> aggregateConsumptions();
-
-    @Query("{ 'consumption.id':  ?0 }")
-    List<Horse> findHorsesByConsumptionId(String id);
+public interface HorseRepository extends StableScopedRepository<Horse, String> {
+    @Query("{ 'stableId': ?0, 'consumptionList.id': ?1 }")
+    List<Horse> findHorsesByConsumptionId(String stableId, String id);
+
+    @Query("{ 'stableId': ?0, 'consumptionList.id': ?1 }")
+    @Update("{ '$pull': { 'consumptionList': { '_id': ?1 } }, '$inc': { 'version': 1 } }")
+    long pullConsumptionById(String stableId, String id);
+
+    @Query("{ 'stableId': ?0, 'consumptionList': { '$elemMatch': { '_id': ?1, 'name': { '$ne': ?2 } } } }")
+    @Update("{ '$set': { 'consumptionList.$.name': ?2 }, '$inc': { 'version': 1 } }")
+    long renameConsumptionById(String stableId, String id, String name);
+
+    List<Horse> findAllByStableIdAndIdIn(String stableId, Collection<String> ids);
+
+    long countByStableIdAndIdIn(String stableId, Collection<String> ids);
+
+    /**
+     * Deletes the horse with a single {@code findAndRemove}, so of two concurrent deletes only one gets it back.
+     */
+    Optional<Horse> removeByIdAndStableId(String id, String stableId);
 }
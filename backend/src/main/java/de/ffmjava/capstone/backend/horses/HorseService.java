@@ -1,62 +1,210 @@
 package de.ffmjava.capstone.backend.horses;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import de.ffmjava.capstone.backend.ChangeCounters;
+import de.ffmjava.capstone.backend.clients.ClientRepository;
 import de.ffmjava.capstone.backend.horses.model.Consumption;
 import de.ffmjava.capstone.backend.horses.model.Horse;
-import de.ffmjava.capstone.backend.stock.StockRepository;
+import de.ffmjava.capstone.backend.model.CursorPage;
+import de.ffmjava.capstone.backend.model.FormError;
+import de.ffmjava.capstone.backend.model.ImportResult;
+import de.ffmjava.capstone.backend.model.VersionedUpdate;
+import de.ffmjava.capstone.backend.mongo.BulkImporter;
+import de.ffmjava.capstone.backend.mongo.InvalidPatchException;
+import de.ffmjava.capstone.backend.mongo.MergePatch;
+import de.ffmjava.capstone.backend.mongo.MergePatchReader;
+import de.ffmjava.capstone.backend.mongo.MongoTransactions;
+import de.ffmjava.capstone.backend.mongo.NdjsonExporter;
+import de.ffmjava.capstone.backend.mongo.VersionRequiredException;
+import de.ffmjava.capstone.backend.stock.StockIdIndex;
 import lombok.RequiredArgsConstructor;
-import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
 import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static de.ffmjava.capstone.backend.CacheConfig.HORSE_LIST_CACHE;
+import static de.ffmjava.capstone.backend.CacheConfig.HORSE_LIST_KEY_GENERATOR;
 
-import static de.ffmjava.capstone.backend.stock.StockService.AGGREGATED_CONSUMPTION_CACHE;
 
 @Service
 @RequiredArgsConstructor
 public class HorseService {
 
+    private static final String CONSUMPTION_LIST_FIELD = "consumptionList";
+
     private final HorseRepository horseRepository;
-    private final StockRepository stockRepository;
+    private final ClientRepository clientRepository;
+    private final StockIdIndex stockIdIndex;
+    private final NdjsonExporter exporter;
+    private final BulkImporter bulkImporter;
+    private final ConsumptionTotalsService consumptionTotalsService;
+    private final MergePatchReader mergePatchReader;
+    private final MongoTransactions mongoTransactions;
+    private final ChangeCounters changeCounters;
+
+    @Cacheable(value = HORSE_LIST_CACHE, keyGenerator = HORSE_LIST_KEY_GENERATOR)
+    public List<Horse> getAllHorses(String stableId) {
+        return horseRepository.findAllByStableId(stableId);
+    }
+
+    public CursorPage<Horse> getHorsePage(String stableId, String cursor, int limit, List<String> fields)
+            throws IllegalArgumentException {
+        return horseRepository.findPage(stableId, cursor, limit, fields);
+    }
+
+    public VersionedUpdate<Horse> updateHorse(String stableId, Horse updatedHorse)
+            throws IllegalArgumentException, OptimisticLockingFailureException, VersionRequiredException {
+        validateConsumptionList(stableId, updatedHorse.consumptionList());
+        Horse horse = updatedHorse.withStableId(stableId);
+        VersionedUpdate<Horse> result = mongoTransactions.execute(() -> {
+            VersionedUpdate<Horse> update = horse.version() == null
+                    ? createHorse(horse)
+                    : horseRepository.replaceIfVersionMatches(horse)
+                    .orElseGet(() -> createHorse(horse.withVersion(null)));
+            consumptionTotalsService.applyChange(stableId,
+                    update.created() ? List.of() : update.previous().consumptionList(),
+                    update.current().consumptionList());
+            return update;
+        });
+        changeCounters.bump(stableId, ChangeCounters.Collection.HORSES);
+        return result;
+    }
 
-    public List<Horse> getAllHorses() {
-        return horseRepository.findAll();
+    private VersionedUpdate<Horse> createHorse(Horse newHorse) throws VersionRequiredException {
+        if (newHorse.id() != null && horseRepository.existsByIdAndStableId(newHorse.id(), newHorse.stableId())) {
+            throw new VersionRequiredException();
+        }
+        return new VersionedUpdate<>(null, horseRepository.save(newHorse.withId(UUID.randomUUID().toString())));
+    }
+
+    public Optional<VersionedUpdate<Horse>> patchHorse(String stableId, String id, JsonNode patch,
+                                                       Long expectedVersion)
+            throws InvalidPatchException, IllegalArgumentException, OptimisticLockingFailureException {
+        MergePatch<Horse> horsePatch = mergePatchReader.read(patch, Horse.class);
+        boolean consumptionChanged = horsePatch.contains(CONSUMPTION_LIST_FIELD);
+        if (consumptionChanged) {
+            List<Consumption> consumptionList = horsePatch.get(CONSUMPTION_LIST_FIELD);
+            if (consumptionList == null) {
+                throw new InvalidPatchException(new FormError("Feld darf nicht entfernt werden", CONSUMPTION_LIST_FIELD));
+            }
+            if (consumptionList.stream()
+                    .anyMatch(consumption -> consumption.dailyConsumption() == null
+                            || consumption.dailyConsumption().compareTo(BigDecimal.ZERO) < 1)) {
+                throw new InvalidPatchException(new FormError("Der Wert muss größer als 0 sein", "dailyConsumption"));
+            }
+            validateConsumptionList(stableId, consumptionList);
+        }
+        Optional<VersionedUpdate<Horse>> result = consumptionChanged
+                ? mongoTransactions.execute(() -> horseRepository.applyPatch(stableId, id, horsePatch, expectedVersion)
+                .map(update -> {
+                    consumptionTotalsService.applyChange(stableId, update.previous().consumptionList(),
+                            update.current().consumptionList());
+                    return update;
+                }))
+                : horseRepository.applyPatch(stableId, id, horsePatch, expectedVersion);
+        result.ifPresent(update -> changeCounters.bump(stableId, ChangeCounters.Collection.HORSES));
+        return result;
     }
 
-    @CacheEvict(value = AGGREGATED_CONSUMPTION_CACHE, allEntries = true)
-    public boolean updateHorse(Horse updatedHorse) throws IllegalArgumentException {
-        boolean horseExists = horseRepository.existsById(updatedHorse.id());
-        List<String> assignedStockItemIds = updatedHorse.consumptionList()
+    private void validateConsumptionList(String stableId, List<Consumption> consumptionList)
+            throws IllegalArgumentException {
+        if (consumptionList == null) {
+            return;
+        }
+        List<String> assignedStockItemIds = consumptionList
                 .stream()
                 .map(Consumption::id)
                 .distinct().toList();
-        if (updatedHorse.consumptionList().size() != assignedStockItemIds.size()) {
+        if (consumptionList.size() != assignedStockItemIds.size()) {
             throw new IllegalArgumentException("IDs of consumptionItems must be unique for every horse");
         }
-        for (Consumption consumption : updatedHorse.consumptionList()) {
-            if (!stockRepository.existsById(consumption.id())) {
-                throw new IllegalArgumentException("Consumption item not in stock");
-            }
-        }
-        if (!horseExists) {
-            horseRepository.save(updatedHorse.withId(UUID.randomUUID().toString()));
-        } else {
-            horseRepository.save(updatedHorse);
+        if (!stockIdIndex.existAll(stableId, assignedStockItemIds)) {
+            throw new IllegalArgumentException("Consumption item not in stock");
         }
-        return horseExists;
     }
 
-    public Horse addNewHorse(Horse newHorse) {
-        newHorse = newHorse.withId(UUID.randomUUID().toString());
-        return horseRepository.save(newHorse);
+    public Horse addNewHorse(String stableId, Horse newHorse) throws IllegalArgumentException {
+        validateConsumptionList(stableId, newHorse.consumptionList());
+        Horse horse = newHorse.withId(UUID.randomUUID().toString()).withVersion(null).withStableId(stableId);
+        Horse savedHorse = mongoTransactions.execute(() -> {
+            Horse saved = horseRepository.save(horse);
+            consumptionTotalsService.applyChange(stableId, List.of(), horse.consumptionList());
+            return saved;
+        });
+        changeCounters.bump(stableId, ChangeCounters.Collection.HORSES);
+        return savedHorse;
     }
 
-    @CacheEvict(value = AGGREGATED_CONSUMPTION_CACHE, allEntries = true)
-    public boolean deleteHorse(String id) throws IllegalArgumentException {
-        if (!horseRepository.existsById(id)) {
-            throw new IllegalArgumentException("Kein Eintrag für die gegebene ID gefunden");
+    public boolean deleteHorse(String stableId, String id) throws IllegalArgumentException {
+        long releasedOwners = mongoTransactions.execute(() -> {
+            Horse deletedHorse = horseRepository.removeByIdAndStableId(id, stableId)
+                    .orElseThrow(() -> new IllegalArgumentException("Kein Eintrag für die gegebene ID gefunden"));
+            consumptionTotalsService.applyChange(stableId, deletedHorse.consumptionList(), List.of());
+            return clientRepository.pullOwnedHorse(stableId, id);
+        });
+        changeCounters.bump(stableId, ChangeCounters.Collection.HORSES);
+        if (releasedOwners > 0) {
+            changeCounters.bump(stableId, ChangeCounters.Collection.CLIENTS);
         }
-        horseRepository.deleteById(id);
         return true;
     }
+
+    public long exportHorses(String stableId, OutputStream outputStream) throws IOException {
+        return exporter.export(Horse.class, stableId, outputStream);
+    }
+
+    public ImportResult importHorses(String stableId, InputStream inputStream) throws IOException {
+        ImportResult result = bulkImporter.importRows(inputStream, Horse.class,
+                horses -> validateImportBatch(stableId, horses),
+                horse -> horse.withId(UUID.randomUUID().toString()).withVersion(0L).withStableId(stableId));
+        if (result.imported() > 0) {
+            consumptionTotalsService.rebuild(stableId);
+            changeCounters.bump(stableId, ChangeCounters.Collection.HORSES);
+        }
+        return result;
+    }
+
+    List<FormError> validateImportBatch(String stableId, List<Horse> horses) {
+        Set<String> referencedStockItemIds = horses.stream()
+                .filter(horse -> horse.consumptionList() != null)
+                .flatMap(horse -> horse.consumptionList().stream())
+                .map(Consumption::id)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Set<String> missingStockItemIds = stockIdIndex.findMissing(stableId, referencedStockItemIds);
+        return horses.stream()
+                .map(horse -> validateConsumptionList(horse, missingStockItemIds))
+                .toList();
+    }
+
+    private FormError validateConsumptionList(Horse horse, Set<String> missingStockItemIds) {
+        if (horse.consumptionList() == null || horse.consumptionList().isEmpty()) {
+            return null;
+        }
+        long distinctIds = horse.consumptionList().stream().map(Consumption::id).distinct().count();
+        if (distinctIds != horse.consumptionList().size()) {
+            return new FormError("IDs of consumptionItems must be unique for every horse", "consumptionList");
+        }
+        for (Consumption consumption : horse.consumptionList()) {
+            if (consumption.dailyConsumption() == null
+                    || consumption.dailyConsumption().compareTo(BigDecimal.ZERO) < 1) {
+                return new FormError("Der Wert muss größer als 0 sein", "dailyConsumption");
+            }
+            if (missingStockItemIds.contains(consumption.id())) {
+                return new FormError("Consumption item not in stock", "consumptionList");
+            }
+        }
+        return null;
+    }
 }
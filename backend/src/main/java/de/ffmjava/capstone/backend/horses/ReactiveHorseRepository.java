@@ -0,0 +1,13 @@
+package de.ffmjava.capstone.backend.horses;
+
+import de.ffmjava.capstone.backend.horses.model.Horse;
+import de.ffmjava.capstone.backend.stables.ReactiveStableScopedRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+import java.util.Collection;
+
+@Repository
+public interface ReactiveHorseRepository extends ReactiveStableScopedRepository<Horse, String> {
+    Flux<Horse> findAllByStableIdAndIdIn(String stableId, Collection<String> ids);
+}
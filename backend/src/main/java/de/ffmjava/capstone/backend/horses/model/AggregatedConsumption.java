@@ -7,6 +7,7 @@ import java.math.BigDecimal;
 @With
 public record AggregatedConsumption(
         String id,
+        String name,
         BigDecimal dailyAggregatedConsumption
 ) {
 }
@@ -0,0 +1,26 @@
+package de.ffmjava.capstone.backend.horses.model;
+
+import lombok.With;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.math.BigDecimal;
+
+import static org.springframework.data.mongodb.core.mapping.FieldType.DECIMAL128;
+
+@With
+@Document(ConsumptionTotal.COLLECTION_NAME)
+@CompoundIndex(name = "stableId_horseCount", def = "{'stableId': 1, 'horseCount': 1}")
+public record ConsumptionTotal(
+        @Id
+        String id,
+        String name,
+        @Field(targetType = DECIMAL128)
+        BigDecimal dailyAggregatedConsumption,
+        int horseCount,
+        String stableId
+) {
+    public static final String COLLECTION_NAME = "consumption_totals";
+}
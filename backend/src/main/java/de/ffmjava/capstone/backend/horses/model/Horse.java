@@ -1,12 +1,19 @@
 package de.ffmjava.capstone.backend.horses.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.With;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
 
 import javax.validation.constraints.NotBlank;
 import java.util.List;
 
 @With
+@Document
+@CompoundIndex(name = "stableId_consumptionList_id", def = "{'stableId': 1, 'consumptionList._id': 1}")
+@CompoundIndex(name = "stableId_id", def = "{'stableId': 1, '_id': 1}")
 public record Horse(
         @Id
         String id,
@@ -14,6 +21,10 @@ public record Horse(
         String name,
         @NotBlank(message = "Feld \"Besitzer\" darf nicht leer sein")
         String owner,
-        List<Consumption> consumptionList
+        List<Consumption> consumptionList,
+        @Version
+        Long version,
+        @JsonIgnore
+        String stableId
 ) {
 }
@@ -0,0 +1,9 @@
+package de.ffmjava.capstone.backend.model;
+
+import java.util.List;
+
+public record ImportResult(
+        int imported,
+        List<ImportRowError> errors
+) {
+}
@@ -0,0 +1,8 @@
+package de.ffmjava.capstone.backend.model;
+
+public record ImportRowError(
+        int row,
+        String errorMessage,
+        String fieldName
+) {
+}
@@ -0,0 +1,10 @@
+package de.ffmjava.capstone.backend.model;
+
+public record VersionedUpdate<T>(
+        T previous,
+        T current
+) {
+    public boolean created() {
+        return previous == null;
+    }
+}
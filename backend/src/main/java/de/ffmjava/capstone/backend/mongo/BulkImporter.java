@@ -0,0 +1,160 @@
+package de.ffmjava.capstone.backend.mongo;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.bulk.BulkWriteError;
+import de.ffmjava.capstone.backend.model.FormError;
+import de.ffmjava.capstone.backend.model.ImportResult;
+import de.ffmjava.capstone.backend.model.ImportRowError;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * Imports a JSON array or newline delimited JSON upload in batches. Every batch is checked once by
+ * bean validation and once by a domain {@link BatchValidator}, then written with a single unordered
+ * bulk insert. Rows that fail are reported by their 1-based position in the upload.
+ */
+@Component
+public class BulkImporter {
+
+    private final MongoTemplate mongoTemplate;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final int batchSize;
+
+    public BulkImporter(MongoTemplate mongoTemplate, ObjectMapper objectMapper, Validator validator,
+                        @Value("${stablebuddy.import.batch-size:500}") int batchSize) {
+        this.mongoTemplate = mongoTemplate;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.batchSize = batchSize;
+    }
+
+    @FunctionalInterface
+    public interface BatchValidator<T> {
+        /**
+         * Called once per batch with the rows that passed bean validation.
+         *
+         * @return one entry per given row, {@code null} for rows without errors
+         */
+        List<FormError> validate(List<T> rows);
+    }
+
+    public <T> ImportResult importRows(InputStream inputStream, Class<T> type, BatchValidator<T> batchValidator,
+                                       UnaryOperator<T> preparer) throws IOException {
+        return importRows(inputStream, type, batchValidator, preparer, insertedRows -> {
+        });
+    }
+
+    /**
+     * @param onInserted called once per batch with the prepared rows that were actually written
+     */
+    public <T> ImportResult importRows(InputStream inputStream, Class<T> type, BatchValidator<T> batchValidator,
+                                       UnaryOperator<T> preparer, Consumer<List<T>> onInserted) throws IOException {
+        List<ImportRowError> errors = new ArrayList<>();
+        List<T> batch = new ArrayList<>(batchSize);
+        int imported = 0;
+        int row = 0;
+        try (MappingIterator<T> rows = objectMapper.readerFor(type).readValues(inputStream)) {
+            while (rows.hasNextValue()) {
+                batch.add(rows.nextValue());
+                row++;
+                if (batch.size() == batchSize) {
+                    imported += writeBatch(batch, row - batch.size() + 1, type, batchValidator, preparer, onInserted, errors);
+                    batch.clear();
+                }
+            }
+        } catch (JsonProcessingException e) {
+            errors.add(new ImportRowError(row + 1, "Ungültiges JSON: " + e.getOriginalMessage(), null));
+        }
+        if (!batch.isEmpty()) {
+            imported += writeBatch(batch, row - batch.size() + 1, type, batchValidator, preparer, onInserted, errors);
+        }
+        errors.sort(Comparator.comparingInt(ImportRowError::row));
+        return new ImportResult(imported, errors);
+    }
+
+    private <T> int writeBatch(List<T> batch, int firstRow, Class<T> type, BatchValidator<T> batchValidator,
+                               UnaryOperator<T> preparer, Consumer<List<T>> onInserted,
+                               List<ImportRowError> errors) {
+        List<T> candidates = new ArrayList<>();
+        List<Integer> candidateRowNumbers = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            FormError error = validateBean(batch.get(i));
+            if (error != null) {
+                errors.add(new ImportRowError(firstRow + i, error.errorMessage(), error.fieldName()));
+            } else {
+                candidates.add(batch.get(i));
+                candidateRowNumbers.add(firstRow + i);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return 0;
+        }
+        List<FormError> domainErrors = batchValidator.validate(candidates);
+        List<T> validRows = new ArrayList<>();
+        List<Integer> validRowNumbers = new ArrayList<>();
+        for (int i = 0; i < candidates.size(); i++) {
+            FormError error = domainErrors.get(i);
+            if (error != null) {
+                errors.add(new ImportRowError(candidateRowNumbers.get(i), error.errorMessage(), error.fieldName()));
+            } else {
+                validRows.add(preparer.apply(candidates.get(i)));
+                validRowNumbers.add(candidateRowNumbers.get(i));
+            }
+        }
+        if (validRows.isEmpty()) {
+            return 0;
+        }
+        try {
+            int inserted = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, type)
+                    .insert(validRows)
+                    .execute()
+                    .getInsertedCount();
+            onInserted.accept(validRows);
+            return inserted;
+        } catch (BulkOperationException e) {
+            Set<Integer> failedIndexes = new HashSet<>();
+            for (BulkWriteError writeError : e.getErrors()) {
+                failedIndexes.add(writeError.getIndex());
+                errors.add(new ImportRowError(validRowNumbers.get(writeError.getIndex()), writeError.getMessage(), null));
+            }
+            List<T> insertedRows = new ArrayList<>();
+            for (int i = 0; i < validRows.size(); i++) {
+                if (!failedIndexes.contains(i)) {
+                    insertedRows.add(validRows.get(i));
+                }
+            }
+            onInserted.accept(insertedRows);
+            return e.getResult().getInsertedCount();
+        }
+    }
+
+    private <T> FormError validateBean(T row) {
+        return validator.validate(row)
+                .stream()
+                .min(Comparator.comparing(violation -> violation.getPropertyPath().toString()))
+                .map(this::toFormError)
+                .orElse(null);
+    }
+
+    private FormError toFormError(ConstraintViolation<?> violation) {
+        return new FormError(violation.getMessage(), violation.getPropertyPath().toString());
+    }
+}
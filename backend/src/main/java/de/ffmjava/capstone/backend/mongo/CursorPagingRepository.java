@@ -0,0 +1,46 @@
+package de.ffmjava.capstone.backend.mongo;
+
+import de.ffmjava.capstone.backend.model.CursorPage;
+import de.ffmjava.capstone.backend.model.VersionedUpdate;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.repository.NoRepositoryBean;
+
+import java.util.Collection;
+import java.util.Optional;
+
+/**
+ * Paging and versioned writes for documents that belong to a stable. All methods only match the
+ * documents of one stable.
+ */
+@NoRepositoryBean
+public interface CursorPagingRepository<T, I> extends MongoRepository<T, I> {
+
+    /**
+     * Reads one page of a stable ordered by id, starting after the given cursor.
+     *
+     * @param cursor opaque token from a previous page, {@code null} for the first page
+     * @param limit  requested page size, clamped to {@link CursorPagingRepositoryImpl#MAX_PAGE_SIZE}
+     * @param fields fields to load, {@code null} or empty for the whole document
+     */
+    CursorPage<T> findPage(String stableId, String cursor, int limit, Collection<String> fields);
+
+    /**
+     * Replaces the stored document with {@code entity} in a single {@code findAndReplace} that only matches
+     * while the stored version still equals the version of {@code entity}. The stored copy gets the next version.
+     *
+     * @return the previous and the stored state, or empty if the entity's stable has no document with its id
+     * @throws OptimisticLockingFailureException if the document exists with a different version
+     */
+    Optional<VersionedUpdate<T>> replaceIfVersionMatches(T entity);
+
+    /**
+     * Writes only the fields of {@code patch} with {@code $set}/{@code $unset} in a single {@code findAndModify}
+     * and increments the version.
+     *
+     * @param expectedVersion version the document must still have, {@code null} to patch any version
+     * @return the previous and the patched state, or empty if the stable has no document with this id
+     * @throws OptimisticLockingFailureException if the document exists with a different version
+     */
+    Optional<VersionedUpdate<T>> applyPatch(String stableId, I id, MergePatch<T> patch, Long expectedVersion);
+}
@@ -0,0 +1,151 @@
+package de.ffmjava.capstone.backend.mongo;
+
+import de.ffmjava.capstone.backend.model.CursorPage;
+import de.ffmjava.capstone.backend.model.VersionedUpdate;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mapping.PersistentPropertyAccessor;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.repository.query.MongoEntityInformation;
+import org.springframework.data.mongodb.repository.support.SimpleMongoRepository;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import static de.ffmjava.capstone.backend.stables.StableContext.STABLE_ID_FIELD;
+
+public class CursorPagingRepositoryImpl<T, I> extends SimpleMongoRepository<T, I>
+        implements CursorPagingRepository<T, I> {
+
+    public static final int MAX_PAGE_SIZE = 500;
+    private static final String ID_FIELD = "id";
+
+    private final MongoEntityInformation<T, I> entityInformation;
+    private final MongoOperations mongoOperations;
+
+    public CursorPagingRepositoryImpl(MongoEntityInformation<T, I> entityInformation, MongoOperations mongoOperations) {
+        super(entityInformation, mongoOperations);
+        this.entityInformation = entityInformation;
+        this.mongoOperations = mongoOperations;
+    }
+
+    @Override
+    public CursorPage<T> findPage(String stableId, String cursor, int limit, Collection<String> fields)
+            throws IllegalArgumentException {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        Query query = Query.query(Criteria.where(STABLE_ID_FIELD).is(stableId))
+                .with(Sort.by(Sort.Direction.ASC, ID_FIELD))
+                .limit(pageSize + 1);
+        if (cursor != null && !cursor.isBlank()) {
+            query.addCriteria(Criteria.where(ID_FIELD).gt(decodeCursor(cursor)));
+        }
+        if (fields != null && !fields.isEmpty()) {
+            MongoPersistentEntity<T> entity = getPersistentEntity();
+            for (String field : fields) {
+                if (entity.getPersistentProperty(field) == null) {
+                    throw new IllegalArgumentException("Unbekanntes Feld: " + field);
+                }
+                query.fields().include(field);
+            }
+        }
+        List<T> items = mongoOperations.find(query, entityInformation.getJavaType(),
+                entityInformation.getCollectionName());
+        if (items.size() <= pageSize) {
+            return new CursorPage<>(items, null);
+        }
+        List<T> page = items.subList(0, pageSize);
+        String lastId = String.valueOf(entityInformation.getRequiredId(page.get(pageSize - 1)));
+        return new CursorPage<>(page, encodeCursor(lastId));
+    }
+
+    @Override
+    public Optional<VersionedUpdate<T>> replaceIfVersionMatches(T entity) throws OptimisticLockingFailureException {
+        MongoPersistentEntity<T> persistentEntity = getPersistentEntity();
+        MongoPersistentProperty versionProperty = persistentEntity.getRequiredVersionProperty();
+        PersistentPropertyAccessor<T> accessor = persistentEntity.getPropertyAccessor(entity);
+        Object id = entityInformation.getRequiredId(entity);
+        Object stableId = accessor.getProperty(persistentEntity.getRequiredPersistentProperty(STABLE_ID_FIELD));
+        Number expectedVersion = (Number) accessor.getProperty(versionProperty);
+        if (expectedVersion == null) {
+            throw new IllegalArgumentException("Entity has no version");
+        }
+        accessor.setProperty(versionProperty, expectedVersion.longValue() + 1);
+        T replacement = accessor.getBean();
+
+        Query expectedState = Query.query(Criteria.where(ID_FIELD).is(id)
+                .and(STABLE_ID_FIELD).is(stableId)
+                .and(versionProperty.getName()).is(expectedVersion));
+        T previous = mongoOperations.findAndReplace(expectedState, replacement, entityInformation.getCollectionName());
+        if (previous != null) {
+            return Optional.of(new VersionedUpdate<>(previous, replacement));
+        }
+        if (mongoOperations.exists(Query.query(Criteria.where(ID_FIELD).is(id).and(STABLE_ID_FIELD).is(stableId)),
+                entityInformation.getJavaType(), entityInformation.getCollectionName())) {
+            throw new OptimisticLockingFailureException("Der Eintrag wurde zwischenzeitlich geändert");
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<VersionedUpdate<T>> applyPatch(String stableId, I id, MergePatch<T> patch, Long expectedVersion)
+            throws OptimisticLockingFailureException {
+        MongoPersistentEntity<T> persistentEntity = getPersistentEntity();
+        MongoPersistentProperty versionProperty = persistentEntity.getRequiredVersionProperty();
+        Update update = new Update().inc(versionProperty.getName(), 1);
+        patch.values().forEach((field, value) -> {
+            if (value == null) {
+                update.unset(field);
+            } else {
+                update.set(field, value);
+            }
+        });
+        Criteria expectedState = Criteria.where(ID_FIELD).is(id).and(STABLE_ID_FIELD).is(stableId);
+        if (expectedVersion != null) {
+            expectedState.and(versionProperty.getName()).is(expectedVersion);
+        }
+        T previous = mongoOperations.findAndModify(Query.query(expectedState), update,
+                FindAndModifyOptions.options().returnNew(false), entityInformation.getJavaType(),
+                entityInformation.getCollectionName());
+        if (previous == null) {
+            if (expectedVersion != null && mongoOperations.exists(
+                    Query.query(Criteria.where(ID_FIELD).is(id).and(STABLE_ID_FIELD).is(stableId)),
+                    entityInformation.getJavaType(), entityInformation.getCollectionName())) {
+                throw new OptimisticLockingFailureException("Der Eintrag wurde zwischenzeitlich geändert");
+            }
+            return Optional.empty();
+        }
+        PersistentPropertyAccessor<T> accessor = persistentEntity.getPropertyAccessor(previous);
+        patch.values().forEach((field, value) ->
+                accessor.setProperty(persistentEntity.getRequiredPersistentProperty(field), value));
+        Number previousVersion = (Number) accessor.getProperty(versionProperty);
+        accessor.setProperty(versionProperty, previousVersion == null ? 1L : previousVersion.longValue() + 1);
+        return Optional.of(new VersionedUpdate<>(previous, accessor.getBean()));
+    }
+
+    @SuppressWarnings("unchecked")
+    private MongoPersistentEntity<T> getPersistentEntity() {
+        return (MongoPersistentEntity<T>) mongoOperations.getConverter().getMappingContext()
+                .getRequiredPersistentEntity(entityInformation.getJavaType());
+    }
+
+    private static String encodeCursor(String id) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(id.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decodeCursor(String cursor) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Ungültiger Cursor");
+        }
+    }
+}
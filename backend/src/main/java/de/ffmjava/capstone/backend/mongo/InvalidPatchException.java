@@ -0,0 +1,17 @@
+package de.ffmjava.capstone.backend.mongo;
+
+import de.ffmjava.capstone.backend.model.FormError;
+
+public class InvalidPatchException extends RuntimeException {
+
+    private final transient FormError formError;
+
+    public InvalidPatchException(FormError formError) {
+        super(formError.errorMessage());
+        this.formError = formError;
+    }
+
+    public FormError getFormError() {
+        return formError;
+    }
+}
@@ -0,0 +1,24 @@
+package de.ffmjava.capstone.backend.mongo;
+
+import java.util.Map;
+
+/**
+ * The fields of a JSON merge patch (RFC 7396) with values converted to the property types of {@code type}.
+ * A {@code null} value removes the field.
+ */
+public record MergePatch<T>(
+        Class<T> type,
+        Map<String, Object> values
+) {
+
+    public static final String MEDIA_TYPE = "application/merge-patch+json";
+
+    public boolean contains(String field) {
+        return values.containsKey(field);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <V> V get(String field) {
+        return (V) values.get(field);
+    }
+}
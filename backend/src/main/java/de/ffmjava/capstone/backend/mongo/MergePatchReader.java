@@ -0,0 +1,76 @@
+package de.ffmjava.capstone.backend.mongo;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.ffmjava.capstone.backend.model.FormError;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.stereotype.Component;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Turns a JSON merge patch into a {@link MergePatch}. Only top-level properties of the entity may be patched,
+ * never its id, version or properties hidden from the API such as the stable, and every value has to pass
+ * the bean validation of its property on its own, so a patch can be written without reading the document first.
+ */
+@Component
+@RequiredArgsConstructor
+public class MergePatchReader {
+
+    private final MongoTemplate mongoTemplate;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+
+    public <T> MergePatch<T> read(JsonNode patch, Class<T> type) throws InvalidPatchException {
+        if (patch == null || !patch.isObject()) {
+            throw new InvalidPatchException(new FormError("Der Patch muss ein JSON-Objekt sein", null));
+        }
+        MongoPersistentEntity<?> entity = mongoTemplate.getConverter().getMappingContext()
+                .getRequiredPersistentEntity(type);
+        Map<String, Object> values = new LinkedHashMap<>();
+        Iterator<Map.Entry<String, JsonNode>> fields = patch.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            MongoPersistentProperty property = entity.getPersistentProperty(field.getKey());
+            if (property == null) {
+                throw new InvalidPatchException(new FormError("Unbekanntes Feld: " + field.getKey(), field.getKey()));
+            }
+            if (property.isIdProperty() || property.isVersionProperty()
+                    || property.isAnnotationPresent(JsonIgnore.class)) {
+                throw new InvalidPatchException(new FormError("Feld darf nicht geändert werden", field.getKey()));
+            }
+            Object value = convert(field.getValue(), property);
+            validator.validateValue(type, property.getName(), value)
+                    .stream()
+                    .findFirst()
+                    .map(ConstraintViolation::getMessage)
+                    .ifPresent(message -> {
+                        throw new InvalidPatchException(new FormError(message, field.getKey()));
+                    });
+            values.put(property.getName(), value);
+        }
+        return new MergePatch<>(type, values);
+    }
+
+    private Object convert(JsonNode value, MongoPersistentProperty property) throws InvalidPatchException {
+        if (value.isNull()) {
+            return null;
+        }
+        JavaType javaType = objectMapper.getTypeFactory()
+                .constructType(property.getTypeInformation().toTypeDescriptor().getResolvableType().getType());
+        try {
+            return objectMapper.convertValue(value, javaType);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidPatchException(new FormError("Ungültiger Wert", property.getName()));
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package de.ffmjava.capstone.backend.mongo;
+
+import de.ffmjava.capstone.backend.clients.model.Client;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexField;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Creates the indexes declared with {@code @Indexed}/{@code @CompoundIndex} on all mapped
+ * documents once at startup, after the data migrations, and verifies them against the index list
+ * of the server. Declared indexes that could not be created, e.g. a unique index over existing
+ * duplicates, are reported as missing instead of failing the start. Indexes that a declared index
+ * replaced are dropped first.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MongoIndexes {
+
+    /**
+     * Names of replaced indexes by the document class they were declared on.
+     */
+    static final Map<Class<?>, List<String>> REPLACED_INDEXES = Map.of(Client.class, List.of("ownsHorse_unique"));
+
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * @param present whether the server has an index with the declared keys and, if declared, uniqueness
+     */
+    public record IndexCheck(String collection, String name, Document keys, boolean present) {
+    }
+
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        try {
+            List<IndexCheck> report = ensureIndexes();
+            report.stream()
+                    .filter(check -> !check.present())
+                    .forEach(check -> log.warn("Index {} {} on {} is missing", check.name(), check.keys().toJson(),
+                            check.collection()));
+            log.info("Verified {} of {} declared indexes", report.stream().filter(IndexCheck::present).count(),
+                    report.size());
+        } catch (DataAccessException e) {
+            log.warn("Could not create the declared indexes", e);
+        }
+    }
+
+    public List<IndexCheck> ensureIndexes() {
+        IndexResolver indexResolver = IndexResolver.create(mongoTemplate.getConverter().getMappingContext());
+        List<IndexCheck> report = new ArrayList<>();
+        for (MongoPersistentEntity<?> entity : mongoTemplate.getConverter().getMappingContext().getPersistentEntities()) {
+            if (!entity.isAnnotationPresent(org.springframework.data.mongodb.core.mapping.Document.class)) {
+                continue;
+            }
+            List<IndexDefinition> declared = new ArrayList<>();
+            indexResolver.resolveIndexFor(entity.getTypeInformation()).forEach(declared::add);
+            if (declared.isEmpty()) {
+                continue;
+            }
+            IndexOperations indexOperations = mongoTemplate.indexOps(entity.getCollection());
+            dropReplacedIndexes(entity.getType(), indexOperations);
+            for (IndexDefinition index : declared) {
+                try {
+                    indexOperations.ensureIndex(index);
+                } catch (DataAccessException e) {
+                    log.warn("Could not create index {} on {}: {}", index.getIndexKeys().toJson(),
+                            entity.getCollection(), e.getMessage());
+                }
+            }
+            List<IndexInfo> existing = indexOperations.getIndexInfo();
+            for (IndexDefinition index : declared) {
+                report.add(new IndexCheck(entity.getCollection(), index.getIndexOptions().getString("name"),
+                        index.getIndexKeys(), existing.stream().anyMatch(info -> matches(index, info))));
+            }
+        }
+        return report;
+    }
+
+    private static void dropReplacedIndexes(Class<?> type, IndexOperations indexOperations) {
+        List<String> replaced = REPLACED_INDEXES.getOrDefault(type, List.of());
+        if (replaced.isEmpty()) {
+            return;
+        }
+        indexOperations.getIndexInfo().stream()
+                .map(IndexInfo::getName)
+                .filter(replaced::contains)
+                .forEach(name -> {
+                    indexOperations.dropIndex(name);
+                    log.info("Dropped replaced index {}", name);
+                });
+    }
+
+    private static boolean matches(IndexDefinition index, IndexInfo info) {
+        List<String> keys = info.getIndexFields().stream().map(IndexField::getKey).toList();
+        boolean unique = Boolean.TRUE.equals(index.getIndexOptions().getBoolean("unique"));
+        return keys.equals(List.copyOf(index.getIndexKeys().keySet())) && (!unique || info.isUnique());
+    }
+}
@@ -0,0 +1,21 @@
+package de.ffmjava.capstone.backend.mongo;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.MongoTransactionManager;
+
+/**
+ * MongoDB only supports transactions on replica sets and sharded clusters, so the transaction
+ * manager is opt-in via {@code stablebuddy.mongo.transactions.enabled}.
+ */
+@Configuration
+public class MongoTransactionConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "stablebuddy.mongo.transactions.enabled", havingValue = "true")
+    public MongoTransactionManager transactionManager(MongoDatabaseFactory databaseFactory) {
+        return new MongoTransactionManager(databaseFactory);
+    }
+}
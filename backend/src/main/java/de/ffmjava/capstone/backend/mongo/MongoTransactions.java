@@ -0,0 +1,37 @@
+package de.ffmjava.capstone.backend.mongo;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.mongodb.MongoTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.function.Supplier;
+
+/**
+ * Runs multi-document writes in a MongoDB transaction when a {@link MongoTransactionManager} is
+ * configured (replica sets only, see {@link MongoTransactionConfig}) and directly otherwise.
+ */
+@Component
+public class MongoTransactions {
+
+    private final TransactionTemplate transactionTemplate;
+
+    public MongoTransactions(ObjectProvider<MongoTransactionManager> transactionManager) {
+        MongoTransactionManager manager = transactionManager.getIfAvailable();
+        this.transactionTemplate = manager == null ? null : new TransactionTemplate(manager);
+    }
+
+    public <T> T execute(Supplier<T> action) {
+        if (transactionTemplate == null) {
+            return action.get();
+        }
+        return transactionTemplate.execute(status -> action.get());
+    }
+
+    public void run(Runnable action) {
+        execute(() -> {
+            action.run();
+            return null;
+        });
+    }
+}
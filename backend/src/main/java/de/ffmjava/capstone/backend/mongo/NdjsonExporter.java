@@ -0,0 +1,47 @@
+package de.ffmjava.capstone.backend.mongo;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static de.ffmjava.capstone.backend.stables.StableContext.STABLE_ID_FIELD;
+
+/**
+ * Writes the documents of one stable as newline delimited JSON while reading them from a Mongo
+ * cursor, so only one document per collection is held in memory at a time.
+ */
+@Component
+@RequiredArgsConstructor
+public class NdjsonExporter {
+
+    private static final int CURSOR_BATCH_SIZE = 500;
+    private static final byte LINE_SEPARATOR = '\n';
+
+    private final MongoTemplate mongoTemplate;
+    private final ObjectMapper objectMapper;
+
+    public <T> long export(Class<T> type, String stableId, OutputStream outputStream) throws IOException {
+        ObjectWriter writer = objectMapper.writerFor(type);
+        long written = 0;
+        try (CloseableIterator<T> documents = mongoTemplate.stream(
+                Query.query(Criteria.where(STABLE_ID_FIELD).is(stableId)).cursorBatchSize(CURSOR_BATCH_SIZE), type)) {
+            while (documents.hasNext()) {
+                outputStream.write(writer.writeValueAsBytes(documents.next()));
+                outputStream.write(LINE_SEPARATOR);
+                if (++written % CURSOR_BATCH_SIZE == 0) {
+                    outputStream.flush();
+                }
+            }
+        }
+        outputStream.flush();
+        return written;
+    }
+}
@@ -0,0 +1,47 @@
+package de.ffmjava.capstone.backend.mongo;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+/**
+ * Documents written before an entity got its {@code @Version} property have no version and could
+ * never be updated conditionally. Initializes their version to 0 at startup.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class VersionFieldMigration {
+
+    private final MongoTemplate mongoTemplate;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrate() {
+        try {
+            for (MongoPersistentEntity<?> entity : mongoTemplate.getConverter().getMappingContext()
+                    .getPersistentEntities()) {
+                if (entity.hasVersionProperty()) {
+                    String versionField = entity.getRequiredVersionProperty().getFieldName();
+                    long migrated = mongoTemplate.updateMulti(
+                                    Query.query(Criteria.where(versionField).exists(false)),
+                                    Update.update(versionField, 0L),
+                                    entity.getCollection())
+                            .getModifiedCount();
+                    if (migrated > 0) {
+                        log.info("Initialized the version of {} documents in {}", migrated, entity.getCollection());
+                    }
+                }
+            }
+        } catch (DataAccessException e) {
+            log.warn("Could not initialize document versions", e);
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package de.ffmjava.capstone.backend.mongo;
+
+public class VersionRequiredException extends RuntimeException {
+    public VersionRequiredException() {
+        super("Änderungen an bestehenden Einträgen benötigen eine Version");
+    }
+}
@@ -0,0 +1,46 @@
+package de.ffmjava.capstone.backend.stables;
+
+import de.ffmjava.capstone.backend.user.ReactiveUserRepository;
+import de.ffmjava.capstone.backend.user.model.AppUser;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import static de.ffmjava.capstone.backend.stables.StableContext.DEFAULT_STABLE_ID;
+
+/**
+ * {@link StableContext} of the reactive API: resolves the stable from the security context of the
+ * subscriber instead of the request thread, and looks the user up without blocking.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequiredArgsConstructor
+public class ReactiveStableContext {
+
+    private final ReactiveUserRepository userRepository;
+
+    /**
+     * @return the stable of the authenticated user, empty for anonymous requests
+     */
+    public Mono<String> findCurrentStableId() {
+        return ReactiveSecurityContextHolder.getContext()
+                .map(SecurityContext::getAuthentication)
+                .filter(authentication -> authentication.isAuthenticated()
+                        && !(authentication instanceof AnonymousAuthenticationToken))
+                .map(Authentication::getName)
+                .flatMap(username -> userRepository.findByUsername(username)
+                        .mapNotNull(AppUser::stableId)
+                        .defaultIfEmpty(DEFAULT_STABLE_ID));
+    }
+
+    public Mono<String> currentStableId() {
+        return findCurrentStableId()
+                .switchIfEmpty(Mono.error(() -> new AccessDeniedException("Kein Stall angemeldet")));
+    }
+}
@@ -0,0 +1,17 @@
+package de.ffmjava.capstone.backend.stables;
+
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.data.repository.NoRepositoryBean;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking counterpart of {@link StableScopedRepository} for the reads of the reactive API.
+ */
+@NoRepositoryBean
+public interface ReactiveStableScopedRepository<T, I> extends ReactiveMongoRepository<T, I> {
+
+    Flux<T> findAllByStableId(String stableId);
+
+    Mono<T> findByIdAndStableId(I id, String stableId);
+}
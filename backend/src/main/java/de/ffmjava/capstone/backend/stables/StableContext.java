@@ -0,0 +1,49 @@
+package de.ffmjava.capstone.backend.stables;
+
+import de.ffmjava.capstone.backend.user.UserService;
+import de.ffmjava.capstone.backend.user.model.AppUser;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+
+/**
+ * Resolves the stable (tenant) of the current request from the authenticated user. Horses, stock
+ * items, clients and users carry the id of their stable in {@link #STABLE_ID_FIELD}, and every
+ * read and write of the services is scoped to it. The user is looked up through the user cache,
+ * so resolving the stable normally costs no database round-trip.
+ */
+@Component
+@RequiredArgsConstructor
+public class StableContext {
+
+    public static final String STABLE_ID_FIELD = "stableId";
+    /**
+     * Stable of all data that was stored before stables were introduced, and of authenticated
+     * principals without a stored user.
+     */
+    public static final String DEFAULT_STABLE_ID = "default";
+
+    private final UserService userService;
+
+    /**
+     * @return the stable of the authenticated user, empty for anonymous requests
+     */
+    public Optional<String> findCurrentStableId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()
+                || authentication instanceof AnonymousAuthenticationToken) {
+            return Optional.empty();
+        }
+        AppUser appUser = userService.findByUsername(authentication.getName());
+        return Optional.of(appUser == null || appUser.stableId() == null ? DEFAULT_STABLE_ID : appUser.stableId());
+    }
+
+    public String currentStableId() throws AccessDeniedException {
+        return findCurrentStableId().orElseThrow(() -> new AccessDeniedException("Kein Stall angemeldet"));
+    }
+}
@@ -0,0 +1,78 @@
+package de.ffmjava.capstone.backend.stables;
+
+import de.ffmjava.capstone.backend.clients.model.Client;
+import de.ffmjava.capstone.backend.horses.model.ConsumptionTotal;
+import de.ffmjava.capstone.backend.horses.model.Horse;
+import de.ffmjava.capstone.backend.mongo.MongoIndexes;
+import de.ffmjava.capstone.backend.stock.model.StockAlert;
+import de.ffmjava.capstone.backend.stock.model.StockForecast;
+import de.ffmjava.capstone.backend.stock.model.StockItem;
+import de.ffmjava.capstone.backend.user.model.AppUser;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+import static de.ffmjava.capstone.backend.stables.StableContext.DEFAULT_STABLE_ID;
+import static de.ffmjava.capstone.backend.stables.StableContext.STABLE_ID_FIELD;
+
+/**
+ * Assigns all documents stored before stables were introduced to {@link StableContext#DEFAULT_STABLE_ID}
+ * once at startup, and drops the indexes that were replaced by per-stable indexes, before
+ * {@link MongoIndexes} creates the new ones.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StableMigration {
+
+    private static final List<Class<?>> SCOPED_TYPES = List.of(StockItem.class, Horse.class, Client.class,
+            AppUser.class, ConsumptionTotal.class, StockForecast.class, StockAlert.class);
+
+    private final MongoTemplate mongoTemplate;
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrate() {
+        try {
+            long migrated = assignDefaultStable();
+            if (migrated > 0) {
+                log.info("Assigned {} documents to the default stable", migrated);
+            }
+            dropIndex(StockItem.class, "name_unique");
+            dropIndex(Horse.class, "consumptionList_id");
+        } catch (DataAccessException e) {
+            log.warn("Could not migrate documents to stables", e);
+        }
+    }
+
+    long assignDefaultStable() {
+        Query withoutStable = Query.query(Criteria.where(STABLE_ID_FIELD).exists(false));
+        Update toDefaultStable = new Update().set(STABLE_ID_FIELD, DEFAULT_STABLE_ID);
+        long migrated = 0;
+        for (Class<?> type : SCOPED_TYPES) {
+            migrated += mongoTemplate.updateMulti(withoutStable, toDefaultStable, type).getModifiedCount();
+        }
+        return migrated;
+    }
+
+    private void dropIndex(Class<?> type, String name) {
+        IndexOperations indexOperations = mongoTemplate.indexOps(type);
+        if (indexOperations.getIndexInfo().stream().map(IndexInfo::getName).anyMatch(name::equals)) {
+            indexOperations.dropIndex(name);
+            log.info("Dropped index {} on {}", name, mongoTemplate.getCollectionName(type));
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package de.ffmjava.capstone.backend.stables;
+
+import de.ffmjava.capstone.backend.mongo.CursorPagingRepository;
+import org.springframework.data.repository.NoRepositoryBean;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository of documents that belong to a stable. Services read and write through these methods
+ * only, so they never see another stable's data even when they are handed a foreign id; the
+ * compound indexes of the documents lead with the stable id.
+ */
+@NoRepositoryBean
+public interface StableScopedRepository<T, I> extends CursorPagingRepository<T, I> {
+
+    List<T> findAllByStableId(String stableId);
+
+    Optional<T> findByIdAndStableId(I id, String stableId);
+
+    boolean existsByIdAndStableId(I id, String stableId);
+
+    void deleteByIdAndStableId(I id, String stableId);
+}
@@ -0,0 +1,7 @@
+package de.ffmjava.capstone.backend.stock;
+
+public class InsufficientStockException extends RuntimeException {
+    public InsufficientStockException(String message) {
+        super(message);
+    }
+}
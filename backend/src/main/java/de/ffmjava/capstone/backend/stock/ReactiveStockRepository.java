@@ -0,0 +1,9 @@
+package de.ffmjava.capstone.backend.stock;
+
+import de.ffmjava.capstone.backend.stables.ReactiveStableScopedRepository;
+import de.ffmjava.capstone.backend.stock.model.StockItem;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ReactiveStockRepository extends ReactiveStableScopedRepository<StockItem, String> {
+}
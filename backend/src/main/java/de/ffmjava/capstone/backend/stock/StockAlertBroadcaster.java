@@ -0,0 +1,66 @@
+package de.ffmjava.capstone.backend.stock;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the Server-Sent Events connections of this instance and pushes alert events to those of
+ * the stable the alert belongs to. Connections that fail on send are dropped; a periodic comment
+ * line detects dead clients and keeps proxies from closing idle connections.
+ */
+@Slf4j
+@Component
+public class StockAlertBroadcaster {
+
+    private final Map<SseEmitter, String> emitters = new ConcurrentHashMap<>();
+    private final Duration timeout;
+
+    public StockAlertBroadcaster(@Value("${stablebuddy.stock-alerts.sse-timeout:PT30M}") Duration timeout) {
+        this.timeout = timeout;
+    }
+
+    public SseEmitter subscribe(String stableId) {
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        emitter.onCompletion(() -> emitters.remove(emitter));
+        emitter.onTimeout(() -> emitters.remove(emitter));
+        emitter.onError(error -> emitters.remove(emitter));
+        emitters.put(emitter, stableId);
+        return emitter;
+    }
+
+    public void send(SseEmitter emitter, String eventName, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(eventName).data(data));
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Dropping disconnected alert subscriber", e);
+            emitters.remove(emitter);
+        }
+    }
+
+    public void broadcast(String stableId, String eventName, Object data) {
+        emitters.forEach((emitter, subscribedStableId) -> {
+            if (subscribedStableId.equals(stableId)) {
+                send(emitter, eventName, data);
+            }
+        });
+    }
+
+    @Scheduled(fixedRateString = "${stablebuddy.stock-alerts.heartbeat-interval:PT30S}")
+    public void sendHeartbeat() {
+        for (SseEmitter emitter : emitters.keySet()) {
+            try {
+                emitter.send(SseEmitter.event().comment("heartbeat"));
+            } catch (IOException | IllegalStateException e) {
+                emitters.remove(emitter);
+            }
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package de.ffmjava.capstone.backend.stock;
+
+import de.ffmjava.capstone.backend.stock.model.StockAlert;
+import de.ffmjava.capstone.backend.stock.model.StockAlertThreshold;
+import de.ffmjava.capstone.backend.stock.model.StockForecast;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static de.ffmjava.capstone.backend.stables.StableContext.STABLE_ID_FIELD;
+
+/**
+ * Raises and clears low-stock alerts. Thresholds are evaluated against the forecasts of a
+ * {@link StockForecastsUpdatedEvent}, i.e. only for the stock items touched by a mutation or by the
+ * nightly subtraction. Alerts are pushed to the browsers of the stable only when they are raised
+ * or cleared.
+ */
+@Service
+public class StockAlertService {
+
+    static final String ALERT_RAISED_EVENT = "alert-raised";
+    static final String ALERT_CLEARED_EVENT = "alert-cleared";
+
+    private final MongoTemplate mongoTemplate;
+    private final StockRepository stockRepository;
+    private final StockAlertBroadcaster broadcaster;
+    private final Clock clock;
+
+    @Autowired
+    public StockAlertService(MongoTemplate mongoTemplate, StockRepository stockRepository,
+                             StockAlertBroadcaster broadcaster) {
+        this(mongoTemplate, stockRepository, broadcaster, Clock.systemUTC());
+    }
+
+    StockAlertService(MongoTemplate mongoTemplate, StockRepository stockRepository,
+                      StockAlertBroadcaster broadcaster, Clock clock) {
+        this.mongoTemplate = mongoTemplate;
+        this.stockRepository = stockRepository;
+        this.broadcaster = broadcaster;
+        this.clock = clock;
+    }
+
+    public List<StockAlert> getAlerts(String stableId) {
+        return mongoTemplate.find(Query.query(Criteria.where(STABLE_ID_FIELD).is(stableId)), StockAlert.class);
+    }
+
+    /**
+     * Opens an event stream that starts with the currently active alerts of the stable.
+     */
+    public SseEmitter subscribe(String stableId) {
+        SseEmitter emitter = broadcaster.subscribe(stableId);
+        getAlerts(stableId).forEach(alert -> broadcaster.send(emitter, ALERT_RAISED_EVENT, alert));
+        return emitter;
+    }
+
+    public Optional<StockAlertThreshold> getThreshold(String stableId, String stockItemId) {
+        if (!stockRepository.existsByIdAndStableId(stockItemId, stableId)) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(mongoTemplate.findById(stockItemId, StockAlertThreshold.class));
+    }
+
+    public StockAlertThreshold setThreshold(String stableId, String stockItemId, StockAlertThreshold threshold)
+            throws IllegalArgumentException {
+        if (!stockRepository.existsByIdAndStableId(stockItemId, stableId)) {
+            throw new IllegalArgumentException("Kein Eintrag für die gegebene ID gefunden");
+        }
+        StockAlertThreshold savedThreshold = mongoTemplate.save(threshold.withId(stockItemId));
+        evaluateStored(stockItemId);
+        return savedThreshold;
+    }
+
+    public void deleteThreshold(String stableId, String stockItemId) throws IllegalArgumentException {
+        if (!stockRepository.existsByIdAndStableId(stockItemId, stableId)
+                || mongoTemplate.findAndRemove(Query.query(Criteria.where("id").is(stockItemId)),
+                StockAlertThreshold.class) == null) {
+            throw new IllegalArgumentException("Kein Eintrag für die gegebene ID gefunden");
+        }
+        evaluateStored(stockItemId);
+    }
+
+    @EventListener
+    public void onForecastsUpdated(StockForecastsUpdatedEvent event) {
+        evaluate(event.forecasts());
+        if (!event.removedStockItemIds().isEmpty()) {
+            Query ofRemovedItems = Query.query(Criteria.where("id").in(event.removedStockItemIds()));
+            mongoTemplate.remove(ofRemovedItems, StockAlertThreshold.class);
+            mongoTemplate.findAllAndRemove(ofRemovedItems, StockAlert.class)
+                    .forEach(alert -> broadcaster.broadcast(alert.stableId(), ALERT_CLEARED_EVENT, alert));
+        }
+    }
+
+    void evaluate(List<StockForecast> forecasts) {
+        if (forecasts.isEmpty()) {
+            return;
+        }
+        Query byIds = Query.query(Criteria.where("id").in(forecasts.stream().map(StockForecast::id).toList()));
+        Map<String, StockAlertThreshold> thresholds = mongoTemplate.find(byIds, StockAlertThreshold.class)
+                .stream()
+                .collect(Collectors.toMap(StockAlertThreshold::id, Function.identity()));
+        Map<String, StockAlert> activeAlerts = mongoTemplate.find(byIds, StockAlert.class)
+                .stream()
+                .collect(Collectors.toMap(StockAlert::id, Function.identity()));
+        for (StockForecast forecast : forecasts) {
+            StockAlert.Reason reason = check(thresholds.get(forecast.id()), forecast);
+            StockAlert activeAlert = activeAlerts.get(forecast.id());
+            if (reason != null && (activeAlert == null || activeAlert.reason() != reason)) {
+                StockAlert alert = mongoTemplate.save(new StockAlert(forecast.id(), reason,
+                        forecast.amountInStock(), forecast.daysRemaining(), clock.instant(), forecast.stableId()));
+                broadcaster.broadcast(alert.stableId(), ALERT_RAISED_EVENT, alert);
+            } else if (reason == null && activeAlert != null) {
+                mongoTemplate.remove(activeAlert);
+                broadcaster.broadcast(activeAlert.stableId(), ALERT_CLEARED_EVENT, activeAlert);
+            }
+        }
+    }
+
+    static StockAlert.Reason check(StockAlertThreshold threshold, StockForecast forecast) {
+        if (threshold == null) {
+            return null;
+        }
+        if (isBelow(forecast.amountInStock(), threshold.minAmountInStock())) {
+            return StockAlert.Reason.MIN_AMOUNT_IN_STOCK;
+        }
+        if (isBelow(forecast.daysRemaining(), threshold.minDaysOfCover())) {
+            return StockAlert.Reason.MIN_DAYS_OF_COVER;
+        }
+        return null;
+    }
+
+    private void evaluateStored(String stockItemId) {
+        StockForecast forecast = mongoTemplate.findById(stockItemId, StockForecast.class);
+        if (forecast != null) {
+            evaluate(List.of(forecast));
+        }
+    }
+
+    private static boolean isBelow(BigDecimal value, BigDecimal minimum) {
+        return value != null && minimum != null && value.compareTo(minimum) < 0;
+    }
+}
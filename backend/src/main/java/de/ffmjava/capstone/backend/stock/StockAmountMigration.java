@@ -0,0 +1,77 @@
+package de.ffmjava.capstone.backend.stock;
+
+import de.ffmjava.capstone.backend.stock.model.StockItem;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Stock amounts and prices used to be stored as strings, which {@code $inc} and numeric range
+ * queries cannot work with. Converts any remaining string values to Decimal128 once at startup.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StockAmountMigration {
+
+    static final List<String> DECIMAL_FIELDS = List.of("amountInStock", "pricePerKilo");
+    private static final int BATCH_SIZE = 500;
+    private static final int BSON_STRING_TYPE = 2;
+
+    private final MongoTemplate mongoTemplate;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrate() {
+        try {
+            long migrated = migrateStringAmounts();
+            if (migrated > 0) {
+                log.info("Converted amounts of {} stock items to Decimal128", migrated);
+            }
+        } catch (DataAccessException e) {
+            log.warn("Could not migrate stock amounts to Decimal128", e);
+        }
+    }
+
+    long migrateStringAmounts() {
+        String collectionName = mongoTemplate.getCollectionName(StockItem.class);
+        Query stringAmounts = new Query(new Criteria().orOperator(DECIMAL_FIELDS.stream()
+                .map(field -> Criteria.where(field).type(BSON_STRING_TYPE))
+                .toArray(Criteria[]::new)))
+                .limit(BATCH_SIZE);
+        DECIMAL_FIELDS.forEach(field -> stringAmounts.fields().include(field));
+        long migrated = 0;
+        List<Document> batch;
+        do {
+            batch = mongoTemplate.find(stringAmounts, Document.class, collectionName);
+            if (batch.isEmpty()) {
+                break;
+            }
+            BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, collectionName);
+            for (Document stockItem : batch) {
+                Update update = new Update();
+                for (String field : DECIMAL_FIELDS) {
+                    if (stockItem.get(field) instanceof String value) {
+                        update.set(field, new Decimal128(new BigDecimal(value)));
+                    }
+                }
+                bulkOperations.updateOne(Query.query(Criteria.where("_id").is(stockItem.get("_id"))), update);
+            }
+            bulkOperations.execute();
+            migrated += batch.size();
+        } while (batch.size() == BATCH_SIZE);
+        return migrated;
+    }
+}
@@ -0,0 +1,9 @@
+package de.ffmjava.capstone.backend.stock;
+
+import java.util.Collection;
+
+/**
+ * Published by {@link StockLedger} whenever {@code amountInStock} of the given stock items changed.
+ */
+public record StockAmountsChangedEvent(Collection<String> stockItemIds) {
+}
@@ -1,47 +1,124 @@
 package de.ffmjava.capstone.backend.stock;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import de.ffmjava.capstone.backend.ChangeCounters;
+import de.ffmjava.capstone.backend.ETags;
 import de.ffmjava.capstone.backend.horses.model.AggregatedConsumption;
+import de.ffmjava.capstone.backend.model.CursorPage;
+import de.ffmjava.capstone.backend.model.FormError;
+import de.ffmjava.capstone.backend.model.ImportResult;
+import de.ffmjava.capstone.backend.mongo.InvalidPatchException;
+import de.ffmjava.capstone.backend.mongo.MergePatch;
+import de.ffmjava.capstone.backend.mongo.VersionRequiredException;
+import de.ffmjava.capstone.backend.stables.StableContext;
+import de.ffmjava.capstone.backend.stock.model.StockAlert;
+import de.ffmjava.capstone.backend.stock.model.StockAlertThreshold;
+import de.ffmjava.capstone.backend.stock.model.StockForecast;
 import de.ffmjava.capstone.backend.stock.model.StockItem;
+import de.ffmjava.capstone.backend.stock.model.StockLevel;
+import de.ffmjava.capstone.backend.stock.model.StockMovement;
 import de.ffmjava.capstone.backend.user.CustomApiErrorHandler;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.Errors;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequestMapping("/stock/")
 @RequiredArgsConstructor
 class StockController {
 
     private final StockService service;
+    private final StockMovementService movementService;
+    private final StockForecastService forecastService;
+    private final StockAlertService alertService;
+    private final ChangeCounters changeCounters;
+    private final StableContext stableContext;
 
     @GetMapping
-    public List<StockItem> getAllStockitems() {
-        return service.getAllStockItems();
+    public List<StockItem> getAllStockitems(ServletWebRequest request) {
+        String stableId = stableContext.currentStableId();
+        if (changeCounters.checkNotModified(request, stableId, ChangeCounters.Collection.STOCK)) {
+            return null;
+        }
+        return service.getAllStockItems(stableId);
+    }
+
+    @GetMapping(params = "limit")
+    public CursorPage<StockItem> getStockItemPage(@RequestParam int limit,
+                                                  @RequestParam(required = false) String cursor,
+                                                  @RequestParam(required = false) List<String> fields,
+                                                  ServletWebRequest request) {
+        String stableId = stableContext.currentStableId();
+        if (changeCounters.checkNotModified(request, stableId, ChangeCounters.Collection.STOCK)) {
+            return null;
+        }
+        try {
+            return service.getStockItemPage(stableId, cursor, limit, fields);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
     }
 
     @GetMapping("/consumption/")
-    public Map<String, AggregatedConsumption> getAggregatedConsumptions() {
-        return service.getAggregatedConsumptions();
+    public Map<String, AggregatedConsumption> getAggregatedConsumptions(ServletWebRequest request) {
+        String stableId = stableContext.currentStableId();
+        if (changeCounters.checkNotModified(request, stableId, ChangeCounters.Collection.CONSUMPTION)) {
+            return null;
+        }
+        return service.getAggregatedConsumptions(stableId);
+    }
+
+    @GetMapping("forecasts")
+    public Map<String, StockForecast> getForecasts() {
+        return forecastService.getForecasts(stableContext.currentStableId());
+    }
+
+    @GetMapping("alerts")
+    public List<StockAlert> getAlerts() {
+        return alertService.getAlerts(stableContext.currentStableId());
+    }
+
+    @GetMapping(value = "alerts/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamAlerts() {
+        return alertService.subscribe(stableContext.currentStableId());
     }
 
     @GetMapping("{id}")
-    public Optional<StockItem> getStockItemById(@PathVariable String id) {
-        return service.getStockItemById(id);
+    public Optional<StockItem> getStockItemById(@PathVariable String id, ServletWebRequest request) {
+        Optional<StockItem> stockItem = service.getStockItemById(stableContext.currentStableId(), id);
+        if (stockItem.map(StockItem::version)
+                .filter(version -> ETags.checkNotModified(request, ETags.of(version), -1))
+                .isPresent()) {
+            return null;
+        }
+        return stockItem;
     }
 
     @DeleteMapping("{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public void deleteStockItem(@PathVariable String id) {
         try {
-            service.deleteStockItem(id);
+            service.deleteStockItem(stableContext.currentStableId(), id);
         } catch (IllegalArgumentException e) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
         }
@@ -52,20 +129,130 @@ class StockController {
         ResponseEntity<Object> errorMessage = CustomApiErrorHandler.handlePossibleErrors(errors);
         if (errorMessage != null) return errorMessage;
         try {
-            return new ResponseEntity<>(service.addNewStockItem(newStockItem), HttpStatus.CREATED);
+            return new ResponseEntity<>(service.addNewStockItem(stableContext.currentStableId(), newStockItem),
+                    HttpStatus.CREATED);
         } catch (StockItemAlreadyExistsException e) {
             throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage());
         }
     }
 
     @PutMapping
-    public ResponseEntity<Object> updateStockItem(@Valid @RequestBody StockItem updatedStockItem, Errors errors) {
+    public ResponseEntity<Object> updateStockItem(@Valid @RequestBody StockItem updatedStockItem, Errors errors,
+                                                  @RequestHeader(value = HttpHeaders.IF_MATCH, required = false)
+                                                  String ifMatch) {
         ResponseEntity<Object> errorMessage = CustomApiErrorHandler.handlePossibleErrors(errors);
         if (errorMessage != null) return errorMessage;
-        if (service.updateStockItem(updatedStockItem)) {
-            return new ResponseEntity<>(updatedStockItem, HttpStatus.OK);
-        } else {
-            return new ResponseEntity<>(updatedStockItem, HttpStatus.CREATED);
+        Long expectedVersion = ETags.parseIfMatch(ifMatch);
+        if (expectedVersion != null) {
+            updatedStockItem = updatedStockItem.withVersion(expectedVersion);
+        }
+        try {
+            return ETags.toResponse(service.updateStockItem(stableContext.currentStableId(), updatedStockItem),
+                    StockItem::version);
+        } catch (OptimisticLockingFailureException e) {
+            throw ETags.versionConflict(e, ifMatch);
+        } catch (VersionRequiredException e) {
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_REQUIRED, e.getMessage());
+        }
+    }
+
+    @PatchMapping(path = "{id}", consumes = {MergePatch.MEDIA_TYPE, MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<Object> patchStockItem(@PathVariable String id, @RequestBody JsonNode patch,
+                                                 @RequestHeader(value = HttpHeaders.IF_MATCH, required = false)
+                                                 String ifMatch) {
+        try {
+            return service.patchStockItem(stableContext.currentStableId(), id, patch, ETags.parseIfMatch(ifMatch))
+                    .map(update -> ETags.toResponse(update, StockItem::version))
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+                            "Kein Eintrag für die gegebene ID gefunden"));
+        } catch (InvalidPatchException e) {
+            return new ResponseEntity<>(e.getFormError(), HttpStatus.BAD_REQUEST);
+        } catch (StockItemAlreadyExistsException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage());
+        } catch (OptimisticLockingFailureException e) {
+            throw ETags.versionConflict(e, ifMatch);
+        }
+    }
+
+    @PostMapping("{id}/movements")
+    public ResponseEntity<Object> addStockMovement(@PathVariable String id,
+                                                   @Valid @RequestBody StockMovement movement, Errors errors,
+                                                   @RequestParam(defaultValue = "false") boolean allowUnderflow) {
+        ResponseEntity<Object> errorMessage = CustomApiErrorHandler.handlePossibleErrors(errors);
+        if (errorMessage != null) return errorMessage;
+        try {
+            return movementService.applyMovement(stableContext.currentStableId(), id, movement, allowUnderflow)
+                    .<ResponseEntity<Object>>map(stockItem -> ResponseEntity.ok()
+                            .eTag(ETags.of(stockItem.version()))
+                            .body(stockItem))
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+                            "Kein Eintrag für die gegebene ID gefunden"));
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(new FormError(e.getMessage(), "amount"), HttpStatus.BAD_REQUEST);
+        } catch (InsufficientStockException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage());
+        }
+    }
+
+    @GetMapping("{id}/level")
+    public StockLevel getStockLevel(@PathVariable String id, @RequestParam(required = false) Instant at) {
+        return service.getStockLevel(stableContext.currentStableId(), id, at == null ? Instant.now() : at)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+                        "Kein Eintrag für die gegebene ID gefunden"));
+    }
+
+    @GetMapping("{id}/forecast")
+    public StockForecast getForecast(@PathVariable String id) {
+        return forecastService.getForecast(stableContext.currentStableId(), id)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+                        "Kein Eintrag für die gegebene ID gefunden"));
+    }
+
+    @GetMapping("{id}/alert-threshold")
+    public StockAlertThreshold getAlertThreshold(@PathVariable String id) {
+        return alertService.getThreshold(stableContext.currentStableId(), id)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+                        "Kein Eintrag für die gegebene ID gefunden"));
+    }
+
+    @PutMapping("{id}/alert-threshold")
+    public ResponseEntity<Object> setAlertThreshold(@PathVariable String id,
+                                                    @Valid @RequestBody StockAlertThreshold threshold, Errors errors) {
+        ResponseEntity<Object> errorMessage = CustomApiErrorHandler.handlePossibleErrors(errors);
+        if (errorMessage != null) return errorMessage;
+        try {
+            return ResponseEntity.ok(alertService.setThreshold(stableContext.currentStableId(), id, threshold));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
+        }
+    }
+
+    @DeleteMapping("{id}/alert-threshold")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void deleteAlertThreshold(@PathVariable String id) {
+        try {
+            alertService.deleteThreshold(stableContext.currentStableId(), id);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
+        }
+    }
+
+    @GetMapping(value = "export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportStockItems() {
+        String stableId = stableContext.currentStableId();
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename("stock.ndjson").build().toString())
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(outputStream -> service.exportStockItems(stableId, outputStream));
+    }
+
+    @PostMapping(value = "import", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<ImportResult> importStockItems(InputStream inputStream) throws IOException {
+        ImportResult result = service.importStockItems(stableContext.currentStableId(), inputStream);
+        if (result.errors().isEmpty()) {
+            return new ResponseEntity<>(result, HttpStatus.CREATED);
         }
+        return new ResponseEntity<>(result, HttpStatus.MULTI_STATUS);
     }
 }
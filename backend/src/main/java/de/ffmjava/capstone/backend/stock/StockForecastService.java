@@ -0,0 +1,189 @@
+package de.ffmjava.capstone.backend.stock;
+
+import de.ffmjava.capstone.backend.horses.ConsumptionTotalsChangedEvent;
+import de.ffmjava.capstone.backend.horses.model.ConsumptionTotal;
+import de.ffmjava.capstone.backend.stock.model.StockForecast;
+import de.ffmjava.capstone.backend.stock.model.StockItem;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static de.ffmjava.capstone.backend.stables.StableContext.STABLE_ID_FIELD;
+
+/**
+ * Keeps a depletion forecast per stock item in the {@code stock_forecasts} collection. A forecast
+ * is recomputed only for the stock items named in a {@link StockAmountsChangedEvent} or
+ * {@link ConsumptionTotalsChangedEvent}, from the item's amount and its entry in the consumption
+ * totals, so reading all forecasts is a single query no matter how many horses there are.
+ * <p>
+ * The nightly stock subtraction changes every consumed amount once a day, which also moves the
+ * forecasts forward. Every write is published as a {@link StockForecastsUpdatedEvent}. Forecasts
+ * carry the stable of their stock item.
+ */
+@Slf4j
+@Service
+public class StockForecastService {
+
+    private static final String AMOUNT_FIELD = "amountInStock";
+    private static final int DAYS_SCALE = 1;
+
+    private final MongoTemplate mongoTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Period reorderLeadTime;
+    private final Clock clock;
+
+    @Autowired
+    public StockForecastService(MongoTemplate mongoTemplate, ApplicationEventPublisher eventPublisher,
+                                @Value("${stablebuddy.stock-forecast.reorder-lead-time:P14D}") Period reorderLeadTime) {
+        this(mongoTemplate, eventPublisher, reorderLeadTime, Clock.systemDefaultZone());
+    }
+
+    StockForecastService(MongoTemplate mongoTemplate, ApplicationEventPublisher eventPublisher,
+                         Period reorderLeadTime, Clock clock) {
+        this.mongoTemplate = mongoTemplate;
+        this.eventPublisher = eventPublisher;
+        this.reorderLeadTime = reorderLeadTime;
+        this.clock = clock;
+    }
+
+    public Map<String, StockForecast> getForecasts(String stableId) {
+        return mongoTemplate.find(Query.query(Criteria.where(STABLE_ID_FIELD).is(stableId)), StockForecast.class)
+                .stream()
+                .collect(Collectors.toMap(StockForecast::id, forecast -> forecast));
+    }
+
+    public Optional<StockForecast> getForecast(String stableId, String stockItemId) {
+        return Optional.ofNullable(mongoTemplate.findOne(Query.query(Criteria.where("id").is(stockItemId)
+                .and(STABLE_ID_FIELD).is(stableId)), StockForecast.class));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStockAmountsChanged(StockAmountsChangedEvent event) {
+        update(event.stockItemIds());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onConsumptionTotalsChanged(ConsumptionTotalsChangedEvent event) {
+        if (event.rebuilt()) {
+            rebuild(event.stableId());
+        } else {
+            update(event.stockItemIds());
+        }
+    }
+
+    /**
+     * Recomputes the forecasts of the given stock items and drops those of deleted stock items.
+     */
+    public void update(Collection<String> stockItemIds) {
+        if (stockItemIds.isEmpty()) {
+            return;
+        }
+        Criteria byIds = Criteria.where("id").in(stockItemIds);
+        List<StockItem> stockItems = mongoTemplate.find(withAmountOnly(Query.query(byIds)), StockItem.class);
+        List<StockForecast> forecasts = write(stockItems,
+                mongoTemplate.find(Query.query(byIds), ConsumptionTotal.class));
+        Set<String> deletedIds = new HashSet<>(stockItemIds);
+        stockItems.forEach(stockItem -> deletedIds.remove(stockItem.id()));
+        if (!deletedIds.isEmpty()) {
+            mongoTemplate.remove(Query.query(Criteria.where("id").in(deletedIds)), StockForecast.class);
+        }
+        eventPublisher.publishEvent(new StockForecastsUpdatedEvent(forecasts, deletedIds));
+    }
+
+    /**
+     * Recomputes the forecasts of one stable, e.g. after its consumption totals were rebuilt from the horses.
+     */
+    public void rebuild(String stableId) {
+        rebuild(Criteria.where(STABLE_ID_FIELD).is(stableId));
+    }
+
+    /**
+     * Recomputes the forecasts of all stables.
+     */
+    public void rebuild() {
+        rebuild(new Criteria());
+    }
+
+    private void rebuild(Criteria scope) {
+        List<StockItem> stockItems = mongoTemplate.find(withAmountOnly(Query.query(scope)), StockItem.class);
+        List<StockForecast> forecasts = write(stockItems, mongoTemplate.find(Query.query(scope),
+                ConsumptionTotal.class));
+        Query ofDeletedItems = Query.query(new Criteria().andOperator(scope,
+                Criteria.where("id").nin(stockItems.stream().map(StockItem::id).toList())));
+        List<String> deletedIds = mongoTemplate.findDistinct(ofDeletedItems, "id", StockForecast.class, String.class);
+        if (!deletedIds.isEmpty()) {
+            mongoTemplate.remove(ofDeletedItems, StockForecast.class);
+        }
+        eventPublisher.publishEvent(new StockForecastsUpdatedEvent(forecasts, deletedIds));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        try {
+            if (!mongoTemplate.collectionExists(StockForecast.class)) {
+                rebuild();
+            }
+        } catch (DataAccessException e) {
+            log.warn("Could not initialize stock forecasts, waiting for the next change", e);
+        }
+    }
+
+    StockForecast forecast(StockItem stockItem, ConsumptionTotal total, LocalDate today) {
+        BigDecimal amount = Objects.requireNonNullElse(stockItem.amountInStock(), BigDecimal.ZERO);
+        BigDecimal dailyConsumption = total == null || total.horseCount() <= 0
+                ? BigDecimal.ZERO
+                : Objects.requireNonNullElse(total.dailyAggregatedConsumption(), BigDecimal.ZERO);
+        if (dailyConsumption.signum() <= 0) {
+            return new StockForecast(stockItem.id(), amount, BigDecimal.ZERO, null, null, null,
+                    stockItem.stableId());
+        }
+        BigDecimal daysRemaining = amount.max(BigDecimal.ZERO).divide(dailyConsumption, DAYS_SCALE, RoundingMode.DOWN);
+        LocalDate projectedEmptyDate = today.plusDays(daysRemaining.longValue());
+        return new StockForecast(stockItem.id(), amount, dailyConsumption, daysRemaining, projectedEmptyDate,
+                projectedEmptyDate.minus(reorderLeadTime), stockItem.stableId());
+    }
+
+    private List<StockForecast> write(List<StockItem> stockItems, List<ConsumptionTotal> totals) {
+        if (stockItems.isEmpty()) {
+            return List.of();
+        }
+        Map<String, ConsumptionTotal> totalsById = totals.stream()
+                .collect(Collectors.toMap(ConsumptionTotal::id, total -> total));
+        LocalDate today = LocalDate.now(clock);
+        List<StockForecast> forecasts = stockItems.stream()
+                .map(stockItem -> forecast(stockItem, totalsById.get(stockItem.id()), today))
+                .toList();
+        BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED,
+                StockForecast.class);
+        for (StockForecast forecast : forecasts) {
+            bulkOperations.replaceOne(Query.query(Criteria.where("id").is(forecast.id())), forecast,
+                    FindAndReplaceOptions.options().upsert());
+        }
+        bulkOperations.execute();
+        return forecasts;
+    }
+
+    private static Query withAmountOnly(Query query) {
+        query.fields().include(AMOUNT_FIELD).include(STABLE_ID_FIELD);
+        return query;
+    }
+}
@@ -0,0 +1,13 @@
+package de.ffmjava.capstone.backend.stock;
+
+import de.ffmjava.capstone.backend.stock.model.StockForecast;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Published by {@link StockForecastService} with the forecasts it just wrote and the ids of stock
+ * items whose forecast was dropped because the stock item no longer exists.
+ */
+public record StockForecastsUpdatedEvent(List<StockForecast> forecasts, Collection<String> removedStockItemIds) {
+}
@@ -0,0 +1,82 @@
+package de.ffmjava.capstone.backend.stock;
+
+import de.ffmjava.capstone.backend.ChangeCounters;
+import de.ffmjava.capstone.backend.ETags;
+import de.ffmjava.capstone.backend.ReactiveHandlers;
+import de.ffmjava.capstone.backend.stables.ReactiveStableContext;
+import de.ffmjava.capstone.backend.stock.model.StockItem;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+import static de.ffmjava.capstone.backend.ReactiveHandlers.blocking;
+
+/**
+ * WebFlux counterpart of the stock item endpoints of {@link StockController} for the {@code reactive}
+ * profile. Reads go to {@link ReactiveStockRepository}; writes go through {@link StockService} off
+ * the event loop.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequiredArgsConstructor
+public class StockHandler {
+
+    private final StockService service;
+    private final ReactiveStockRepository repository;
+    private final ChangeCounters changeCounters;
+    private final ReactiveStableContext stableContext;
+    private final ReactiveHandlers handlers;
+
+    public Mono<ServerResponse> getAllStockItems(ServerRequest request) {
+        return stableContext.currentStableId()
+                .flatMap(stableId -> ReactiveHandlers.checkNotModified(request,
+                        changeCounters.tag(stableId, ChangeCounters.Collection.STOCK),
+                        ok -> ok.body(repository.findAllByStableId(stableId), StockItem.class)));
+    }
+
+    public Mono<ServerResponse> getStockItemById(ServerRequest request) {
+        String id = request.pathVariable("id");
+        return stableContext.currentStableId()
+                .flatMap(stableId -> repository.findByIdAndStableId(id, stableId))
+                .flatMap(stockItem -> stockItem.version() == null
+                        ? ServerResponse.ok().bodyValue(stockItem)
+                        : ReactiveHandlers.checkNotModified(request, ETags.of(stockItem.version()),
+                        ok -> ok.bodyValue(stockItem)))
+                .switchIfEmpty(Mono.defer(() -> ServerResponse.ok().build()));
+    }
+
+    public Mono<ServerResponse> addNewStockItem(ServerRequest request) {
+        return handlers.withValidBody(request, StockItem.class, newStockItem -> stableContext.currentStableId()
+                .flatMap(stableId -> blocking(() -> service.addNewStockItem(stableId, newStockItem)))
+                .onErrorMap(StockItemAlreadyExistsException.class,
+                        e -> new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage()))
+                .flatMap(createdStockItem -> ServerResponse.status(HttpStatus.CREATED).bodyValue(createdStockItem)));
+    }
+
+    public Mono<ServerResponse> updateStockItem(ServerRequest request) {
+        return handlers.withValidBody(request, StockItem.class, updatedStockItem -> {
+            Long expectedVersion = ReactiveHandlers.expectedVersion(request);
+            StockItem stockItem = expectedVersion == null
+                    ? updatedStockItem
+                    : updatedStockItem.withVersion(expectedVersion);
+            return stableContext.currentStableId()
+                    .flatMap(stableId -> blocking(() -> service.updateStockItem(stableId, stockItem)))
+                    .onErrorMap(e -> ReactiveHandlers.versionedWriteError(e, request))
+                    .flatMap(update -> ReactiveHandlers.toResponse(ETags.toResponse(update, StockItem::version)));
+        });
+    }
+
+    public Mono<ServerResponse> deleteStockItem(ServerRequest request) {
+        String id = request.pathVariable("id");
+        return stableContext.currentStableId()
+                .flatMap(stableId -> blocking(() -> service.deleteStockItem(stableId, id)))
+                .onErrorMap(IllegalArgumentException.class,
+                        e -> new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage()))
+                .flatMap(deleted -> ServerResponse.noContent().build());
+    }
+}
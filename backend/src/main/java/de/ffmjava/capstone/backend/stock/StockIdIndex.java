@@ -0,0 +1,111 @@
+package de.ffmjava.capstone.backend.stock;
+
+import de.ffmjava.capstone.backend.stock.model.StockItem;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory sets of the stock item ids of each stable. A stable's set is loaded with one id-only
+ * query on first use and kept until {@link StockService} changes that stable's stock or the
+ * configured time to live has passed, so validating consumption lists normally costs no database
+ * round-trip at all, and a consumption list can never reference the stock of another stable.
+ * The sets are snapshots of this node only, so ids missing from a set are looked up once more with
+ * a single {@code $in} query before they are reported; a hit drops the stale set.
+ * <p>
+ * Every stable has a generation that {@link #invalidate} bumps. A loaded set is only stored if the
+ * generation of its stable did not move during the load, so a set read before a change is never
+ * kept after it. Bump, drop and store go through {@link Map#compute} and are atomic per stable.
+ */
+@Service
+public class StockIdIndex {
+
+    private final StockRepository stockRepository;
+    private final Duration timeToLive;
+    private final Clock clock;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private record Snapshot(Set<String> ids, Instant loadedAt) {
+    }
+
+    /**
+     * @param snapshot the loaded ids, null until loaded and after an invalidation
+     */
+    private record Entry(long generation, Snapshot snapshot) {
+    }
+
+    @Autowired
+    public StockIdIndex(StockRepository stockRepository,
+                        @Value("${stablebuddy.stock-id-index.time-to-live:PT5M}") Duration timeToLive) {
+        this(stockRepository, timeToLive, Clock.systemUTC());
+    }
+
+    StockIdIndex(StockRepository stockRepository, Duration timeToLive, Clock clock) {
+        this.stockRepository = stockRepository;
+        this.timeToLive = timeToLive;
+        this.clock = clock;
+    }
+
+    public boolean existAll(String stableId, Collection<String> ids) {
+        return findMissing(stableId, ids).isEmpty();
+    }
+
+    public Set<String> findMissing(String stableId, Collection<String> ids) throws IllegalArgumentException {
+        if (ids.stream().anyMatch(Objects::isNull)) {
+            throw new IllegalArgumentException("IDs of consumptionItems must not be null");
+        }
+        if (ids.isEmpty()) {
+            return Set.of();
+        }
+        Set<String> index = warmIndex(stableId);
+        Set<String> missing = ids.stream()
+                .filter(id -> !index.contains(id))
+                .collect(Collectors.toSet());
+        if (missing.isEmpty()) {
+            return missing;
+        }
+        List<StockItem> found = stockRepository.findIdsIn(stableId, missing);
+        if (!found.isEmpty()) {
+            invalidate(stableId);
+            found.forEach(stockItem -> missing.remove(stockItem.id()));
+        }
+        return missing;
+    }
+
+    public void invalidate(String stableId) {
+        entries.compute(stableId, (key, entry) -> new Entry(generationOf(entry) + 1, null));
+    }
+
+    private Set<String> warmIndex(String stableId) {
+        Entry entry = entries.get(stableId);
+        Snapshot snapshot = entry == null ? null : entry.snapshot();
+        if (snapshot != null && snapshot.loadedAt().plus(timeToLive).isAfter(clock.instant())) {
+            return snapshot.ids();
+        }
+        long loadedGeneration = generationOf(entry);
+        Instant loadStart = clock.instant();
+        Set<String> index = stockRepository.findAllIds(stableId)
+                .stream()
+                .map(StockItem::id)
+                .collect(Collectors.toUnmodifiableSet());
+        entries.compute(stableId, (key, current) -> generationOf(current) == loadedGeneration
+                ? new Entry(loadedGeneration, new Snapshot(index, loadStart))
+                : current);
+        return index;
+    }
+
+    private static long generationOf(Entry entry) {
+        return entry == null ? 0 : entry.generation();
+    }
+}
@@ -0,0 +1,7 @@
+package de.ffmjava.capstone.backend.stock;
+
+/**
+ * Published by {@link StockService} after the name of a stock item changed.
+ */
+public record StockItemRenamedEvent(String stableId, String stockItemId, String name) {
+}
@@ -0,0 +1,224 @@
+package de.ffmjava.capstone.backend.stock;
+
+import de.ffmjava.capstone.backend.stock.model.StockItem;
+import de.ffmjava.capstone.backend.stock.model.StockLedgerEntry;
+import de.ffmjava.capstone.backend.stock.model.StockLevel;
+import de.ffmjava.capstone.backend.stock.model.StockSnapshot;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Append-only history of every change to {@code amountInStock}, plus snapshots of all stock levels
+ * that are taken periodically from the ledger itself.
+ * <p>
+ * The stock level at a past instant is the latest snapshot before it plus the ledger entries
+ * between the two, so a point-in-time read replays at most one snapshot interval no matter how
+ * long the ledger gets. Every recorded change is published as a {@link StockAmountsChangedEvent}.
+ */
+@Slf4j
+@Service
+public class StockLedger {
+
+    static final String STOCK_ITEM_ID_FIELD = "stockItemId";
+    static final String TIMESTAMP_FIELD = "timestamp";
+    static final String DELTA_FIELD = "delta";
+    private static final String TOTAL_FIELD = "total";
+    private static final String ENTRIES_FIELD = "entries";
+
+    private final MongoTemplate mongoTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Duration snapshotLag;
+    private final Clock clock;
+
+    @Autowired
+    public StockLedger(MongoTemplate mongoTemplate, ApplicationEventPublisher eventPublisher,
+                       @Value("${stablebuddy.stock-ledger.snapshot-lag:PT5M}") Duration snapshotLag) {
+        this(mongoTemplate, eventPublisher, snapshotLag, Clock.systemUTC());
+    }
+
+    StockLedger(MongoTemplate mongoTemplate, ApplicationEventPublisher eventPublisher, Duration snapshotLag,
+                Clock clock) {
+        this.mongoTemplate = mongoTemplate;
+        this.eventPublisher = eventPublisher;
+        this.snapshotLag = snapshotLag;
+        this.clock = clock;
+    }
+
+    public void record(String stockItemId, BigDecimal delta, StockLedgerEntry.Source source) {
+        if (delta == null || delta.signum() == 0) {
+            return;
+        }
+        mongoTemplate.insert(new StockLedgerEntry(UUID.randomUUID().toString(), stockItemId, clock.instant(),
+                delta, source));
+        eventPublisher.publishEvent(new StockAmountsChangedEvent(List.of(stockItemId)));
+    }
+
+    /**
+     * Records the amounts of newly created stock items with one bulk insert.
+     */
+    public void recordInitial(Collection<StockItem> stockItems) {
+        Instant now = clock.instant();
+        List<StockLedgerEntry> entries = stockItems.stream()
+                .filter(stockItem -> stockItem.amountInStock() != null && stockItem.amountInStock().signum() != 0)
+                .map(stockItem -> new StockLedgerEntry(UUID.randomUUID().toString(), stockItem.id(), now,
+                        stockItem.amountInStock(), StockLedgerEntry.Source.INITIAL))
+                .toList();
+        if (!entries.isEmpty()) {
+            mongoTemplate.insert(entries, StockLedgerEntry.class);
+            eventPublisher.publishEvent(new StockAmountsChangedEvent(entries.stream()
+                    .map(StockLedgerEntry::stockItemId)
+                    .toList()));
+        }
+    }
+
+    /**
+     * Records the nightly subtraction of one day. Entry ids are derived from the day, so a run that
+     * takes over an interrupted one does not book a stock item twice.
+     */
+    public void recordSubtraction(String dayKey, Map<String, BigDecimal> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        Instant now = clock.instant();
+        BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED,
+                StockLedgerEntry.class);
+        deltas.forEach((stockItemId, delta) -> bulkOperations.upsert(
+                Query.query(Criteria.where("id").is(dayKey + ":" + stockItemId)),
+                new Update()
+                        .setOnInsert(STOCK_ITEM_ID_FIELD, stockItemId)
+                        .setOnInsert(TIMESTAMP_FIELD, now)
+                        .setOnInsert(DELTA_FIELD, new Decimal128(delta))
+                        .setOnInsert("source", StockLedgerEntry.Source.SUBTRACTION)));
+        bulkOperations.execute();
+        eventPublisher.publishEvent(new StockAmountsChangedEvent(List.copyOf(deltas.keySet())));
+    }
+
+    /**
+     * @return the stock level at {@code at}, empty if the ledger knows nothing about the stock item up to then
+     */
+    public Optional<StockLevel> levelAt(String stockItemId, Instant at) {
+        StockSnapshot snapshot = mongoTemplate.findOne(
+                Query.query(Criteria.where(STOCK_ITEM_ID_FIELD).is(stockItemId).and(TIMESTAMP_FIELD).lte(at))
+                        .with(Sort.by(Sort.Direction.DESC, TIMESTAMP_FIELD))
+                        .limit(1),
+                StockSnapshot.class);
+        Criteria tail = Criteria.where(STOCK_ITEM_ID_FIELD).is(stockItemId);
+        if (snapshot == null) {
+            tail.and(TIMESTAMP_FIELD).lte(at);
+        } else {
+            tail.and(TIMESTAMP_FIELD).gt(snapshot.timestamp()).lte(at);
+        }
+        Document replayed = mongoTemplate.aggregate(Aggregation.newAggregation(StockLedgerEntry.class,
+                        Aggregation.match(tail),
+                        Aggregation.group().sum(DELTA_FIELD).as(TOTAL_FIELD).count().as(ENTRIES_FIELD)),
+                Document.class).getUniqueMappedResult();
+        if (snapshot == null && replayed == null) {
+            return Optional.empty();
+        }
+        BigDecimal amount = snapshot == null ? BigDecimal.ZERO : snapshot.amountInStock();
+        if (replayed != null) {
+            amount = amount.add(toBigDecimal(replayed.get(TOTAL_FIELD)));
+        }
+        return Optional.of(new StockLevel(stockItemId, at, amount));
+    }
+
+    @Scheduled(cron = "${stablebuddy.stock-ledger.snapshot-cron:0 30 0 * * *}")
+    public void runSnapshot() {
+        takeSnapshot(clock.instant().minus(snapshotLag));
+    }
+
+    /**
+     * Folds the ledger entries since the previous snapshot into a new snapshot of every existing
+     * stock item. Snapshots are taken for all stock items at the same instant, so the previous
+     * snapshot is a single query by timestamp.
+     *
+     * @return the number of written snapshots
+     */
+    public int takeSnapshot(Instant at) {
+        StockSnapshot latest = mongoTemplate.findOne(new Query()
+                        .with(Sort.by(Sort.Direction.DESC, TIMESTAMP_FIELD))
+                        .limit(1),
+                StockSnapshot.class);
+        if (latest != null && !latest.timestamp().isBefore(at)) {
+            return 0;
+        }
+        Map<String, BigDecimal> amounts = new HashMap<>();
+        Criteria tail = Criteria.where(TIMESTAMP_FIELD).lte(at);
+        if (latest != null) {
+            mongoTemplate.find(Query.query(Criteria.where(TIMESTAMP_FIELD).is(latest.timestamp())),
+                            StockSnapshot.class)
+                    .forEach(snapshot -> amounts.put(snapshot.stockItemId(), snapshot.amountInStock()));
+            tail = Criteria.where(TIMESTAMP_FIELD).gt(latest.timestamp()).lte(at);
+        }
+        mongoTemplate.aggregate(Aggregation.newAggregation(StockLedgerEntry.class,
+                        Aggregation.match(tail),
+                        Aggregation.group(STOCK_ITEM_ID_FIELD).sum(DELTA_FIELD).as(TOTAL_FIELD)),
+                Document.class).forEach(total -> amounts.merge(total.getString("_id"),
+                toBigDecimal(total.get(TOTAL_FIELD)), BigDecimal::add));
+        amounts.keySet().retainAll(mongoTemplate.findDistinct(new Query(), "id", StockItem.class, String.class));
+        writeSnapshots(amounts, at);
+        return amounts.size();
+    }
+
+    /**
+     * Takes a baseline snapshot of the current stock levels on the first start with an empty ledger.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        try {
+            if (!mongoTemplate.exists(new Query(), StockSnapshot.class)
+                    && !mongoTemplate.exists(new Query(), StockLedgerEntry.class)) {
+                Map<String, BigDecimal> amounts = new HashMap<>();
+                mongoTemplate.findAll(StockItem.class).forEach(stockItem -> amounts.put(stockItem.id(),
+                        Objects.requireNonNullElse(stockItem.amountInStock(), BigDecimal.ZERO)));
+                writeSnapshots(amounts, clock.instant());
+            }
+        } catch (DataAccessException e) {
+            log.warn("Could not initialize the stock ledger", e);
+        }
+    }
+
+    private void writeSnapshots(Map<String, BigDecimal> amounts, Instant at) {
+        if (amounts.isEmpty()) {
+            return;
+        }
+        BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED,
+                StockSnapshot.class);
+        amounts.forEach((stockItemId, amount) -> bulkOperations.upsert(
+                Query.query(Criteria.where("id").is(stockItemId + "@" + at.toEpochMilli())),
+                new Update()
+                        .setOnInsert(STOCK_ITEM_ID_FIELD, stockItemId)
+                        .setOnInsert(TIMESTAMP_FIELD, at)
+                        .setOnInsert("amountInStock", new Decimal128(amount))));
+        bulkOperations.execute();
+    }
+
+    private static BigDecimal toBigDecimal(Object value) {
+        if (value instanceof Decimal128 decimal) {
+            return decimal.bigDecimalValue();
+        }
+        return value == null ? BigDecimal.ZERO : new BigDecimal(value.toString());
+    }
+}
@@ -0,0 +1,107 @@
+package de.ffmjava.capstone.backend.stock;
+
+import de.ffmjava.capstone.backend.ChangeCounters;
+import de.ffmjava.capstone.backend.mongo.MongoTransactions;
+import de.ffmjava.capstone.backend.stock.model.StockItem;
+import de.ffmjava.capstone.backend.stock.model.StockLedgerEntry;
+import de.ffmjava.capstone.backend.stock.model.StockMovement;
+import lombok.RequiredArgsConstructor;
+import org.bson.types.Decimal128;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+import static de.ffmjava.capstone.backend.CacheConfig.STOCK_ITEM_CACHE;
+import static de.ffmjava.capstone.backend.CacheConfig.STOCK_ITEM_KEY_GENERATOR;
+import static de.ffmjava.capstone.backend.stables.StableContext.STABLE_ID_FIELD;
+
+/**
+ * Books deliveries, consumption and corrections as a relative {@code $inc} on the stored amount, so concurrent
+ * movements never overwrite each other and never need the current amount first.
+ */
+@Service
+@RequiredArgsConstructor
+public class StockMovementService {
+
+    static final String ID_FIELD = "id";
+    static final String AMOUNT_FIELD = "amountInStock";
+    static final String VERSION_FIELD = "version";
+
+    private final MongoTemplate mongoTemplate;
+    private final StockRepository stockRepository;
+    private final StockLedger stockLedger;
+    private final MongoTransactions mongoTransactions;
+    private final ChangeCounters changeCounters;
+
+    /**
+     * @param allowUnderflow {@code false} to reject a movement that would take the amount below 0
+     * @return the stock item after the movement, empty if there is no stock item with this id
+     * @throws InsufficientStockException if the movement would take the amount below 0
+     */
+    @CacheEvict(value = STOCK_ITEM_CACHE, keyGenerator = STOCK_ITEM_KEY_GENERATOR)
+    public Optional<StockItem> applyMovement(String stableId, String id, StockMovement movement,
+                                             boolean allowUnderflow)
+            throws IllegalArgumentException, InsufficientStockException {
+        BigDecimal delta = toDelta(movement);
+        Criteria criteria = Criteria.where(ID_FIELD).is(id).and(STABLE_ID_FIELD).is(stableId);
+        if (!allowUnderflow && delta.signum() < 0) {
+            criteria.and(AMOUNT_FIELD).gte(new Decimal128(delta.negate()));
+        }
+        StockItem updatedStockItem = mongoTransactions.execute(() -> {
+            StockItem modified = mongoTemplate.findAndModify(Query.query(criteria),
+                    new Update()
+                            .inc(AMOUNT_FIELD, new Decimal128(delta))
+                            .inc(VERSION_FIELD, 1),
+                    FindAndModifyOptions.options().returnNew(true),
+                    StockItem.class);
+            if (modified != null) {
+                stockLedger.record(id, delta, toLedgerSource(movement.type()));
+            }
+            return modified;
+        });
+        if (updatedStockItem != null) {
+            changeCounters.bump(stableId, ChangeCounters.Collection.STOCK);
+            return Optional.of(updatedStockItem);
+        }
+        if (stockRepository.existsByIdAndStableId(id, stableId)) {
+            throw new InsufficientStockException("Nicht genügend Bestand vorhanden");
+        }
+        return Optional.empty();
+    }
+
+    private static BigDecimal toDelta(StockMovement movement) throws IllegalArgumentException {
+        BigDecimal amount = movement.amount();
+        return switch (movement.type()) {
+            case RECEIVE -> requirePositive(amount);
+            case CONSUME -> requirePositive(amount).negate();
+            case ADJUST -> {
+                if (amount.signum() == 0) {
+                    throw new IllegalArgumentException("Der Wert darf nicht 0 sein");
+                }
+                yield amount;
+            }
+        };
+    }
+
+    private static StockLedgerEntry.Source toLedgerSource(StockMovement.Type type) {
+        return switch (type) {
+            case RECEIVE -> StockLedgerEntry.Source.RECEIVE;
+            case CONSUME -> StockLedgerEntry.Source.CONSUME;
+            case ADJUST -> StockLedgerEntry.Source.ADJUST;
+        };
+    }
+
+    private static BigDecimal requirePositive(BigDecimal amount) throws IllegalArgumentException {
+        if (amount.signum() <= 0) {
+            throw new IllegalArgumentException("Der Wert muss größer als 0 sein");
+        }
+        return amount;
+    }
+}
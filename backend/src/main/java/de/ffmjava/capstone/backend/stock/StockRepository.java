@@ -1,14 +1,27 @@
 package de.ffmjava.capstone.backend.stock;
 
+import de.ffmjava.capstone.backend.stables.StableScopedRepository;
 import de.ffmjava.capstone.backend.stock.model.StockItem;
-import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface StockRepository extends MongoRepository<StockItem, String> {
+public interface StockRepository extends StableScopedRepository<StockItem, String> {
 
-    boolean existsByName(String name);
-    List<StockItem> findByNameIn(List<String> keySet);
+    boolean existsByStableIdAndName(String stableId, String name);
+    boolean existsByStableIdAndNameAndIdNot(String stableId, String name, String id);
+    List<StockItem> findByStableIdAndNameIn(String stableId, List<String> names);
+
+    @Query(value = "{ 'stableId': ?0 }", fields = "{ '_id': 1 }")
+    List<StockItem> findAllIds(String stableId);
+
+    @Query(value = "{ 'stableId': ?0, '_id': { $in: ?1 } }", fields = "{ '_id': 1 }")
+    List<StockItem> findIdsIn(String stableId, Collection<String> ids);
+
+    @Query(value = "{ '_id': ?0, 'stableId': ?1 }", fields = "{ 'lastConsumptionSubtraction': 1 }")
+    Optional<StockItem> findSubtractionStamp(String id, String stableId);
 }
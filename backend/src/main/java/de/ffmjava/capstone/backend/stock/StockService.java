@@ -1,100 +1,229 @@
 package de.ffmjava.capstone.backend.stock;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import de.ffmjava.capstone.backend.ChangeCounters;
+import de.ffmjava.capstone.backend.horses.ConsumptionTotalsService;
 import de.ffmjava.capstone.backend.horses.HorseRepository;
 import de.ffmjava.capstone.backend.horses.model.AggregatedConsumption;
-import de.ffmjava.capstone.backend.horses.model.Consumption;
-import de.ffmjava.capstone.backend.horses.model.Horse;
+import de.ffmjava.capstone.backend.model.CursorPage;
+import de.ffmjava.capstone.backend.model.FormError;
+import de.ffmjava.capstone.backend.model.ImportResult;
+import de.ffmjava.capstone.backend.model.VersionedUpdate;
+import de.ffmjava.capstone.backend.mongo.BulkImporter;
+import de.ffmjava.capstone.backend.mongo.InvalidPatchException;
+import de.ffmjava.capstone.backend.mongo.MergePatch;
+import de.ffmjava.capstone.backend.mongo.MergePatchReader;
+import de.ffmjava.capstone.backend.mongo.MongoTransactions;
+import de.ffmjava.capstone.backend.mongo.NdjsonExporter;
+import de.ffmjava.capstone.backend.mongo.VersionRequiredException;
 import de.ffmjava.capstone.backend.stock.model.StockItem;
+import de.ffmjava.capstone.backend.stock.model.StockLedgerEntry;
+import de.ffmjava.capstone.backend.stock.model.StockLevel;
 import lombok.RequiredArgsConstructor;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.math.BigDecimal;
+import java.time.Instant;
 import java.util.*;
-import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import static de.ffmjava.capstone.backend.CacheConfig.AGGREGATED_CONSUMPTION_CACHE;
+import static de.ffmjava.capstone.backend.CacheConfig.AGGREGATED_CONSUMPTION_KEY_GENERATOR;
+import static de.ffmjava.capstone.backend.CacheConfig.STOCK_ITEM_CACHE;
+import static de.ffmjava.capstone.backend.CacheConfig.STOCK_ITEM_KEY_GENERATOR;
+
 @Service
 @RequiredArgsConstructor
 public class StockService {
 
-    public static final String AGGREGATED_CONSUMPTION_CACHE = "AGGREGATED_CONSUMPTION_CACHE";
+    private static final String NAME_FIELD = "name";
+    private static final String AMOUNT_FIELD = "amountInStock";
+
     private final StockRepository stockRepository;
     private final HorseRepository horseRepository;
+    private final NdjsonExporter exporter;
+    private final BulkImporter bulkImporter;
+    private final StockIdIndex stockIdIndex;
+    private final ConsumptionTotalsService consumptionTotalsService;
+    private final MongoTransactions mongoTransactions;
+    private final MergePatchReader mergePatchReader;
+    private final StockLedger stockLedger;
+    private final ChangeCounters changeCounters;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public List<StockItem> getAllStockItems(String stableId) {
+        return stockRepository.findAllByStableId(stableId);
+    }
 
-    public List<StockItem> getAllStockItems() {
-        return stockRepository.findAll();
+    public CursorPage<StockItem> getStockItemPage(String stableId, String cursor, int limit, List<String> fields)
+            throws IllegalArgumentException {
+        return stockRepository.findPage(stableId, cursor, limit, fields);
     }
 
-    @CacheEvict(value = AGGREGATED_CONSUMPTION_CACHE, allEntries = true)
-    public boolean deleteStockItem(String id) throws IllegalArgumentException {
-        if (!stockRepository.existsById(id)) {
+    @CacheEvict(value = STOCK_ITEM_CACHE, keyGenerator = STOCK_ITEM_KEY_GENERATOR)
+    public boolean deleteStockItem(String stableId, String id) throws IllegalArgumentException {
+        if (!stockRepository.existsByIdAndStableId(id, stableId)) {
             throw new IllegalArgumentException("Kein Eintrag für die gegebene ID gefunden");
         }
-        List<Horse> horsesWithStockItemId = horseRepository.findHorsesByConsumptionId(id);
-
-        if (!horsesWithStockItemId.isEmpty()) {
-            List<Horse> horsesToUpdate = new ArrayList<>();
-
-            for (Horse horse : horsesWithStockItemId) {
-                List<Consumption> consumptionWithoutStockItem = horse.consumptionList()
-                        .stream().
-                        filter(consumptionItem -> !consumptionItem.id().equals(id))
-                        .toList();
-                horsesToUpdate.add(horse.withConsumptionList(consumptionWithoutStockItem));
-            }
-            horseRepository.saveAll(horsesToUpdate);
-        }
-        stockRepository.deleteById(id);
+        mongoTransactions.run(() -> {
+            horseRepository.pullConsumptionById(stableId, id);
+            stockRepository.deleteByIdAndStableId(id, stableId);
+            consumptionTotalsService.removeStockItem(stableId, id);
+        });
+        stockIdIndex.invalidate(stableId);
+        changeCounters.bump(stableId, ChangeCounters.Collection.STOCK, ChangeCounters.Collection.HORSES,
+                ChangeCounters.Collection.CONSUMPTION);
         return true;
     }
 
-    public StockItem addNewStockItem(StockItem newStockItem) {
-        if (stockRepository.existsByName(newStockItem.name())) {
+    public StockItem addNewStockItem(String stableId, StockItem newStockItem) {
+        if (stockRepository.existsByStableIdAndName(stableId, newStockItem.name())) {
             throw new StockItemAlreadyExistsException("Der angegebene Name ist bereits vergeben");
         }
-        StockItem newStockItemWithId = newStockItem.withId(UUID.randomUUID().toString());
-        return stockRepository.save(newStockItemWithId);
+        StockItem newStockItemWithId = newStockItem.withId(UUID.randomUUID().toString()).withVersion(null)
+                .withStableId(stableId);
+        StockItem savedStockItem = mongoTransactions.execute(() -> {
+            StockItem saved = stockRepository.save(newStockItemWithId);
+            stockLedger.record(saved.id(), saved.amountInStock(), StockLedgerEntry.Source.INITIAL);
+            return saved;
+        });
+        stockIdIndex.invalidate(stableId);
+        changeCounters.bump(stableId, ChangeCounters.Collection.STOCK);
+        return savedStockItem;
+    }
+
+    @CacheEvict(value = STOCK_ITEM_CACHE, keyGenerator = STOCK_ITEM_KEY_GENERATOR)
+    public VersionedUpdate<StockItem> updateStockItem(String stableId, StockItem updatedStockItem)
+            throws OptimisticLockingFailureException, VersionRequiredException {
+        StockItem stockItem = updatedStockItem.withStableId(stableId);
+        VersionedUpdate<StockItem> result = stockItem.version() == null
+                ? createStockItem(stockItem)
+                : mongoTransactions.execute(() -> stockRepository
+                .replaceIfVersionMatches(withStoredSubtractionStamp(stockItem))
+                .map(this::recordEdit)
+                .orElseGet(() -> createStockItem(stockItem.withVersion(null))));
+        changeCounters.bump(stableId, ChangeCounters.Collection.STOCK);
+        publishRename(result);
+        return result;
     }
 
-    @CacheEvict(value = AGGREGATED_CONSUMPTION_CACHE, allEntries = true)
-    public boolean updateStockItem(StockItem updatedStockItem) {
-        boolean stockItemExists = stockRepository.existsById(updatedStockItem.id());
-        if (!stockItemExists) {
-            stockRepository.save(updatedStockItem.withId(UUID.randomUUID().toString()));
-        } else {
-            stockRepository.save(updatedStockItem);
+    /**
+     * The day stamp of the nightly subtraction is hidden from the API, so a replacement keeps the
+     * stored one. A subtraction after this read bumps the version and fails the replacement.
+     */
+    private StockItem withStoredSubtractionStamp(StockItem stockItem) {
+        return stockRepository.findSubtractionStamp(stockItem.id(), stockItem.stableId())
+                .map(stored -> stockItem.withLastConsumptionSubtraction(stored.lastConsumptionSubtraction()))
+                .orElse(stockItem);
+    }
+
+    private VersionedUpdate<StockItem> createStockItem(StockItem newStockItem) throws VersionRequiredException {
+        if (newStockItem.id() != null && stockRepository.existsByIdAndStableId(newStockItem.id(),
+                newStockItem.stableId())) {
+            throw new VersionRequiredException();
         }
-        return stockItemExists;
+        StockItem savedStockItem = mongoTransactions.execute(() -> {
+            StockItem saved = stockRepository.save(newStockItem.withId(UUID.randomUUID().toString()));
+            stockLedger.record(saved.id(), saved.amountInStock(), StockLedgerEntry.Source.INITIAL);
+            return saved;
+        });
+        stockIdIndex.invalidate(newStockItem.stableId());
+        return new VersionedUpdate<>(null, savedStockItem);
     }
 
-    public Optional<StockItem> getStockItemById(String id) {
-        return stockRepository.findById(id);
+    private VersionedUpdate<StockItem> recordEdit(VersionedUpdate<StockItem> update) {
+        BigDecimal previousAmount = Objects.requireNonNullElse(update.previous().amountInStock(), BigDecimal.ZERO);
+        stockLedger.record(update.current().id(), update.current().amountInStock().subtract(previousAmount),
+                StockLedgerEntry.Source.EDIT);
+        return update;
     }
 
-    @Cacheable(value = AGGREGATED_CONSUMPTION_CACHE)
-    public Map<String, AggregatedConsumption> getAggregatedConsumptions() {
-        return horseRepository.aggregateConsumptions()
-                .stream()
-                .collect(Collectors.toMap(AggregatedConsumption::id, Function.identity()));
+    @CacheEvict(value = STOCK_ITEM_CACHE, keyGenerator = STOCK_ITEM_KEY_GENERATOR)
+    public Optional<VersionedUpdate<StockItem>> patchStockItem(String stableId, String id, JsonNode patch,
+                                                               Long expectedVersion)
+            throws InvalidPatchException, StockItemAlreadyExistsException, OptimisticLockingFailureException {
+        MergePatch<StockItem> stockItemPatch = mergePatchReader.read(patch, StockItem.class);
+        if (stockItemPatch.contains(NAME_FIELD)
+                && stockRepository.existsByStableIdAndNameAndIdNot(stableId, stockItemPatch.get(NAME_FIELD), id)) {
+            throw new StockItemAlreadyExistsException("Der angegebene Name ist bereits vergeben");
+        }
+        Optional<VersionedUpdate<StockItem>> result = stockItemPatch.contains(AMOUNT_FIELD)
+                ? mongoTransactions.execute(() -> stockRepository.applyPatch(stableId, id, stockItemPatch,
+                        expectedVersion)
+                .map(this::recordEdit))
+                : stockRepository.applyPatch(stableId, id, stockItemPatch, expectedVersion);
+        result.ifPresent(update -> {
+            changeCounters.bump(stableId, ChangeCounters.Collection.STOCK);
+            publishRename(update);
+        });
+        return result;
+    }
+
+    private void publishRename(VersionedUpdate<StockItem> update) {
+        if (!update.created() && !Objects.equals(update.previous().name(), update.current().name())) {
+            eventPublisher.publishEvent(new StockItemRenamedEvent(update.current().stableId(), update.current().id(),
+                    update.current().name()));
+        }
+    }
+
+    /**
+     * @return the stock level at {@code at}, 0 if the ledger has nothing on the item by then, since
+     * items created with an amount of 0 get no ledger entry; empty if the item does not exist
+     */
+    public Optional<StockLevel> getStockLevel(String stableId, String id, Instant at) {
+        if (!stockRepository.existsByIdAndStableId(id, stableId)) {
+            return Optional.empty();
+        }
+        return Optional.of(stockLedger.levelAt(id, at).orElseGet(() -> new StockLevel(id, at, BigDecimal.ZERO)));
+    }
+
+    @Cacheable(value = STOCK_ITEM_CACHE, keyGenerator = STOCK_ITEM_KEY_GENERATOR)
+    public Optional<StockItem> getStockItemById(String stableId, String id) {
+        return stockRepository.findByIdAndStableId(id, stableId);
+    }
+
+    @Cacheable(value = AGGREGATED_CONSUMPTION_CACHE, keyGenerator = AGGREGATED_CONSUMPTION_KEY_GENERATOR)
+    public Map<String, AggregatedConsumption> getAggregatedConsumptions(String stableId) {
+        return consumptionTotalsService.getAggregatedConsumptions(stableId);
+    }
+
+    public long exportStockItems(String stableId, OutputStream outputStream) throws IOException {
+        return exporter.export(StockItem.class, stableId, outputStream);
     }
 
-    @Scheduled(cron = "0 0 0 * * *")
-    public void subtractConsumption() {
-        Map<String, AggregatedConsumption> consumptions = getAggregatedConsumptions();
-        List<StockItem> stockItemsToUpdate = stockRepository.findByNameIn(consumptions.keySet().stream().toList());
-        List<StockItem> updatedStockItems = stockItemsToUpdate
+    public ImportResult importStockItems(String stableId, InputStream inputStream) throws IOException {
+        ImportResult result = bulkImporter.importRows(inputStream, StockItem.class,
+                stockItems -> validateImportBatch(stableId, stockItems),
+                stockItem -> stockItem.withId(UUID.randomUUID().toString()).withVersion(0L).withStableId(stableId),
+                stockLedger::recordInitial);
+        stockIdIndex.invalidate(stableId);
+        if (result.imported() > 0) {
+            changeCounters.bump(stableId, ChangeCounters.Collection.STOCK);
+        }
+        return result;
+    }
+
+    List<FormError> validateImportBatch(String stableId, List<StockItem> stockItems) {
+        Set<String> takenNames = stockRepository.findByStableIdAndNameIn(stableId, stockItems.stream()
+                        .map(StockItem::name)
+                        .distinct()
+                        .toList())
                 .stream()
-                .map(singleItem -> {
-                    if (singleItem.amountInStock().compareTo(BigDecimal.ZERO) <= 0) {
-                        return singleItem;
-                    }
-                    return singleItem.withAmountInStock(singleItem.amountInStock()
-                            .subtract(consumptions.get(singleItem.name()).dailyAggregatedConsumption()));
-                })
-                .toList();
-        stockRepository.saveAll(updatedStockItems);
+                .map(StockItem::name)
+                .collect(Collectors.toCollection(HashSet::new));
+        List<FormError> errors = new ArrayList<>();
+        for (StockItem stockItem : stockItems) {
+            errors.add(takenNames.add(stockItem.name())
+                    ? null
+                    : new FormError("Der angegebene Name ist bereits vergeben", NAME_FIELD));
+        }
+        return errors;
     }
 }
@@ -0,0 +1,256 @@
+package de.ffmjava.capstone.backend.stock;
+
+import de.ffmjava.capstone.backend.ChangeCounters;
+import de.ffmjava.capstone.backend.horses.ConsumptionTotalsService;
+import de.ffmjava.capstone.backend.horses.model.ConsumptionTotal;
+import de.ffmjava.capstone.backend.mongo.MongoTransactions;
+import de.ffmjava.capstone.backend.stock.model.StockItem;
+import de.ffmjava.capstone.backend.stock.model.StockSubtractionRun;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.Decimal128;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+
+import static de.ffmjava.capstone.backend.CacheConfig.STOCK_ITEM_CACHE;
+import static de.ffmjava.capstone.backend.CacheConfig.stockItemKey;
+
+/**
+ * Nightly job that subtracts the daily consumption from the stock. The totals are split into
+ * chunks that are applied in parallel as unordered bulk {@code $inc} updates by stock item id.
+ * <p>
+ * Re-runs are idempotent on two levels: a ledger document per day lets only one run claim the
+ * day, and every updated stock item is stamped with the day in
+ * {@link StockItem#lastConsumptionSubtraction()}, in the same update as the decrement, so that a
+ * run taking over an interrupted one skips the items that were already decremented.
+ * <p>
+ * The decrements of a chunk and their ledger entries are written in one transaction where
+ * {@link MongoTransactions} has one; without, a run taking over books the stamped items of an
+ * interrupted chunk.
+ */
+@Slf4j
+@Service
+public class StockSubtractionJob {
+
+    static final String AMOUNT_FIELD = "amountInStock";
+    static final String LAST_SUBTRACTION_FIELD = "lastConsumptionSubtraction";
+    static final String VERSION_FIELD = "version";
+    private static final String METRIC_PREFIX = "stablebuddy.stock.subtraction";
+
+    private final MongoTemplate mongoTemplate;
+    private final ConsumptionTotalsService consumptionTotalsService;
+    private final StockLedger stockLedger;
+    private final MongoTransactions mongoTransactions;
+    private final Cache stockItemCache;
+    private final ChangeCounters changeCounters;
+    private final Executor executor;
+    private final int chunkSize;
+    private final Duration staleAfter;
+    private final Clock clock;
+    private final MeterRegistry meterRegistry;
+    private final Counter updatedItemsCounter;
+
+    @Autowired
+    public StockSubtractionJob(MongoTemplate mongoTemplate, ConsumptionTotalsService consumptionTotalsService,
+                               StockLedger stockLedger, MongoTransactions mongoTransactions,
+                               CacheManager cacheManager, ChangeCounters changeCounters, MeterRegistry meterRegistry,
+                               @Value("${stablebuddy.stock-subtraction.threads:4}") int threads,
+                               @Value("${stablebuddy.stock-subtraction.chunk-size:500}") int chunkSize,
+                               @Value("${stablebuddy.stock-subtraction.stale-after:PT1H}") Duration staleAfter,
+                               @Value("${stablebuddy.virtual-threads.enabled:false}") boolean virtualThreads) {
+        this(mongoTemplate, consumptionTotalsService, stockLedger, mongoTransactions, cacheManager, changeCounters,
+                meterRegistry, createExecutor(threads, virtualThreads), chunkSize, staleAfter,
+                Clock.systemDefaultZone());
+    }
+
+    StockSubtractionJob(MongoTemplate mongoTemplate, ConsumptionTotalsService consumptionTotalsService,
+                        StockLedger stockLedger, MongoTransactions mongoTransactions, CacheManager cacheManager,
+                        ChangeCounters changeCounters, MeterRegistry meterRegistry, Executor executor, int chunkSize,
+                        Duration staleAfter, Clock clock) {
+        this.mongoTemplate = mongoTemplate;
+        this.consumptionTotalsService = consumptionTotalsService;
+        this.stockLedger = stockLedger;
+        this.mongoTransactions = mongoTransactions;
+        this.stockItemCache = cacheManager.getCache(STOCK_ITEM_CACHE);
+        this.changeCounters = changeCounters;
+        this.meterRegistry = meterRegistry;
+        this.executor = executor;
+        this.chunkSize = chunkSize;
+        this.staleAfter = staleAfter;
+        this.clock = clock;
+        this.updatedItemsCounter = Counter.builder(METRIC_PREFIX + ".items")
+                .description("Stock items decremented by the nightly consumption subtraction")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Writes at most {@code threads} chunks at a time, also on virtual threads, to bound the load on MongoDB.
+     */
+    private static ThreadPoolTaskExecutor createExecutor(int threads, boolean virtualThreads) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setThreadNamePrefix("stock-subtraction-");
+        if (virtualThreads) {
+            executor.setThreadFactory(Thread.ofVirtual().name("stock-subtraction-virtual-", 0).factory());
+        }
+        executor.initialize();
+        return executor;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor instanceof ThreadPoolTaskExecutor threadPoolTaskExecutor) {
+            threadPoolTaskExecutor.shutdown();
+        }
+    }
+
+    @Scheduled(cron = "${stablebuddy.stock-subtraction.cron:0 0 0 * * *}")
+    public void runNightly() {
+        subtractConsumption(LocalDate.now(clock));
+    }
+
+    /**
+     * Subtracts one day of consumption unless that day was already processed. The returned future
+     * completes with the number of updated stock items once all chunks have been written.
+     */
+    public CompletableFuture<Long> subtractConsumption(LocalDate day) {
+        String dayKey = day.toString();
+        if (!claim(dayKey)) {
+            log.info("Stock subtraction for {} already done or in progress, skipping", dayKey);
+            return CompletableFuture.completedFuture(0L);
+        }
+        Timer.Sample sample = Timer.start(meterRegistry);
+        List<CompletableFuture<Long>> chunks;
+        try {
+            chunks = partition(consumptionTotalsService.getActiveTotals()).stream()
+                    .map(chunk -> CompletableFuture.supplyAsync(() -> applyChunk(chunk, dayKey), executor))
+                    .toList();
+        } catch (RuntimeException e) {
+            finish(dayKey, sample, 0, e);
+            return CompletableFuture.failedFuture(e);
+        }
+        return CompletableFuture.allOf(chunks.toArray(CompletableFuture[]::new))
+                .thenApply(done -> chunks.stream().mapToLong(CompletableFuture::join).sum())
+                .whenComplete((updatedItems, error) -> finish(dayKey, sample,
+                        updatedItems == null ? 0 : updatedItems, error));
+    }
+
+    private boolean claim(String dayKey) {
+        Instant now = clock.instant();
+        try {
+            mongoTemplate.insert(new StockSubtractionRun(dayKey, StockSubtractionRun.Status.RUNNING, now, null, 0));
+            return true;
+        } catch (DuplicateKeyException e) {
+            Query retryable = Query.query(Criteria.where("day").is(dayKey).orOperator(
+                    Criteria.where("status").is(StockSubtractionRun.Status.FAILED),
+                    Criteria.where("status").is(StockSubtractionRun.Status.RUNNING)
+                            .and("startedAt").lt(now.minus(staleAfter))));
+            Update restart = new Update()
+                    .set("status", StockSubtractionRun.Status.RUNNING)
+                    .set("startedAt", now);
+            return mongoTemplate.updateFirst(retryable, restart, StockSubtractionRun.class).getModifiedCount() == 1;
+        }
+    }
+
+    private List<List<ConsumptionTotal>> partition(List<ConsumptionTotal> totals) {
+        List<List<ConsumptionTotal>> chunks = new ArrayList<>();
+        for (int start = 0; start < totals.size(); start += chunkSize) {
+            chunks.add(totals.subList(start, Math.min(start + chunkSize, totals.size())));
+        }
+        return chunks;
+    }
+
+    private long applyChunk(List<ConsumptionTotal> chunk, String dayKey) {
+        long updatedItems = mongoTransactions.execute(() -> {
+            BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED,
+                    StockItem.class);
+            for (ConsumptionTotal total : chunk) {
+                bulkOperations.updateOne(
+                        Query.query(Criteria.where("id").is(total.id())
+                                .and(AMOUNT_FIELD).gt(Decimal128.POSITIVE_ZERO)
+                                .and(LAST_SUBTRACTION_FIELD).ne(dayKey)),
+                        new Update()
+                                .inc(AMOUNT_FIELD, new Decimal128(total.dailyAggregatedConsumption().negate()))
+                                .inc(VERSION_FIELD, 1)
+                                .set(LAST_SUBTRACTION_FIELD, dayKey));
+            }
+            long updated = bulkOperations.execute().getModifiedCount();
+            recordInLedger(chunk, dayKey);
+            return updated;
+        });
+        if (stockItemCache != null) {
+            chunk.forEach(total -> stockItemCache.evict(stockItemKey(total.stableId(), total.id())));
+        }
+        chunk.stream()
+                .map(ConsumptionTotal::stableId)
+                .distinct()
+                .forEach(stableId -> changeCounters.bump(stableId, ChangeCounters.Collection.STOCK));
+        return updatedItems;
+    }
+
+    /**
+     * Books every item of the chunk that carries the day stamp, including items decremented by an
+     * interrupted earlier run; the ledger ignores entries it already has for the day.
+     */
+    private void recordInLedger(List<ConsumptionTotal> chunk, String dayKey) {
+        Map<String, BigDecimal> deltas = chunk.stream()
+                .collect(Collectors.toMap(ConsumptionTotal::id,
+                        total -> total.dailyAggregatedConsumption().negate()));
+        Query subtracted = Query.query(Criteria.where("id").in(deltas.keySet())
+                .and(LAST_SUBTRACTION_FIELD).is(dayKey));
+        subtracted.fields().include("id");
+        Set<String> subtractedIds = mongoTemplate.find(subtracted, StockItem.class).stream()
+                .map(StockItem::id)
+                .collect(Collectors.toSet());
+        deltas.keySet().retainAll(subtractedIds);
+        stockLedger.recordSubtraction(dayKey, deltas);
+    }
+
+    private void finish(String dayKey, Timer.Sample sample, long updatedItems, Throwable error) {
+        StockSubtractionRun.Status status = error == null
+                ? StockSubtractionRun.Status.COMPLETED
+                : StockSubtractionRun.Status.FAILED;
+        sample.stop(Timer.builder(METRIC_PREFIX)
+                .description("Duration of the nightly consumption subtraction")
+                .tag("outcome", status.name().toLowerCase())
+                .register(meterRegistry));
+        updatedItemsCounter.increment(updatedItems);
+        if (error != null) {
+            log.error("Stock subtraction for {} failed", dayKey, error);
+        }
+        mongoTemplate.updateFirst(Query.query(Criteria.where("day").is(dayKey)),
+                new Update()
+                        .set("status", status)
+                        .set("finishedAt", clock.instant())
+                        .set("updatedItems", updatedItems),
+                StockSubtractionRun.class);
+    }
+}
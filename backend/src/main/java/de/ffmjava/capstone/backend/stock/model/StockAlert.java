@@ -0,0 +1,40 @@
+package de.ffmjava.capstone.backend.stock.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.With;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+import static org.springframework.data.mongodb.core.mapping.FieldType.DECIMAL128;
+
+/**
+ * Active low-stock alert of one stock item, stored under the id of the stock item until the
+ * stock item is back above its threshold.
+ */
+@With
+@Document(StockAlert.COLLECTION_NAME)
+public record StockAlert(
+        @Id
+        String id,
+        Reason reason,
+        @Field(targetType = DECIMAL128)
+        BigDecimal amountInStock,
+        @Field(targetType = DECIMAL128)
+        BigDecimal daysRemaining,
+        Instant raisedAt,
+        @JsonIgnore
+        @Indexed(name = "stableId")
+        String stableId
+) {
+    public static final String COLLECTION_NAME = "stock_alerts";
+
+    public enum Reason {
+        MIN_AMOUNT_IN_STOCK,
+        MIN_DAYS_OF_COVER
+    }
+}
@@ -0,0 +1,31 @@
+package de.ffmjava.capstone.backend.stock.model;
+
+import lombok.With;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import javax.validation.constraints.Min;
+import java.math.BigDecimal;
+
+import static org.springframework.data.mongodb.core.mapping.FieldType.DECIMAL128;
+
+/**
+ * Alert threshold of one stock item, stored under the id of the stock item. An alert is raised
+ * when the amount in stock falls below {@code minAmountInStock} or the forecast days remaining
+ * fall below {@code minDaysOfCover}; either may be left empty.
+ */
+@With
+@Document(StockAlertThreshold.COLLECTION_NAME)
+public record StockAlertThreshold(
+        @Id
+        String id,
+        @Min(value = 0, message = "Der Wert muss größer als 0 sein")
+        @Field(targetType = DECIMAL128)
+        BigDecimal minAmountInStock,
+        @Min(value = 0, message = "Der Wert muss größer als 0 sein")
+        @Field(targetType = DECIMAL128)
+        BigDecimal minDaysOfCover
+) {
+    public static final String COLLECTION_NAME = "stock_alert_thresholds";
+}
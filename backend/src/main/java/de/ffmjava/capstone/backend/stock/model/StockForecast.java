@@ -0,0 +1,35 @@
+package de.ffmjava.capstone.backend.stock.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.springframework.data.mongodb.core.mapping.FieldType.DECIMAL128;
+
+/**
+ * Depletion forecast of one stock item, stored under the id of the stock item. The days and dates
+ * are empty while nothing of the stock item is consumed.
+ */
+@Document(StockForecast.COLLECTION_NAME)
+public record StockForecast(
+        @Id
+        String id,
+        @Field(targetType = DECIMAL128)
+        BigDecimal amountInStock,
+        @Field(targetType = DECIMAL128)
+        BigDecimal dailyConsumption,
+        @Field(targetType = DECIMAL128)
+        BigDecimal daysRemaining,
+        LocalDate projectedEmptyDate,
+        LocalDate reorderDate,
+        @JsonIgnore
+        @Indexed(name = "stableId")
+        String stableId
+) {
+    public static final String COLLECTION_NAME = "stock_forecasts";
+}
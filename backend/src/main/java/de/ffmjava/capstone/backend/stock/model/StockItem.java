@@ -1,14 +1,24 @@
 package de.ffmjava.capstone.backend.stock.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import de.ffmjava.capstone.backend.stock.StockType;
 import lombok.With;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
 
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
 import java.math.BigDecimal;
 
+import static org.springframework.data.mongodb.core.mapping.FieldType.DECIMAL128;
+
 @With
+@Document
+@CompoundIndex(name = "stableId_name_unique", def = "{'stableId': 1, 'name': 1}", unique = true)
+@CompoundIndex(name = "stableId_id", def = "{'stableId': 1, '_id': 1}")
 public record StockItem(
         String id,
         @NotBlank(message = "Feld \"Name/Bezeichnung\" darf nicht leer sein")
@@ -17,9 +27,17 @@ public record StockItem(
         StockType type,
         @Min(value = 0, message = "Der Wert muss größer als 0 sein")
         @NotNull(message = "Feld \"Menge\" in Kilogramm darf nicht leer sein")
+        @Field(targetType = DECIMAL128)
         BigDecimal amountInStock,
         @Min(value = 0, message = "Der Wert muss größer als 0 sein")
         @NotNull(message = "Feld \"Preis\" pro Kilogramm darf nicht leer sein")
-        BigDecimal pricePerKilo
+        @Field(targetType = DECIMAL128)
+        BigDecimal pricePerKilo,
+        @Version
+        Long version,
+        @JsonIgnore
+        String stableId,
+        @JsonIgnore
+        String lastConsumptionSubtraction
 ) {
 }
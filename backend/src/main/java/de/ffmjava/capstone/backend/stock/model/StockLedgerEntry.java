@@ -0,0 +1,36 @@
+package de.ffmjava.capstone.backend.stock.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+import static org.springframework.data.mongodb.core.mapping.FieldType.DECIMAL128;
+
+@Document(StockLedgerEntry.COLLECTION_NAME)
+@CompoundIndex(name = "stockItemId_timestamp", def = "{'stockItemId': 1, 'timestamp': 1}")
+public record StockLedgerEntry(
+        @Id
+        String id,
+        String stockItemId,
+        @Indexed
+        Instant timestamp,
+        @Field(targetType = DECIMAL128)
+        BigDecimal delta,
+        Source source
+) {
+    public static final String COLLECTION_NAME = "stock_ledger";
+
+    public enum Source {
+        INITIAL,
+        RECEIVE,
+        CONSUME,
+        ADJUST,
+        EDIT,
+        SUBTRACTION
+    }
+}
@@ -0,0 +1,11 @@
+package de.ffmjava.capstone.backend.stock.model;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+public record StockLevel(
+        String stockItemId,
+        Instant at,
+        BigDecimal amountInStock
+) {
+}
@@ -0,0 +1,29 @@
+package de.ffmjava.capstone.backend.stock.model;
+
+import lombok.With;
+
+import javax.validation.constraints.NotNull;
+import java.math.BigDecimal;
+
+@With
+public record StockMovement(
+        @NotNull(message = "Feld \"Art\" darf nicht leer sein")
+        Type type,
+        @NotNull(message = "Feld \"Menge\" darf nicht leer sein")
+        BigDecimal amount
+) {
+    public enum Type {
+        /**
+         * A delivery, adds a positive amount.
+         */
+        RECEIVE,
+        /**
+         * Feed or bedding taken out, removes a positive amount.
+         */
+        CONSUME,
+        /**
+         * A correction after counting, adds a signed amount.
+         */
+        ADJUST
+    }
+}
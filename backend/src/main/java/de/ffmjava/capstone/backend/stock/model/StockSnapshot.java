@@ -0,0 +1,27 @@
+package de.ffmjava.capstone.backend.stock.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.IndexDirection;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+import static org.springframework.data.mongodb.core.mapping.FieldType.DECIMAL128;
+
+@Document(StockSnapshot.COLLECTION_NAME)
+@CompoundIndex(name = "stockItemId_timestamp", def = "{'stockItemId': 1, 'timestamp': 1}")
+public record StockSnapshot(
+        @Id
+        String id,
+        String stockItemId,
+        @Indexed(direction = IndexDirection.DESCENDING)
+        Instant timestamp,
+        @Field(targetType = DECIMAL128)
+        BigDecimal amountInStock
+) {
+    public static final String COLLECTION_NAME = "stock_snapshots";
+}
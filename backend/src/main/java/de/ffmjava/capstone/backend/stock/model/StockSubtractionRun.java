@@ -0,0 +1,26 @@
+package de.ffmjava.capstone.backend.stock.model;
+
+import lombok.With;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+@With
+@Document(StockSubtractionRun.COLLECTION_NAME)
+public record StockSubtractionRun(
+        @Id
+        String day,
+        Status status,
+        Instant startedAt,
+        Instant finishedAt,
+        long updatedItems
+) {
+    public static final String COLLECTION_NAME = "stock_subtraction_runs";
+
+    public enum Status {
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+}
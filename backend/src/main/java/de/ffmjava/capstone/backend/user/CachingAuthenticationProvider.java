@@ -0,0 +1,42 @@
+package de.ffmjava.capstone.backend.user;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+
+/**
+ * Answers repeated logins with the same credentials from the {@link CredentialCache} and only
+ * hands cache misses to the delegate, which loads the user and verifies the BCrypt hash.
+ */
+@RequiredArgsConstructor
+public class CachingAuthenticationProvider implements AuthenticationProvider {
+
+    private final AuthenticationProvider delegate;
+    private final CredentialCache credentialCache;
+
+    @Override
+    public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+        if (authentication.getCredentials() == null) {
+            return delegate.authenticate(authentication);
+        }
+        String username = authentication.getName();
+        String password = authentication.getCredentials().toString();
+        Authentication verified = credentialCache.get(username, password);
+        if (verified == null) {
+            verified = delegate.authenticate(authentication);
+            if (verified == null) {
+                return null;
+            }
+            credentialCache.put(username, password, verified);
+        }
+        return UsernamePasswordAuthenticationToken.authenticated(
+                verified.getPrincipal(), null, verified.getAuthorities());
+    }
+
+    @Override
+    public boolean supports(Class<?> authentication) {
+        return delegate.supports(authentication);
+    }
+}
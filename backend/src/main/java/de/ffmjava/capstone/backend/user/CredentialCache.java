@@ -0,0 +1,86 @@
+package de.ffmjava.capstone.backend.user;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.KeyGenerator;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Short-lived cache of successfully verified username/password pairs. Entries are keyed by an
+ * HMAC of the credentials under a key that only lives in this process, so the raw password is
+ * never held and a cache hit replaces the BCrypt comparison.
+ */
+@Component
+public class CredentialCache {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private final Cache<CredentialKey, Authentication> verifiedCredentials;
+    private final SecretKey secretKey;
+
+    public CredentialCache(@Value("${stablebuddy.auth.credential-cache.time-to-live:PT1M}") Duration timeToLive,
+                           @Value("${stablebuddy.auth.credential-cache.maximum-size:1000}") long maximumSize) {
+        this.verifiedCredentials = Caffeine.newBuilder()
+                .expireAfterWrite(timeToLive)
+                .maximumSize(maximumSize)
+                .build();
+        try {
+            this.secretKey = KeyGenerator.getInstance(HMAC_ALGORITHM).generateKey();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC not supported by this JVM", e);
+        }
+    }
+
+    public Authentication get(String username, String password) {
+        return verifiedCredentials.getIfPresent(new CredentialKey(username, digest(username, password)));
+    }
+
+    public void put(String username, String password, Authentication authentication) {
+        verifiedCredentials.put(new CredentialKey(username, digest(username, password)), authentication);
+    }
+
+    public void evict(String username) {
+        verifiedCredentials.asMap().keySet().removeIf(key -> key.username().equals(username));
+    }
+
+    private byte[] digest(String username, String password) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(secretKey);
+            mac.update(username.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            return mac.doFinal(password.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC not supported by this JVM", e);
+        }
+    }
+
+    private record CredentialKey(String username, byte[] digest) {
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof CredentialKey key
+                    && username.equals(key.username)
+                    && Arrays.equals(digest, key.digest);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * username.hashCode() + Arrays.hashCode(digest);
+        }
+
+        @Override
+        public String toString() {
+            return "CredentialKey[username=" + username + "]";
+        }
+    }
+}
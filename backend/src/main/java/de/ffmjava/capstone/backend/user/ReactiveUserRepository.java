@@ -0,0 +1,9 @@
+package de.ffmjava.capstone.backend.user;
+
+import de.ffmjava.capstone.backend.user.model.AppUser;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import reactor.core.publisher.Mono;
+
+public interface ReactiveUserRepository extends ReactiveMongoRepository<AppUser, String> {
+    Mono<AppUser> findByUsername(String username);
+}
@@ -0,0 +1,121 @@
+package de.ffmjava.capstone.backend.user;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.ffmjava.capstone.backend.user.model.TokenClaims;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Optional;
+
+/**
+ * Issues and verifies HMAC-signed login tokens of the form {@code payload.signature}, where the
+ * payload is the Base64url encoded JSON of {@link TokenClaims}. Verification only needs the shared
+ * secret, so any instance can accept a token issued by another one without a session or a database
+ * lookup. Disabled unless {@code stablebuddy.auth.token.enabled} is set.
+ */
+@Service
+public class TokenService {
+
+    public static final String TOKEN_COOKIE = "SB_TOKEN";
+    public static final String TOKEN_HEADER = "X-Auth-Token";
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final int MIN_SECRET_LENGTH = 32;
+
+    private final boolean enabled;
+    private final SecretKeySpec secretKey;
+    private final Duration timeToLive;
+    private final ObjectMapper objectMapper;
+    private final Clock clock;
+
+    @Autowired
+    public TokenService(@Value("${stablebuddy.auth.token.enabled:false}") boolean enabled,
+                        @Value("${stablebuddy.auth.token.secret:}") String secret,
+                        @Value("${stablebuddy.auth.token.time-to-live:PT15M}") Duration timeToLive,
+                        ObjectMapper objectMapper) {
+        this(enabled, secret, timeToLive, objectMapper, Clock.systemUTC());
+    }
+
+    TokenService(boolean enabled, String secret, Duration timeToLive, ObjectMapper objectMapper, Clock clock) {
+        byte[] secretBytes = secret.getBytes(StandardCharsets.UTF_8);
+        if (enabled && secretBytes.length < MIN_SECRET_LENGTH) {
+            throw new IllegalStateException("stablebuddy.auth.token.secret must be shared by all instances "
+                    + "and at least " + MIN_SECRET_LENGTH + " bytes long");
+        }
+        this.enabled = enabled;
+        this.secretKey = enabled ? new SecretKeySpec(secretBytes, HMAC_ALGORITHM) : null;
+        this.timeToLive = timeToLive;
+        this.objectMapper = objectMapper;
+        this.clock = clock;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Duration getTimeToLive() {
+        return timeToLive;
+    }
+
+    public String issue(String username, Collection<? extends GrantedAuthority> authorities) {
+        TokenClaims claims = new TokenClaims(
+                username,
+                authorities.stream().map(GrantedAuthority::getAuthority).toList(),
+                clock.instant().plus(timeToLive).getEpochSecond());
+        try {
+            String payload = Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(objectMapper.writeValueAsBytes(claims));
+            return payload + "." + sign(payload);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not serialize token claims", e);
+        }
+    }
+
+    public Optional<Authentication> verify(String token) {
+        int separator = token.indexOf('.');
+        if (!enabled || separator < 0) {
+            return Optional.empty();
+        }
+        String payload = token.substring(0, separator);
+        byte[] expectedSignature = sign(payload).getBytes(StandardCharsets.US_ASCII);
+        byte[] actualSignature = token.substring(separator + 1).getBytes(StandardCharsets.US_ASCII);
+        if (!MessageDigest.isEqual(expectedSignature, actualSignature)) {
+            return Optional.empty();
+        }
+        try {
+            TokenClaims claims = objectMapper.readValue(Base64.getUrlDecoder().decode(payload), TokenClaims.class);
+            if (claims.exp() <= clock.instant().getEpochSecond()) {
+                return Optional.empty();
+            }
+            return Optional.of(UsernamePasswordAuthenticationToken.authenticated(claims.sub(), null,
+                    claims.roles().stream().map(SimpleGrantedAuthority::new).toList()));
+        } catch (IOException | IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    private String sign(String payload) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(secretKey);
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(mac.doFinal(payload.getBytes(StandardCharsets.US_ASCII)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC not supported by this JVM", e);
+        }
+    }
+}
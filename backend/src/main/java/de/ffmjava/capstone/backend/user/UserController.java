@@ -1,32 +1,69 @@
 package de.ffmjava.capstone.backend.user;
 
 import de.ffmjava.capstone.backend.SecurityConfig;
+import de.ffmjava.capstone.backend.stables.StableContext;
 import de.ffmjava.capstone.backend.user.model.AppUser;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseCookie;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.validation.Errors;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpSession;
 import javax.validation.Valid;
+import java.time.Duration;
+import java.util.UUID;
 
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequestMapping("/api/app-users")
 @RequiredArgsConstructor
 public class UserController {
 
     private final UserService service;
+    private final TokenService tokenService;
+    private final StableContext stableContext;
 
     @GetMapping("/login")
     public ResponseEntity<String> login() {
-        return new ResponseEntity<>("ok", HttpStatus.OK);
+        if (!tokenService.isEnabled()) {
+            return new ResponseEntity<>("ok", HttpStatus.OK);
+        }
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        String token = tokenService.issue(authentication.getName(), authentication.getAuthorities());
+        return ResponseEntity.ok()
+                .header(TokenService.TOKEN_HEADER, token)
+                .header(HttpHeaders.SET_COOKIE, tokenCookie(token, tokenService.getTimeToLive()).toString())
+                .body("ok");
     }
 
     @GetMapping("/logout")
-    public void logout(HttpSession httpSession) {
-        httpSession.invalidate();
+    public ResponseEntity<Void> logout(HttpServletRequest request) {
+        HttpSession httpSession = request.getSession(false);
+        if (httpSession != null) {
+            httpSession.invalidate();
+        }
+        if (!tokenService.isEnabled()) {
+            return ResponseEntity.ok().build();
+        }
+        return ResponseEntity.ok()
+                .header(HttpHeaders.SET_COOKIE, tokenCookie("", Duration.ZERO).toString())
+                .build();
+    }
+
+    static ResponseCookie tokenCookie(String token, Duration maxAge) {
+        return ResponseCookie.from(TokenService.TOKEN_COOKIE, token)
+                .httpOnly(true)
+                .sameSite("Strict")
+                .path("/")
+                .maxAge(maxAge)
+                .build();
     }
 
     @GetMapping("/me")
@@ -37,6 +74,10 @@ public class UserController {
                .getName();
     }
 
+    /**
+     * Registers a new user. A signed-in user registers a colleague in their own stable, an anonymous
+     * registration opens a new stable.
+     */
     @PostMapping
     @ResponseBody
     public ResponseEntity<Object> registration(@Valid @RequestBody AppUser newAppUser, Errors errors) {
@@ -44,7 +85,8 @@ public class UserController {
             return new ResponseEntity<>(new CustomApiErrorHandler(errors).getFieldMessageMappings(), HttpStatus.BAD_REQUEST);
         }
         try {
-            service.save(newAppUser, SecurityConfig.passwordEncoder);
+            String stableId = stableContext.findCurrentStableId().orElseGet(() -> UUID.randomUUID().toString());
+            service.save(newAppUser, stableId, SecurityConfig.passwordEncoder);
             return new ResponseEntity<>("User erfolgreich registriert!", HttpStatus.CREATED);
         } catch (UserAlreadyExistsException e) {
             return new ResponseEntity<>(e.getMessage(), HttpStatus.CONFLICT);
@@ -0,0 +1,87 @@
+package de.ffmjava.capstone.backend.user;
+
+import de.ffmjava.capstone.backend.ReactiveHandlers;
+import de.ffmjava.capstone.backend.SecurityConfig;
+import de.ffmjava.capstone.backend.stables.ReactiveStableContext;
+import de.ffmjava.capstone.backend.user.model.AppUser;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.WebSession;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import static de.ffmjava.capstone.backend.ReactiveHandlers.blocking;
+
+/**
+ * WebFlux counterpart of {@link UserController} for the {@code reactive} profile.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequiredArgsConstructor
+public class UserHandler {
+
+    private static final String ANONYMOUS_USER = "anonymousUser";
+
+    private final UserService service;
+    private final TokenService tokenService;
+    private final ReactiveStableContext stableContext;
+    private final ReactiveHandlers handlers;
+
+    public Mono<ServerResponse> login(ServerRequest request) {
+        if (!tokenService.isEnabled()) {
+            return ServerResponse.ok().bodyValue("ok");
+        }
+        return currentAuthentication()
+                .map(authentication -> tokenService.issue(authentication.getName(), authentication.getAuthorities()))
+                .flatMap(token -> ServerResponse.ok()
+                        .header(TokenService.TOKEN_HEADER, token)
+                        .cookie(UserController.tokenCookie(token, tokenService.getTimeToLive()))
+                        .bodyValue("ok"));
+    }
+
+    public Mono<ServerResponse> logout(ServerRequest request) {
+        return request.session()
+                .flatMap(WebSession::invalidate)
+                .then(Mono.defer(() -> tokenService.isEnabled()
+                        ? ServerResponse.ok().cookie(UserController.tokenCookie("", Duration.ZERO)).build()
+                        : ServerResponse.ok().build()));
+    }
+
+    public Mono<ServerResponse> me(ServerRequest request) {
+        return currentAuthentication()
+                .map(Authentication::getName)
+                .defaultIfEmpty(ANONYMOUS_USER)
+                .flatMap(username -> ServerResponse.ok().bodyValue(username));
+    }
+
+    private static Mono<Authentication> currentAuthentication() {
+        return ReactiveSecurityContextHolder.getContext().mapNotNull(SecurityContext::getAuthentication);
+    }
+
+    /**
+     * Registers a new user. A signed-in user registers a colleague in their own stable, an anonymous
+     * registration opens a new stable.
+     */
+    public Mono<ServerResponse> registration(ServerRequest request) {
+        return handlers.withValidBody(request, AppUser.class,
+                errors -> ServerResponse.badRequest()
+                        .bodyValue(new CustomApiErrorHandler(errors).getFieldMessageMappings()),
+                newAppUser -> stableContext.findCurrentStableId()
+                        .switchIfEmpty(Mono.fromSupplier(() -> UUID.randomUUID().toString()))
+                        .flatMap(stableId -> blocking(() ->
+                                service.save(newAppUser, stableId, SecurityConfig.passwordEncoder)))
+                        .flatMap(created -> ServerResponse.status(HttpStatus.CREATED)
+                                .bodyValue("User erfolgreich registriert!"))
+                        .onErrorResume(UserAlreadyExistsException.class,
+                                e -> ServerResponse.status(HttpStatus.CONFLICT).bodyValue(e.getMessage())));
+    }
+}
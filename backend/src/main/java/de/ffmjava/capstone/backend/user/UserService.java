@@ -3,22 +3,30 @@ package de.ffmjava.capstone.backend.user;
 
 import de.ffmjava.capstone.backend.user.model.AppUser;
 import lombok.RequiredArgsConstructor;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import java.util.UUID;
 
+import static de.ffmjava.capstone.backend.CacheConfig.USER_CACHE;
+
 @Service
 @RequiredArgsConstructor
 public class UserService {
 
     private final UserRepository userRepository;
+    private final CredentialCache credentialCache;
 
+    @Cacheable(value = USER_CACHE, key = "#username")
     public AppUser findByUsername(String username) {
         return userRepository.findByUsername(username);
     }
 
-    public String save(AppUser newAppUser, PasswordEncoder passwordEncoder) throws UserAlreadyExistsException {
+    @CacheEvict(value = USER_CACHE, key = "#newAppUser.username()")
+    public String save(AppUser newAppUser, String stableId, PasswordEncoder passwordEncoder)
+            throws UserAlreadyExistsException {
         if (userRepository.findByUsername(newAppUser.username()) != null) {
             throw new UserAlreadyExistsException("""
                     {"userAlreadyExists": "User mit dem angegebenen Username existiert bereits"}
@@ -28,8 +36,10 @@ public class UserService {
                 .withId(UUID.randomUUID().toString())
                 .withRole("Basic")
                 .withPasswordBcrypt(passwordEncoder.encode(newAppUser.rawPassword()))
-                .withRawPassword("");
+                .withRawPassword("")
+                .withStableId(stableId);
         userRepository.save(appUser);
+        credentialCache.evict(appUser.username());
         return "Created user: " + newAppUser.username();
     }
 }
@@ -1,15 +1,20 @@
 package de.ffmjava.capstone.backend.user.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.mongodb.lang.Nullable;
 import lombok.With;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
 
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.Pattern;
 
 @With
+@Document
 public record AppUser(
         String id,
         @NotBlank(message = "Username darf nicht leer sein")
+        @Indexed(name = "username_unique", unique = true)
         String username,
         @NotBlank(message = "Passwort darf nicht leer sein")
         @Pattern(regexp = "^(?=[^A-Z]*+[A-Z])(?=[^a-z]*+[a-z])(?=\\D*+\\d)(?=[^#?!@$ %^&*-]*+[#?!@$ %^&*-]).{8,}$",
@@ -18,6 +23,8 @@ public record AppUser(
         String passwordBcrypt,
         String role,
         @Nullable
-        String eMail
+        String eMail,
+        @JsonIgnore
+        String stableId
 ) {
 }
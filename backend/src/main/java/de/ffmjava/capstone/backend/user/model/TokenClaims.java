@@ -0,0 +1,10 @@
+package de.ffmjava.capstone.backend.user.model;
+
+import java.util.List;
+
+public record TokenClaims(
+        String sub,
+        List<String> roles,
+        long exp
+) {
+}
@@ -0,0 +1,108 @@
+package de.ffmjava.capstone.backend;
+
+import de.ffmjava.capstone.backend.stock.StockType;
+import de.ffmjava.capstone.backend.stock.model.StockItem;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.interceptor.KeyGenerator;
+import org.springframework.cache.support.NoOpCache;
+import org.springframework.cache.support.SimpleCacheManager;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheConfigTest {
+
+    @Test
+    void cacheManager_AndExpectAllCachesDeclared() {
+        //Given
+        CacheManager cacheManager = new CacheConfig().cacheManager(
+                "maximumSize=1", "maximumSize=10", "maximumSize=1", "maximumSize=10", true);
+        ((SimpleCacheManager) cacheManager).afterPropertiesSet();
+
+        //When
+        Collection<String> actual = cacheManager.getCacheNames();
+
+        //Then
+        assertTrue(actual.containsAll(List.of(CacheConfig.AGGREGATED_CONSUMPTION_CACHE,
+                CacheConfig.STOCK_ITEM_CACHE, CacheConfig.HORSE_LIST_CACHE, CacheConfig.USER_CACHE)));
+        assertEquals(4, actual.size());
+        assertInstanceOf(CaffeineCache.class, cacheManager.getCache(CacheConfig.HORSE_LIST_CACHE));
+    }
+
+    @Test
+    void cacheManager_notSingleNode_AndExpectCounterKeyedCachesSwitchedOff() {
+        //Given
+        CacheManager cacheManager = new CacheConfig().cacheManager(
+                "maximumSize=1", "maximumSize=10", "maximumSize=1", "maximumSize=10", false);
+        ((SimpleCacheManager) cacheManager).afterPropertiesSet();
+
+        //When
+        Cache horseListCache = cacheManager.getCache(CacheConfig.HORSE_LIST_CACHE);
+        horseListCache.put("stable:0", List.of());
+
+        //Then
+        assertInstanceOf(NoOpCache.class, horseListCache);
+        assertInstanceOf(NoOpCache.class, cacheManager.getCache(CacheConfig.AGGREGATED_CONSUMPTION_CACHE));
+        assertInstanceOf(CaffeineCache.class, cacheManager.getCache(CacheConfig.STOCK_ITEM_CACHE));
+        assertNull(horseListCache.get("stable:0"));
+    }
+
+    @Test
+    void counterKeyGenerator_AndExpectKeyOfStableAndCounter() {
+        //Given
+        ChangeCounters changeCounters = new ChangeCounters();
+        KeyGenerator keyGenerator = new CacheConfig().horseListKeyGenerator(changeCounters);
+        Object before = keyGenerator.generate(new Object(), null, "stable");
+
+        //When
+        changeCounters.bump("stable", ChangeCounters.Collection.HORSES);
+        changeCounters.bump("stable", ChangeCounters.Collection.CONSUMPTION);
+
+        //Then
+        assertEquals(new CacheConfig.CounterKey("stable", 0), before);
+        assertEquals(new CacheConfig.CounterKey("stable", 1), keyGenerator.generate(new Object(), null, "stable"));
+        assertEquals(new CacheConfig.CounterKey("other", 0), keyGenerator.generate(new Object(), null, "other"));
+    }
+
+    @Test
+    void stockItemKeyGenerator_AndExpectSameKeyForIdAndStockItem() {
+        //Given
+        KeyGenerator keyGenerator = new CacheConfig().stockItemKeyGenerator();
+        StockItem stockItem = new StockItem("1", "Hafer", StockType.FUTTER, BigDecimal.TEN, BigDecimal.ONE, 3L,
+                "stable", null);
+
+        //When
+        Object byId = keyGenerator.generate(new Object(), null, "stable", "1");
+        Object byStockItem = keyGenerator.generate(new Object(), null, "stable", stockItem);
+
+        //Then
+        assertEquals(CacheConfig.stockItemKey("stable", "1"), byId);
+        assertEquals(byId, byStockItem);
+        assertNotEquals(byId, keyGenerator.generate(new Object(), null, "other", "1"));
+    }
+
+    @Test
+    void buildCache_AndExpectSizeBoundAndStatistics() {
+        //Given
+        CaffeineCache cache = CacheConfig.buildCache("TEST_CACHE", "maximumSize=2");
+
+        //When
+        for (int i = 0; i < 10; i++) {
+            cache.put(i, "value" + i);
+        }
+        cache.get(9);
+        cache.get("missing");
+        cache.getNativeCache().cleanUp();
+
+        //Then
+        assertEquals(2, cache.getNativeCache().estimatedSize());
+        assertEquals(1, cache.getNativeCache().stats().hitCount());
+        assertEquals(1, cache.getNativeCache().stats().missCount());
+    }
+}
@@ -0,0 +1,138 @@
+package de.ffmjava.capstone.backend;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChangeCountersTest {
+
+    private static final String STABLE_ID = "stable";
+
+    private final ChangeCounters changeCounters = new ChangeCounters(
+            Clock.fixed(Instant.parse("2022-12-01T00:00:00Z"), ZoneOffset.UTC));
+
+    private ServletWebRequest request(String ifNoneMatch, MockHttpServletResponse response) {
+        MockHttpServletRequest servletRequest = new MockHttpServletRequest("GET", "/horses/");
+        if (ifNoneMatch != null) {
+            servletRequest.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        }
+        return new ServletWebRequest(servletRequest, response);
+    }
+
+    @Test
+    void checkNotModified_unchangedCollection_AndExpect304() {
+        //Given
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        MockHttpServletResponse second = new MockHttpServletResponse();
+        //When
+        boolean firstNotModified = changeCounters.checkNotModified(request(null, first), STABLE_ID,
+                ChangeCounters.Collection.HORSES);
+        boolean secondNotModified = changeCounters.checkNotModified(
+                request(first.getHeader(HttpHeaders.ETAG), second), STABLE_ID, ChangeCounters.Collection.HORSES);
+        //Then
+        assertFalse(firstNotModified);
+        assertEquals("no-cache, private", first.getHeader(HttpHeaders.CACHE_CONTROL));
+        assertNotNull(first.getHeader(HttpHeaders.LAST_MODIFIED));
+        assertTrue(secondNotModified);
+        assertEquals(HttpStatus.NOT_MODIFIED.value(), second.getStatus());
+    }
+
+    @Test
+    void checkNotModified_bumpedCollection_AndExpectNewETag() {
+        //Given
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        MockHttpServletResponse second = new MockHttpServletResponse();
+        changeCounters.checkNotModified(request(null, first), STABLE_ID, ChangeCounters.Collection.HORSES);
+        //When
+        changeCounters.bump(STABLE_ID, ChangeCounters.Collection.HORSES);
+        boolean actual = changeCounters.checkNotModified(request(first.getHeader(HttpHeaders.ETAG), second),
+                STABLE_ID, ChangeCounters.Collection.HORSES);
+        //Then
+        assertFalse(actual);
+        assertNotEquals(first.getHeader(HttpHeaders.ETAG), second.getHeader(HttpHeaders.ETAG));
+        assertEquals(1, changeCounters.counter(STABLE_ID, ChangeCounters.Collection.HORSES));
+    }
+
+    @Test
+    void checkNotModified_bumpedWithinSameSecond_ifModifiedSinceOnly_AndExpectNo304() {
+        //Given
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        MockHttpServletResponse second = new MockHttpServletResponse();
+        changeCounters.checkNotModified(request(null, first), STABLE_ID, ChangeCounters.Collection.HORSES);
+        MockHttpServletRequest servletRequest = new MockHttpServletRequest("GET", "/horses/");
+        servletRequest.addHeader(HttpHeaders.IF_MODIFIED_SINCE, first.getHeader(HttpHeaders.LAST_MODIFIED));
+        //When
+        changeCounters.bump(STABLE_ID, ChangeCounters.Collection.HORSES);
+        boolean actual = changeCounters.checkNotModified(new ServletWebRequest(servletRequest, second), STABLE_ID,
+                ChangeCounters.Collection.HORSES);
+        //Then
+        assertFalse(actual);
+        assertEquals(HttpStatus.OK.value(), second.getStatus());
+        assertEquals(first.getHeader(HttpHeaders.LAST_MODIFIED), second.getHeader(HttpHeaders.LAST_MODIFIED));
+    }
+
+    @Test
+    void bump_AndExpectOtherCollectionsUnchanged() {
+        //Given
+        //When
+        changeCounters.bump(STABLE_ID, ChangeCounters.Collection.STOCK, ChangeCounters.Collection.CONSUMPTION);
+        //Then
+        assertEquals(1, changeCounters.counter(STABLE_ID, ChangeCounters.Collection.STOCK));
+        assertEquals(1, changeCounters.counter(STABLE_ID, ChangeCounters.Collection.CONSUMPTION));
+        assertEquals(0, changeCounters.counter(STABLE_ID, ChangeCounters.Collection.HORSES));
+        assertEquals(0, changeCounters.counter(STABLE_ID, ChangeCounters.Collection.CLIENTS));
+    }
+
+    @Test
+    void bump_AndExpectOtherStablesUnchanged() {
+        //Given
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        MockHttpServletResponse second = new MockHttpServletResponse();
+        changeCounters.checkNotModified(request(null, first), "other", ChangeCounters.Collection.HORSES);
+        //When
+        changeCounters.bump(STABLE_ID, ChangeCounters.Collection.HORSES);
+        boolean actual = changeCounters.checkNotModified(request(first.getHeader(HttpHeaders.ETAG), second),
+                "other", ChangeCounters.Collection.HORSES);
+        //Then
+        assertTrue(actual);
+        assertEquals(1, changeCounters.counter(STABLE_ID, ChangeCounters.Collection.HORSES));
+        assertEquals(0, changeCounters.counter("other", ChangeCounters.Collection.HORSES));
+    }
+
+    @Test
+    void checkNotModified_notSingleNode_AndExpectNoConditionalResponse() {
+        //Given
+        ChangeCounters multiNodeCounters = new ChangeCounters(
+                Clock.fixed(Instant.parse("2022-12-01T00:00:00Z"), ZoneOffset.UTC), false);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        //When
+        boolean actual = multiNodeCounters.checkNotModified(request("*", response), STABLE_ID,
+                ChangeCounters.Collection.HORSES);
+        //Then
+        assertFalse(actual);
+        assertNull(response.getHeader(HttpHeaders.ETAG));
+        assertNull(multiNodeCounters.tag(STABLE_ID, ChangeCounters.Collection.HORSES));
+    }
+
+    @Test
+    void checkNotModified_sameCountersInOtherStable_AndExpectDifferentETag() {
+        //Given
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        MockHttpServletResponse second = new MockHttpServletResponse();
+        changeCounters.checkNotModified(request(null, first), STABLE_ID, ChangeCounters.Collection.HORSES);
+        //When
+        boolean actual = changeCounters.checkNotModified(request(first.getHeader(HttpHeaders.ETAG), second),
+                "other", ChangeCounters.Collection.HORSES);
+        //Then
+        assertFalse(actual);
+    }
+}
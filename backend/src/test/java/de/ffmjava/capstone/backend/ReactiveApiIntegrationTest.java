@@ -0,0 +1,87 @@
+package de.ffmjava.capstone.backend;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("reactive")
+@TestPropertySource(locations = "classpath:application.properties")
+class ReactiveApiIntegrationTest {
+
+    private static final String USERNAME = "frank";
+    private static final String PASSWORD = "Passwort1!";
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    private void register() {
+        webTestClient.post().uri("/api/app-users")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("""
+                        {"username": "%s", "rawPassword": "%s"}
+                        """.formatted(USERNAME, PASSWORD))
+                .exchange()
+                .expectStatus().isCreated();
+    }
+
+    @Test
+    @DirtiesContext
+    void getAllHorses_anonymous_AndExpectUnauthorized_401() {
+        webTestClient.get().uri("/horses/")
+                .exchange()
+                .expectStatus().isUnauthorized()
+                .expectHeader().doesNotExist(HttpHeaders.WWW_AUTHENTICATE);
+    }
+
+    @Test
+    @DirtiesContext
+    void unknownApiPath_anonymous_AndExpectUnauthorized_401() {
+        webTestClient.get().uri("/api/unknown")
+                .exchange()
+                .expectStatus().isUnauthorized();
+    }
+
+    @Test
+    @DirtiesContext
+    void addNewHorse_AndExpectHorseInListOfStable() {
+        register();
+        webTestClient.post().uri("/horses/")
+                .headers(headers -> headers.setBasicAuth(USERNAME, PASSWORD))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("""
+                        {"name": "Hansi", "owner": "Peter Pan", "consumptionList": []}
+                        """)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody().jsonPath("$.id").isNotEmpty();
+
+        webTestClient.get().uri("/horses/")
+                .headers(headers -> headers.setBasicAuth(USERNAME, PASSWORD))
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().exists(HttpHeaders.ETAG)
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(1)
+                .jsonPath("$[0].name").isEqualTo("Hansi");
+    }
+
+    @Test
+    @DirtiesContext
+    void registration_existingUser_AndExpectConflict_409() {
+        register();
+        webTestClient.post().uri("/api/app-users")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("""
+                        {"username": "%s", "rawPassword": "%s"}
+                        """.formatted(USERNAME, PASSWORD))
+                .exchange()
+                .expectStatus().isEqualTo(409);
+    }
+}
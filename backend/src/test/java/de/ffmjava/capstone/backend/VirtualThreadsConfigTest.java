@@ -0,0 +1,82 @@
+package de.ffmjava.capstone.backend;
+
+import org.apache.coyote.http11.Http11NioProtocol;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.runner.WebApplicationContextRunner;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.scheduling.TaskScheduler;
+
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VirtualThreadsConfigTest {
+
+    private final WebApplicationContextRunner contextRunner = new WebApplicationContextRunner()
+            .withUserConfiguration(VirtualThreadsConfig.class);
+
+    @Test
+    void disabled_AndExpectNoExecutorsReplaced() {
+        contextRunner.run(context -> {
+            assertFalse(context.containsBean("taskScheduler"));
+            assertFalse(context.containsBean("taskExecutor"));
+        });
+    }
+
+    @Test
+    void taskExecutor_AndExpectAsyncWorkOnVirtualThread() {
+        contextRunner.withPropertyValues(VirtualThreadsConfig.ENABLED_PROPERTY + "=true").run(context -> {
+            //Given
+            AsyncTaskExecutor taskExecutor = context.getBean("taskExecutor", AsyncTaskExecutor.class);
+            //When
+            boolean actual = taskExecutor.submit(() -> Thread.currentThread().isVirtual()).get(5, TimeUnit.SECONDS);
+            //Then
+            assertTrue(actual);
+        });
+    }
+
+    @Test
+    void taskScheduler_AndExpectScheduledJobOnVirtualThread() {
+        contextRunner.withPropertyValues(VirtualThreadsConfig.ENABLED_PROPERTY + "=true").run(context -> {
+            //Given
+            TaskScheduler taskScheduler = context.getBean("taskScheduler", TaskScheduler.class);
+            CompletableFuture<Boolean> actual = new CompletableFuture<>();
+            //When
+            taskScheduler.schedule(() -> actual.complete(Thread.currentThread().isVirtual()), Instant.now());
+            //Then
+            assertTrue(actual.get(5, TimeUnit.SECONDS));
+        });
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void protocolHandlerCustomizer_AndExpectRequestsOnVirtualThreads() {
+        contextRunner.withPropertyValues(VirtualThreadsConfig.ENABLED_PROPERTY + "=true").run(context -> {
+            //Given
+            Http11NioProtocol protocolHandler = new Http11NioProtocol();
+            CompletableFuture<Boolean> actual = new CompletableFuture<>();
+            //When
+            context.getBean(TomcatProtocolHandlerCustomizer.class).customize(protocolHandler);
+            protocolHandler.getExecutor().execute(() -> actual.complete(Thread.currentThread().isVirtual()));
+            //Then
+            assertTrue(actual.get(5, TimeUnit.SECONDS));
+        });
+    }
+
+    @Test
+    void tomcatExecutor_AndExpectShutdownWithContext() {
+        //Given
+        CompletableFuture<ExecutorService> executor = new CompletableFuture<>();
+        //When
+        contextRunner.withPropertyValues(VirtualThreadsConfig.ENABLED_PROPERTY + "=true").run(context -> {
+            executor.complete(context.getBean("tomcatVirtualThreadsExecutor", ExecutorService.class));
+            assertFalse(executor.get().isShutdown());
+        });
+        //Then
+        assertTrue(executor.getNow(null).isShutdown());
+    }
+}
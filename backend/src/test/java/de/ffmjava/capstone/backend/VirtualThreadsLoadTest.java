@@ -0,0 +1,173 @@
+package de.ffmjava.capstone.backend;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Load test of the servlet stack on the Tomcat platform thread pool and on virtual threads
+ * ({@link VirtualThreadsConfig}): starts the application in each mode against an embedded MongoDB,
+ * lets many concurrent clients page through the horses, which is not cached and so blocks on MongoDB
+ * on every request, and logs throughput and p99 latency of both runs.
+ * <p>
+ * With more clients than Tomcat platform threads, requests on the platform pool queue for a thread
+ * while on virtual threads they only wait for a MongoDB connection, so the virtual run is expected to
+ * reach a lower p99 latency at no less throughput. Both are asserted within
+ * {@code -Dload-test.tolerance}, a fraction of the platform figures that absorbs run-to-run noise.
+ * <p>
+ * Excluded from the normal build; run it with {@code mvn test -Pload-test}. The load is tuned with
+ * {@code -Dload-test.clients}, {@code -Dload-test.requests-per-client} and
+ * {@code -Dload-test.tomcat-threads}, the platform pool size it is compared against.
+ */
+@Slf4j
+class VirtualThreadsLoadTest {
+
+    private static final int CLIENTS = Integer.getInteger("load-test.clients", 400);
+    private static final int REQUESTS_PER_CLIENT = Integer.getInteger("load-test.requests-per-client", 25);
+    private static final int TOMCAT_THREADS = Integer.getInteger("load-test.tomcat-threads", 50);
+    private static final double TOLERANCE = Double.parseDouble(System.getProperty("load-test.tolerance", "0.1"));
+    private static final int HORSES = 200;
+    private static final String USERNAME = "loadtest";
+    private static final String PASSWORD = "Passwort1!";
+
+    private record Result(String mode, long requests, int errors, Duration elapsed, long p50Micros, long p99Micros) {
+        double throughput() {
+            return requests * 1_000_000_000.0 / elapsed.toNanos();
+        }
+    }
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+
+    @Test
+    void compareThroughputAndP99Latency() throws Exception {
+        Result platform = run(false);
+        Result virtual = run(true);
+
+        String report = report(platform, virtual);
+        log.info(report);
+
+        assertEquals(0, platform.errors(), report);
+        assertEquals(0, virtual.errors(), report);
+        assertTrue(virtual.p99Micros() <= platform.p99Micros() * (1 + TOLERANCE),
+                () -> "p99 latency on virtual threads is above the platform pool's:" + report);
+        assertTrue(virtual.throughput() >= platform.throughput() * (1 - TOLERANCE),
+                () -> "Throughput on virtual threads is below the platform pool's:" + report);
+    }
+
+    private static String report(Result... results) {
+        StringBuilder report = new StringBuilder("%n%d clients x %d requests, %d Tomcat platform threads%n"
+                .formatted(CLIENTS, REQUESTS_PER_CLIENT, TOMCAT_THREADS))
+                .append("%-10s %12s %10s %10s %8s%n".formatted("mode", "requests/s", "p50 [ms]", "p99 [ms]",
+                        "errors"));
+        for (Result result : results) {
+            report.append("%-10s %12.1f %10.2f %10.2f %8d%n".formatted(result.mode(), result.throughput(),
+                    result.p50Micros() / 1000.0, result.p99Micros() / 1000.0, result.errors()));
+        }
+        return report.toString();
+    }
+
+    private Result run(boolean virtualThreads) throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(BackendApplication.class)
+                .properties("server.port=0",
+                        VirtualThreadsConfig.ENABLED_PROPERTY + "=" + virtualThreads,
+                        "server.tomcat.threads.max=" + TOMCAT_THREADS,
+                        "server.tomcat.accept-count=" + CLIENTS,
+                        "logging.level.root=WARN")
+                .run()) {
+            URI baseUri = URI.create("http://localhost:" + context.getEnvironment().getProperty("local.server.port"));
+            String authorization = "Basic " + Base64.getEncoder()
+                    .encodeToString((USERNAME + ":" + PASSWORD).getBytes(StandardCharsets.UTF_8));
+            seed(baseUri, authorization);
+            HttpRequest request = HttpRequest.newBuilder(baseUri.resolve("/horses/?limit=50"))
+                    .header("Authorization", authorization)
+                    .timeout(Duration.ofSeconds(60))
+                    .build();
+            load("warm-up", request, Math.max(1, CLIENTS / 10), 5);
+            return load(virtualThreads ? "virtual" : "platform", request, CLIENTS, REQUESTS_PER_CLIENT);
+        }
+    }
+
+    private void seed(URI baseUri, String authorization) throws Exception {
+        send(HttpRequest.newBuilder(baseUri.resolve("/api/app-users"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("""
+                        {"username": "%s", "rawPassword": "%s"}
+                        """.formatted(USERNAME, PASSWORD)))
+                .build(), 201);
+        for (int i = 0; i < HORSES; i++) {
+            send(HttpRequest.newBuilder(baseUri.resolve("/horses/"))
+                    .header("Authorization", authorization)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString("""
+                            {"name": "Pferd %d", "owner": "Besitzer", "consumptionList": []}
+                            """.formatted(i)))
+                    .build(), 201);
+        }
+    }
+
+    private void send(HttpRequest request, int expectedStatus) throws Exception {
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        assertEquals(expectedStatus, response.statusCode(), response::body);
+    }
+
+    private Result load(String mode, HttpRequest request, int clients, int requestsPerClient) throws Exception {
+        AtomicInteger errors = new AtomicInteger();
+        long[] latencies = new long[clients * requestsPerClient];
+        List<Future<?>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int client = 0; client < clients; client++) {
+                int offset = client * requestsPerClient;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < requestsPerClient; i++) {
+                        long requestStart = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = httpClient.send(request,
+                                    HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() != 200) {
+                                errors.incrementAndGet();
+                            }
+                        } catch (Exception e) {
+                            errors.incrementAndGet();
+                        }
+                        latencies[offset + i] = (System.nanoTime() - requestStart) / 1000;
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+        Arrays.sort(latencies);
+        return new Result(mode, latencies.length, errors.get(), elapsed,
+                percentile(latencies, 0.50), percentile(latencies, 0.99));
+    }
+
+    private static long percentile(long[] sortedLatencies, double percentile) {
+        return sortedLatencies[(int) Math.ceil(percentile * sortedLatencies.length) - 1];
+    }
+}
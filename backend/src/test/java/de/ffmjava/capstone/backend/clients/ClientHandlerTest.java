@@ -0,0 +1,78 @@
+package de.ffmjava.capstone.backend.clients;
+
+import de.ffmjava.capstone.backend.ChangeCounters;
+import de.ffmjava.capstone.backend.ReactiveHandlers;
+import de.ffmjava.capstone.backend.ReactiveWebConfig;
+import de.ffmjava.capstone.backend.clients.model.Client;
+import de.ffmjava.capstone.backend.horses.HorseHandler;
+import de.ffmjava.capstone.backend.horses.ReactiveHorseRepository;
+import de.ffmjava.capstone.backend.horses.model.Horse;
+import de.ffmjava.capstone.backend.stables.ReactiveStableContext;
+import de.ffmjava.capstone.backend.stock.StockHandler;
+import de.ffmjava.capstone.backend.user.UserHandler;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.validation.Validation;
+import java.util.List;
+import java.util.Set;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class ClientHandlerTest {
+
+    private static final String STABLE_ID = "stable";
+
+    private final ClientService mockClientService = mock(ClientService.class);
+    private final ReactiveClientRepository mockClientRepository = mock(ReactiveClientRepository.class);
+    private final ReactiveHorseRepository mockHorseRepository = mock(ReactiveHorseRepository.class);
+    private final ReactiveStableContext mockStableContext = mock(ReactiveStableContext.class);
+
+    private final ClientHandler handler = new ClientHandler(mockClientService, mockClientRepository,
+            mockHorseRepository, new ChangeCounters(), mockStableContext,
+            new ReactiveHandlers(Validation.buildDefaultValidatorFactory().getValidator()));
+    private final WebTestClient webTestClient = WebTestClient.bindToRouterFunction(new ReactiveWebConfig()
+                    .apiRoutes(mock(HorseHandler.class), mock(StockHandler.class), handler, mock(UserHandler.class)))
+            .build();
+
+    @Test
+    void getAllClients_AndExpectOwnedHorsesResolvedWithOneQuery() {
+        //Given
+        when(mockStableContext.currentStableId()).thenReturn(Mono.just(STABLE_ID));
+        when(mockClientRepository.findAllByStableId(STABLE_ID)).thenReturn(Flux.just(
+                new Client("1", "Peter", List.of("h1", "gone"), 0L, STABLE_ID),
+                new Client("2", "Paul", List.of("h2"), 0L, STABLE_ID)));
+        when(mockHorseRepository.findAllByStableIdAndIdIn(STABLE_ID, Set.of("h1", "gone", "h2"))).thenReturn(Flux.just(
+                new Horse("h1", "Hansi", "Peter", List.of(), 0L, STABLE_ID),
+                new Horse("h2", "Fritz", "Paul", List.of(), 0L, STABLE_ID)));
+        //When
+        //Then
+        webTestClient.get().uri("/clients/")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$[0].ownsHorse.length()").isEqualTo(1)
+                .jsonPath("$[0].ownsHorse[0].name").isEqualTo("Hansi")
+                .jsonPath("$[1].ownsHorse[0].name").isEqualTo("Fritz");
+        verify(mockHorseRepository, times(1)).findAllByStableIdAndIdIn(anyString(), any());
+    }
+
+    @Test
+    void getAllClients_withoutHorses_AndExpectNoHorseQuery() {
+        //Given
+        when(mockStableContext.currentStableId()).thenReturn(Mono.just(STABLE_ID));
+        when(mockClientRepository.findAllByStableId(STABLE_ID))
+                .thenReturn(Flux.just(new Client("1", "Peter", List.of(), 0L, STABLE_ID)));
+        //When
+        //Then
+        webTestClient.get().uri("/clients/")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$[0].ownsHorse").isEmpty();
+        verifyNoInteractions(mockHorseRepository);
+    }
+}
@@ -6,6 +6,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.annotation.DirtiesContext;
@@ -156,13 +157,10 @@ class ClientIntegrationTest {
                         .content(jsonString)
                 )
                 .andExpect(status().is(201))
-                .andExpect(content().json("""
-                            {
-                              "id": "1",
-                              "name": "Name",
-                              "ownsHorse": []
-                            }
-                        """));
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andExpect(jsonPath("$.id").isNotEmpty())
+                .andExpect(jsonPath("$.name").value("Name"))
+                .andExpect(jsonPath("$.ownsHorse").isEmpty());
 
     }
 
@@ -176,40 +174,8 @@ class ClientIntegrationTest {
                                "id": "6b5a9ae3-4edf-4c5f-9095-3e6f031cb732",
                                "name": "Client",
                                "ownsHorse": [
-                                 {
-                                   "id": "b88bc0b4-0638-488a-8b3d-3990dd61bd3c",
-                                   "name": "test",
-                                   "owner": "test",
-                                   "consumptionList": [
-                                     {
-                                       "id": "b40bd21b-6fbe-4291-9c23-7c80039b1eaf",
-                                       "name": "Hafer",
-                                       "dailyConsumption": "1"
-                                     },
-                                     {
-                                       "id": "e9c949de-252a-4e9e-86df-abd64314b4fa",
-                                       "name": "Müsli",
-                                       "dailyConsumption": "1123123"
-                                     }
-                                   ]
-                                 },
-                                 {
-                                   "id": "b88bc0b4-0638-488a-8b3d-3990dd61bd3c",
-                                   "name": "test",
-                                   "owner": "test",
-                                   "consumptionList": [
-                                     {
-                                       "id": "b40bd21b-6fbe-4291-9c23-7c80039b1eaf",
-                                       "name": "Hafer",
-                                       "dailyConsumption": "1"
-                                     },
-                                     {
-                                       "id": "e9c949de-252a-4e9e-86df-abd64314b4fa",
-                                       "name": "Müsli",
-                                       "dailyConsumption": "1123123"
-                                     }
-                                   ]
-                                 }
+                                 "b88bc0b4-0638-488a-8b3d-3990dd61bd3c",
+                                 "b88bc0b4-0638-488a-8b3d-3990dd61bd3c"
                                ]
                              }
                         """;
@@ -240,4 +206,49 @@ class ClientIntegrationTest {
                 )
                 .andExpect(status().is(400));
     }
+
+    @Test
+    @WithMockUser(roles = "Basic")
+    void getClientPage_AndExpectUnknownField_400() throws Exception {
+        mockMvc.perform(get("/clients/")
+                        .param("limit", "10")
+                        .param("fields", "unknown"))
+                .andExpect(status().isBadRequest())
+                .andExpect(status().reason("Unbekanntes Feld: unknown"));
+    }
+
+    @Test
+    @DirtiesContext
+    @WithMockUser(roles = "Basic")
+    void postClients_sameHorse_AndExpectResolvedHorseAndSecondOwner_400() throws Exception {
+        String horseResponse = mockMvc.perform(post("/horses/")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"name": "Hansi", "owner": "Peter Pan", "consumptionList": []}
+                                """))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        String horseId = objectMapper.readTree(horseResponse).get("id").asText();
+        String clientJson = """
+                {"name": "<NAME>", "ownsHorse": ["<HORSE_ID>"]}
+                """.replace("<HORSE_ID>", horseId);
+
+        mockMvc.perform(post("/clients/")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(clientJson.replace("<NAME>", "Peter")))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.ownsHorse[0].id").value(horseId))
+                .andExpect(jsonPath("$.ownsHorse[0].name").value("Hansi"));
+
+        mockMvc.perform(post("/clients/")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(clientJson.replace("<NAME>", "Paul")))
+                .andExpect(status().isBadRequest())
+                .andExpect(status().reason("One or more horses are already owned"));
+
+        mockMvc.perform(get("/clients/"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].ownsHorse[0].name").value("Hansi"));
+    }
 }
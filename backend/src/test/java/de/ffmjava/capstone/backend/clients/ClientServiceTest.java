@@ -1,10 +1,21 @@
 package de.ffmjava.capstone.backend.clients;
 
+import de.ffmjava.capstone.backend.ChangeCounters;
 import de.ffmjava.capstone.backend.clients.model.Client;
+import de.ffmjava.capstone.backend.clients.model.ClientWithHorses;
+import de.ffmjava.capstone.backend.horses.HorseRepository;
 import de.ffmjava.capstone.backend.horses.model.Horse;
+import de.ffmjava.capstone.backend.model.CursorPage;
+import de.ffmjava.capstone.backend.model.VersionedUpdate;
+import de.ffmjava.capstone.backend.mongo.MergePatchReader;
+import de.ffmjava.capstone.backend.mongo.NdjsonExporter;
+import de.ffmjava.capstone.backend.mongo.VersionRequiredException;
 import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -13,28 +24,51 @@ import static org.mockito.Mockito.*;
 
 class ClientServiceTest {
 
+    private static final String STABLE_ID = "stable";
+
     private final ClientRepository mockRepository = mock(ClientRepository.class);
-    private final ClientService service = new ClientService(mockRepository);
+    private final HorseRepository mockHorseRepository = mock(HorseRepository.class);
+    private final NdjsonExporter mockExporter = mock(NdjsonExporter.class);
+    private final MergePatchReader mockMergePatchReader = mock(MergePatchReader.class);
+    private final ChangeCounters changeCounters = new ChangeCounters();
+
+    private final ClientService service = new ClientService(mockRepository, mockHorseRepository, mockExporter,
+            mockMergePatchReader, changeCounters);
 
     @Test
     void getAllClients() {
         //Given
         //When
-        when(mockRepository.findAll()).thenReturn(List.of());
+        when(mockRepository.findAllByStableId(STABLE_ID)).thenReturn(List.of());
         //Then
-        List<Client> actual = service.getAllClients();
-        List<Client> expected = List.of();
+        List<ClientWithHorses> actual = service.getAllClients(STABLE_ID);
+        List<ClientWithHorses> expected = List.of();
         assertEquals(expected, actual);
     }
 
+    @Test
+    void getClientPage_AndExpectException_unknownField() {
+        //Given
+        //When
+        when(mockRepository.findPage(STABLE_ID, null, 10, List.of("unknown")))
+                .thenThrow(new IllegalArgumentException("Unbekanntes Feld: unknown"));
+        //Then
+        try {
+            service.getClientPage(STABLE_ID, null, 10, List.of("unknown"));
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("Unbekanntes Feld: unknown", e.getMessage());
+        }
+    }
+
     @Test
     void addNewClient_AndExpectClient() {
         //Given
-        Client newClient = new Client(null, "name", List.of());
+        Client newClient = new Client(null, "name", List.of(), null, STABLE_ID);
         //When
         doReturn(newClient.withId(UUID.randomUUID().toString())).when(mockRepository).save(any());
         //Then
-        Client actual = service.addNewClient(newClient);
+        Client actual = service.addNewClient(STABLE_ID, newClient);
         Client expected = newClient.withId(actual.id());
         assertEquals(expected, actual);
     }
@@ -44,11 +78,12 @@ class ClientServiceTest {
         //Given
         String idToDelete = "1";
         //When
-        when(mockRepository.existsById(idToDelete)).thenReturn(true);
-        doNothing().when(mockRepository).deleteById(idToDelete);
+        when(mockRepository.existsByIdAndStableId(idToDelete, STABLE_ID)).thenReturn(true);
+        doNothing().when(mockRepository).deleteByIdAndStableId(idToDelete, STABLE_ID);
         //Then
-        assertTrue(service.deleteClient(idToDelete));
-        verify(mockRepository).existsById(idToDelete);
+        assertTrue(service.deleteClient(STABLE_ID, idToDelete));
+        verify(mockRepository).existsByIdAndStableId(idToDelete, STABLE_ID);
+        assertEquals(1, changeCounters.counter(STABLE_ID, ChangeCounters.Collection.CLIENTS));
     }
 
     @Test
@@ -56,77 +91,105 @@ class ClientServiceTest {
         //Given
         String idToDelete = "1";
         //When
-        when(mockRepository.existsById(idToDelete))
+        when(mockRepository.existsByIdAndStableId(idToDelete, STABLE_ID))
                 .thenReturn(false);
-        doNothing().when(mockRepository).deleteById(idToDelete);
+        doNothing().when(mockRepository).deleteByIdAndStableId(idToDelete, STABLE_ID);
         //Then
         try {
-            service.deleteClient(idToDelete);
+            service.deleteClient(STABLE_ID, idToDelete);
             fail();
         } catch (IllegalArgumentException e) {
             assertEquals("Kein Eintrag für die gegebene ID gefunden", e.getMessage());
-            verify(mockRepository).existsById(idToDelete);
+            verify(mockRepository).existsByIdAndStableId(idToDelete, STABLE_ID);
+            assertEquals(0, changeCounters.counter(STABLE_ID, ChangeCounters.Collection.CLIENTS));
         }
     }
 
     @Test
     void updateClient_WithoutPreownedHorse_AndExpectSuccess_200() {
         //Given
-        Client newClient = new Client("id", "name", List.of());
+        Client newClient = new Client("id", "name", List.of(), 1L, STABLE_ID);
         //When
-        when(mockRepository.existsById("id")).thenReturn(true);
-        when(mockRepository.findByOwnsHorseContains(any())).thenReturn(null);
+        when(mockRepository.replaceIfVersionMatches(newClient))
+                .thenReturn(Optional.of(new VersionedUpdate<>(newClient, newClient.withVersion(2L))));
         //Then
-        assertTrue(service.updateClient(newClient));
+        assertFalse(service.updateClient(STABLE_ID, newClient).created());
     }
 
     @Test
     void updateClient_WithPreownedHorse_AndExpectSuccess_200() {
         //Given
-        Horse ownedHorse = new Horse("id", "name", "owner", List.of());
-        Horse horseToAdd = new Horse("id2", "name2", "owner2", List.of());
-        Client oldClient = new Client("id", "name", List.of(ownedHorse));
-        Client newClient = new Client("id", "name", List.of(ownedHorse, horseToAdd));
+        Client oldClient = new Client("id", "name", List.of("horse1"), null, STABLE_ID);
+        Client newClient = new Client("id", "name", List.of("horse1", "horse2"), 1L, STABLE_ID);
         //When
-        when(mockRepository.existsById("id")).thenReturn(true);
-        when(mockRepository.findByOwnsHorseContains(ownedHorse)).thenReturn(oldClient);
+        when(mockHorseRepository.countByStableIdAndIdIn(STABLE_ID, List.of("horse1", "horse2"))).thenReturn(2L);
+        when(mockRepository.existsByStableIdAndOwnsHorseInAndIdNot(STABLE_ID, List.of("horse1", "horse2"), "id"))
+                .thenReturn(false);
+        when(mockRepository.replaceIfVersionMatches(newClient))
+                .thenReturn(Optional.of(new VersionedUpdate<>(oldClient, newClient.withVersion(2L))));
         //Then
-        assertTrue(service.updateClient(newClient));
+        assertFalse(service.updateClient(STABLE_ID, newClient).created());
     }
 
     @Test
     void updateClient_NoOwnership_AndExpectSuccess_200() {
         //Given
-        Client newClient = new Client("id", "name", List.of());
+        Client newClient = new Client("id", "name", List.of(), 1L, STABLE_ID);
+        //When
+        when(mockRepository.replaceIfVersionMatches(newClient))
+                .thenReturn(Optional.of(new VersionedUpdate<>(newClient, newClient.withVersion(2L))));
+        //Then
+        assertEquals(2L, service.updateClient(STABLE_ID, newClient).current().version());
+    }
+
+    @Test
+    void updateClient_WithoutVersion_AndExpectException_428() {
+        //Given
+        Client newClient = new Client("id", "name", List.of(), null, STABLE_ID);
+        //When
+        when(mockRepository.existsByIdAndStableId("id", STABLE_ID)).thenReturn(true);
+        //Then
+        assertThrows(VersionRequiredException.class, () -> service.updateClient(STABLE_ID, newClient));
+        verify(mockRepository, never()).save(any());
+    }
+
+    @Test
+    void updateClient_WithUnknownIdAndVersion_AndExpectSuccess_201() {
+        //Given
+        Client newClient = new Client("id", "name", List.of(), 3L, STABLE_ID);
         //When
-        when(mockRepository.existsById("id")).thenReturn(true);
+        when(mockRepository.replaceIfVersionMatches(newClient)).thenReturn(Optional.empty());
+        when(mockRepository.existsByIdAndStableId("id", STABLE_ID)).thenReturn(false);
+        when(mockRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
         //Then
-        assertTrue(service.updateClient(newClient));
+        VersionedUpdate<Client> actual = service.updateClient(STABLE_ID, newClient);
+        assertTrue(actual.created());
+        assertNull(actual.current().version());
     }
 
     @Test
     void updateClient_AndExpectSuccess_201() {
         //Given
-        Client newClient = new Client("id", "name", List.of());
+        Client newClient = new Client("id", "name", List.of(), null, STABLE_ID);
         //When
-        when(mockRepository.existsById("id")).thenReturn(false);
-        when(mockRepository.findByOwnsHorseContains(any())).thenReturn(null);
+        when(mockRepository.existsByIdAndStableId("id", STABLE_ID)).thenReturn(false);
+        when(mockRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
         //Then
-        assertFalse(service.updateClient(newClient));
+        assertTrue(service.updateClient(STABLE_ID, newClient).created());
     }
 
     @Test
     void updateClient_AndExpectException_alreadyOwned() {
         //Given
-        Horse horseToAdd = new Horse("id", "name", "owner", List.of());
-        Client newClient = new Client("id", "name", List.of(horseToAdd));
-        Client foundClient = new Client("1", "name2", List.of(horseToAdd));
+        Client newClient = new Client("id", "name", List.of("horse1"), null, STABLE_ID);
         //When
-        when(mockRepository.existsById("id")).thenReturn(false);
-        when(mockRepository.findByOwnsHorseContains(horseToAdd)).thenReturn(foundClient);
+        when(mockRepository.existsByIdAndStableId("id", STABLE_ID)).thenReturn(false);
+        when(mockHorseRepository.countByStableIdAndIdIn(STABLE_ID, List.of("horse1"))).thenReturn(1L);
+        when(mockRepository.existsByStableIdAndOwnsHorseInAndIdNot(STABLE_ID, List.of("horse1"), "id"))
+                .thenReturn(true);
         //Then
         try {
-            service.updateClient(newClient);
+            service.updateClient(STABLE_ID, newClient);
             fail();
         } catch (IllegalArgumentException e) {
             assertEquals("One or more horses are already owned", e.getMessage());
@@ -136,17 +199,66 @@ class ClientServiceTest {
     @Test
     void updateClient_AndExpectException_duplicate() {
         //Given
-        Horse horseToAdd = new Horse("id", "name", "owner", List.of());
-        Client newClient = new Client("id", "name", List.of(horseToAdd, horseToAdd));
+        Client newClient = new Client("id", "name", List.of("horse1", "horse1"), null, STABLE_ID);
         //When
-        when(mockRepository.existsById("id")).thenReturn(false);
-        when(mockRepository.findByOwnsHorseContains(horseToAdd)).thenReturn(null);
+        when(mockRepository.existsByIdAndStableId("id", STABLE_ID)).thenReturn(false);
         //Then
         try {
-            service.updateClient(newClient);
+            service.updateClient(STABLE_ID, newClient);
             fail();
         } catch (IllegalArgumentException e) {
             assertEquals("A horse can only be owned by one person", e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    void updateClient_AndExpectException_unknownHorse() {
+        //Given
+        Client newClient = new Client("id", "name", List.of("horse1", "otherStableHorse"), 1L, STABLE_ID);
+        //When
+        when(mockHorseRepository.countByStableIdAndIdIn(STABLE_ID, List.of("horse1", "otherStableHorse")))
+                .thenReturn(1L);
+        //Then
+        IllegalArgumentException actual = assertThrows(IllegalArgumentException.class,
+                () -> service.updateClient(STABLE_ID, newClient));
+        assertEquals("One or more horses do not exist", actual.getMessage());
+        verify(mockRepository, never()).replaceIfVersionMatches(any());
+    }
+
+    @Test
+    void updateClient_concurrentlyClaimedHorse_AndExpectException_alreadyOwned() {
+        //Given
+        Client newClient = new Client("id", "name", List.of("horse1"), 1L, STABLE_ID);
+        //When
+        when(mockHorseRepository.countByStableIdAndIdIn(STABLE_ID, List.of("horse1"))).thenReturn(1L);
+        when(mockRepository.replaceIfVersionMatches(newClient))
+                .thenThrow(new DuplicateKeyException("E11000 duplicate key error"));
+        //Then
+        IllegalArgumentException actual = assertThrows(IllegalArgumentException.class,
+                () -> service.updateClient(STABLE_ID, newClient));
+        assertEquals("One or more horses are already owned", actual.getMessage());
+        assertEquals(0, changeCounters.counter(STABLE_ID, ChangeCounters.Collection.CLIENTS));
+    }
+
+    @Test
+    void render_AndExpectHorsesResolvedWithOneQuery() {
+        //Given
+        Horse hansi = new Horse("horse1", "Hansi", "owner", List.of(), 1L, STABLE_ID);
+        Horse fridolin = new Horse("horse2", "Fridolin", "owner", List.of(), 1L, STABLE_ID);
+        List<Client> clients = List.of(
+                new Client("1", "Peter", List.of("horse2", "deleted"), 1L, STABLE_ID),
+                new Client("2", "Paul", List.of("horse1"), 1L, STABLE_ID),
+                new Client("3", "Mary", null, 1L, STABLE_ID));
+        //When
+        when(mockHorseRepository.findAllByStableIdAndIdIn(STABLE_ID, Set.of("horse1", "horse2", "deleted")))
+                .thenReturn(List.of(hansi, fridolin));
+        List<ClientWithHorses> actual = service.render(STABLE_ID, clients);
+        //Then
+        List<ClientWithHorses> expected = List.of(
+                new ClientWithHorses("1", "Peter", List.of(fridolin), 1L),
+                new ClientWithHorses("2", "Paul", List.of(hansi), 1L),
+                new ClientWithHorses("3", "Mary", null, 1L));
+        assertEquals(expected, actual);
+        verify(mockHorseRepository, times(1)).findAllByStableIdAndIdIn(eq(STABLE_ID), any());
+    }
+}
@@ -0,0 +1,85 @@
+package de.ffmjava.capstone.backend.events;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.ffmjava.capstone.backend.stock.model.StockItem;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@DirtiesContext
+@TestPropertySource(locations = "classpath:application.properties", properties = {
+        "spring.mongodb.embedded.storage.repl-set-name=rs0",
+        "stablebuddy.change-feed.enabled=true"
+})
+class ChangeFeedIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void streamChanges_noAuthenticatedUser_AndExpect401() throws Exception {
+        mockMvc.perform(get("/events").accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    @WithMockUser
+    void streamChanges_withoutRoleBasic_AndExpect403() throws Exception {
+        mockMvc.perform(get("/events").accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    @WithMockUser(roles = "Basic")
+    void streamChanges_AndExpectUpsertAndDeleteEvents() throws Exception {
+        MvcResult events = mockMvc.perform(get("/events").accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String postResponse = mockMvc.perform(post("/stock/")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("""
+                        {"name": "Hafer", "type": "Futter", "amountInStock": 10, "pricePerKilo": 1}
+                        """)).andReturn().getResponse().getContentAsString();
+        String id = objectMapper.readValue(postResponse, StockItem.class).id();
+
+        // the change stream is opened in the background, so keep changing the item until it is seen
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!events.getResponse().getContentAsString().contains("\"operation\":\"UPSERT\"")
+                && System.currentTimeMillis() < deadline) {
+            mockMvc.perform(post("/stock/" + id + "/movements")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("""
+                            {"type": "RECEIVE", "amount": 1}
+                            """));
+            Thread.sleep(200);
+        }
+        mockMvc.perform(delete("/stock/" + id));
+        deadline = System.currentTimeMillis() + 10_000;
+        while (!events.getResponse().getContentAsString().contains("\"operation\":\"DELETE\"")
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(200);
+        }
+
+        String stream = events.getResponse().getContentAsString();
+        assertTrue(stream.contains("event:change"));
+        assertTrue(stream.contains("\"collection\":\"stock\""));
+        assertTrue(stream.contains("\"name\":\"Hafer\""));
+        assertTrue(stream.contains("\"operation\":\"DELETE\",\"id\":\"" + id + "\""));
+    }
+}
@@ -0,0 +1,179 @@
+package de.ffmjava.capstone.backend.events;
+
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import de.ffmjava.capstone.backend.clients.model.Client;
+import de.ffmjava.capstone.backend.horses.model.Horse;
+import de.ffmjava.capstone.backend.stock.StockType;
+import de.ffmjava.capstone.backend.stock.model.StockForecast;
+import de.ffmjava.capstone.backend.stock.model.StockItem;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ChangeFeedTest {
+
+    private static final String STABLE_ID = "stable";
+
+    private final MongoTemplate mockMongoTemplate = mock(MongoTemplate.class);
+    private final ChangeFeed changeFeed = createChangeFeed();
+
+    private ChangeFeed createChangeFeed() {
+        MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+        when(mockMongoTemplate.getConverter()).thenReturn(converter);
+        when(mockMongoTemplate.getCollectionName(StockItem.class)).thenReturn("stockItem");
+        when(mockMongoTemplate.getCollectionName(StockForecast.class)).thenReturn("stock_forecasts");
+        when(mockMongoTemplate.getCollectionName(Horse.class)).thenReturn("horse");
+        when(mockMongoTemplate.getCollectionName(Client.class)).thenReturn("client");
+        return new ChangeFeed(mockMongoTemplate, 2, Duration.ofMinutes(1), Duration.ofSeconds(1));
+    }
+
+    private static ChangeStreamDocument<Document> change(OperationType operationType, String collection,
+                                                         Document fullDocument) {
+        return new ChangeStreamDocument<>(operationType, BsonDocument.parse("{_data: '01'}"),
+                BsonDocument.parse("{db: 'stableManagement', coll: '" + collection + "'}"), null, fullDocument,
+                new BsonDocument("_id", new BsonString("1")), null, null, null, null);
+    }
+
+    @Test
+    void toChangeEvent_update_AndExpectUpsertWithCurrentDocument() {
+        //Given
+        Document fullDocument = new Document("_id", "1")
+                .append("name", "Hafer")
+                .append("type", "FUTTER")
+                .append("amountInStock", new Decimal128(new BigDecimal("12.5")))
+                .append("pricePerKilo", new Decimal128(BigDecimal.ONE))
+                .append("version", 3L)
+                .append("stableId", STABLE_ID);
+        //When
+        Optional<ChangeEvent> actual = changeFeed.toChangeEvent(change(OperationType.UPDATE, "stockItem", fullDocument));
+        //Then
+        StockItem expected = new StockItem("1", "Hafer", StockType.FUTTER, new BigDecimal("12.5"), BigDecimal.ONE, 3L,
+                STABLE_ID, null);
+        assertEquals(Optional.of(new ChangeEvent("stock", ChangeEvent.Operation.UPSERT, "1", expected, STABLE_ID)),
+                actual);
+    }
+
+    @Test
+    void toChangeEvent_deleteOfSeenDocument_AndExpectIdOnlyInItsStable() {
+        //Given
+        Document fullDocument = new Document("_id", "1")
+                .append("name", "Hansi")
+                .append("owner", "Peter Pan")
+                .append("stableId", STABLE_ID);
+        changeFeed.toChangeEvent(change(OperationType.INSERT, "horse", fullDocument));
+        //When
+        Optional<ChangeEvent> actual = changeFeed.toChangeEvent(change(OperationType.DELETE, "horse", null));
+        //Then
+        assertEquals(Optional.of(new ChangeEvent("horses", ChangeEvent.Operation.DELETE, "1", null, STABLE_ID)),
+                actual);
+    }
+
+    @Test
+    void toChangeEvent_deleteOfUnknownDocument_AndExpectNoEvent() {
+        //When
+        Optional<ChangeEvent> actual = changeFeed.toChangeEvent(change(OperationType.DELETE, "horse", null));
+        //Then
+        assertTrue(actual.isEmpty());
+    }
+
+    @Test
+    void toChangeEvent_deleteOfSameIdInOtherCollection_AndExpectNoEvent() {
+        //Given
+        Document fullDocument = new Document("_id", "1")
+                .append("name", "Hansi")
+                .append("owner", "Peter Pan")
+                .append("stableId", STABLE_ID);
+        changeFeed.toChangeEvent(change(OperationType.INSERT, "horse", fullDocument));
+        //When
+        Optional<ChangeEvent> actual = changeFeed.toChangeEvent(change(OperationType.DELETE, "client", null));
+        //Then
+        assertTrue(actual.isEmpty());
+    }
+
+    @Test
+    void toChangeEvent_updatedDocumentAlreadyDeleted_AndExpectNoEvent() {
+        //When
+        Optional<ChangeEvent> actual = changeFeed.toChangeEvent(change(OperationType.UPDATE, "client", null));
+        //Then
+        assertTrue(actual.isEmpty());
+    }
+
+    @Test
+    void eventsAfter_AndExpectMissedEventsOrEmptyOnceEvicted() {
+        //Given
+        ChangeEvent deleted = new ChangeEvent("stock", ChangeEvent.Operation.DELETE, "1", null, null);
+        //When
+        changeFeed.publish("a", deleted);
+        changeFeed.publish("b", deleted);
+        changeFeed.publish("c", deleted);
+        //Then
+        assertEquals(Optional.of(List.of(new ChangeFeed.BufferedEvent("c", deleted))), changeFeed.eventsAfter("b"));
+        assertEquals(Optional.of(List.of()), changeFeed.eventsAfter("c"));
+        assertTrue(changeFeed.eventsAfter("a").isEmpty());
+    }
+
+    @Test
+    void subscribe_whilePublishingToBlockedSubscriber_AndExpectNoWait() throws InterruptedException {
+        //Given
+        SseEmitter blockedEmitter = changeFeed.subscribe(STABLE_ID, null);
+        ChangeEvent deleted = new ChangeEvent("stock", ChangeEvent.Operation.DELETE, "1", null, STABLE_ID);
+        CountDownLatch sendBlocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread blocker = new Thread(() -> {
+            synchronized (blockedEmitter) {
+                sendBlocked.countDown();
+                awaitQuietly(release);
+            }
+        });
+        blocker.start();
+        sendBlocked.await();
+        Thread publisher = new Thread(() -> changeFeed.publish("a", deleted));
+        publisher.start();
+        while (publisher.getState() != Thread.State.BLOCKED) {
+            Thread.onSpinWait();
+        }
+        //When
+        //Then
+        try {
+            assertTimeoutPreemptively(Duration.ofSeconds(1), () -> changeFeed.subscribe(STABLE_ID, "a"));
+        } finally {
+            release.countDown();
+            blocker.join();
+            publisher.join();
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
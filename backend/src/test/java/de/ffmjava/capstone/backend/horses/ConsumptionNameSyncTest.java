@@ -0,0 +1,45 @@
+package de.ffmjava.capstone.backend.horses;
+
+import de.ffmjava.capstone.backend.ChangeCounters;
+import de.ffmjava.capstone.backend.stock.StockItemRenamedEvent;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+class ConsumptionNameSyncTest {
+
+    private static final String STABLE_ID = "stable";
+
+    private final HorseRepository mockHorseRepository = mock(HorseRepository.class);
+    private final ConsumptionTotalsService mockConsumptionTotalsService = mock(ConsumptionTotalsService.class);
+    private final ChangeCounters changeCounters = new ChangeCounters();
+
+    private final ConsumptionNameSync sync = new ConsumptionNameSync(mockHorseRepository,
+            mockConsumptionTotalsService, changeCounters);
+
+    @Test
+    void onStockItemRenamed_AndExpectHorsesAndTotalsRenamed() {
+        //Given
+        long counterBefore = changeCounters.counter(STABLE_ID, ChangeCounters.Collection.HORSES);
+        //When
+        when(mockHorseRepository.renameConsumptionById(STABLE_ID, "1", "Hafer gequetscht")).thenReturn(2L);
+        sync.onStockItemRenamed(new StockItemRenamedEvent(STABLE_ID, "1", "Hafer gequetscht"));
+        //Then
+        verify(mockHorseRepository).renameConsumptionById(STABLE_ID, "1", "Hafer gequetscht");
+        verify(mockConsumptionTotalsService).renameStockItem(STABLE_ID, "1", "Hafer gequetscht");
+        assertEquals(counterBefore + 1, changeCounters.counter(STABLE_ID, ChangeCounters.Collection.HORSES));
+    }
+
+    @Test
+    void onStockItemRenamed_NotConsumed_AndExpectHorseCounterUnchanged() {
+        //Given
+        long counterBefore = changeCounters.counter(STABLE_ID, ChangeCounters.Collection.HORSES);
+        //When
+        when(mockHorseRepository.renameConsumptionById(STABLE_ID, "1", "Hafer gequetscht")).thenReturn(0L);
+        sync.onStockItemRenamed(new StockItemRenamedEvent(STABLE_ID, "1", "Hafer gequetscht"));
+        //Then
+        verify(mockConsumptionTotalsService).renameStockItem(STABLE_ID, "1", "Hafer gequetscht");
+        assertEquals(counterBefore, changeCounters.counter(STABLE_ID, ChangeCounters.Collection.HORSES));
+    }
+}
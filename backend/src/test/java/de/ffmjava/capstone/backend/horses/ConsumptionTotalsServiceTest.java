@@ -0,0 +1,128 @@
+package de.ffmjava.capstone.backend.horses;
+
+import de.ffmjava.capstone.backend.ChangeCounters;
+import de.ffmjava.capstone.backend.horses.model.AggregatedConsumption;
+import de.ffmjava.capstone.backend.horses.model.Consumption;
+import de.ffmjava.capstone.backend.horses.model.ConsumptionTotal;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class ConsumptionTotalsServiceTest {
+
+    private static final String STABLE_ID = "stable";
+
+    private final MongoTemplate mockMongoTemplate = mock(MongoTemplate.class);
+    private final BulkOperations mockBulkOperations = mock(BulkOperations.class);
+    private final ApplicationEventPublisher mockEventPublisher = mock(ApplicationEventPublisher.class);
+    private final ChangeCounters changeCounters = new ChangeCounters();
+
+    private final ConsumptionTotalsService service = new ConsumptionTotalsService(mockMongoTemplate,
+            mockEventPublisher, changeCounters);
+
+    @Test
+    void applyChange_AndExpectIncrementsForChangedItemsOnly() {
+        //Given
+        List<Consumption> previous = List.of(
+                new Consumption("1", "Hafer", new BigDecimal("1.5")),
+                new Consumption("2", "Heu", new BigDecimal("8")));
+        List<Consumption> current = List.of(
+                new Consumption("1", "Hafer", new BigDecimal("2")),
+                new Consumption("2", "Heu", new BigDecimal("8")),
+                new Consumption("3", "Mash", new BigDecimal("0.5")));
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        //When
+        when(mockMongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ConsumptionTotal.class))
+                .thenReturn(mockBulkOperations);
+        service.applyChange(STABLE_ID, previous, current);
+        //Then
+        verify(mockBulkOperations, times(2)).upsert(queries.capture(), updates.capture());
+        verify(mockBulkOperations).execute();
+        assertEquals(new Document("id", "1").append("stableId", STABLE_ID),
+                queries.getAllValues().get(0).getQueryObject());
+        assertEquals(new Document("dailyAggregatedConsumption", new Decimal128(new BigDecimal("0.5")))
+                        .append("horseCount", 0),
+                updates.getAllValues().get(0).getUpdateObject().get("$inc"));
+        assertEquals(new Document("id", "3").append("stableId", STABLE_ID),
+                queries.getAllValues().get(1).getQueryObject());
+        assertEquals(new Document("dailyAggregatedConsumption", new Decimal128(new BigDecimal("0.5")))
+                        .append("horseCount", 1),
+                updates.getAllValues().get(1).getUpdateObject().get("$inc"));
+        verify(mockEventPublisher).publishEvent(ConsumptionTotalsChangedEvent.of(STABLE_ID, List.of("1", "3")));
+    }
+
+    @Test
+    void applyChange_removedHorse_AndExpectNegativeIncrements() {
+        //Given
+        List<Consumption> previous = List.of(new Consumption("1", "Hafer", new BigDecimal("1.5")));
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        //When
+        when(mockMongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ConsumptionTotal.class))
+                .thenReturn(mockBulkOperations);
+        service.applyChange(STABLE_ID, previous, List.of());
+        //Then
+        verify(mockBulkOperations).upsert(any(Query.class), updates.capture());
+        assertEquals(new Document("dailyAggregatedConsumption", new Decimal128(new BigDecimal("-1.5")))
+                        .append("horseCount", -1),
+                updates.getValue().getUpdateObject().get("$inc"));
+    }
+
+    @Test
+    void applyChange_unchangedConsumption_AndExpectNoWrite() {
+        //Given
+        List<Consumption> consumptions = List.of(new Consumption("1", "Hafer", new BigDecimal("1.5")));
+        //When
+        service.applyChange(STABLE_ID, consumptions, consumptions);
+        service.applyChange(STABLE_ID, null, List.of());
+        //Then
+        verifyNoInteractions(mockMongoTemplate, mockEventPublisher);
+    }
+
+    @Test
+    void getAggregatedConsumptions_AndExpectTotalsByStockItemId() {
+        //Given
+        List<ConsumptionTotal> totals = List.of(
+                new ConsumptionTotal("1", "Hafer", new BigDecimal("3"), 2, STABLE_ID),
+                new ConsumptionTotal("2", "Heu", new BigDecimal("16"), 2, STABLE_ID),
+                new ConsumptionTotal("3", "Hafer lose", new BigDecimal("1"), 1, STABLE_ID));
+        //When
+        when(mockMongoTemplate.find(any(Query.class), eq(ConsumptionTotal.class))).thenReturn(totals);
+        Map<String, AggregatedConsumption> actual = service.getAggregatedConsumptions(STABLE_ID);
+        //Then
+        Map<String, AggregatedConsumption> expected = Map.of(
+                "1", new AggregatedConsumption("1", "Hafer", new BigDecimal("3")),
+                "2", new AggregatedConsumption("2", "Heu", new BigDecimal("16")),
+                "3", new AggregatedConsumption("3", "Hafer lose", new BigDecimal("1")));
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    void renameStockItem_AndExpectNameSetById() {
+        //Given
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        long counterBefore = changeCounters.counter(STABLE_ID, ChangeCounters.Collection.CONSUMPTION);
+        //When
+        service.renameStockItem(STABLE_ID, "1", "Hafer gequetscht");
+        //Then
+        verify(mockMongoTemplate).updateFirst(query.capture(), update.capture(), eq(ConsumptionTotal.class));
+        assertEquals(new Document("id", "1").append("stableId", STABLE_ID), query.getValue().getQueryObject());
+        assertEquals(new Document("$set", new Document("name", "Hafer gequetscht")), update.getValue().getUpdateObject());
+        assertEquals(counterBefore + 1, changeCounters.counter(STABLE_ID, ChangeCounters.Collection.CONSUMPTION));
+    }
+}
@@ -0,0 +1,194 @@
+package de.ffmjava.capstone.backend.horses;
+
+import de.ffmjava.capstone.backend.ChangeCounters;
+import de.ffmjava.capstone.backend.ReactiveHandlers;
+import de.ffmjava.capstone.backend.ReactiveWebConfig;
+import de.ffmjava.capstone.backend.clients.ClientHandler;
+import de.ffmjava.capstone.backend.horses.model.Consumption;
+import de.ffmjava.capstone.backend.horses.model.Horse;
+import de.ffmjava.capstone.backend.model.VersionedUpdate;
+import de.ffmjava.capstone.backend.stables.ReactiveStableContext;
+import de.ffmjava.capstone.backend.stock.StockHandler;
+import de.ffmjava.capstone.backend.user.UserHandler;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.validation.Validation;
+import java.math.BigDecimal;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class HorseHandlerTest {
+
+    private static final String STABLE_ID = "stable";
+
+    private final HorseService mockHorseService = mock(HorseService.class);
+    private final ReactiveHorseRepository mockHorseRepository = mock(ReactiveHorseRepository.class);
+    private final ReactiveStableContext mockStableContext = mock(ReactiveStableContext.class);
+    private final ChangeCounters changeCounters = new ChangeCounters();
+
+    private final HorseHandler handler = new HorseHandler(mockHorseService, mockHorseRepository, changeCounters,
+            mockStableContext, new ReactiveHandlers(Validation.buildDefaultValidatorFactory().getValidator()));
+    private final WebTestClient webTestClient = WebTestClient.bindToRouterFunction(new ReactiveWebConfig()
+                    .apiRoutes(handler, mock(StockHandler.class), mock(ClientHandler.class), mock(UserHandler.class)))
+            .build();
+
+    private final Horse horse = new Horse("1", "Hansi", "Peter Pan",
+            List.of(new Consumption("2", "Hafer", new BigDecimal("1.5"))), 3L, STABLE_ID);
+
+    @Test
+    void getAllHorses_AndExpectHorsesOfStableWithETag() {
+        //Given
+        when(mockStableContext.currentStableId()).thenReturn(Mono.just(STABLE_ID));
+        when(mockHorseRepository.findAllByStableId(STABLE_ID)).thenReturn(Flux.just(horse));
+        //When
+        //Then
+        webTestClient.get().uri("/horses/")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG,
+                        changeCounters.tag(STABLE_ID, ChangeCounters.Collection.HORSES).eTag())
+                .expectBody()
+                .jsonPath("$[0].id").isEqualTo("1")
+                .jsonPath("$[0].consumptionList[0].name").isEqualTo("Hafer")
+                .jsonPath("$[0].stableId").doesNotExist();
+    }
+
+    @Test
+    void getAllHorses_unchanged_AndExpectNotModified_304() {
+        //Given
+        when(mockStableContext.currentStableId()).thenReturn(Mono.just(STABLE_ID));
+        String eTag = changeCounters.tag(STABLE_ID, ChangeCounters.Collection.HORSES).eTag();
+        //When
+        //Then
+        webTestClient.get().uri("/horses/")
+                .header(HttpHeaders.IF_NONE_MATCH, eTag)
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectBody().isEmpty();
+        verifyNoInteractions(mockHorseRepository);
+    }
+
+    @Test
+    void getAllHorses_ifModifiedSinceOnly_AndExpectHorses() {
+        //Given
+        when(mockStableContext.currentStableId()).thenReturn(Mono.just(STABLE_ID));
+        when(mockHorseRepository.findAllByStableId(STABLE_ID)).thenReturn(Flux.just(horse));
+        changeCounters.bump(STABLE_ID, ChangeCounters.Collection.HORSES);
+        //When
+        //Then
+        webTestClient.get().uri("/horses/")
+                .header(HttpHeaders.IF_MODIFIED_SINCE, DateTimeFormatter.RFC_1123_DATE_TIME
+                        .format(ZonedDateTime.now(ZoneOffset.UTC).plusHours(1)))
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().doesNotExist(HttpHeaders.LAST_MODIFIED)
+                .expectBody().jsonPath("$[0].id").isEqualTo("1");
+    }
+
+    @Test
+    void addNewHorse_AndExpectCreatedHorse_201() {
+        //Given
+        when(mockStableContext.currentStableId()).thenReturn(Mono.just(STABLE_ID));
+        when(mockHorseService.addNewHorse(eq(STABLE_ID), any())).thenReturn(horse);
+        //When
+        //Then
+        webTestClient.post().uri("/horses/")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("""
+                        {"name": "Hansi", "owner": "Peter Pan", "consumptionList": []}
+                        """)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody().jsonPath("$.id").isEqualTo("1");
+    }
+
+    @Test
+    void addNewHorse_emptyName_AndExpectFormError_400() {
+        //Given
+        //When
+        //Then
+        webTestClient.post().uri("/horses/")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("""
+                        {"name": "", "owner": "Peter Pan", "consumptionList": []}
+                        """)
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.fieldName").isEqualTo("name")
+                .jsonPath("$.errorMessage").isEqualTo("Feld \"Name\" darf nicht leer sein");
+        verifyNoInteractions(mockHorseService);
+    }
+
+    @Test
+    void updateHorse_AndExpectETagOfNewVersion() {
+        //Given
+        when(mockStableContext.currentStableId()).thenReturn(Mono.just(STABLE_ID));
+        when(mockHorseService.updateHorse(STABLE_ID, horse.withStableId(null).withVersion(2L)))
+                .thenReturn(new VersionedUpdate<>(horse.withVersion(2L), horse));
+        //When
+        //Then
+        webTestClient.put().uri("/horses/")
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.IF_MATCH, "\"2\"")
+                .bodyValue(horse)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"3\"");
+    }
+
+    @Test
+    void updateHorse_staleIfMatch_AndExpectPreconditionFailed_412() {
+        //Given
+        when(mockStableContext.currentStableId()).thenReturn(Mono.just(STABLE_ID));
+        when(mockHorseService.updateHorse(eq(STABLE_ID), any()))
+                .thenThrow(new OptimisticLockingFailureException("stale"));
+        //When
+        //Then
+        webTestClient.put().uri("/horses/")
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.IF_MATCH, "\"2\"")
+                .bodyValue(horse)
+                .exchange()
+                .expectStatus().isEqualTo(412);
+    }
+
+    @Test
+    void updateHorse_zeroDailyConsumption_AndExpectFormError_400() {
+        //Given
+        Horse invalidHorse = horse.withConsumptionList(List.of(new Consumption("2", "Hafer", BigDecimal.ZERO)));
+        //When
+        //Then
+        webTestClient.put().uri("/horses/")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(invalidHorse)
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody().jsonPath("$.fieldName").isEqualTo("dailyConsumption");
+        verifyNoInteractions(mockHorseService);
+    }
+
+    @Test
+    void deleteHorse_unknownId_AndExpectNotFound_404() {
+        //Given
+        when(mockStableContext.currentStableId()).thenReturn(Mono.just(STABLE_ID));
+        when(mockHorseService.deleteHorse(STABLE_ID, "1"))
+                .thenThrow(new IllegalArgumentException("Kein Eintrag für die gegebene ID gefunden"));
+        //When
+        //Then
+        webTestClient.delete().uri("/horses/1")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+}
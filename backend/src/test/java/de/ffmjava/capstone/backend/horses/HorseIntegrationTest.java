@@ -2,16 +2,20 @@ package de.ffmjava.capstone.backend.horses;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import de.ffmjava.capstone.backend.horses.model.Horse;
+import de.ffmjava.capstone.backend.stock.model.StockItem;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -149,14 +153,10 @@ class HorseIntegrationTest {
                         .content(jsonString)
                 )
                 .andExpect(status().is(201))
-                .andExpect(content().json("""
-                            {
-                              "id": "1",
-                              "name": "Hansi",
-                              "owner": "Peter Pan",
-                              "consumptionList": []
-                            }
-                        """));
+                .andExpect(header().string(HttpHeaders.ETAG, "\"0\""))
+                .andExpect(jsonPath("$.id").isNotEmpty())
+                .andExpect(jsonPath("$.name").value("Hansi"))
+                .andExpect(jsonPath("$.consumptionList").isEmpty());
     }
 
     @Test
@@ -286,6 +286,30 @@ class HorseIntegrationTest {
                 .andExpect(status().reason("Consumption item not in stock"));
     }
 
+    @Test
+    @DirtiesContext
+    @WithMockUser(roles = "Basic")
+    void addNewHorse_withNullStockItemId_AndExpect_400() throws Exception {
+        mockMvc.perform(post("/horses/")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                    {
+                                      "name": "Hansi",
+                                      "owner": "Peter Pan",
+                                      "consumptionList": [
+                                      {
+                                        "id": null,
+                                        "name": "Hafer",
+                                        "dailyConsumption": "10"
+                                      }
+                                                    ]
+                                    }
+                                """)
+                )
+                .andExpect(status().is(400))
+                .andExpect(status().reason("IDs of consumptionItems must not be null"));
+    }
+
     @Test
     @DirtiesContext
     @WithMockUser(roles = "Basic")
@@ -329,4 +353,130 @@ class HorseIntegrationTest {
                 .andExpect(status().is(400))
                 .andExpect(content().string("{\"errorMessage\":\"Der Wert muss grÃ¶Ã\u009Fer als 0 sein\",\"fieldName\":\"dailyConsumption\"}"));
     }
+
+    @Test
+    @DirtiesContext
+    @WithMockUser(roles = "Basic")
+    void getHorsePage_AndExpectTwoPages_200() throws Exception {
+        for (String name : new String[]{"Hansi", "Fridolin", "Max"}) {
+            mockMvc.perform(post("/horses/")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"name\": \"" + name + "\", \"owner\": \"Peter Pan\", \"consumptionList\": []}"));
+        }
+
+        String firstPage = mockMvc.perform(get("/horses/")
+                        .param("limit", "2")
+                        .param("fields", "name"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(2))
+                .andExpect(jsonPath("$.items[0].id").isNotEmpty())
+                .andExpect(jsonPath("$.items[0].name").isNotEmpty())
+                .andExpect(jsonPath("$.items[0].owner").doesNotExist())
+                .andExpect(jsonPath("$.nextCursor").isNotEmpty())
+                .andReturn().getResponse().getContentAsString();
+
+        String cursor = objectMapper.readTree(firstPage).get("nextCursor").asText();
+
+        mockMvc.perform(get("/horses/")
+                        .param("limit", "2")
+                        .param("cursor", cursor))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(1))
+                .andExpect(jsonPath("$.items[0].owner").value("Peter Pan"))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+
+    @Test
+    @DirtiesContext
+    @WithMockUser(roles = "Basic")
+    void exportHorses_AndExpectOneLinePerHorse_200() throws Exception {
+        for (String name : new String[]{"Hansi", "Fridolin"}) {
+            mockMvc.perform(post("/horses/")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"name\": \"" + name + "\", \"owner\": \"Peter Pan\", \"consumptionList\": []}"));
+        }
+
+        MvcResult asyncResult = mockMvc.perform(get("/horses/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(asyncResult))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"horses.ndjson\""))
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertEquals(2, lines.length);
+        for (String line : lines) {
+            assertEquals("Peter Pan", objectMapper.readValue(line, Horse.class).owner());
+        }
+    }
+
+    @Test
+    @DirtiesContext
+    @WithMockUser(roles = "Basic")
+    void putAndDeleteHorses_AndExpectMaterializedConsumptionTotals() throws Exception {
+        String stockResponse = mockMvc.perform(post("/stock/")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("""
+                        {"name": "Hafer", "type": "Futter", "amountInStock": 100, "pricePerKilo": 1}
+                        """)).andReturn().getResponse().getContentAsString();
+        String stockItemId = objectMapper.readValue(stockResponse, StockItem.class).id();
+        String horseJson = """
+                {"name": "<NAME>", "owner": "Peter Pan",
+                 "consumptionList": [{"id": "<STOCK_ID>", "name": "Hafer", "dailyConsumption": <AMOUNT>}]}
+                """.replace("<STOCK_ID>", stockItemId);
+
+        mockMvc.perform(put("/horses/")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(horseJson.replace("<NAME>", "Hansi").replace("<AMOUNT>", "1.5")));
+        mockMvc.perform(put("/horses/")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(horseJson.replace("<NAME>", "Fridolin").replace("<AMOUNT>", "2")));
+
+        mockMvc.perform(get("/stock/consumption/"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$['" + stockItemId + "'].name").value("Hafer"))
+                .andExpect(jsonPath("$['" + stockItemId + "'].dailyAggregatedConsumption").value(3.5));
+
+        String horsesResponse = mockMvc.perform(get("/horses/")).andReturn().getResponse().getContentAsString();
+        Horse[] horses = objectMapper.readValue(horsesResponse, Horse[].class);
+        mockMvc.perform(delete("/horses/" + horses[0].id()))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(delete("/horses/" + horses[1].id()))
+                .andExpect(status().isNoContent());
+
+        mockMvc.perform(get("/stock/consumption/"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{}"));
+    }
+
+    @Test
+    @DirtiesContext
+    @WithMockUser(roles = "Basic")
+    void getHorses_unchangedSinceLastRequest_AndExpect304UntilNextChange() throws Exception {
+        String eTag = mockMvc.perform(get("/horses/"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache, private"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        String consumptionETag = mockMvc.perform(get("/stock/consumption/"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/horses/").header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        mockMvc.perform(get("/stock/consumption/").header(HttpHeaders.IF_NONE_MATCH, consumptionETag))
+                .andExpect(status().isNotModified());
+
+        mockMvc.perform(post("/horses/")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\": \"Hansi\", \"owner\": \"Peter Pan\", \"consumptionList\": []}"))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(get("/horses/").header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value("Hansi"));
+    }
 }
@@ -1,12 +1,34 @@
 package de.ffmjava.capstone.backend.horses;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.ffmjava.capstone.backend.ChangeCounters;
+import de.ffmjava.capstone.backend.clients.ClientRepository;
 import de.ffmjava.capstone.backend.horses.model.Consumption;
 import de.ffmjava.capstone.backend.horses.model.Horse;
-import de.ffmjava.capstone.backend.stock.StockRepository;
+import de.ffmjava.capstone.backend.model.CursorPage;
+import de.ffmjava.capstone.backend.model.FormError;
+import de.ffmjava.capstone.backend.model.VersionedUpdate;
+import de.ffmjava.capstone.backend.mongo.BulkImporter;
+import de.ffmjava.capstone.backend.mongo.InvalidPatchException;
+import de.ffmjava.capstone.backend.mongo.MergePatch;
+import de.ffmjava.capstone.backend.mongo.MergePatchReader;
+import de.ffmjava.capstone.backend.mongo.MongoTransactions;
+import de.ffmjava.capstone.backend.mongo.NdjsonExporter;
+import de.ffmjava.capstone.backend.mongo.VersionRequiredException;
+import de.ffmjava.capstone.backend.stock.StockIdIndex;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.OptimisticLockingFailureException;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -14,31 +36,70 @@ import static org.mockito.Mockito.*;
 
 class HorseServiceTest {
 
+    private static final String STABLE_ID = "stable";
+
     private final HorseRepository mockHorseRepository = mock(HorseRepository.class);
-    private final StockRepository mockStockRepository = mock(StockRepository.class);
-    private final HorseService service = new HorseService(mockHorseRepository, mockStockRepository);
+    private final ClientRepository mockClientRepository = mock(ClientRepository.class);
+    private final StockIdIndex mockStockIdIndex = mock(StockIdIndex.class);
+    private final NdjsonExporter mockExporter = mock(NdjsonExporter.class);
+    private final BulkImporter mockBulkImporter = mock(BulkImporter.class);
+    private final ConsumptionTotalsService mockConsumptionTotalsService = mock(ConsumptionTotalsService.class);
+    private final MergePatchReader mockMergePatchReader = mock(MergePatchReader.class);
+    private final ChangeCounters changeCounters = new ChangeCounters();
+    @SuppressWarnings("unchecked")
+    private final MongoTransactions mongoTransactions = spy(new MongoTransactions(mock(ObjectProvider.class)));
+
+    private final HorseService service = new HorseService(mockHorseRepository, mockClientRepository,
+            mockStockIdIndex, mockExporter, mockBulkImporter, mockConsumptionTotalsService, mockMergePatchReader,
+            mongoTransactions, changeCounters);
 
     @Test
     void getAllHorses() {
         //Given
         //When
-        when(mockHorseRepository.findAll()).thenReturn(List.of());
+        when(mockHorseRepository.findAllByStableId(STABLE_ID)).thenReturn(List.of());
         List<Horse> expected = List.of();
-        List<Horse> actual = service.getAllHorses();
+        List<Horse> actual = service.getAllHorses(STABLE_ID);
         //Then
         assertEquals(expected, actual);
     }
 
+    @Test
+    void getHorsePage_AndExpectPageFromRepository() {
+        //Given
+        CursorPage<Horse> page = new CursorPage<>(List.of(new Horse("1", "name", "owner", null, null, STABLE_ID)),
+                "MQ");
+        //When
+        when(mockHorseRepository.findPage(STABLE_ID, null, 1, List.of("name", "owner"))).thenReturn(page);
+        CursorPage<Horse> actual = service.getHorsePage(STABLE_ID, null, 1, List.of("name", "owner"));
+        //Then
+        assertEquals(page, actual);
+        verify(mockHorseRepository).findPage(STABLE_ID, null, 1, List.of("name", "owner"));
+    }
+
     @Test
     void addNewHorse_AndExpectHorse_200() {
         //Given
-        Horse newHorse = new Horse(null, "name", "owner", null);
+        Horse newHorse = new Horse(null, "name", "owner", null, null, STABLE_ID);
         //When
         when(mockHorseRepository.save(any())).thenReturn(newHorse.withId("1"));
         //Then
-        Horse actual = service.addNewHorse(newHorse);
+        Horse actual = service.addNewHorse(STABLE_ID, newHorse);
         Horse expected = newHorse.withId("1");
         assertEquals(expected, actual);
+        verify(mockConsumptionTotalsService).applyChange(STABLE_ID, List.of(), null);
+    }
+
+    @Test
+    void addNewHorse_unknownStockItem_AndExpectIllegalArgumentException() {
+        //Given
+        List<Consumption> consumptionList = List.of(new Consumption("1", "Hafer", new BigDecimal("2")));
+        Horse newHorse = new Horse(null, "name", "owner", consumptionList, null, null);
+        //When
+        when(mockStockIdIndex.existAll(STABLE_ID, List.of("1"))).thenReturn(false);
+        //Then
+        assertThrows(IllegalArgumentException.class, () -> service.addNewHorse(STABLE_ID, newHorse));
+        verifyNoInteractions(mockHorseRepository, mockConsumptionTotalsService);
     }
 
     @Test
@@ -46,11 +107,30 @@ class HorseServiceTest {
         //Given
         String idToDelete = "1";
         //When
-        when(mockHorseRepository.existsById(idToDelete)).thenReturn(true);
-        doNothing().when(mockHorseRepository).deleteById(idToDelete);
+        when(mockHorseRepository.removeByIdAndStableId(idToDelete, STABLE_ID)).thenReturn(Optional.of(new Horse(
+                idToDelete, "name", "owner",
+                List.of(new Consumption("1", "Hafer", new BigDecimal("2"))), null, STABLE_ID)));
         //Then
-        assertTrue(service.deleteHorse(idToDelete));
-        verify(mockHorseRepository).existsById(idToDelete);
+        assertTrue(service.deleteHorse(STABLE_ID, idToDelete));
+        verify(mockHorseRepository).removeByIdAndStableId(idToDelete, STABLE_ID);
+        verify(mockConsumptionTotalsService).applyChange(STABLE_ID,
+                List.of(new Consumption("1", "Hafer", new BigDecimal("2"))), List.of());
+        verify(mockClientRepository).pullOwnedHorse(STABLE_ID, idToDelete);
+        verify(mongoTransactions).execute(any());
+        assertEquals(0, changeCounters.counter(STABLE_ID, ChangeCounters.Collection.CLIENTS));
+    }
+
+    @Test
+    void deleteHorse_ownedHorse_AndExpectOwnershipReleased() {
+        //Given
+        String idToDelete = "1";
+        //When
+        when(mockHorseRepository.removeByIdAndStableId(idToDelete, STABLE_ID))
+                .thenReturn(Optional.of(new Horse(idToDelete, "name", "owner", List.of(), null, STABLE_ID)));
+        when(mockClientRepository.pullOwnedHorse(STABLE_ID, idToDelete)).thenReturn(1L);
+        //Then
+        assertTrue(service.deleteHorse(STABLE_ID, idToDelete));
+        assertEquals(1, changeCounters.counter(STABLE_ID, ChangeCounters.Collection.CLIENTS));
     }
 
     @Test
@@ -58,30 +138,47 @@ class HorseServiceTest {
         //Given
         String idToDelete = "1";
         //When
-        when(mockHorseRepository.existsById(idToDelete))
-                .thenReturn(false);
-        doNothing().when(mockHorseRepository).deleteById(idToDelete);
+        when(mockHorseRepository.removeByIdAndStableId(idToDelete, STABLE_ID))
+                .thenReturn(Optional.empty());
         //Then
         try {
-            service.deleteHorse(idToDelete);
+            service.deleteHorse(STABLE_ID, idToDelete);
             fail();
         } catch (IllegalArgumentException e) {
             assertEquals("Kein Eintrag für die gegebene ID gefunden", e.getMessage());
-            verify(mockHorseRepository).existsById(idToDelete);
+            verify(mockHorseRepository).removeByIdAndStableId(idToDelete, STABLE_ID);
+            verifyNoInteractions(mockConsumptionTotalsService, mockClientRepository);
         }
     }
 
+    @Test
+    void deleteHorse_concurrentDeletes_AndExpectTotalsChangedOnce() {
+        //Given
+        String idToDelete = "1";
+        List<Consumption> consumptionList = List.of(new Consumption("1", "Hafer", new BigDecimal("2")));
+        //When
+        when(mockHorseRepository.removeByIdAndStableId(idToDelete, STABLE_ID))
+                .thenReturn(Optional.of(new Horse(idToDelete, "name", "owner", consumptionList, null, STABLE_ID)))
+                .thenReturn(Optional.empty());
+        //Then
+        assertTrue(service.deleteHorse(STABLE_ID, idToDelete));
+        assertThrows(IllegalArgumentException.class, () -> service.deleteHorse(STABLE_ID, idToDelete));
+        verify(mockConsumptionTotalsService, times(1)).applyChange(STABLE_ID, consumptionList, List.of());
+    }
+
     @Test
     void UpdateHorse_AndExpectSuccess_201() {
         //Given
         Horse newHorse = new Horse("id", "name", "owner",
-                List.of(new Consumption("1", "name", new BigDecimal("0"))));
+                List.of(new Consumption("1", "name", new BigDecimal("0"))), null, STABLE_ID);
         //When
-        when(mockStockRepository.existsById("1")).thenReturn(true);
-        when(mockHorseRepository.existsById("id")).thenReturn(false);
+        when(mockStockIdIndex.existAll(STABLE_ID, List.of("1"))).thenReturn(true);
+        when(mockHorseRepository.existsByIdAndStableId("id", STABLE_ID)).thenReturn(false);
+        when(mockHorseRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
         //Then
-        assertFalse(service.updateHorse(newHorse));
+        assertTrue(service.updateHorse(STABLE_ID, newHorse).created());
         verify(mockHorseRepository).save(any());
+        verify(mockConsumptionTotalsService).applyChange(STABLE_ID, List.of(), newHorse.consumptionList());
 
     }
 
@@ -89,26 +186,74 @@ class HorseServiceTest {
     void UpdateHorse_AndExpectSuccess_200() {
         //Given
         Horse newHorse = new Horse("id", "name", "owner",
-                List.of(new Consumption("1", "name", new BigDecimal("0"))));
+                List.of(new Consumption("1", "name", new BigDecimal("0"))), 1L, STABLE_ID);
+        Horse oldHorse = newHorse.withConsumptionList(List.of());
         //When
-        when(mockStockRepository.existsById("1")).thenReturn(true);
-        when(mockHorseRepository.existsById("id")).thenReturn(true);
+        when(mockStockIdIndex.existAll(STABLE_ID, List.of("1"))).thenReturn(true);
+        when(mockHorseRepository.replaceIfVersionMatches(newHorse))
+                .thenReturn(Optional.of(new VersionedUpdate<>(oldHorse, newHorse.withVersion(2L))));
         //Then
-        assertTrue(service.updateHorse(newHorse));
-        verify(mockHorseRepository).save(newHorse);
+        VersionedUpdate<Horse> actual = service.updateHorse(STABLE_ID, newHorse);
+        assertFalse(actual.created());
+        assertEquals(2L, actual.current().version());
+        verify(mockHorseRepository, never()).save(any());
+        verify(mockConsumptionTotalsService).applyChange(STABLE_ID, List.of(), newHorse.consumptionList());
 
     }
 
+    @Test
+    void UpdateHorse_WithoutVersion_AndExpectException_428() {
+        //Given
+        Horse newHorse = new Horse("id", "name", "owner", List.of(), null, STABLE_ID);
+        //When
+        when(mockStockIdIndex.existAll(STABLE_ID, List.of())).thenReturn(true);
+        when(mockHorseRepository.existsByIdAndStableId("id", STABLE_ID)).thenReturn(true);
+        //Then
+        assertThrows(VersionRequiredException.class, () -> service.updateHorse(STABLE_ID, newHorse));
+        verify(mockHorseRepository, never()).save(any());
+        verifyNoInteractions(mockConsumptionTotalsService);
+    }
+
+    @Test
+    void UpdateHorse_WithStaleVersion_AndExpectException_409() {
+        //Given
+        Horse newHorse = new Horse("id", "name", "owner", List.of(), 1L, STABLE_ID);
+        //When
+        when(mockStockIdIndex.existAll(STABLE_ID, List.of())).thenReturn(true);
+        when(mockHorseRepository.replaceIfVersionMatches(newHorse))
+                .thenThrow(new OptimisticLockingFailureException("Der Eintrag wurde zwischenzeitlich geändert"));
+        //Then
+        assertThrows(OptimisticLockingFailureException.class, () -> service.updateHorse(STABLE_ID, newHorse));
+        verifyNoInteractions(mockConsumptionTotalsService);
+    }
+
+    @Test
+    void UpdateHorse_WithManyConsumptionItems_AndExpectSingleStockIndexLookup() {
+        //Given
+        List<Consumption> consumptionList = List.of(
+                new Consumption("1", "Hafer", new BigDecimal("1")),
+                new Consumption("2", "Heu", new BigDecimal("8")),
+                new Consumption("3", "Mash", new BigDecimal("0.5")));
+        Horse horse = new Horse("id", "name", "owner", consumptionList, 1L, STABLE_ID);
+        //When
+        when(mockStockIdIndex.existAll(STABLE_ID, List.of("1", "2", "3"))).thenReturn(true);
+        when(mockHorseRepository.replaceIfVersionMatches(horse))
+                .thenReturn(Optional.of(new VersionedUpdate<>(horse, horse.withVersion(2L))));
+        //Then
+        assertFalse(service.updateHorse(STABLE_ID, horse).created());
+        verify(mockStockIdIndex, times(1)).existAll(STABLE_ID, List.of("1", "2", "3"));
+    }
+
     @Test
     void UpdateHorse_AndExpectException_400() {
         //Given
         Horse newHorse = new Horse("id", "name", "owner",
                 List.of(new Consumption("1", "name", new BigDecimal("0")),
-                        new Consumption("1", "name", new BigDecimal("0"))));
+                        new Consumption("1", "name", new BigDecimal("0"))), null, STABLE_ID);
         //When
         //Then
         try {
-            service.updateHorse(newHorse);
+            service.updateHorse(STABLE_ID, newHorse);
             fail();
         } catch (IllegalArgumentException e) {
             assertEquals("IDs of consumptionItems must be unique for every horse", e.getMessage());
@@ -119,15 +264,98 @@ class HorseServiceTest {
     void UpdateHorse_NoMatchingStockItem_AndExpectException_400() {
         //Given
         Horse newHorse = new Horse("id", "name", "owner",
-                List.of(new Consumption("1", "name", new BigDecimal("0"))));
+                List.of(new Consumption("1", "name", new BigDecimal("0"))), null, STABLE_ID);
         //When
-        when(mockStockRepository.existsById("1")).thenReturn(false);
+        when(mockStockIdIndex.existAll(STABLE_ID, List.of("1"))).thenReturn(false);
         //Then
         try {
-            service.updateHorse(newHorse);
+            service.updateHorse(STABLE_ID, newHorse);
             fail();
         } catch (IllegalArgumentException e) {
             assertEquals("Consumption item not in stock", e.getMessage());
         }
     }
+
+    @Test
+    void patchHorse_Owner_AndExpectNoConsumptionTotalsChange() {
+        //Given
+        JsonNode patch = new ObjectMapper().createObjectNode().put("owner", "Peter Pan");
+        MergePatch<Horse> horsePatch = new MergePatch<>(Horse.class, Map.of("owner", "Peter Pan"));
+        Horse horse = new Horse("id", "name", "owner", List.of(), 1L, STABLE_ID);
+        //When
+        when(mockMergePatchReader.read(patch, Horse.class)).thenReturn(horsePatch);
+        when(mockHorseRepository.applyPatch(STABLE_ID, "id", horsePatch, 1L)).thenReturn(Optional.of(
+                new VersionedUpdate<>(horse, horse.withOwner("Peter Pan").withVersion(2L))));
+        Optional<VersionedUpdate<Horse>> actual = service.patchHorse(STABLE_ID, "id", patch, 1L);
+        //Then
+        assertEquals("Peter Pan", actual.orElseThrow().current().owner());
+        verifyNoInteractions(mockStockIdIndex, mockConsumptionTotalsService);
+    }
+
+    @Test
+    void patchHorse_ConsumptionList_AndExpectConsumptionTotalsChange() {
+        //Given
+        List<Consumption> consumptionList = List.of(new Consumption("1", "Hafer", new BigDecimal("2")));
+        JsonNode patch = new ObjectMapper().createObjectNode();
+        MergePatch<Horse> horsePatch = new MergePatch<>(Horse.class, Map.of("consumptionList", consumptionList));
+        Horse horse = new Horse("id", "name", "owner", List.of(), 1L, STABLE_ID);
+        //When
+        when(mockMergePatchReader.read(patch, Horse.class)).thenReturn(horsePatch);
+        when(mockStockIdIndex.existAll(STABLE_ID, List.of("1"))).thenReturn(true);
+        when(mockHorseRepository.applyPatch(STABLE_ID, "id", horsePatch, null)).thenReturn(Optional.of(
+                new VersionedUpdate<>(horse, horse.withConsumptionList(consumptionList).withVersion(2L))));
+        service.patchHorse(STABLE_ID, "id", patch, null);
+        //Then
+        verify(mockConsumptionTotalsService).applyChange(STABLE_ID, List.of(), consumptionList);
+    }
+
+    @Test
+    void patchHorse_ZeroConsumption_AndExpectException() {
+        //Given
+        List<Consumption> consumptionList = List.of(new Consumption("1", "Hafer", BigDecimal.ZERO));
+        JsonNode patch = new ObjectMapper().createObjectNode();
+        MergePatch<Horse> horsePatch = new MergePatch<>(Horse.class, Map.of("consumptionList", consumptionList));
+        //When
+        when(mockMergePatchReader.read(patch, Horse.class)).thenReturn(horsePatch);
+        //Then
+        InvalidPatchException exception = assertThrows(InvalidPatchException.class,
+                () -> service.patchHorse(STABLE_ID, "id", patch, null));
+        assertEquals("dailyConsumption", exception.getFormError().fieldName());
+        verify(mockHorseRepository, never()).applyPatch(any(), any(), any(), any());
+    }
+
+    @Test
+    void exportHorses_AndExpectExporterToWriteHorses() throws IOException {
+        //Given
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        //When
+        when(mockExporter.export(Horse.class, STABLE_ID, outputStream)).thenReturn(3L);
+        //Then
+        assertEquals(3L, service.exportHorses(STABLE_ID, outputStream));
+        verify(mockExporter).export(Horse.class, STABLE_ID, outputStream);
+    }
+
+    @Test
+    void validateImportBatch_AndExpectOneStockIndexLookupForAllHorses() {
+        //Given
+        Horse validHorse = new Horse(null, "Hansi", "owner",
+                List.of(new Consumption("1", "Hafer", new BigDecimal("1.5"))), null, STABLE_ID);
+        Horse horseWithUnknownItem = new Horse(null, "Fridolin", "owner",
+                List.of(new Consumption("2", "Heu", new BigDecimal("3"))), null, STABLE_ID);
+        Horse horseWithZeroConsumption = new Horse(null, "Max", "owner",
+                List.of(new Consumption("1", "Hafer", BigDecimal.ZERO)), null, STABLE_ID);
+        Horse horseWithoutConsumption = new Horse(null, "Moritz", "owner", null, null, STABLE_ID);
+        //When
+        when(mockStockIdIndex.findMissing(STABLE_ID, Set.of("1", "2"))).thenReturn(Set.of("2"));
+        List<FormError> actual = service.validateImportBatch(STABLE_ID,
+                List.of(validHorse, horseWithUnknownItem, horseWithZeroConsumption, horseWithoutConsumption));
+        //Then
+        List<FormError> expected = Arrays.asList(
+                null,
+                new FormError("Consumption item not in stock", "consumptionList"),
+                new FormError("Der Wert muss größer als 0 sein", "dailyConsumption"),
+                null);
+        assertEquals(expected, actual);
+        verify(mockStockIdIndex).findMissing(STABLE_ID, Set.of("1", "2"));
+    }
 }
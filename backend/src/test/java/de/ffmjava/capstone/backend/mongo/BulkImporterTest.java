@@ -0,0 +1,146 @@
+package de.ffmjava.capstone.backend.mongo;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import de.ffmjava.capstone.backend.model.FormError;
+import de.ffmjava.capstone.backend.model.ImportResult;
+import de.ffmjava.capstone.backend.model.ImportRowError;
+import de.ffmjava.capstone.backend.stock.StockType;
+import de.ffmjava.capstone.backend.stock.model.StockItem;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.validation.beanvalidation.LocalValidatorFactoryBean;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class BulkImporterTest {
+
+    private final MongoTemplate mockMongoTemplate = mock(MongoTemplate.class);
+    private final BulkOperations mockBulkOperations = mock(BulkOperations.class);
+    private final LocalValidatorFactoryBean validator = new LocalValidatorFactoryBean();
+    private final List<List<StockItem>> insertedBatches = new ArrayList<>();
+
+    private BulkImporter createImporter(int batchSize) {
+        validator.afterPropertiesSet();
+        when(mockMongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, StockItem.class))
+                .thenReturn(mockBulkOperations);
+        when(mockBulkOperations.insert(anyList())).thenAnswer(invocation -> {
+            List<StockItem> batch = invocation.getArgument(0);
+            insertedBatches.add(List.copyOf(batch));
+            return mockBulkOperations;
+        });
+        when(mockBulkOperations.execute()).thenAnswer(invocation ->
+                BulkWriteResult.acknowledged(insertedBatches.get(insertedBatches.size() - 1).size(),
+                        0, 0, 0, List.of(), List.of()));
+        return new BulkImporter(mockMongoTemplate, new ObjectMapper(), validator, batchSize);
+    }
+
+    private static InputStream body(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void importRows_jsonArray_AndExpectBatchedInserts() throws IOException {
+        //Given
+        BulkImporter importer = createImporter(2);
+        String json = """
+                [
+                  {"name": "Hafer", "type": "Futter", "amountInStock": 10, "pricePerKilo": 1},
+                  {"name": "Heu", "type": "Futter", "amountInStock": 20, "pricePerKilo": 1},
+                  {"name": "Stroh", "type": "Einstreu", "amountInStock": 30, "pricePerKilo": 1}
+                ]
+                """;
+        //When
+        ImportResult actual = importer.importRows(body(json), StockItem.class,
+                rows -> new ArrayList<>(rows.stream().map(row -> (FormError) null).toList()),
+                row -> row.withId(row.name()));
+        //Then
+        assertEquals(new ImportResult(3, List.of()), actual);
+        assertEquals(2, insertedBatches.size());
+        assertEquals(new StockItem("Stroh", "Stroh", StockType.EINSTREU, new BigDecimal("30"), BigDecimal.ONE, null,
+                        null, null),
+                insertedBatches.get(1).get(0));
+    }
+
+    @Test
+    void importRows_ndjson_AndExpectRowErrors() throws IOException {
+        //Given
+        BulkImporter importer = createImporter(500);
+        String ndjson = """
+                {"name": "Hafer", "type": "Futter", "amountInStock": 10, "pricePerKilo": 1}
+                {"name": "", "type": "Futter", "amountInStock": 10, "pricePerKilo": 1}
+                {"name": "Heu", "type": "Futter", "amountInStock": 20, "pricePerKilo": 1}
+                """;
+        //When
+        ImportResult actual = importer.importRows(body(ndjson), StockItem.class,
+                rows -> rows.stream()
+                        .map(row -> row.name().equals("Heu") ? new FormError("Der angegebene Name ist bereits vergeben", "name") : null)
+                        .toList(),
+                row -> row.withId(row.name()));
+        //Then
+        ImportResult expected = new ImportResult(1, List.of(
+                new ImportRowError(2, "Feld \"Name/Bezeichnung\" darf nicht leer sein", "name"),
+                new ImportRowError(3, "Der angegebene Name ist bereits vergeben", "name")));
+        assertEquals(expected, actual);
+        verify(mockBulkOperations, times(1)).execute();
+    }
+
+    @Test
+    void importRows_malformedJson_AndExpectImportUpToBrokenRow() throws IOException {
+        //Given
+        BulkImporter importer = createImporter(500);
+        String ndjson = """
+                {"name": "Hafer", "type": "Futter", "amountInStock": 10, "pricePerKilo": 1}
+                {"name": "Heu", "type":
+                """;
+        //When
+        ImportResult actual = importer.importRows(body(ndjson), StockItem.class,
+                rows -> rows.stream().map(row -> (FormError) null).toList(),
+                row -> row.withId(row.name()));
+        //Then
+        assertEquals(1, actual.imported());
+        assertEquals(1, actual.errors().size());
+        assertEquals(2, actual.errors().get(0).row());
+    }
+
+    @Test
+    void importRows_writeError_AndExpectOnlyWrittenRowsReportedAsInserted() throws IOException {
+        //Given
+        BulkImporter importer = createImporter(500);
+        String ndjson = """
+                {"name": "Hafer", "type": "Futter", "amountInStock": 10, "pricePerKilo": 1}
+                {"name": "Heu", "type": "Futter", "amountInStock": 20, "pricePerKilo": 1}
+                {"name": "Stroh", "type": "Einstreu", "amountInStock": 30, "pricePerKilo": 1}
+                """;
+        List<StockItem> reportedRows = new ArrayList<>();
+        //When
+        doThrow(new BulkOperationException("E11000",
+                new MongoBulkWriteException(BulkWriteResult.acknowledged(2, 0, 0, 0, List.of(), List.of()),
+                        List.of(new BulkWriteError(11000, "E11000 duplicate key", new BsonDocument(), 1)),
+                        null, new ServerAddress()))).when(mockBulkOperations).execute();
+        ImportResult actual = importer.importRows(body(ndjson), StockItem.class,
+                rows -> rows.stream().map(row -> (FormError) null).toList(),
+                row -> row.withId(row.name()),
+                reportedRows::addAll);
+        //Then
+        assertEquals(2, actual.imported());
+        assertEquals(List.of(new ImportRowError(2, "E11000 duplicate key", null)), actual.errors());
+        assertEquals(List.of("Hafer", "Stroh"), reportedRows.stream().map(StockItem::name).toList());
+    }
+}
@@ -0,0 +1,104 @@
+package de.ffmjava.capstone.backend.mongo;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.ffmjava.capstone.backend.model.FormError;
+import de.ffmjava.capstone.backend.stock.StockType;
+import de.ffmjava.capstone.backend.stock.model.StockItem;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.validation.beanvalidation.LocalValidatorFactoryBean;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MergePatchReaderTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final MergePatchReader reader = createReader();
+
+    private MergePatchReader createReader() {
+        MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        MongoTemplate mockMongoTemplate = mock(MongoTemplate.class);
+        when(mockMongoTemplate.getConverter()).thenReturn(converter);
+        LocalValidatorFactoryBean validator = new LocalValidatorFactoryBean();
+        validator.afterPropertiesSet();
+        return new MergePatchReader(mockMongoTemplate, objectMapper, validator);
+    }
+
+    private FormError readInvalid(String json) throws IOException {
+        JsonNode patch = objectMapper.readTree(json);
+        InvalidPatchException exception = assertThrows(InvalidPatchException.class,
+                () -> reader.read(patch, StockItem.class));
+        return exception.getFormError();
+    }
+
+    @Test
+    void read_AndExpectValuesOfPropertyTypes() throws IOException {
+        //Given
+        JsonNode patch = objectMapper.readTree("""
+                {"amountInStock": 12.5, "type": "Einstreu"}
+                """);
+        //When
+        MergePatch<StockItem> actual = reader.read(patch, StockItem.class);
+        //Then
+        assertEquals(List.of("amountInStock", "type"), List.copyOf(actual.values().keySet()));
+        assertEquals(new BigDecimal("12.5"), actual.get("amountInStock"));
+        assertEquals(StockType.EINSTREU, actual.get("type"));
+        assertFalse(actual.contains("name"));
+    }
+
+    @Test
+    void read_unknownField_AndExpectException() throws IOException {
+        assertEquals(new FormError("Unbekanntes Feld: unknown", "unknown"), readInvalid("""
+                {"unknown": 1}
+                """));
+    }
+
+    @Test
+    void read_version_AndExpectException() throws IOException {
+        assertEquals(new FormError("Feld darf nicht geändert werden", "version"), readInvalid("""
+                {"version": 7}
+                """));
+    }
+
+    @Test
+    void read_blankName_AndExpectBeanValidationMessage() throws IOException {
+        assertEquals(new FormError("Feld \"Name/Bezeichnung\" darf nicht leer sein", "name"), readInvalid("""
+                {"name": ""}
+                """));
+    }
+
+    @Test
+    void read_removedRequiredField_AndExpectBeanValidationMessage() throws IOException {
+        assertEquals(new FormError("Feld \"Menge\" in Kilogramm darf nicht leer sein", "amountInStock"),
+                readInvalid("""
+                        {"amountInStock": null}
+                        """));
+    }
+
+    @Test
+    void read_wrongType_AndExpectException() throws IOException {
+        assertEquals(new FormError("Ungültiger Wert", "amountInStock"), readInvalid("""
+                {"amountInStock": "viel"}
+                """));
+    }
+
+    @Test
+    void read_array_AndExpectException() throws IOException {
+        assertEquals(new FormError("Der Patch muss ein JSON-Objekt sein", null), readInvalid("[]"));
+    }
+}
@@ -0,0 +1,117 @@
+package de.ffmjava.capstone.backend.mongo;
+
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
+import de.ffmjava.capstone.backend.clients.ClientRepository;
+import de.ffmjava.capstone.backend.clients.model.Client;
+import de.ffmjava.capstone.backend.horses.HorseRepository;
+import de.ffmjava.capstone.backend.horses.model.Horse;
+import de.ffmjava.capstone.backend.stock.StockRepository;
+import de.ffmjava.capstone.backend.stock.model.StockItem;
+import de.ffmjava.capstone.backend.user.UserRepository;
+import de.ffmjava.capstone.backend.user.model.AppUser;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static de.ffmjava.capstone.backend.stables.StableContext.DEFAULT_STABLE_ID;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@TestPropertySource(locations = "classpath:application.properties")
+class MongoIndexesIntegrationTest {
+
+    @Autowired
+    private MongoIndexes mongoIndexes;
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    @Autowired
+    private StockRepository stockRepository;
+    @Autowired
+    private HorseRepository horseRepository;
+    @Autowired
+    private ClientRepository clientRepository;
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    @DirtiesContext
+    void ensureIndexes_AndExpectEveryDeclaredIndexPresent() {
+        List<MongoIndexes.IndexCheck> actual = mongoIndexes.ensureIndexes();
+
+        assertTrue(actual.stream().allMatch(MongoIndexes.IndexCheck::present), actual::toString);
+        assertTrue(actual.stream().map(MongoIndexes.IndexCheck::name).collect(Collectors.toSet())
+                .containsAll(Set.of("stableId_name_unique", "username_unique", "stableId_consumptionList_id",
+                        "stableId_ownsHorse_unique", "stableId_id")));
+    }
+
+    @Test
+    @DirtiesContext
+    void ensureIndexes_AndExpectReplacedIndexDropped() {
+        IndexOperations indexOperations = mongoTemplate.indexOps(Client.class);
+        indexOperations.ensureIndex(new Index("ownsHorse", Sort.Direction.ASC).named("ownsHorse_unique"));
+
+        mongoIndexes.ensureIndexes();
+
+        assertTrue(indexOperations.getIndexInfo().stream()
+                .noneMatch(info -> info.getName().equals("ownsHorse_unique")));
+    }
+
+    @Test
+    @DirtiesContext
+    void repositoryQueries_AndExpectEveryQueryPlanUsesAnIndex() {
+        mongoIndexes.ensureIndexes();
+        MongoDatabase database = mongoTemplate.getDb();
+
+        database.runCommand(new Document("profile", 2));
+        stockRepository.existsByStableIdAndName(DEFAULT_STABLE_ID, "Hafer");
+        stockRepository.existsByStableIdAndNameAndIdNot(DEFAULT_STABLE_ID, "Hafer", "1");
+        stockRepository.findByStableIdAndNameIn(DEFAULT_STABLE_ID, List.of("Hafer", "Heu"));
+        stockRepository.findAllByStableId(DEFAULT_STABLE_ID);
+        userRepository.findByUsername("frank");
+        horseRepository.findHorsesByConsumptionId(DEFAULT_STABLE_ID, "1");
+        horseRepository.pullConsumptionById(DEFAULT_STABLE_ID, "1");
+        horseRepository.renameConsumptionById(DEFAULT_STABLE_ID, "1", "Hafer");
+        horseRepository.findAllByStableIdAndIdIn(DEFAULT_STABLE_ID, List.of("1"));
+        horseRepository.countByStableIdAndIdIn(DEFAULT_STABLE_ID, List.of("1"));
+        clientRepository.existsByStableIdAndOwnsHorseInAndIdNot(DEFAULT_STABLE_ID, List.of("1"), "2");
+        clientRepository.findByIdAndStableId("1", DEFAULT_STABLE_ID);
+        clientRepository.pullOwnedHorse(DEFAULT_STABLE_ID, "1");
+        database.runCommand(new Document("profile", 0));
+
+        List<Document> profiled = database.getCollection("system.profile")
+                .find(Filters.in("op", "query", "update"))
+                .into(new ArrayList<>());
+        Set<String> collections = new HashSet<>();
+        for (Document operation : profiled) {
+            String collection = operation.getString("ns").substring(database.getName().length() + 1);
+            Document command = operation.get("command", Document.class);
+            Document filter = command.containsKey("filter")
+                    ? command.get("filter", Document.class)
+                    : command.get("q", Document.class);
+            Document explain = database.runCommand(new Document("explain",
+                    new Document("find", collection).append("filter", filter)));
+            String winningPlan = explain.get("queryPlanner", Document.class).get("winningPlan", Document.class).toJson();
+            assertTrue(winningPlan.contains("IXSCAN"), collection + " " + filter.toJson() + ": " + winningPlan);
+            assertFalse(winningPlan.contains("COLLSCAN"), collection + " " + filter.toJson() + ": " + winningPlan);
+            collections.add(collection);
+        }
+        assertEquals(Set.of(mongoTemplate.getCollectionName(StockItem.class),
+                mongoTemplate.getCollectionName(AppUser.class),
+                mongoTemplate.getCollectionName(Horse.class),
+                mongoTemplate.getCollectionName(Client.class)), collections);
+    }
+}
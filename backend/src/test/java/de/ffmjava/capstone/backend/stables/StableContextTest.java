@@ -0,0 +1,67 @@
+package de.ffmjava.capstone.backend.stables;
+
+import de.ffmjava.capstone.backend.user.UserService;
+import de.ffmjava.capstone.backend.user.model.AppUser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class StableContextTest {
+
+    private final UserService mockUserService = mock(UserService.class);
+    private final StableContext stableContext = new StableContext(mockUserService);
+
+    @AfterEach
+    void clearSecurityContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private static void signIn(String username) {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(username, null, List.of()));
+    }
+
+    @Test
+    void currentStableId_AndExpectStableOfUser() {
+        //Given
+        signIn("frank");
+        //When
+        when(mockUserService.findByUsername("frank"))
+                .thenReturn(new AppUser("1", "frank", "", "", "Basic", null, "stable"));
+        //Then
+        assertEquals("stable", stableContext.currentStableId());
+    }
+
+    @Test
+    void currentStableId_userWithoutStable_AndExpectDefaultStable() {
+        //Given
+        signIn("frank");
+        //When
+        when(mockUserService.findByUsername("frank"))
+                .thenReturn(new AppUser("1", "frank", "", "", "Basic", null, null));
+        //Then
+        assertEquals(StableContext.DEFAULT_STABLE_ID, stableContext.currentStableId());
+    }
+
+    @Test
+    void currentStableId_anonymous_AndExpectAccessDenied() {
+        //Given
+        SecurityContextHolder.getContext().setAuthentication(new AnonymousAuthenticationToken("key", "anonymous",
+                AuthorityUtils.createAuthorityList("ROLE_ANONYMOUS")));
+        //When
+        //Then
+        assertEquals(Optional.empty(), stableContext.findCurrentStableId());
+        assertThrows(AccessDeniedException.class, stableContext::currentStableId);
+        verifyNoInteractions(mockUserService);
+    }
+}
@@ -0,0 +1,102 @@
+package de.ffmjava.capstone.backend.stock;
+
+import de.ffmjava.capstone.backend.stock.model.StockAlert;
+import de.ffmjava.capstone.backend.stock.model.StockAlertThreshold;
+import de.ffmjava.capstone.backend.stock.model.StockForecast;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class StockAlertServiceTest {
+
+    private static final String STABLE_ID = "stable";
+
+    private static final Instant NOW = Instant.parse("2022-12-01T12:00:00Z");
+
+    private final MongoTemplate mockMongoTemplate = mock(MongoTemplate.class);
+    private final StockRepository mockStockRepository = mock(StockRepository.class);
+    private final StockAlertBroadcaster mockBroadcaster = mock(StockAlertBroadcaster.class);
+    private final StockAlertService service = new StockAlertService(mockMongoTemplate, mockStockRepository,
+            mockBroadcaster, Clock.fixed(NOW, ZoneOffset.UTC));
+
+    private static StockForecast forecast(String id, String amountInStock, String daysRemaining) {
+        return new StockForecast(id, new BigDecimal(amountInStock), BigDecimal.ONE,
+                daysRemaining == null ? null : new BigDecimal(daysRemaining), LocalDate.of(2022, 12, 20), null,
+                STABLE_ID);
+    }
+
+    @Test
+    void check_AndExpectReasonOfFirstViolatedThreshold() {
+        //Given
+        StockAlertThreshold threshold = new StockAlertThreshold("1", new BigDecimal("10"), new BigDecimal("14"));
+        //Then
+        assertEquals(StockAlert.Reason.MIN_AMOUNT_IN_STOCK, StockAlertService.check(threshold, forecast("1", "5", "5")));
+        assertEquals(StockAlert.Reason.MIN_DAYS_OF_COVER, StockAlertService.check(threshold, forecast("1", "20", "7.5")));
+        assertNull(StockAlertService.check(threshold, forecast("1", "20", null)));
+        assertNull(StockAlertService.check(threshold.withMinAmountInStock(null), forecast("1", "5", "20")));
+        assertNull(StockAlertService.check(null, forecast("1", "0", "0")));
+    }
+
+    @Test
+    void onForecastsUpdated_AndExpectAlertsRaisedAndClearedOnTransitionOnly() {
+        //Given
+        StockAlertThreshold threshold = new StockAlertThreshold(null, new BigDecimal("10"), null);
+        StockAlert activeAlert = new StockAlert("2", StockAlert.Reason.MIN_AMOUNT_IN_STOCK, BigDecimal.ONE, null,
+                NOW.minusSeconds(60), STABLE_ID);
+        StockAlert stillActiveAlert = activeAlert.withId("3");
+        //When
+        when(mockMongoTemplate.find(any(Query.class), eq(StockAlertThreshold.class))).thenReturn(List.of(
+                threshold.withId("1"), threshold.withId("2"), threshold.withId("3")));
+        when(mockMongoTemplate.find(any(Query.class), eq(StockAlert.class)))
+                .thenReturn(List.of(activeAlert, stillActiveAlert));
+        when(mockMongoTemplate.save(any(StockAlert.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        service.onForecastsUpdated(new StockForecastsUpdatedEvent(
+                List.of(forecast("1", "5", null), forecast("2", "50", null), forecast("3", "2", null)), List.of()));
+        //Then
+        StockAlert raised = new StockAlert("1", StockAlert.Reason.MIN_AMOUNT_IN_STOCK, new BigDecimal("5"), null, NOW,
+                STABLE_ID);
+        verify(mockBroadcaster).broadcast(STABLE_ID, StockAlertService.ALERT_RAISED_EVENT, raised);
+        verify(mockMongoTemplate).remove(activeAlert);
+        verify(mockBroadcaster).broadcast(STABLE_ID, StockAlertService.ALERT_CLEARED_EVENT, activeAlert);
+        verifyNoMoreInteractions(mockBroadcaster);
+    }
+
+    @Test
+    void onForecastsUpdated_removedStockItem_AndExpectAlertCleared() {
+        //Given
+        StockAlert activeAlert = new StockAlert("1", StockAlert.Reason.MIN_AMOUNT_IN_STOCK, BigDecimal.ONE, null, NOW,
+                STABLE_ID);
+        //When
+        when(mockMongoTemplate.findAllAndRemove(any(Query.class), eq(StockAlert.class)))
+                .thenReturn(List.of(activeAlert));
+        service.onForecastsUpdated(new StockForecastsUpdatedEvent(List.of(), List.of("1")));
+        //Then
+        verify(mockMongoTemplate).remove(any(Query.class), eq(StockAlertThreshold.class));
+        verify(mockBroadcaster).broadcast(STABLE_ID, StockAlertService.ALERT_CLEARED_EVENT, activeAlert);
+    }
+
+    @Test
+    void setThreshold_unknownStockItem_AndExpectException() {
+        //Given
+        StockAlertThreshold threshold = new StockAlertThreshold(null, BigDecimal.TEN, null);
+        //When
+        when(mockStockRepository.existsByIdAndStableId("1", STABLE_ID)).thenReturn(false);
+        //Then
+        assertThrows(IllegalArgumentException.class, () -> service.setThreshold(STABLE_ID, "1", threshold));
+        verify(mockMongoTemplate, never()).save(any(StockAlertThreshold.class));
+    }
+}
@@ -0,0 +1,107 @@
+package de.ffmjava.capstone.backend.stock;
+
+import de.ffmjava.capstone.backend.horses.ConsumptionTotalsChangedEvent;
+import de.ffmjava.capstone.backend.horses.model.ConsumptionTotal;
+import de.ffmjava.capstone.backend.stock.model.StockForecast;
+import de.ffmjava.capstone.backend.stock.model.StockItem;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.Period;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class StockForecastServiceTest {
+
+    private static final String STABLE_ID = "stable";
+
+    private static final LocalDate TODAY = LocalDate.of(2022, 12, 1);
+
+    private final MongoTemplate mockMongoTemplate = mock(MongoTemplate.class);
+    private final BulkOperations mockBulkOperations = mock(BulkOperations.class);
+    private final ApplicationEventPublisher mockEventPublisher = mock(ApplicationEventPublisher.class);
+    private final StockForecastService service = new StockForecastService(mockMongoTemplate, mockEventPublisher,
+            Period.ofDays(14), Clock.fixed(Instant.parse("2022-12-01T12:00:00Z"), ZoneOffset.UTC));
+
+    private static StockItem stockItem(String id, String amountInStock) {
+        return new StockItem(id, null, null, new BigDecimal(amountInStock), null, null, STABLE_ID, null);
+    }
+
+    @Test
+    void forecast_AndExpectDaysAndDatesFromConsumption() {
+        //When
+        StockForecast actual = service.forecast(stockItem("1", "100"),
+                new ConsumptionTotal("1", "Hafer", new BigDecimal("3"), 2, STABLE_ID), TODAY);
+        //Then
+        assertEquals(new StockForecast("1", new BigDecimal("100"), new BigDecimal("3"), new BigDecimal("33.3"),
+                LocalDate.of(2023, 1, 3), LocalDate.of(2022, 12, 20), STABLE_ID), actual);
+    }
+
+    @Test
+    void forecast_notConsumed_AndExpectNoDates() {
+        //When
+        StockForecast actual = service.forecast(stockItem("1", "100"),
+                new ConsumptionTotal("1", "Hafer", new BigDecimal("0"), 0, STABLE_ID), TODAY);
+        //Then
+        assertEquals(new StockForecast("1", new BigDecimal("100"), BigDecimal.ZERO, null, null, null, STABLE_ID),
+                actual);
+    }
+
+    @Test
+    void update_AndExpectForecastsOfChangedItemsOnly() {
+        //Given
+        ArgumentCaptor<Object> forecasts = ArgumentCaptor.forClass(Object.class);
+        ArgumentCaptor<Query> removed = ArgumentCaptor.forClass(Query.class);
+        //When
+        when(mockMongoTemplate.find(any(Query.class), eq(StockItem.class))).thenReturn(List.of(stockItem("1", "10")));
+        when(mockMongoTemplate.find(any(Query.class), eq(ConsumptionTotal.class)))
+                .thenReturn(List.of(new ConsumptionTotal("1", "Hafer", new BigDecimal("4"), 1, STABLE_ID)));
+        when(mockMongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, StockForecast.class))
+                .thenReturn(mockBulkOperations);
+        service.onStockAmountsChanged(new StockAmountsChangedEvent(List.of("1", "deleted")));
+        //Then
+        verify(mockBulkOperations).replaceOne(any(Query.class), forecasts.capture(),
+                any(FindAndReplaceOptions.class));
+        verify(mockBulkOperations).execute();
+        StockForecast expected = new StockForecast("1", BigDecimal.TEN, new BigDecimal("4"), new BigDecimal("2.5"),
+                LocalDate.of(2022, 12, 3), LocalDate.of(2022, 11, 19), STABLE_ID);
+        assertEquals(expected, forecasts.getValue());
+        verify(mockMongoTemplate).remove(removed.capture(), eq(StockForecast.class));
+        assertEquals(new Document("id", new Document("$in", Set.of("deleted"))),
+                removed.getValue().getQueryObject());
+        verify(mockEventPublisher).publishEvent(new StockForecastsUpdatedEvent(List.of(expected), Set.of("deleted")));
+    }
+
+    @Test
+    void onConsumptionTotalsChanged_rebuilt_AndExpectAllForecastsRecomputed() {
+        //When
+        when(mockMongoTemplate.find(any(Query.class), eq(StockItem.class)))
+                .thenReturn(List.of(stockItem("1", "10"), stockItem("2", "5")));
+        when(mockMongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, StockForecast.class))
+                .thenReturn(mockBulkOperations);
+        when(mockMongoTemplate.findDistinct(any(Query.class), eq("id"), eq(StockForecast.class), eq(String.class)))
+                .thenReturn(List.of("deleted"));
+        service.onConsumptionTotalsChanged(ConsumptionTotalsChangedEvent.ofRebuild(STABLE_ID));
+        //Then
+        verify(mockMongoTemplate).find(any(Query.class), eq(ConsumptionTotal.class));
+        verify(mockBulkOperations, times(2)).replaceOne(any(Query.class), any(StockForecast.class),
+                any(FindAndReplaceOptions.class));
+        verify(mockMongoTemplate).remove(any(Query.class), eq(StockForecast.class));
+    }
+}
@@ -0,0 +1,154 @@
+package de.ffmjava.capstone.backend.stock;
+
+import de.ffmjava.capstone.backend.stock.model.StockItem;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class StockIdIndexTest {
+
+    private static final String STABLE_ID = "stable";
+
+    private final StockRepository mockStockRepository = mock(StockRepository.class);
+    private final Clock clock = Clock.fixed(Instant.parse("2022-12-01T00:00:00Z"), ZoneOffset.UTC);
+    private final StockIdIndex index = new StockIdIndex(mockStockRepository, Duration.ofMinutes(5), clock);
+
+    private static StockItem idOnly(String id) {
+        return new StockItem(id, null, null, null, null, null, STABLE_ID, null);
+    }
+
+    @Test
+    void existAll_AndExpectSingleLoadForRepeatedChecks() {
+        //Given
+        //When
+        when(mockStockRepository.findAllIds(STABLE_ID)).thenReturn(List.of(idOnly("1"), idOnly("2")));
+        //Then
+        assertTrue(index.existAll(STABLE_ID, List.of("1", "2")));
+        assertTrue(index.existAll(STABLE_ID, List.of("2")));
+        assertFalse(index.existAll(STABLE_ID, List.of("1", "3")));
+        verify(mockStockRepository, times(1)).findAllIds(STABLE_ID);
+        verify(mockStockRepository).findIdsIn(STABLE_ID, Set.of("3"));
+    }
+
+    @Test
+    void findMissing_createdOnOtherNode_AndExpectRecheckAndReload() {
+        //Given
+        //When
+        when(mockStockRepository.findAllIds(STABLE_ID))
+                .thenReturn(List.of(idOnly("1")))
+                .thenReturn(List.of(idOnly("1"), idOnly("2")));
+        when(mockStockRepository.findIdsIn(STABLE_ID, Set.of("2", "3"))).thenReturn(List.of(idOnly("2")));
+        //Then
+        assertEquals(Set.of("3"), index.findMissing(STABLE_ID, List.of("1", "2", "3")));
+        assertTrue(index.existAll(STABLE_ID, List.of("1", "2")));
+        verify(mockStockRepository, times(2)).findAllIds(STABLE_ID);
+        verify(mockStockRepository, times(1)).findIdsIn(any(), any());
+    }
+
+    @Test
+    void findMissing_nullId_AndExpectIllegalArgumentException() {
+        //Given
+        List<String> ids = Arrays.asList("1", null);
+        //When
+        //Then
+        assertThrows(IllegalArgumentException.class, () -> index.findMissing(STABLE_ID, ids));
+        verifyNoInteractions(mockStockRepository);
+    }
+
+    @Test
+    void existAll_emptyCollection_AndExpectNoLoad() {
+        //Given
+        //When
+        //Then
+        assertTrue(index.existAll(STABLE_ID, List.of()));
+        verifyNoInteractions(mockStockRepository);
+    }
+
+    @Test
+    void findMissing_AfterInvalidate_AndExpectReload() {
+        //Given
+        //When
+        when(mockStockRepository.findAllIds(STABLE_ID))
+                .thenReturn(List.of(idOnly("1")))
+                .thenReturn(List.of(idOnly("1"), idOnly("2")));
+        //Then
+        assertEquals(Set.of("2"), index.findMissing(STABLE_ID, List.of("1", "2")));
+        index.invalidate(STABLE_ID);
+        assertEquals(Set.of(), index.findMissing(STABLE_ID, List.of("1", "2")));
+        verify(mockStockRepository, times(2)).findAllIds(STABLE_ID);
+    }
+
+    @Test
+    void existAll_AfterTimeToLive_AndExpectReload() {
+        //Given
+        Clock laterClock = mock(Clock.class);
+        StockIdIndex expiringIndex = new StockIdIndex(mockStockRepository, Duration.ofMinutes(5), laterClock);
+        //When
+        when(laterClock.instant())
+                .thenReturn(clock.instant())
+                .thenReturn(clock.instant().plusSeconds(60))
+                .thenReturn(clock.instant().plusSeconds(600));
+        when(mockStockRepository.findAllIds(STABLE_ID)).thenReturn(List.of(idOnly("1")));
+        //Then
+        assertTrue(expiringIndex.existAll(STABLE_ID, List.of("1")));
+        assertTrue(expiringIndex.existAll(STABLE_ID, List.of("1")));
+        assertTrue(expiringIndex.existAll(STABLE_ID, List.of("1")));
+        verify(mockStockRepository, times(2)).findAllIds(STABLE_ID);
+    }
+
+    @Test
+    void existAll_OtherStable_AndExpectSeparateIndex() {
+        //Given
+        //When
+        when(mockStockRepository.findAllIds(STABLE_ID)).thenReturn(List.of(idOnly("1")));
+        when(mockStockRepository.findAllIds("other")).thenReturn(List.of(idOnly("2")));
+        //Then
+        assertTrue(index.existAll(STABLE_ID, List.of("1")));
+        assertFalse(index.existAll("other", List.of("1")));
+        assertEquals(Set.of("1"), index.findMissing("other", List.of("1", "2")));
+        index.invalidate("other");
+        assertTrue(index.existAll(STABLE_ID, List.of("1")));
+        assertTrue(index.existAll("other", List.of("2")));
+        verify(mockStockRepository, times(1)).findAllIds(STABLE_ID);
+        verify(mockStockRepository, times(2)).findAllIds("other");
+    }
+
+    @Test
+    void existAll_InvalidatedWhileLoading_AndExpectLoadNotKept() {
+        //Given
+        //When
+        when(mockStockRepository.findAllIds(STABLE_ID)).thenAnswer(invocation -> {
+            index.invalidate(STABLE_ID);
+            return List.of(idOnly("1"));
+        }).thenReturn(List.of(idOnly("1")));
+        //Then
+        assertTrue(index.existAll(STABLE_ID, List.of("1")));
+        assertTrue(index.existAll(STABLE_ID, List.of("1")));
+        assertTrue(index.existAll(STABLE_ID, List.of("1")));
+        verify(mockStockRepository, times(2)).findAllIds(STABLE_ID);
+    }
+
+    @Test
+    void existAll_OtherStableInvalidatedWhileLoading_AndExpectLoadKept() {
+        //Given
+        //When
+        when(mockStockRepository.findAllIds(STABLE_ID)).thenAnswer(invocation -> {
+            index.invalidate("other");
+            return List.of(idOnly("1"));
+        });
+        //Then
+        assertTrue(index.existAll(STABLE_ID, List.of("1")));
+        assertTrue(index.existAll(STABLE_ID, List.of("1")));
+        verify(mockStockRepository, times(1)).findAllIds(STABLE_ID);
+    }
+}
@@ -6,6 +6,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.annotation.DirtiesContext;
@@ -56,7 +57,7 @@ class StockIntegrationTest {
         mockMvc.perform(get
                         ("/stock//" + createdStockItem.id()))
                 .andExpect(status().isOk())
-                .andExpect(content().string("{\"id\":\"<ID>\",\"name\":\"Test\",\"type\":\"Futter\",\"amountInStock\":42.0,\"pricePerKilo\":42.0}"
+                .andExpect(content().string("{\"id\":\"<ID>\",\"name\":\"Test\",\"type\":\"Futter\",\"amountInStock\":42.0,\"pricePerKilo\":42.0,\"version\":0}"
                         .replace("<ID>", createdStockItem.id())));
     }
 
@@ -260,8 +261,334 @@ class StockIntegrationTest {
                         .content(postResponse.replace("Futter", "Einstreu"))
                 )
                 .andExpect(status().is(200))
-                .andExpect(content().string("{\"id\":\"<ID>\",\"name\":\"Test\",\"type\":\"Einstreu\",\"amountInStock\":42.0,\"pricePerKilo\":42.0}"
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1\""))
+                .andExpect(content().string("{\"id\":\"<ID>\",\"name\":\"Test\",\"type\":\"Einstreu\",\"amountInStock\":42.0,\"pricePerKilo\":42.0,\"version\":1}"
                         .replace("<ID>", createdStockItem.id())));
     }
 
+    @Test
+    @DirtiesContext
+    @WithMockUser(roles = "Basic")
+    void putStockItem_WithStaleVersion_AndExpect_409() throws Exception {
+        String postResponse = mockMvc.perform(post("/stock/")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("""
+                        {"name": "Test", "type": "Futter", "amountInStock": 42.0, "pricePerKilo": 42.0}
+                        """)).andReturn().getResponse().getContentAsString();
+
+        mockMvc.perform(put("/stock/")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(postResponse.replace("Futter", "Einstreu")))
+                .andExpect(status().isOk());
+        mockMvc.perform(put("/stock/")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(postResponse.replace("Futter", "Heu")))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    @DirtiesContext
+    @WithMockUser(roles = "Basic")
+    void putStockItem_WithStaleIfMatch_AndExpect_412() throws Exception {
+        String postResponse = mockMvc.perform(post("/stock/")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("""
+                        {"name": "Test", "type": "Futter", "amountInStock": 42.0, "pricePerKilo": 42.0}
+                        """)).andReturn().getResponse().getContentAsString();
+
+        mockMvc.perform(put("/stock/")
+                        .header(HttpHeaders.IF_MATCH, "\"7\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(postResponse.replace("Futter", "Einstreu")))
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    @DirtiesContext
+    @WithMockUser(roles = "Basic")
+    void putStockItem_WithoutVersion_AndExpect_428() throws Exception {
+        String postResponse = mockMvc.perform(post("/stock/")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("""
+                        {"name": "Test", "type": "Futter", "amountInStock": 42.0, "pricePerKilo": 42.0}
+                        """)).andReturn().getResponse().getContentAsString();
+
+        mockMvc.perform(put("/stock/")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(postResponse.replace(",\"version\":0", "")))
+                .andExpect(status().isPreconditionRequired());
+    }
+
+    @Test
+    @DirtiesContext
+    @WithMockUser(roles = "Basic")
+    void patchStockItem_AndExpectOnlyPatchedField_200() throws Exception {
+        String postResponse = mockMvc.perform(post("/stock/")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("""
+                        {"name": "Test", "type": "Futter", "amountInStock": 42.0, "pricePerKilo": 42.0}
+                        """)).andReturn().getResponse().getContentAsString();
+        String id = objectMapper.readValue(postResponse, StockItem.class).id();
+
+        mockMvc.perform(patch("/stock/" + id)
+                        .header(HttpHeaders.IF_MATCH, "\"0\"")
+                        .contentType("application/merge-patch+json")
+                        .content("""
+                                {"amountInStock": 12.5}
+                                """))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1\""))
+                .andExpect(jsonPath("$.name").value("Test"))
+                .andExpect(jsonPath("$.amountInStock").value(12.5));
+
+        mockMvc.perform(get("/stock/" + id))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.amountInStock").value(12.5))
+                .andExpect(jsonPath("$.version").value(1));
+    }
+
+    @Test
+    @DirtiesContext
+    @WithMockUser(roles = "Basic")
+    void patchStockItem_WithInvalidValue_AndExpectErrorMessage_400() throws Exception {
+        String postResponse = mockMvc.perform(post("/stock/")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("""
+                        {"name": "Test", "type": "Futter", "amountInStock": 42.0, "pricePerKilo": 42.0}
+                        """)).andReturn().getResponse().getContentAsString();
+        String id = objectMapper.readValue(postResponse, StockItem.class).id();
+
+        mockMvc.perform(patch("/stock/" + id)
+                        .contentType("application/merge-patch+json")
+                        .content("""
+                                {"name": ""}
+                                """))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("{\"errorMessage\":\"Feld \\\"Name/Bezeichnung\\\" darf nicht leer sein\",\"fieldName\":\"name\"}"));
+    }
+
+    @Test
+    @WithMockUser(roles = "Basic")
+    void patchStockItem_UnknownId_AndExpect_404() throws Exception {
+        mockMvc.perform(patch("/stock/1")
+                        .contentType("application/merge-patch+json")
+                        .content("""
+                                {"amountInStock": 1}
+                                """))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @DirtiesContext
+    @WithMockUser(roles = "Basic")
+    void addStockMovements_AndExpectAmountChangedAndUnderflowRejected() throws Exception {
+        String postResponse = mockMvc.perform(post("/stock/")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("""
+                        {"name": "Hafer", "type": "Futter", "amountInStock": 10, "pricePerKilo": 1}
+                        """)).andReturn().getResponse().getContentAsString();
+        String id = objectMapper.readValue(postResponse, StockItem.class).id();
+
+        mockMvc.perform(post("/stock/" + id + "/movements")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"type": "RECEIVE", "amount": 25}
+                                """))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1\""))
+                .andExpect(jsonPath("$.amountInStock").value(35));
+        mockMvc.perform(post("/stock/" + id + "/movements")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"type": "CONSUME", "amount": 40}
+                                """))
+                .andExpect(status().isConflict());
+        mockMvc.perform(post("/stock/" + id + "/movements")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"type": "CONSUME", "amount": 2.5}
+                                """))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.amountInStock").value(32.5));
+    }
+
+    @Test
+    @WithMockUser(roles = "Basic")
+    void addStockMovement_UnknownId_AndExpect_404() throws Exception {
+        mockMvc.perform(post("/stock/1/movements")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"type": "RECEIVE", "amount": 25}
+                                """))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @DirtiesContext
+    @WithMockUser(roles = "Basic")
+    void importStockItems_ndjson_AndExpectRowError_207() throws Exception {
+        String ndjson = """
+                {"name": "Hafer", "type": "Futter", "amountInStock": 42.0, "pricePerKilo": 1.0}
+                {"name": "Hafer", "type": "Futter", "amountInStock": 42.0, "pricePerKilo": 1.0}
+                {"name": "Stroh", "type": "Einstreu", "amountInStock": 10.0, "pricePerKilo": 0.5}
+                """;
+        mockMvc.perform(post("/stock/import")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(ndjson))
+                .andExpect(status().isMultiStatus())
+                .andExpect(content().json("""
+                        {"imported": 2,
+                         "errors": [{"row": 2, "errorMessage": "Der angegebene Name ist bereits vergeben", "fieldName": "name"}]}
+                        """));
+
+        mockMvc.perform(get("/stock/"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2));
+    }
+
+    @Test
+    @DirtiesContext
+    @WithMockUser(roles = "Basic")
+    void deleteStockItem_AndExpectConsumptionRemovedFromHorses_204() throws Exception {
+        String hafer = mockMvc.perform(post("/stock/")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("""
+                        {"name": "Hafer", "type": "Futter", "amountInStock": 100, "pricePerKilo": 1}
+                        """)).andReturn().getResponse().getContentAsString();
+        String heu = mockMvc.perform(post("/stock/")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("""
+                        {"name": "Heu", "type": "Futter", "amountInStock": 100, "pricePerKilo": 1}
+                        """)).andReturn().getResponse().getContentAsString();
+        String haferId = objectMapper.readValue(hafer, StockItem.class).id();
+        String heuId = objectMapper.readValue(heu, StockItem.class).id();
+        for (String name : new String[]{"Hansi", "Fridolin"}) {
+            mockMvc.perform(put("/horses/")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("""
+                            {"name": "<NAME>", "owner": "Peter Pan", "consumptionList": [
+                                {"id": "<HAFER>", "name": "Hafer", "dailyConsumption": 1},
+                                {"id": "<HEU>", "name": "Heu", "dailyConsumption": 2}]}
+                            """.replace("<NAME>", name).replace("<HAFER>", haferId).replace("<HEU>", heuId)));
+        }
+
+        mockMvc.perform(delete("/stock/" + haferId))
+                .andExpect(status().isNoContent());
+
+        mockMvc.perform(get("/horses/"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].consumptionList.length()").value(1))
+                .andExpect(jsonPath("$[0].consumptionList[0].id").value(heuId))
+                .andExpect(jsonPath("$[1].consumptionList.length()").value(1))
+                .andExpect(jsonPath("$[1].consumptionList[0].id").value(heuId));
+    }
+
+    @Test
+    @DirtiesContext
+    @WithMockUser(roles = "Basic")
+    void getForecasts_AndExpectForecastFollowingConsumption_200() throws Exception {
+        String hafer = mockMvc.perform(post("/stock/")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("""
+                        {"name": "Hafer", "type": "Futter", "amountInStock": 100, "pricePerKilo": 1}
+                        """)).andReturn().getResponse().getContentAsString();
+        String haferId = objectMapper.readValue(hafer, StockItem.class).id();
+
+        mockMvc.perform(get("/stock/" + haferId + "/forecast"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.amountInStock").value(100))
+                .andExpect(jsonPath("$.daysRemaining").isEmpty());
+
+        mockMvc.perform(put("/horses/")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("""
+                        {"name": "Hansi", "owner": "Peter Pan", "consumptionList": [
+                            {"id": "<HAFER>", "name": "Hafer", "dailyConsumption": 4}]}
+                        """.replace("<HAFER>", haferId)));
+
+        mockMvc.perform(get("/stock/forecasts"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$['" + haferId + "'].dailyConsumption").value(4))
+                .andExpect(jsonPath("$['" + haferId + "'].daysRemaining").value(25))
+                .andExpect(jsonPath("$['" + haferId + "'].reorderDate").isNotEmpty());
+
+        mockMvc.perform(delete("/stock/" + haferId));
+        mockMvc.perform(get("/stock/" + haferId + "/forecast"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @DirtiesContext
+    @WithMockUser(roles = "Basic")
+    void setAlertThreshold_AndExpectAlertRaisedAndCleared() throws Exception {
+        String hafer = mockMvc.perform(post("/stock/")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("""
+                        {"name": "Hafer", "type": "Futter", "amountInStock": 5, "pricePerKilo": 1}
+                        """)).andReturn().getResponse().getContentAsString();
+        String haferId = objectMapper.readValue(hafer, StockItem.class).id();
+
+        mockMvc.perform(put("/stock/" + haferId + "/alert-threshold")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"minAmountInStock": 10}
+                                """))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(haferId));
+        mockMvc.perform(get("/stock/alerts"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].reason").value("MIN_AMOUNT_IN_STOCK"));
+
+        mockMvc.perform(post("/stock/" + haferId + "/movements")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("""
+                        {"type": "RECEIVE", "amount": 20}
+                        """));
+        mockMvc.perform(get("/stock/alerts"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(0));
+    }
+
+    @Test
+    @WithMockUser(roles = "Basic")
+    void setAlertThreshold_negativeValue_AndExpectErrorMessage_400() throws Exception {
+        mockMvc.perform(put("/stock/1/alert-threshold")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"minDaysOfCover": -1}
+                                """))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @DirtiesContext
+    @WithMockUser(roles = "Basic")
+    void getStockItemById_withCurrentETag_AndExpect304UntilNextMovement() throws Exception {
+        String response = mockMvc.perform(post("/stock/")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("""
+                        {"name": "Hafer", "type": "Futter", "amountInStock": 100, "pricePerKilo": 1}
+                        """)).andReturn().getResponse().getContentAsString();
+        String id = objectMapper.readValue(response, StockItem.class).id();
+
+        mockMvc.perform(get("/stock/" + id))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"0\""));
+        mockMvc.perform(get("/stock/" + id).header(HttpHeaders.IF_NONE_MATCH, "\"0\""))
+                .andExpect(status().isNotModified());
+
+        mockMvc.perform(post("/stock/" + id + "/movements")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"type": "RECEIVE", "amount": 5}
+                                """))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/stock/" + id).header(HttpHeaders.IF_NONE_MATCH, "\"0\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1\""))
+                .andExpect(jsonPath("$.amountInStock").value(105));
+    }
 }
@@ -0,0 +1,137 @@
+package de.ffmjava.capstone.backend.stock;
+
+import de.ffmjava.capstone.backend.stock.model.StockItem;
+import de.ffmjava.capstone.backend.stock.model.StockLedgerEntry;
+import de.ffmjava.capstone.backend.stock.model.StockLevel;
+import de.ffmjava.capstone.backend.stock.model.StockSnapshot;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class StockLedgerTest {
+
+    private static final Instant SNAPSHOT_TIME = Instant.parse("2022-12-01T00:00:00Z");
+    private static final Instant AT = Instant.parse("2022-12-01T12:00:00Z");
+
+    private final MongoTemplate mockMongoTemplate = mock(MongoTemplate.class);
+    private final BulkOperations mockBulkOperations = mock(BulkOperations.class);
+    private final ApplicationEventPublisher mockEventPublisher = mock(ApplicationEventPublisher.class);
+    private final StockLedger ledger = new StockLedger(mockMongoTemplate, mockEventPublisher, Duration.ofMinutes(5),
+            Clock.fixed(AT, ZoneOffset.UTC));
+
+    @SuppressWarnings("unchecked")
+    private void returnFromAggregation(Document... results) {
+        when(mockMongoTemplate.aggregate(any(TypedAggregation.class), eq(Document.class)))
+                .thenReturn(new AggregationResults<>(List.of(results), new Document()));
+    }
+
+    @Test
+    void levelAt_AndExpectSnapshotPlusReplayedTail() {
+        //Given
+        ArgumentCaptor<TypedAggregation<?>> aggregation = ArgumentCaptor.forClass(TypedAggregation.class);
+        //When
+        when(mockMongoTemplate.findOne(any(Query.class), eq(StockSnapshot.class)))
+                .thenReturn(new StockSnapshot("1@0", "1", SNAPSHOT_TIME, new BigDecimal("100")));
+        returnFromAggregation(new Document("total", new Decimal128(new BigDecimal("-12.5"))).append("entries", 3));
+        Optional<StockLevel> actual = ledger.levelAt("1", AT);
+        //Then
+        assertEquals(Optional.of(new StockLevel("1", AT, new BigDecimal("87.5"))), actual);
+        verify(mockMongoTemplate).aggregate(aggregation.capture(), eq(Document.class));
+        Document match = aggregation.getValue().toPipeline(
+                org.springframework.data.mongodb.core.aggregation.Aggregation.DEFAULT_CONTEXT).get(0);
+        Document timestamp = (Document) ((Document) match.get("$match")).get("timestamp");
+        assertEquals(SNAPSHOT_TIME, timestamp.get("$gt"));
+        assertEquals(AT, timestamp.get("$lte"));
+    }
+
+    @Test
+    void levelAt_WithoutSnapshot_AndExpectReplayFromStart() {
+        //When
+        returnFromAggregation(new Document("total", new Decimal128(new BigDecimal("40"))).append("entries", 2));
+        Optional<StockLevel> actual = ledger.levelAt("1", AT);
+        //Then
+        assertEquals(Optional.of(new StockLevel("1", AT, new BigDecimal("40"))), actual);
+    }
+
+    @Test
+    void levelAt_unknownStockItem_AndExpectEmpty() {
+        //When
+        returnFromAggregation();
+        //Then
+        assertTrue(ledger.levelAt("1", AT).isEmpty());
+    }
+
+    @Test
+    void takeSnapshot_AndExpectPreviousSnapshotPlusLedgerTotals() {
+        //Given
+        StockSnapshot previous = new StockSnapshot("1@0", "1", SNAPSHOT_TIME, new BigDecimal("100"));
+        ArgumentCaptor<Query> upsertQueries = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> upserts = ArgumentCaptor.forClass(Update.class);
+        //When
+        when(mockMongoTemplate.findOne(any(Query.class), eq(StockSnapshot.class))).thenReturn(previous);
+        when(mockMongoTemplate.find(any(Query.class), eq(StockSnapshot.class))).thenReturn(List.of(
+                previous, new StockSnapshot("deleted@0", "deleted", SNAPSHOT_TIME, BigDecimal.TEN)));
+        returnFromAggregation(
+                new Document("_id", "1").append("total", new Decimal128(new BigDecimal("-10"))),
+                new Document("_id", "2").append("total", new Decimal128(new BigDecimal("5"))));
+        when(mockMongoTemplate.findDistinct(any(Query.class), eq("id"), eq(StockItem.class), eq(String.class)))
+                .thenReturn(List.of("1", "2"));
+        when(mockMongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, StockSnapshot.class))
+                .thenReturn(mockBulkOperations);
+        int actual = ledger.takeSnapshot(AT);
+        //Then
+        assertEquals(2, actual);
+        verify(mockBulkOperations, times(2)).upsert(upsertQueries.capture(), upserts.capture());
+        for (int i = 0; i < 2; i++) {
+            Document inserted = (Document) upserts.getAllValues().get(i).getUpdateObject().get("$setOnInsert");
+            BigDecimal expected = inserted.get("stockItemId").equals("1") ? new BigDecimal("90") : new BigDecimal("5");
+            assertEquals(new Decimal128(expected), inserted.get("amountInStock"));
+            assertEquals(AT, inserted.get("timestamp"));
+        }
+        verify(mockBulkOperations).execute();
+    }
+
+    @Test
+    void takeSnapshot_notAfterLatestSnapshot_AndExpectNothingWritten() {
+        //When
+        when(mockMongoTemplate.findOne(any(Query.class), eq(StockSnapshot.class)))
+                .thenReturn(new StockSnapshot("1@0", "1", AT, BigDecimal.ONE));
+        //Then
+        assertEquals(0, ledger.takeSnapshot(AT));
+        verify(mockMongoTemplate, never()).bulkOps(any(), eq(StockSnapshot.class));
+    }
+
+    @Test
+    void record_zeroDelta_AndExpectNoEntry() {
+        //When
+        ledger.record("1", BigDecimal.ZERO, StockLedgerEntry.Source.EDIT);
+        ledger.record("1", new BigDecimal("2"), StockLedgerEntry.Source.RECEIVE);
+        //Then
+        ArgumentCaptor<StockLedgerEntry> entry = ArgumentCaptor.forClass(StockLedgerEntry.class);
+        verify(mockMongoTemplate, times(1)).insert(entry.capture());
+        assertEquals(AT, entry.getValue().timestamp());
+        assertEquals(new BigDecimal("2"), entry.getValue().delta());
+        verify(mockEventPublisher, times(1)).publishEvent(new StockAmountsChangedEvent(List.of("1")));
+    }
+}
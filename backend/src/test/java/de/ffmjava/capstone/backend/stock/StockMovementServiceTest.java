@@ -0,0 +1,131 @@
+package de.ffmjava.capstone.backend.stock;
+
+import de.ffmjava.capstone.backend.ChangeCounters;
+import de.ffmjava.capstone.backend.mongo.MongoTransactions;
+import de.ffmjava.capstone.backend.stock.model.StockItem;
+import de.ffmjava.capstone.backend.stock.model.StockLedgerEntry;
+import de.ffmjava.capstone.backend.stock.model.StockMovement;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class StockMovementServiceTest {
+
+    private static final String STABLE_ID = "stable";
+
+    private final MongoTemplate mockMongoTemplate = mock(MongoTemplate.class);
+    private final StockRepository mockStockRepository = mock(StockRepository.class);
+    private final StockLedger mockStockLedger = mock(StockLedger.class);
+    @SuppressWarnings("unchecked")
+    private final MongoTransactions mongoTransactions = new MongoTransactions(mock(ObjectProvider.class));
+    private final ChangeCounters changeCounters = new ChangeCounters();
+
+    private final StockMovementService service = new StockMovementService(mockMongoTemplate, mockStockRepository,
+            mockStockLedger, mongoTransactions, changeCounters);
+
+    private final ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+    private final ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+
+    private final StockItem stockItem = new StockItem("1", "Hafer", StockType.FUTTER,
+            new BigDecimal("97.5"), new BigDecimal(1), 3L, STABLE_ID, null);
+
+    private void returnFromFindAndModify(StockItem result) {
+        when(mockMongoTemplate.findAndModify(query.capture(), update.capture(), any(FindAndModifyOptions.class),
+                eq(StockItem.class))).thenReturn(result);
+    }
+
+    @Test
+    void applyMovement_consume_AndExpectGuardedDecrement() {
+        //Given
+        returnFromFindAndModify(stockItem);
+        //When
+        Optional<StockItem> actual = service.applyMovement(STABLE_ID, "1",
+                new StockMovement(StockMovement.Type.CONSUME, new BigDecimal("2.5")), false);
+        //Then
+        assertEquals(Optional.of(stockItem), actual);
+        assertEquals(new Document("id", "1")
+                        .append("stableId", STABLE_ID)
+                        .append("amountInStock", new Document("$gte", new Decimal128(new BigDecimal("2.5")))),
+                query.getValue().getQueryObject());
+        assertEquals(new Document("amountInStock", new Decimal128(new BigDecimal("-2.5"))).append("version", 1),
+                update.getValue().getUpdateObject().get("$inc"));
+        verifyNoInteractions(mockStockRepository);
+        verify(mockStockLedger).record("1", new BigDecimal("-2.5"), StockLedgerEntry.Source.CONSUME);
+    }
+
+    @Test
+    void applyMovement_receive_AndExpectUnguardedIncrement() {
+        //Given
+        returnFromFindAndModify(stockItem);
+        //When
+        service.applyMovement(STABLE_ID, "1", new StockMovement(StockMovement.Type.RECEIVE, new BigDecimal("100")),
+                false);
+        //Then
+        assertEquals(new Document("id", "1").append("stableId", STABLE_ID), query.getValue().getQueryObject());
+        assertEquals(new Document("amountInStock", new Decimal128(new BigDecimal("100"))).append("version", 1),
+                update.getValue().getUpdateObject().get("$inc"));
+    }
+
+    @Test
+    void applyMovement_negativeAdjustWithUnderflowAllowed_AndExpectUnguardedDecrement() {
+        //Given
+        returnFromFindAndModify(stockItem);
+        //When
+        service.applyMovement(STABLE_ID, "1", new StockMovement(StockMovement.Type.ADJUST, new BigDecimal("-4")), true);
+        //Then
+        assertEquals(new Document("id", "1").append("stableId", STABLE_ID), query.getValue().getQueryObject());
+    }
+
+    @Test
+    void applyMovement_notEnoughStock_AndExpectException() {
+        //Given
+        returnFromFindAndModify(null);
+        when(mockStockRepository.existsByIdAndStableId("1", STABLE_ID)).thenReturn(true);
+        //When
+        StockMovement movement = new StockMovement(StockMovement.Type.CONSUME, new BigDecimal("500"));
+        //Then
+        assertThrows(InsufficientStockException.class, () -> service.applyMovement(STABLE_ID, "1", movement, false));
+        verifyNoInteractions(mockStockLedger);
+    }
+
+    @Test
+    void applyMovement_unknownId_AndExpectEmpty() {
+        //Given
+        returnFromFindAndModify(null);
+        when(mockStockRepository.existsByIdAndStableId("1", STABLE_ID)).thenReturn(false);
+        //When
+        Optional<StockItem> actual = service.applyMovement(STABLE_ID, "1",
+                new StockMovement(StockMovement.Type.RECEIVE, BigDecimal.ONE), false);
+        //Then
+        assertTrue(actual.isEmpty());
+    }
+
+    @Test
+    void applyMovement_negativeReceive_AndExpectException() {
+        //Given
+        StockMovement movement = new StockMovement(StockMovement.Type.RECEIVE, new BigDecimal("-1"));
+        //When
+        try {
+            service.applyMovement(STABLE_ID, "1", movement, false);
+            fail();
+        } catch (IllegalArgumentException e) {
+            //Then
+            assertEquals("Der Wert muss größer als 0 sein", e.getMessage());
+            verifyNoInteractions(mockMongoTemplate);
+        }
+    }
+}
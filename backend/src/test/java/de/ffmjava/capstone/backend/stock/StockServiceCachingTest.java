@@ -0,0 +1,113 @@
+package de.ffmjava.capstone.backend.stock;
+
+import de.ffmjava.capstone.backend.CacheConfig;
+import de.ffmjava.capstone.backend.ChangeCounters;
+import de.ffmjava.capstone.backend.horses.ConsumptionTotalsService;
+import de.ffmjava.capstone.backend.horses.HorseRepository;
+import de.ffmjava.capstone.backend.model.VersionedUpdate;
+import de.ffmjava.capstone.backend.mongo.BulkImporter;
+import de.ffmjava.capstone.backend.mongo.MergePatchReader;
+import de.ffmjava.capstone.backend.mongo.MongoTransactions;
+import de.ffmjava.capstone.backend.mongo.NdjsonExporter;
+import de.ffmjava.capstone.backend.stock.model.StockItem;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+@SpringJUnitConfig({CacheConfig.class, ChangeCounters.class, StockService.class, MongoTransactions.class,
+        StockServiceCachingTest.CachingConfig.class})
+class StockServiceCachingTest {
+
+    private static final String STABLE_ID = "stable";
+
+    @EnableCaching
+    static class CachingConfig {
+    }
+
+    @MockBean
+    private StockRepository mockStockRepository;
+    @MockBean
+    private HorseRepository mockHorseRepository;
+    @MockBean
+    private NdjsonExporter mockExporter;
+    @MockBean
+    private BulkImporter mockBulkImporter;
+    @MockBean
+    private StockIdIndex mockStockIdIndex;
+    @MockBean
+    private ConsumptionTotalsService mockConsumptionTotalsService;
+    @MockBean
+    private MergePatchReader mockMergePatchReader;
+    @MockBean
+    private StockLedger mockStockLedger;
+
+    @Autowired
+    private StockService service;
+
+    @Test
+    void getStockItemById_AndExpectRepositoryHitOncePerIdUntilUpdated() {
+        //Given
+        StockItem stockItem = new StockItem("1", "Hafer", StockType.FUTTER,
+                new BigDecimal(100), new BigDecimal(1), null, STABLE_ID, null);
+        when(mockStockRepository.findByIdAndStableId("1", STABLE_ID)).thenReturn(Optional.of(stockItem));
+        when(mockStockRepository.findByIdAndStableId("2", STABLE_ID)).thenReturn(Optional.empty());
+        StockItem updatedStockItem = stockItem.withId("2").withVersion(1L);
+        when(mockStockRepository.replaceIfVersionMatches(updatedStockItem))
+                .thenReturn(Optional.of(new VersionedUpdate<>(updatedStockItem, updatedStockItem.withVersion(2L))));
+
+        //When
+        service.getStockItemById(STABLE_ID, "1");
+        service.getStockItemById(STABLE_ID, "1");
+        service.getStockItemById(STABLE_ID, "2");
+        service.updateStockItem(STABLE_ID, updatedStockItem);
+        Optional<StockItem> actual = service.getStockItemById(STABLE_ID, "1");
+        service.getStockItemById(STABLE_ID, "2");
+
+        //Then
+        assertEquals(Optional.of(stockItem), actual);
+        verify(mockStockRepository, times(1)).findByIdAndStableId("1", STABLE_ID);
+        verify(mockStockRepository, times(2)).findByIdAndStableId("2", STABLE_ID);
+    }
+
+    @Test
+    void getAggregatedConsumptions_AndExpectNewEntryAfterDelete() {
+        //Given
+        when(mockConsumptionTotalsService.getAggregatedConsumptions(STABLE_ID)).thenReturn(Map.of());
+        when(mockStockRepository.existsByIdAndStableId("1", STABLE_ID)).thenReturn(true);
+
+        //When
+        service.getAggregatedConsumptions(STABLE_ID);
+        service.getAggregatedConsumptions(STABLE_ID);
+        service.deleteStockItem(STABLE_ID, "1");
+        service.getAggregatedConsumptions(STABLE_ID);
+
+        //Then
+        verify(mockConsumptionTotalsService, times(2)).getAggregatedConsumptions(STABLE_ID);
+    }
+
+    @Test
+    void getStockItemById_AndExpectEntriesCachedPerStable() {
+        //Given
+        StockItem stockItem = new StockItem("1", "Hafer", StockType.FUTTER,
+                new BigDecimal(100), new BigDecimal(1), null, STABLE_ID, null);
+        when(mockStockRepository.findByIdAndStableId("1", STABLE_ID)).thenReturn(Optional.of(stockItem));
+        when(mockStockRepository.findByIdAndStableId("1", "other")).thenReturn(Optional.empty());
+
+        //When
+        service.getStockItemById(STABLE_ID, "1");
+        Optional<StockItem> actual = service.getStockItemById("other", "1");
+
+        //Then
+        assertEquals(Optional.empty(), actual);
+        verify(mockStockRepository).findByIdAndStableId("1", "other");
+    }
+}
@@ -1,45 +1,244 @@
 package de.ffmjava.capstone.backend.stock;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.ffmjava.capstone.backend.ChangeCounters;
+import de.ffmjava.capstone.backend.horses.ConsumptionTotalsService;
 import de.ffmjava.capstone.backend.horses.HorseRepository;
 import de.ffmjava.capstone.backend.horses.model.AggregatedConsumption;
-import de.ffmjava.capstone.backend.horses.model.Consumption;
-import de.ffmjava.capstone.backend.horses.model.Horse;
+import de.ffmjava.capstone.backend.model.CursorPage;
+import de.ffmjava.capstone.backend.model.FormError;
+import de.ffmjava.capstone.backend.model.VersionedUpdate;
+import de.ffmjava.capstone.backend.mongo.BulkImporter;
+import de.ffmjava.capstone.backend.mongo.MergePatch;
+import de.ffmjava.capstone.backend.mongo.MergePatchReader;
+import de.ffmjava.capstone.backend.mongo.MongoTransactions;
+import de.ffmjava.capstone.backend.mongo.NdjsonExporter;
+import de.ffmjava.capstone.backend.mongo.VersionRequiredException;
 import de.ffmjava.capstone.backend.stock.model.StockItem;
+import de.ffmjava.capstone.backend.stock.model.StockLedgerEntry;
+import de.ffmjava.capstone.backend.stock.model.StockLevel;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.ApplicationEventPublisher;
 
 import java.math.BigDecimal;
+import java.time.Instant;
 import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 class StockServiceTest {
 
+    private static final String STABLE_ID = "stable";
+
     private final StockRepository mockStockRepository = mock(StockRepository.class);
     private final HorseRepository mockHorseRepository = mock(HorseRepository.class);
 
-    private final StockService service = new StockService(mockStockRepository, mockHorseRepository);
+    private final NdjsonExporter mockExporter = mock(NdjsonExporter.class);
+
+    private final BulkImporter mockBulkImporter = mock(BulkImporter.class);
+
+    private final StockIdIndex mockStockIdIndex = mock(StockIdIndex.class);
+
+    private final ConsumptionTotalsService mockConsumptionTotalsService = mock(ConsumptionTotalsService.class);
+
+    @SuppressWarnings("unchecked")
+    private final MongoTransactions mongoTransactions = new MongoTransactions(mock(ObjectProvider.class));
+
+    private final MergePatchReader mockMergePatchReader = mock(MergePatchReader.class);
+
+    private final StockLedger mockStockLedger = mock(StockLedger.class);
+
+    private final ChangeCounters changeCounters = new ChangeCounters();
+
+    private final ApplicationEventPublisher mockEventPublisher = mock(ApplicationEventPublisher.class);
+
+    private final StockService service = new StockService(mockStockRepository, mockHorseRepository, mockExporter,
+            mockBulkImporter, mockStockIdIndex, mockConsumptionTotalsService, mongoTransactions, mockMergePatchReader,
+            mockStockLedger, changeCounters, mockEventPublisher);
 
     @Test
     void getAllStockItems_AndExpectEmptyList() {
         //Given
         //When
-        when(mockStockRepository.findAll()).thenReturn(List.of());
+        when(mockStockRepository.findAllByStableId(STABLE_ID)).thenReturn(List.of());
         List<StockItem> expected = List.of();
-        List<StockItem> actual = service.getAllStockItems();
+        List<StockItem> actual = service.getAllStockItems(STABLE_ID);
         //Then
         assertEquals(expected, actual);
     }
 
+    @Test
+    void updateStockItem_WithMatchingVersion_AndExpectReplacedItem() {
+        //Given
+        StockItem stockItem = new StockItem("1", "Hafer", StockType.FUTTER,
+                new BigDecimal(100), new BigDecimal(1), 1L, STABLE_ID, null);
+        //When
+        when(mockStockRepository.replaceIfVersionMatches(stockItem))
+                .thenReturn(Optional.of(new VersionedUpdate<>(stockItem, stockItem.withVersion(2L))));
+        VersionedUpdate<StockItem> actual = service.updateStockItem(STABLE_ID, stockItem);
+        //Then
+        assertFalse(actual.created());
+        assertEquals(stockItem.withVersion(2L), actual.current());
+        verify(mockStockRepository, never()).save(any());
+        verify(mockStockLedger).record("1", BigDecimal.ZERO, StockLedgerEntry.Source.EDIT);
+        verifyNoInteractions(mockEventPublisher);
+    }
+
+    @Test
+    void updateStockItem_SubtractedItem_AndExpectSubtractionStampKept() {
+        //Given
+        StockItem stockItem = new StockItem("1", "Hafer", StockType.FUTTER,
+                new BigDecimal(100), new BigDecimal(1), 1L, STABLE_ID, null);
+        StockItem stamped = stockItem.withLastConsumptionSubtraction("2022-12-01");
+        //When
+        when(mockStockRepository.findSubtractionStamp("1", STABLE_ID))
+                .thenReturn(Optional.of(new StockItem("1", null, null, null, null, null, null, "2022-12-01")));
+        when(mockStockRepository.replaceIfVersionMatches(stamped))
+                .thenReturn(Optional.of(new VersionedUpdate<>(stamped, stamped.withVersion(2L))));
+        VersionedUpdate<StockItem> actual = service.updateStockItem(STABLE_ID, stockItem);
+        //Then
+        assertEquals("2022-12-01", actual.current().lastConsumptionSubtraction());
+        verify(mockStockRepository).replaceIfVersionMatches(stamped);
+    }
+
+    @Test
+    void updateStockItem_Renamed_AndExpectRenamedEvent() {
+        //Given
+        StockItem stockItem = new StockItem("1", "Hafer", StockType.FUTTER,
+                new BigDecimal(100), new BigDecimal(1), 1L, STABLE_ID, null);
+        StockItem renamed = stockItem.withName("Hafer gequetscht");
+        //When
+        when(mockStockRepository.replaceIfVersionMatches(renamed))
+                .thenReturn(Optional.of(new VersionedUpdate<>(stockItem, renamed.withVersion(2L))));
+        service.updateStockItem(STABLE_ID, renamed);
+        //Then
+        verify(mockEventPublisher).publishEvent(new StockItemRenamedEvent(STABLE_ID, "1", "Hafer gequetscht"));
+    }
+
+    @Test
+    void updateStockItem_WithoutVersion_AndExpectException() {
+        //Given
+        StockItem stockItem = new StockItem("1", "Hafer", StockType.FUTTER,
+                new BigDecimal(100), new BigDecimal(1), null, STABLE_ID, null);
+        //When
+        when(mockStockRepository.existsByIdAndStableId("1", STABLE_ID)).thenReturn(true);
+        //Then
+        assertThrows(VersionRequiredException.class, () -> service.updateStockItem(STABLE_ID, stockItem));
+        verify(mockStockRepository, never()).save(any());
+    }
+
+    @Test
+    void updateStockItem_UnknownId_AndExpectCreatedItem() {
+        //Given
+        StockItem stockItem = new StockItem("1", "Hafer", StockType.FUTTER,
+                new BigDecimal(100), new BigDecimal(1), null, STABLE_ID, null);
+        //When
+        when(mockStockRepository.existsByIdAndStableId("1", STABLE_ID)).thenReturn(false);
+        when(mockStockRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        VersionedUpdate<StockItem> actual = service.updateStockItem(STABLE_ID, stockItem);
+        //Then
+        assertTrue(actual.created());
+        verify(mockStockIdIndex).invalidate(STABLE_ID);
+        verify(mockStockLedger).record(anyString(), eq(new BigDecimal(100)), eq(StockLedgerEntry.Source.INITIAL));
+    }
+
+    @Test
+    void patchStockItem_TakenName_AndExpectException() {
+        //Given
+        JsonNode patch = new ObjectMapper().createObjectNode().put("name", "Heu");
+        MergePatch<StockItem> stockItemPatch = new MergePatch<>(StockItem.class, Map.of("name", "Heu"));
+        //When
+        when(mockMergePatchReader.read(patch, StockItem.class)).thenReturn(stockItemPatch);
+        when(mockStockRepository.existsByStableIdAndNameAndIdNot(STABLE_ID, "Heu", "1")).thenReturn(true);
+        //Then
+        assertThrows(StockItemAlreadyExistsException.class,
+                () -> service.patchStockItem(STABLE_ID, "1", patch, null));
+        verify(mockStockRepository, never()).applyPatch(any(), any(), any(), any());
+    }
+
+    @Test
+    void patchStockItem_AndExpectPatchedItem() {
+        //Given
+        JsonNode patch = new ObjectMapper().createObjectNode().put("amountInStock", 12);
+        MergePatch<StockItem> stockItemPatch = new MergePatch<>(StockItem.class,
+                Map.of("amountInStock", new BigDecimal(12)));
+        StockItem stockItem = new StockItem("1", "Hafer", StockType.FUTTER,
+                new BigDecimal(100), new BigDecimal(1), 4L, STABLE_ID, null);
+        VersionedUpdate<StockItem> update = new VersionedUpdate<>(stockItem,
+                stockItem.withAmountInStock(new BigDecimal(12)).withVersion(5L));
+        //When
+        when(mockMergePatchReader.read(patch, StockItem.class)).thenReturn(stockItemPatch);
+        when(mockStockRepository.applyPatch(STABLE_ID, "1", stockItemPatch, 4L)).thenReturn(Optional.of(update));
+        //Then
+        assertEquals(Optional.of(update), service.patchStockItem(STABLE_ID, "1", patch, 4L));
+        verifyNoInteractions(mockEventPublisher);
+    }
+
+    @Test
+    void patchStockItem_Renamed_AndExpectRenamedEvent() {
+        //Given
+        JsonNode patch = new ObjectMapper().createObjectNode().put("name", "Hafer gequetscht");
+        MergePatch<StockItem> stockItemPatch = new MergePatch<>(StockItem.class, Map.of("name", "Hafer gequetscht"));
+        StockItem stockItem = new StockItem("1", "Hafer", StockType.FUTTER,
+                new BigDecimal(100), new BigDecimal(1), 4L, STABLE_ID, null);
+        VersionedUpdate<StockItem> update = new VersionedUpdate<>(stockItem,
+                stockItem.withName("Hafer gequetscht").withVersion(5L));
+        //When
+        when(mockMergePatchReader.read(patch, StockItem.class)).thenReturn(stockItemPatch);
+        when(mockStockRepository.applyPatch(STABLE_ID, "1", stockItemPatch, 4L)).thenReturn(Optional.of(update));
+        service.patchStockItem(STABLE_ID, "1", patch, 4L);
+        //Then
+        verify(mockEventPublisher).publishEvent(new StockItemRenamedEvent(STABLE_ID, "1", "Hafer gequetscht"));
+        verify(mockStockLedger, never()).record(any(), any(), any());
+    }
+
+    @Test
+    void getStockLevel_createdWithZeroAmount_AndExpectLevelZero() {
+        //Given
+        Instant at = Instant.parse("2022-12-01T00:00:00Z");
+        //When
+        when(mockStockRepository.existsByIdAndStableId("1", STABLE_ID)).thenReturn(true);
+        when(mockStockLedger.levelAt("1", at)).thenReturn(Optional.empty());
+        //Then
+        assertEquals(Optional.of(new StockLevel("1", at, BigDecimal.ZERO)), service.getStockLevel(STABLE_ID, "1", at));
+    }
+
+    @Test
+    void getStockLevel_unknownStockItem_AndExpectEmpty() {
+        //Given
+        Instant at = Instant.parse("2022-12-01T00:00:00Z");
+        //When
+        when(mockStockRepository.existsByIdAndStableId("1", STABLE_ID)).thenReturn(false);
+        //Then
+        assertTrue(service.getStockLevel(STABLE_ID, "1", at).isEmpty());
+        verifyNoInteractions(mockStockLedger);
+    }
+
+    @Test
+    void getStockItemPage_AndExpectPageFromRepository() {
+        //Given
+        CursorPage<StockItem> page = new CursorPage<>(List.of(), null);
+        //When
+        when(mockStockRepository.findPage(STABLE_ID, "MQ", 50, null)).thenReturn(page);
+        CursorPage<StockItem> actual = service.getStockItemPage(STABLE_ID, "MQ", 50, null);
+        //Then
+        assertEquals(page, actual);
+    }
+
     @Test
     void getItemById_AndExpectStockItem() {
         //Given
-        Optional<StockItem> returnedItem = Optional.of(new StockItem("1", "name", StockType.FUTTER, new BigDecimal("42.0"), new BigDecimal("42.0")));
+        Optional<StockItem> returnedItem = Optional.of(new StockItem("1", "name", StockType.FUTTER, new BigDecimal("42.0"), new BigDecimal("42.0"), null, STABLE_ID, null));
         //When
-        when(mockStockRepository.findById("1")).thenReturn(returnedItem);
+        when(mockStockRepository.findByIdAndStableId("1", STABLE_ID)).thenReturn(returnedItem);
         Optional<StockItem> expected = returnedItem;
-        Optional<StockItem> actual = service.getStockItemById("1");
+        Optional<StockItem> actual = service.getStockItemById(STABLE_ID, "1");
         //Then
         assertEquals(expected, actual);
     }
@@ -47,15 +246,15 @@ class StockServiceTest {
     @Test
     void getAllStockItems_AndExpectListWithOneElement() {
         //Given
-        StockItem newItem = new StockItem("1", "name", StockType.FUTTER, new BigDecimal("42.0"), new BigDecimal("42.0"));
+        StockItem newItem = new StockItem("1", "name", StockType.FUTTER, new BigDecimal("42.0"), new BigDecimal("42.0"), null, STABLE_ID, null);
         StockItem itemToReturn = newItem.withName("new Name")
                 .withType(StockType.EINSTREU)
                 .withAmountInStock(new BigDecimal("3.4"))
                 .withPricePerKilo(new BigDecimal("3.76"));
         //When
-        when(mockStockRepository.findAll()).thenReturn(List.of(itemToReturn));
+        when(mockStockRepository.findAllByStableId(STABLE_ID)).thenReturn(List.of(itemToReturn));
         List<StockItem> expected = List.of(itemToReturn);
-        List<StockItem> actual = service.getAllStockItems();
+        List<StockItem> actual = service.getAllStockItems(STABLE_ID);
         //Then
         assertEquals(expected, actual);
 
@@ -64,10 +263,11 @@ class StockServiceTest {
     @Test
     void addNewStockItem_AndExpectStockItem() {
         //Given
-        StockItem newStockItem = new StockItem(null, "name", StockType.FUTTER, BigDecimal.ONE, BigDecimal.ONE);
+        StockItem newStockItem = new StockItem(null, "name", StockType.FUTTER, BigDecimal.ONE, BigDecimal.ONE, null,
+                STABLE_ID, null);
         //When
         doReturn(newStockItem.withId("1")).when(mockStockRepository).save(any());
-        StockItem actual = service.addNewStockItem(newStockItem);
+        StockItem actual = service.addNewStockItem(STABLE_ID, newStockItem);
         StockItem expected = newStockItem.withId("1");
         //Then
         assertEquals(expected, actual);
@@ -76,11 +276,12 @@ class StockServiceTest {
     @Test
     void addNewStockItem_AndExpect_409() {
         //Given
-        StockItem newStockItem = new StockItem(null, "name", StockType.FUTTER, BigDecimal.ONE, BigDecimal.ONE);
+        StockItem newStockItem = new StockItem(null, "name", StockType.FUTTER, BigDecimal.ONE, BigDecimal.ONE, null,
+                STABLE_ID, null);
         //When
-        when(mockStockRepository.existsByName("name")).thenReturn(true);
+        when(mockStockRepository.existsByStableIdAndName(STABLE_ID, "name")).thenReturn(true);
         //Then
-        assertThrows(StockItemAlreadyExistsException.class, () -> service.addNewStockItem(newStockItem));
+        assertThrows(StockItemAlreadyExistsException.class, () -> service.addNewStockItem(STABLE_ID, newStockItem));
     }
 
     @Test
@@ -88,11 +289,16 @@ class StockServiceTest {
         //Given
         String idToDelete = "1";
         //When
-        when(mockStockRepository.existsById(idToDelete)).thenReturn(true);
-        doNothing().when(mockStockRepository).deleteById(idToDelete);
+        when(mockStockRepository.existsByIdAndStableId(idToDelete, STABLE_ID)).thenReturn(true);
+        doNothing().when(mockStockRepository).deleteByIdAndStableId(idToDelete, STABLE_ID);
         //Then
-        assertTrue(service.deleteStockItem(idToDelete));
-        verify(mockStockRepository).existsById(idToDelete);
+        assertTrue(service.deleteStockItem(STABLE_ID, idToDelete));
+        verify(mockStockRepository).existsByIdAndStableId(idToDelete, STABLE_ID);
+        verify(mockConsumptionTotalsService).removeStockItem(STABLE_ID, idToDelete);
+        verify(mockStockIdIndex).invalidate(STABLE_ID);
+        assertEquals(1, changeCounters.counter(STABLE_ID, ChangeCounters.Collection.STOCK));
+        assertEquals(1, changeCounters.counter(STABLE_ID, ChangeCounters.Collection.HORSES));
+        assertEquals(1, changeCounters.counter(STABLE_ID, ChangeCounters.Collection.CONSUMPTION));
     }
 
     @Test
@@ -100,119 +306,61 @@ class StockServiceTest {
         //Given
         String idToDelete = "1";
         //When
-        when(mockStockRepository.existsById(idToDelete))
+        when(mockStockRepository.existsByIdAndStableId(idToDelete, STABLE_ID))
                 .thenReturn(false);
-        doNothing().when(mockStockRepository).deleteById(idToDelete);
+        doNothing().when(mockStockRepository).deleteByIdAndStableId(idToDelete, STABLE_ID);
         //Then
         try {
-            service.deleteStockItem(idToDelete);
+            service.deleteStockItem(STABLE_ID, idToDelete);
             fail();
         } catch (IllegalArgumentException e) {
             assertEquals("Kein Eintrag für die gegebene ID gefunden", e.getMessage());
-            verify(mockStockRepository).existsById(idToDelete);
+            verify(mockStockRepository).existsByIdAndStableId(idToDelete, STABLE_ID);
         }
     }
 
     @Test
-    void deleteStockItem_noConsumptionToDelete_200() {
-        //Given
-        String idToDelete = "1";
-        //When
-        when(mockStockRepository.existsById(idToDelete))
-                .thenReturn(true);
-        when(mockHorseRepository.findHorsesByConsumptionId("1")).thenReturn(new ArrayList<>());
-        //Then
-        assertTrue(service.deleteStockItem("1"));
-    }
-
-    @Test
-    void deleteStockItem_OneMatchingConsumptionToDelete_200() {
-        //Given
-        String idToDelete = "1";
-        Consumption consumptionToDelete = new Consumption("1", "name", new BigDecimal("1.0"));
-        Consumption consumptionToKeep = new Consumption("2", "name", new BigDecimal("1.0"));
-        Horse retrievedHorse = new Horse("id", "name", "owner",
-                List.of(consumptionToDelete, consumptionToKeep));
-        Horse horseToSave = new Horse("id", "name", "owner",
-                List.of(consumptionToKeep));
-        //When
-        when(mockStockRepository.existsById(idToDelete))
-                .thenReturn(true);
-        when(mockHorseRepository.findHorsesByConsumptionId("1")).thenReturn(new ArrayList<>(
-                List.of(retrievedHorse)));
-        when(mockHorseRepository.saveAll(List.of(horseToSave))).thenReturn(List.of(horseToSave));
-        //Then
-        assertTrue(service.deleteStockItem("1"));
-        assertTrue(horseToSave.consumptionList().contains(consumptionToKeep));
-        verify(mockHorseRepository).saveAll(List.of(horseToSave));
-    }
-
-    @Test
-    void deleteStockItem_cascadingDeleteConsumption_200() {
+    void deleteStockItem_AndExpectConsumptionsPulledServerSide() {
         //Given
         String idToDelete = "1";
-        Horse horseWithoutConsumption = new Horse("id", "name", "owner", new ArrayList<>());
-        Horse horseWithConsumption = horseWithoutConsumption
-                .withConsumptionList(new ArrayList<>(List.of(new Consumption("1", "name", new BigDecimal("0")))));
-        List<Horse> retrievedHorses = new ArrayList<>(List.of(horseWithConsumption));
         //When
-        when(mockStockRepository.existsById(idToDelete))
+        when(mockStockRepository.existsByIdAndStableId(idToDelete, STABLE_ID))
                 .thenReturn(true);
-        when(mockHorseRepository.findHorsesByConsumptionId(idToDelete))
-                .thenReturn(retrievedHorses);
-        when(mockHorseRepository.saveAll(List.of(horseWithoutConsumption)))
-                .thenReturn(List.of(horseWithoutConsumption));
+        when(mockHorseRepository.pullConsumptionById(STABLE_ID, idToDelete)).thenReturn(2L);
         //Then
-        assertTrue(service.deleteStockItem("1"));
-        verify(mockHorseRepository).findHorsesByConsumptionId(any());
+        assertTrue(service.deleteStockItem(STABLE_ID, idToDelete));
+        verify(mockHorseRepository).pullConsumptionById(STABLE_ID, idToDelete);
+        verify(mockHorseRepository, never()).saveAll(any());
+        verify(mockStockRepository).deleteByIdAndStableId(idToDelete, STABLE_ID);
     }
 
     @Test
     void getAggregatedConsumptions() {
         //Given
-        AggregatedConsumption consumption = new AggregatedConsumption("Hafer", new BigDecimal("1.0"));
+        AggregatedConsumption consumption = new AggregatedConsumption("1", "Hafer", new BigDecimal("1.0"));
         //When
-        when(mockHorseRepository.aggregateConsumptions()).thenReturn(List.of(consumption));
+        when(mockConsumptionTotalsService.getAggregatedConsumptions(STABLE_ID)).thenReturn(Map.of("1", consumption));
         //Then
         Map<String, AggregatedConsumption> expected = new HashMap<>(
-                Map.of("Hafer", consumption));
-        Map<String, AggregatedConsumption> actual = service.getAggregatedConsumptions();
+                Map.of("1", consumption));
+        Map<String, AggregatedConsumption> actual = service.getAggregatedConsumptions(STABLE_ID);
         assertEquals(expected, actual);
     }
 
     @Test
-    void subtractConsumption() {
-        //Given
-        Map<String, AggregatedConsumption> consumption = new HashMap<>(Map.of("Hafer", new AggregatedConsumption("Hafer", new BigDecimal("1"))));
-        StockItem retrievedStockItem = new StockItem("id", "Hafer", StockType.FUTTER,
-                new BigDecimal("100"), new BigDecimal("1"));
-        List<StockItem> updatedStockitems = List.of(retrievedStockItem.withAmountInStock(new BigDecimal("99")));
-        //When
-        when(mockHorseRepository.aggregateConsumptions()).thenReturn(List.of(consumption.get("Hafer")));
-        when(mockStockRepository.findByNameIn(consumption.keySet().stream().toList())).thenReturn(List.of(retrievedStockItem));
-        when(mockStockRepository.saveAll(List.of(retrievedStockItem.withAmountInStock(new BigDecimal("99"))))).thenReturn(updatedStockitems);
-        //Then
-        service.subtractConsumption();
-        verify(mockStockRepository).saveAll(updatedStockitems);
-        verify(mockHorseRepository).aggregateConsumptions();
-        verify(mockStockRepository).findByNameIn(consumption.keySet().stream().toList());
-    }
-
-    @Test
-    void subtractConsumption_withEmptyStock() {
+    void validateImportBatch_AndExpectDuplicateNamesRejected() {
         //Given
-        Map<String, AggregatedConsumption> consumption = new HashMap<>(Map.of("Hafer", new AggregatedConsumption("Hafer", new BigDecimal("1"))));
-        StockItem retrievedStockItem = new StockItem("id", "Hafer", StockType.FUTTER,
-                new BigDecimal("0"), new BigDecimal("1"));
+        StockItem hafer = new StockItem(null, "Hafer", StockType.FUTTER, BigDecimal.ONE, BigDecimal.ONE, null,
+                STABLE_ID, null);
+        StockItem heu = hafer.withName("Heu");
+        StockItem stroh = hafer.withName("Stroh").withType(StockType.EINSTREU);
         //When
-        when(mockHorseRepository.aggregateConsumptions()).thenReturn(List.of(consumption.get("Hafer")));
-        when(mockStockRepository.findByNameIn(consumption.keySet().stream().toList())).thenReturn(List.of(retrievedStockItem));
-        when(mockStockRepository.saveAll(List.of(retrievedStockItem))).thenReturn(List.of(retrievedStockItem));
+        when(mockStockRepository.findByStableIdAndNameIn(STABLE_ID, List.of("Hafer", "Heu", "Stroh")))
+                .thenReturn(List.of(heu.withId("1")));
+        List<FormError> actual = service.validateImportBatch(STABLE_ID, List.of(hafer, heu, stroh, hafer));
         //Then
-        service.subtractConsumption();
-        verify(mockHorseRepository).aggregateConsumptions();
-        verify(mockStockRepository).findByNameIn(consumption.keySet().stream().toList());
-        verify(mockStockRepository).saveAll(List.of(retrievedStockItem));
+        FormError nameTaken = new FormError("Der angegebene Name ist bereits vergeben", "name");
+        List<FormError> expected = Arrays.asList(null, nameTaken, null, nameTaken);
+        assertEquals(expected, actual);
     }
-
-}
\ No newline at end of file
+}
@@ -0,0 +1,143 @@
+package de.ffmjava.capstone.backend.stock;
+
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.result.UpdateResult;
+import de.ffmjava.capstone.backend.ChangeCounters;
+import de.ffmjava.capstone.backend.horses.ConsumptionTotalsService;
+import de.ffmjava.capstone.backend.horses.model.ConsumptionTotal;
+import de.ffmjava.capstone.backend.mongo.MongoTransactions;
+import de.ffmjava.capstone.backend.stock.model.StockItem;
+import de.ffmjava.capstone.backend.stock.model.StockSubtractionRun;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+
+import static de.ffmjava.capstone.backend.CacheConfig.STOCK_ITEM_CACHE;
+import static de.ffmjava.capstone.backend.CacheConfig.stockItemKey;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class StockSubtractionJobTest {
+
+    private static final String STABLE_ID = "stable";
+
+    private static final LocalDate DAY = LocalDate.of(2022, 12, 1);
+
+    private final MongoTemplate mockMongoTemplate = mock(MongoTemplate.class);
+    private final ConsumptionTotalsService mockConsumptionTotalsService = mock(ConsumptionTotalsService.class);
+    private final BulkOperations mockBulkOperations = mock(BulkOperations.class);
+    private final CacheManager cacheManager = new ConcurrentMapCacheManager(STOCK_ITEM_CACHE);
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final StockLedger mockStockLedger = mock(StockLedger.class);
+    private final ChangeCounters changeCounters = new ChangeCounters();
+    @SuppressWarnings("unchecked")
+    private final MongoTransactions mongoTransactions = spy(new MongoTransactions(mock(ObjectProvider.class)));
+
+    private final StockSubtractionJob job = new StockSubtractionJob(mockMongoTemplate, mockConsumptionTotalsService,
+            mockStockLedger, mongoTransactions, cacheManager, changeCounters, meterRegistry, Runnable::run, 2,
+            Duration.ofHours(1), Clock.fixed(Instant.parse("2022-12-01T00:00:00Z"), ZoneOffset.UTC));
+
+    @Test
+    void subtractConsumption_AndExpectChunkedIncrementsAndCompletedLedger() {
+        //Given
+        List<ConsumptionTotal> totals = List.of(
+                new ConsumptionTotal("1", "Hafer", new BigDecimal("1.5"), 2, STABLE_ID),
+                new ConsumptionTotal("2", "Heu", new BigDecimal("8"), 1, STABLE_ID),
+                new ConsumptionTotal("3", "Mash", new BigDecimal("0.5"), 1, STABLE_ID));
+        BulkWriteResult firstChunk = mock(BulkWriteResult.class);
+        BulkWriteResult secondChunk = mock(BulkWriteResult.class);
+        cacheManager.getCache(STOCK_ITEM_CACHE).put(stockItemKey(STABLE_ID, "1"), "cached");
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        ArgumentCaptor<Update> ledgerUpdates = ArgumentCaptor.forClass(Update.class);
+        //When
+        when(mockConsumptionTotalsService.getActiveTotals()).thenReturn(totals);
+        when(mockMongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, StockItem.class))
+                .thenReturn(mockBulkOperations);
+        when(firstChunk.getModifiedCount()).thenReturn(2);
+        when(secondChunk.getModifiedCount()).thenReturn(1);
+        when(mockBulkOperations.execute()).thenReturn(firstChunk, secondChunk);
+        when(mockMongoTemplate.find(any(Query.class), eq(StockItem.class))).thenReturn(List.of(
+                new StockItem("1", "Hafer", null, null, null, null, STABLE_ID, null),
+                new StockItem("3", "Mash", null, null, null, null, STABLE_ID, null)));
+        long actual = job.subtractConsumption(DAY).join();
+        //Then
+        assertEquals(3, actual);
+        verify(mockBulkOperations, times(3)).updateOne(queries.capture(), updates.capture());
+        verify(mockBulkOperations, times(2)).execute();
+        verify(mongoTransactions, times(2)).execute(any());
+        assertEquals(new Document("id", "1")
+                        .append("amountInStock", new Document("$gt", Decimal128.POSITIVE_ZERO))
+                        .append("lastConsumptionSubtraction", new Document("$ne", "2022-12-01")),
+                queries.getAllValues().get(0).getQueryObject());
+        assertEquals(new Document("amountInStock", new Decimal128(new BigDecimal("-1.5"))).append("version", 1),
+                updates.getAllValues().get(0).getUpdateObject().get("$inc"));
+        assertNull(cacheManager.getCache(STOCK_ITEM_CACHE).get(stockItemKey(STABLE_ID, "1")));
+        verify(mockStockLedger).recordSubtraction("2022-12-01", Map.of("1", new BigDecimal("-1.5")));
+        verify(mockStockLedger).recordSubtraction("2022-12-01", Map.of("3", new BigDecimal("-0.5")));
+        verify(mockMongoTemplate).updateFirst(any(Query.class), ledgerUpdates.capture(),
+                eq(StockSubtractionRun.class));
+        Document ledger = (Document) ledgerUpdates.getValue().getUpdateObject().get("$set");
+        assertEquals(StockSubtractionRun.Status.COMPLETED, ledger.get("status"));
+        assertEquals(3L, ledger.get("updatedItems"));
+        assertEquals(3, meterRegistry.get("stablebuddy.stock.subtraction.items").counter().count());
+        assertEquals(1, meterRegistry.get("stablebuddy.stock.subtraction").tag("outcome", "completed")
+                .timer().count());
+    }
+
+    @Test
+    void subtractConsumption_dayAlreadyClaimed_AndExpectNoUpdates() {
+        //Given
+        UpdateResult nothingModified = UpdateResult.acknowledged(0, 0L, null);
+        //When
+        when(mockMongoTemplate.insert(any(StockSubtractionRun.class)))
+                .thenThrow(new DuplicateKeyException("duplicate"));
+        when(mockMongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(StockSubtractionRun.class)))
+                .thenReturn(nothingModified);
+        long actual = job.subtractConsumption(DAY).join();
+        //Then
+        assertEquals(0, actual);
+        verify(mockConsumptionTotalsService, never()).getActiveTotals();
+        verify(mockMongoTemplate, never()).bulkOps(any(), eq(StockItem.class));
+    }
+
+    @Test
+    void subtractConsumption_failedRun_AndExpectRetryTakesOver() {
+        //Given
+        UpdateResult claimed = UpdateResult.acknowledged(1, 1L, null);
+        //When
+        when(mockMongoTemplate.insert(any(StockSubtractionRun.class)))
+                .thenThrow(new DuplicateKeyException("duplicate"));
+        when(mockMongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(StockSubtractionRun.class)))
+                .thenReturn(claimed);
+        when(mockConsumptionTotalsService.getActiveTotals()).thenReturn(List.of());
+        long actual = job.subtractConsumption(DAY).join();
+        //Then
+        assertEquals(0, actual);
+        verify(mockConsumptionTotalsService).getActiveTotals();
+        verify(mockMongoTemplate, times(2))
+                .updateFirst(any(Query.class), any(Update.class), eq(StockSubtractionRun.class));
+    }
+}
@@ -0,0 +1,71 @@
+package de.ffmjava.capstone.backend.user;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class CachingAuthenticationProviderTest {
+
+    private final AuthenticationProvider mockDelegate = mock(AuthenticationProvider.class);
+    private final CredentialCache credentialCache = new CredentialCache(Duration.ofMinutes(1), 100);
+    private final CachingAuthenticationProvider provider =
+            new CachingAuthenticationProvider(mockDelegate, credentialCache);
+
+    private final Authentication verified = UsernamePasswordAuthenticationToken.authenticated(
+            "username", null, List.of(new SimpleGrantedAuthority("ROLE_Basic")));
+
+    @Test
+    void authenticate_AndExpectDelegateCalledOnceForRepeatedCredentials() {
+        //Given
+        when(mockDelegate.authenticate(any())).thenReturn(verified);
+
+        //When
+        provider.authenticate(UsernamePasswordAuthenticationToken.unauthenticated("username", "password"));
+        Authentication actual = provider.authenticate(
+                UsernamePasswordAuthenticationToken.unauthenticated("username", "password"));
+
+        //Then
+        assertTrue(actual.isAuthenticated());
+        assertEquals("username", actual.getName());
+        assertEquals(verified.getAuthorities(), actual.getAuthorities());
+        verify(mockDelegate, times(1)).authenticate(any());
+    }
+
+    @Test
+    void authenticate_AndExpectDifferentPasswordToBeVerifiedByDelegate() {
+        //Given
+        when(mockDelegate.authenticate(any()))
+                .thenReturn(verified)
+                .thenThrow(new BadCredentialsException("Bad credentials"));
+        provider.authenticate(UsernamePasswordAuthenticationToken.unauthenticated("username", "password"));
+        Authentication wrongPassword = UsernamePasswordAuthenticationToken.unauthenticated("username", "wrong");
+
+        //When & Then
+        assertThrows(BadCredentialsException.class, () -> provider.authenticate(wrongPassword));
+        verify(mockDelegate, times(2)).authenticate(any());
+    }
+
+    @Test
+    void authenticate_AndExpectDelegateCalledAgainAfterEviction() {
+        //Given
+        when(mockDelegate.authenticate(any())).thenReturn(verified);
+        provider.authenticate(UsernamePasswordAuthenticationToken.unauthenticated("username", "password"));
+
+        //When
+        credentialCache.evict("username");
+        provider.authenticate(UsernamePasswordAuthenticationToken.unauthenticated("username", "password"));
+
+        //Then
+        verify(mockDelegate, times(2)).authenticate(any());
+    }
+}
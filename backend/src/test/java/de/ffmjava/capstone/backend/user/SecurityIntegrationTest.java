@@ -18,6 +18,7 @@ import org.springframework.test.web.servlet.MockMvc;
 import java.io.IOException;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
@@ -55,6 +56,53 @@ class SecurityIntegrationTest {
                 .andExpect(status().is(401));
     }
 
+    @Test
+    void expect401_onPatchStock_whenNoAuthenticatedUser() throws Exception {
+        mockMvc.perform(patch("/stock/1")
+                        .contentType("application/merge-patch+json")
+                        .content("""
+                                {"name": "Test"}
+                                """))
+                .andExpect(status().is(401));
+    }
+
+    @Test
+    void expect401_onPatchHorse_whenNoAuthenticatedUser() throws Exception {
+        mockMvc.perform(patch("/horses/1")
+                        .contentType("application/merge-patch+json")
+                        .content("""
+                                {"name": "Test"}
+                                """))
+                .andExpect(status().is(401));
+    }
+
+    @Test
+    void expect401_onPatchClient_whenNoAuthenticatedUser() throws Exception {
+        mockMvc.perform(patch("/clients/1")
+                        .contentType("application/merge-patch+json")
+                        .content("""
+                                {"name": "Test"}
+                                """))
+                .andExpect(status().is(401));
+    }
+
+    @Test
+    @WithMockUser
+    void expect403_onPatch_whenAuthenticatedButUnauthorised() throws Exception {
+        mockMvc.perform(patch("/stock/1")
+                        .contentType("application/merge-patch+json")
+                        .content("""
+                                {"name": "Test"}
+                                """))
+                .andExpect(status().is(403));
+    }
+
+    @Test
+    void expect401_onUnmappedApiPath_whenNoAuthenticatedUser() throws Exception {
+        mockMvc.perform(get("/api/unknown"))
+                .andExpect(status().is(401));
+    }
+
     @Test
     @WithMockUser
     void expect403_whenAuthenticatedButUnauthorised() throws Exception {
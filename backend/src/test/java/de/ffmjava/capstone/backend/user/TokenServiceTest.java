@@ -0,0 +1,105 @@
+package de.ffmjava.capstone.backend.user;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import javax.servlet.http.Cookie;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenServiceTest {
+
+    private static final String SECRET = "a-secret-that-is-long-enough-for-hmac-sha256";
+    private static final Instant NOW = Instant.parse("2022-12-01T10:00:00Z");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final TokenService tokenService = new TokenService(true, SECRET, Duration.ofMinutes(15), objectMapper,
+            Clock.fixed(NOW, ZoneOffset.UTC));
+
+    @Test
+    void issueAndVerify_AndExpectAuthenticatedUserWithRoles() {
+        //Given
+        String token = tokenService.issue("username", List.of(new SimpleGrantedAuthority("ROLE_Basic")));
+
+        //When
+        Optional<Authentication> actual = tokenService.verify(token);
+
+        //Then
+        assertTrue(actual.isPresent());
+        assertEquals("username", actual.get().getName());
+        assertTrue(actual.get().isAuthenticated());
+        assertEquals(List.of(new SimpleGrantedAuthority("ROLE_Basic")), List.copyOf(actual.get().getAuthorities()));
+    }
+
+    @Test
+    void verify_AndExpectEmptyForTamperedToken() {
+        //Given
+        String token = tokenService.issue("username", List.of(new SimpleGrantedAuthority("ROLE_Basic")));
+        String otherToken = tokenService.issue("admin", List.of(new SimpleGrantedAuthority("ROLE_Basic")));
+        String tampered = otherToken.substring(0, otherToken.indexOf('.')) + token.substring(token.indexOf('.'));
+
+        //When & Then
+        assertTrue(tokenService.verify(tampered).isEmpty());
+        assertTrue(tokenService.verify("not-a-token").isEmpty());
+    }
+
+    @Test
+    void verify_AndExpectEmptyForExpiredToken() {
+        //Given
+        String token = tokenService.issue("username", List.of());
+        TokenService later = new TokenService(true, SECRET, Duration.ofMinutes(15), objectMapper,
+                Clock.fixed(NOW.plus(Duration.ofMinutes(16)), ZoneOffset.UTC));
+
+        //When & Then
+        assertTrue(later.verify(token).isEmpty());
+    }
+
+    @Test
+    void verify_AndExpectEmptyForTokenSignedWithOtherSecret() {
+        //Given
+        TokenService otherInstance = new TokenService(true, SECRET + "-other", Duration.ofMinutes(15),
+                objectMapper, Clock.fixed(NOW, ZoneOffset.UTC));
+        String token = otherInstance.issue("username", List.of());
+
+        //When & Then
+        assertTrue(tokenService.verify(token).isEmpty());
+    }
+
+    @Test
+    void enabledWithoutSecret_AndExpectIllegalStateException() {
+        Duration timeToLive = Duration.ofMinutes(15);
+        assertThrows(IllegalStateException.class,
+                () -> new TokenService(true, "", timeToLive, objectMapper, Clock.systemUTC()));
+    }
+
+    @Test
+    void filter_AndExpectAuthenticationFromCookie() throws Exception {
+        //Given
+        String token = tokenService.issue("username", List.of(new SimpleGrantedAuthority("ROLE_Basic")));
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setCookies(new Cookie(TokenService.TOKEN_COOKIE, token));
+        TokenAuthenticationFilter filter = new TokenAuthenticationFilter(tokenService);
+
+        //When
+        try {
+            filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+
+            //Then
+            assertEquals("username", SecurityContextHolder.getContext().getAuthentication().getName());
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+}
@@ -9,29 +9,33 @@ import static org.mockito.Mockito.*;
 
 class UserServiceTest {
 
+    private static final String STABLE_ID = "stable";
+
     private final UserRepository mockUserRepository = mock(UserRepository.class);
 
     private final BCryptPasswordEncoder mockPasswordEncoder = mock(BCryptPasswordEncoder.class);
-    private final UserService userService = new UserService(mockUserRepository);
+    private final CredentialCache mockCredentialCache = mock(CredentialCache.class);
+    private final UserService userService = new UserService(mockUserRepository, mockCredentialCache);
 
 
     @Test
     void saveSuccessful() {
-        AppUser newAppUser = new AppUser("null", "username", "password", "", "", "email");
+        AppUser newAppUser = new AppUser("null", "username", "password", "", "", "email", STABLE_ID);
         newAppUser = newAppUser.withEMail("email@email.de").withUsername("Different username");
         when(mockUserRepository.save(newAppUser)).thenReturn(newAppUser);
         when(mockPasswordEncoder.encode("password")).thenReturn("encodedPassword");
-        String actual = userService.save(newAppUser, mockPasswordEncoder);
+        String actual = userService.save(newAppUser, STABLE_ID, mockPasswordEncoder);
         String expected = "Created user: " + newAppUser.username();
 
         assertEquals(expected, actual);
         verify(mockPasswordEncoder).encode("password");
+        verify(mockCredentialCache).evict("Different username");
     }
 
 
     @Test
     void findByUsername() {
-        AppUser appUser = new AppUser("null", "username", "password", "", "", "email");
+        AppUser appUser = new AppUser("null", "username", "password", "", "", "email", STABLE_ID);
         when(mockUserRepository.findByUsername("username")).thenReturn(appUser);
 
         AppUser expected = appUser;
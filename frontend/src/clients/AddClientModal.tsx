@@ -1,7 +1,7 @@
 import axios from 'axios';
 import React, {ChangeEvent, useEffect, useState} from 'react';
 import Modal from 'react-modal';
-import {ClientModel} from "./ClientModel";
+import {ClientModel, toClientRequest} from "./ClientModel";
 import FieldLabelGroup from "../structuralComponents/FieldLabelGroup";
 import CloseIcon from "../icons/CloseIcon";
 import "../index/css/AddItemModal.css";
@@ -48,7 +48,7 @@ function AddClientModal(props: ModalProps) {
         event.preventDefault()
         selectContent?.map(selectedOption => newClient.ownsHorse.push(selectedOption.value))
         console.log(newClient)
-        axios.post("/clients/", newClient)
+        axios.post("/clients/", toClientRequest(newClient))
             .catch((e) => console.error("POST Error: " + e))
             .then(props.reloadClients)
             .then(props.closeModal)
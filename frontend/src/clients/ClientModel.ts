@@ -3,5 +3,14 @@ import {HorseModel} from "../horses/HorseModel";
 export type ClientModel = {
     id: string,
     name: string,
-    ownsHorse: HorseModel[]
+    ownsHorse: HorseModel[],
+    version?: number
 }
+
+/**
+ * Clients are stored with the ids of their horses only; the server resolves them when rendering.
+ */
+export const toClientRequest = (client: ClientModel) => ({
+    ...client,
+    ownsHorse: client.ownsHorse.map(horse => horse.id)
+})
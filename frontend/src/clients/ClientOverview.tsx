@@ -9,6 +9,7 @@ import AddClientModal from "./AddClientModal";
 import {HorseModel} from "../horses/HorseModel";
 import DeleteClientModal from "./DeleteClientModal";
 import EditClientModal from "./EditClientModal";
+import useChangeFeed, {applyChange} from "../index/useChangeFeed";
 
 function HorseOverview() {
 
@@ -38,8 +39,8 @@ function HorseOverview() {
     }
     const closeModal = () => {
         setOpenModal(undefined)
-        getAllClients()
-        getAllHorses()
+        reloadClients()
+        reloadHorses()
     }
 
     const getAllClients = () => {
@@ -54,6 +55,22 @@ function HorseOverview() {
             .catch((error) => console.error("Error while getting horses:" + error))
             .then(setHorses)
     }
+
+    const changeFeedConnected = useChangeFeed(change => {
+        if (change.collection === "clients") {
+            // change events carry the stored client with horse ids, the list shows the resolved horses
+            getAllClients()
+        } else if (change.collection === "horses") {
+            setHorses(previous => applyChange(previous, change) ?? [])
+            getAllClients()
+        }
+    }, () => {
+        getAllClients()
+        getAllHorses()
+    })
+    const reloadClients = changeFeedConnected ? () => undefined : getAllClients
+    const reloadHorses = changeFeedConnected ? () => undefined : getAllHorses
+
     useEffect(() => {
         getAllClients()
         getAllHorses()
@@ -75,19 +92,19 @@ function HorseOverview() {
         <>
             <AddClientModal modalIsOpen={openModal === "add"}
                             closeModal={closeModal}
-                            reloadClients={getAllClients}
+                            reloadClients={reloadClients}
                             setSuccessMessage={setSuccessMessage}
                             horseList={horses}
                             registeredClients={clients}/>
             <DeleteClientModal modalIsOpen={openModal === "delete"}
                                closeModal={closeModal}
-                               reloadClients={getAllClients}
+                               reloadClients={reloadClients}
                                setSuccessMessage={setSuccessMessage}
                                idToDelete={idToDelete}
-                               reloadHorses={getAllHorses}/>
+                               reloadHorses={reloadHorses}/>
             <EditClientModal modalIsOpen={openModal === "edit"}
                              closeModal={closeModal}
-                             reloadClients={getAllClients}
+                             reloadClients={reloadClients}
                              setSuccessMessage={setSuccessMessage}
                              clientToEdit={clientToEdit}
                              horseList={horses}
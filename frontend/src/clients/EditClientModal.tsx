@@ -6,7 +6,7 @@ import FieldLabelGroup from "../structuralComponents/FieldLabelGroup";
 import CloseIcon from "../icons/CloseIcon";
 import "../index/css/AddItemModal.css";
 import "../buttons/css/SubmitButton.css";
-import {ClientModel} from "./ClientModel";
+import {ClientModel, toClientRequest} from "./ClientModel";
 import Select from "react-select";
 
 
@@ -53,7 +53,7 @@ function EditClientModal(props: ModalProps) {
     }, [editedClient])
 
     const saveNewClient = () => {
-        axios.put("/clients/", editedClient)
+        axios.put("/clients/", toClientRequest(editedClient))
             .catch((e) => console.error("PUT Error: " + e))
             .then(props.reloadClients)
             .then(props.closeModal)
@@ -4,5 +4,6 @@ export type HorseModel = {
     id: string,
     name: string,
     owner: string,
-    consumptionList: ConsumptionModel[]
+    consumptionList: ConsumptionModel[],
+    version?: number
 }
@@ -11,6 +11,7 @@ import EditIcon from "../icons/EditIcon";
 import {StockItemModel} from "../stock/StockItemModel";
 import AddConsumptionModal from "./AddConsumptionModal";
 import AddToIcon from "../icons/AddToIcon";
+import useChangeFeed, {applyChange} from "../index/useChangeFeed";
 
 function HorseOverview() {
 
@@ -59,11 +60,23 @@ function HorseOverview() {
             .then(setHorses)
     }
 
+    const changeFeedConnected = useChangeFeed(change => {
+        if (change.collection === "horses") {
+            setHorses(previous => applyChange(previous, change))
+        } else if (change.collection === "stock") {
+            setStockItems(previous => applyChange(previous, change) ?? [])
+        }
+    }, () => {
+        getAllHorses()
+        getAllStockItems()
+    })
+    const reloadHorses = changeFeedConnected ? () => undefined : getAllHorses
+
     const removeConsumption = (consumptionItemToDeleteId: string, editedHorse: HorseModel) => {
         editedHorse.consumptionList = editedHorse.consumptionList.filter(consumptionItem => consumptionItem.id !== consumptionItemToDeleteId)
         axios.put("/horses/", editedHorse)
             .catch((e) => console.error("PUT Error: " + e))
-            .then(getAllHorses)
+            .then(reloadHorses)
             .then(() => setSuccessMessage("Eintrag erfolgreich gelöscht"))
     }
 
@@ -88,21 +101,21 @@ function HorseOverview() {
         <>
             <AddHorseModal modalIsOpen={openModal === "add"}
                            closeModal={closeModal}
-                           reloadHorses={getAllHorses}
+                           reloadHorses={reloadHorses}
                            setSuccessMessage={setSuccessMessage}/>
             <DeleteHorseModal modalIsOpen={openModal === "delete"}
                               closeModal={closeModal}
-                              reloadHorses={getAllHorses}
+                              reloadHorses={reloadHorses}
                               setSuccessMessage={setSuccessMessage}
                               idToDelete={idToDelete}/>
             <EditHorseModal modalIsOpen={openModal === "edit"}
                             closeModal={closeModal}
-                            reloadHorses={getAllHorses}
+                            reloadHorses={reloadHorses}
                             setSuccessMessage={setSuccessMessage}
                             horseToEdit={horseToEdit}/>
             <AddConsumptionModal modalIsOpen={openModal === "addConsumption"}
                                  closeModal={closeModal}
-                                 reloadHorses={getAllHorses}
+                                 reloadHorses={reloadHorses}
                                  stockItemList={stockItems}
                                  setSuccessMessage={setSuccessMessage}
                                  selectedHorse={horseToEdit}/>
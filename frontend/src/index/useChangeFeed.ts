@@ -0,0 +1,44 @@
+import {useEffect, useRef, useState} from "react";
+
+export type ChangeEventModel = {
+    collection: "stock" | "forecasts" | "horses" | "clients",
+    operation: "UPSERT" | "DELETE",
+    id: string,
+    document?: any
+}
+
+export function applyChange<T extends { id: string }>(items: T[] | undefined, change: ChangeEventModel): T[] | undefined {
+    if (items === undefined) {
+        return items
+    }
+    if (change.operation === "DELETE") {
+        return items.filter(item => item.id !== change.id)
+    }
+    if (items.some(item => item.id === change.id)) {
+        return items.map(item => item.id === change.id ? change.document : item)
+    }
+    return [...items, change.document]
+}
+
+/**
+ * Subscribes to the server's change feed. Every change is handed to onChange; onReset is called
+ * when changes were missed and the lists have to be reloaded. Returns whether the feed is
+ * connected, so a page can skip reloading after its own edits.
+ */
+export default function useChangeFeed(onChange: (change: ChangeEventModel) => void, onReset: () => void): boolean {
+    const [connected, setConnected] = useState(false)
+    const handlers = useRef({onChange, onReset})
+    handlers.current = {onChange, onReset}
+
+    useEffect(() => {
+        const eventSource = new EventSource("/events", {withCredentials: true})
+        eventSource.onopen = () => setConnected(true)
+        eventSource.onerror = () => setConnected(false)
+        eventSource.addEventListener("change", (event) =>
+            handlers.current.onChange(JSON.parse((event as MessageEvent).data)))
+        eventSource.addEventListener("reset", () => handlers.current.onReset())
+        return () => eventSource.close()
+    }, [])
+
+    return connected
+}
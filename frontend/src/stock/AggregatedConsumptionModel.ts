@@ -1,4 +1,5 @@
 export type AggregatedConsumptionModel = {
     id: string,
+    name: string,
     dailyAggregatedConsumption: number
 }
@@ -0,0 +1,7 @@
+export type StockAlertModel = {
+    id: string,
+    reason: "MIN_AMOUNT_IN_STOCK" | "MIN_DAYS_OF_COVER",
+    amountInStock: number,
+    daysRemaining?: number | null,
+    raisedAt: string
+}
@@ -0,0 +1,8 @@
+export type StockForecastModel = {
+    id: string,
+    amountInStock: number,
+    dailyConsumption: number,
+    daysRemaining?: number | null,
+    projectedEmptyDate?: string | null,
+    reorderDate?: string | null
+}
@@ -4,4 +4,5 @@ export type StockItemModel = {
     type: string,
     amountInStock: number,
     pricePerKilo: number,
+    version?: number,
 }
@@ -9,6 +9,9 @@ import DeleteItemModal from "./DeleteItemModal";
 import EditIcon from "../icons/EditIcon";
 import EditItemModal from "./EditItemModal";
 import {MappedConsumptionModel} from "./MappedConsumptionModel";
+import {StockForecastModel} from "./StockForecastModel";
+import {StockAlertModel} from "./StockAlertModel";
+import useChangeFeed, {applyChange} from "../index/useChangeFeed";
 
 function StockOverview() {
 
@@ -19,26 +22,55 @@ function StockOverview() {
     const [dailyConsumption, setDailyConsumption] = useState<MappedConsumptionModel>({
         "": {
             id: "",
+            name: "",
             dailyAggregatedConsumption: 0
         }
     })
+    const [forecasts, setForecasts] = useState<{ [id: string]: StockForecastModel }>({})
+    const [alerts, setAlerts] = useState<{ [id: string]: StockAlertModel }>({})
     const [itemToEdit, setItemToEdit] = useState<StockItemModel>({
         id: "", name: "", amountInStock: 0, pricePerKilo: 0, type: ""
     })
     const [openModal, setOpenModal] = useState<"add" | "edit" | "delete" | "addConsumption">()
 
-    const getAllStockItems = () => {
+    const getForecasts = useCallback(() => {
+        axios.get("/stock/forecasts")
+            .then((response) => response.data)
+            .catch((error) => console.error("Error while getting forecasts:" + error))
+            .then(setForecasts)
+    }, [])
+    const getAllStockItems = useCallback(() => {
         axios.get("/stock/")
             .then((response) => response.data)
             .catch((error) => console.error("Error while getting Stockitems:" + error))
             .then(setStockItems)
-    }
+        getForecasts()
+    }, [getForecasts])
     const getAggregatedConsumption = useCallback(() => {
         axios.get("/stock/consumption/")
             .then((response) => response.data)
             .catch((error) => console.error("Error while getting Stockitems:" + error))
             .then(setDailyConsumption)
     }, [])
+
+    const changeFeedConnected = useChangeFeed(change => {
+        if (change.collection === "stock") {
+            setStockItems(previous => applyChange(previous, change))
+        } else if (change.collection === "forecasts") {
+            setForecasts(previous => {
+                const updated = {...previous}
+                if (change.operation === "DELETE") {
+                    delete updated[change.id]
+                } else {
+                    updated[change.id] = change.document
+                }
+                return updated
+            })
+        } else if (change.collection === "horses") {
+            getAggregatedConsumption()
+        }
+    }, getAllStockItems)
+    const reloadStockItems = changeFeedConnected ? () => undefined : getAllStockItems
     const openAddModal = () => {
         setOpenModal("add")
         setSuccessMessage("")
@@ -61,7 +93,27 @@ function StockOverview() {
     useEffect(() => {
         getAllStockItems()
         getAggregatedConsumption()
-    }, [getAggregatedConsumption])
+    }, [getAllStockItems, getAggregatedConsumption])
+
+    useEffect(() => {
+        const eventSource = new EventSource("/stock/alerts/stream", {withCredentials: true})
+        eventSource.addEventListener("alert-raised", (event) => {
+            const alert: StockAlertModel = JSON.parse((event as MessageEvent).data)
+            setAlerts(previous => ({...previous, [alert.id]: alert}))
+            setStockItems(previous => previous?.map(item =>
+                item.id === alert.id ? {...item, amountInStock: alert.amountInStock} : item))
+        })
+        eventSource.addEventListener("alert-cleared", (event) => {
+            const alert: StockAlertModel = JSON.parse((event as MessageEvent).data)
+            setAlerts(previous => {
+                const remaining = {...previous}
+                delete remaining[alert.id]
+                return remaining
+            })
+            getAllStockItems()
+        })
+        return () => eventSource.close()
+    }, [getAllStockItems])
 
     if (stockItems === undefined) {
         return <BounceLoader
@@ -79,17 +131,17 @@ function StockOverview() {
         <>
             <AddItemModal modalIsOpen={openModal === "add"}
                           closeModal={closeModal}
-                          reloadStockItems={getAllStockItems}
+                          reloadStockItems={reloadStockItems}
                           setSuccessMessage={setSuccessMessage}/>
             <DeleteItemModal modalIsOpen={openModal === "delete"}
                              closeModal={closeModal}
-                             reloadStockItems={getAllStockItems}
+                             reloadStockItems={reloadStockItems}
                              setSuccessMessage={setSuccessMessage}
                              idToDelete={idToDelete}
                              setErrorMessage={setErrorMessage}/>
             <EditItemModal modalIsOpen={openModal === "edit"}
                            closeModal={closeModal}
-                           reloadStockItems={getAllStockItems}
+                           reloadStockItems={reloadStockItems}
                            setSuccessMessage={setSuccessMessage}
                            itemToEdit={itemToEdit}/>
             {stockItems.length > 0 ?
@@ -109,20 +161,23 @@ function StockOverview() {
                             </thead>
                             <tbody>
                             {stockItems.map(item => {
+                                const forecast = forecasts?.[item.id]
                                 return <tr key={item.id}>
                                     <td><strong>{item.name}</strong></td>
                                     <td>{item.type}</td>
-                                    <td className={item.amountInStock === 0 ? "alert-cell" : ""}>{item.amountInStock} kg</td>
+                                    <td className={alerts[item.id] || item.amountInStock === 0 ? "alert-cell" : ""}
+                                        title={alerts[item.id] ? "Mindestbestand unterschritten" : undefined}>{item.amountInStock} kg</td>
                                     <td>{item.pricePerKilo} €</td>
                                     <td>
-                                        {dailyConsumption[item.name] ?
-                                            dailyConsumption[item.name].dailyAggregatedConsumption
+                                        {dailyConsumption[item.id] ?
+                                            dailyConsumption[item.id].dailyAggregatedConsumption
                                             : <>0</>} kg
                                     </td>
                                     <td
-                                        className={dailyConsumption[item.name] && Math.round(item.amountInStock / dailyConsumption[item.name].dailyAggregatedConsumption) < 14 ? "alert-cell" : ""}>
-                                        {dailyConsumption[item.name] ?
-                                            Math.round(item.amountInStock / dailyConsumption[item.name].dailyAggregatedConsumption) + " Tagen"
+                                        className={forecast?.reorderDate && new Date(forecast.reorderDate) <= new Date() ? "alert-cell" : ""}
+                                        title={forecast?.reorderDate ? "Nachbestellen bis " + forecast.reorderDate : undefined}>
+                                        {forecast?.daysRemaining != null ?
+                                            Math.floor(forecast.daysRemaining) + " Tagen"
                                             : <>-</>}
                                     </td>
                                     <td>